@@ -0,0 +1,60 @@
+package game;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import game.PGN.PGNParser;
+
+/**
+ * Benchmarks checks made on every move of a long game.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GameBenchmark {
+
+    /** A long game imported from a PGN. */
+    private Game game;
+
+    /**
+     * Imports the long game.
+     * 
+     * @throws Exception If the game cannot be imported.
+     */
+    @Setup
+    public void setup() throws Exception {
+
+        try (InputStream in = getClass().getResourceAsStream("/pgn/long-game.pgn")) {
+
+            final PGNParser pgn = new PGNParser(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+
+            game = new Game(pgn, new GameSettings(0, 0, false, false, true, true), false);
+
+        }
+
+    }
+
+    /**
+     * Benchmarks {@link Game#checkGameOver()}, which includes checking for
+     * repetition over the positions of the game.
+     * 
+     * @return The result of the game.
+     */
+    @Benchmark
+    public Game.Result checkGameOver() {
+
+        game.checkGameOver();
+        return game.getResult();
+
+    }
+
+}
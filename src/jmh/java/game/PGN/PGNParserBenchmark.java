@@ -0,0 +1,73 @@
+package game.PGN;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import game.Game;
+import game.GameSettings;
+
+/**
+ * Benchmarks parsing and outputting the PGN of a long game.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PGNParserBenchmark {
+
+    /** The text of the PGN. */
+    private String text;
+
+    /** The PGN created from the game imported from {@link #text}. */
+    private PGNParser output;
+
+    /**
+     * Reads the PGN and imports the game from it.
+     * 
+     * @throws Exception If the game cannot be imported.
+     */
+    @Setup
+    public void setup() throws Exception {
+
+        try (InputStream in = getClass().getResourceAsStream("/pgn/long-game.pgn")) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        final PGNParser pgn = new PGNParser(text);
+        final Game game = new Game(pgn, new GameSettings(0, 0, false, false, true, true), false);
+
+        output = new PGNParser(game, new HashMap<String, String>(pgn.getTags()), false);
+
+    }
+
+    /**
+     * Benchmarks {@link PGNParser#PGNParser(String)}.
+     * 
+     * @return The parsed PGN.
+     * @throws Exception If the PGN cannot be parsed.
+     */
+    @Benchmark
+    public PGNParser parse() throws Exception {
+        return new PGNParser(text);
+    }
+
+    /**
+     * Benchmarks {@link PGNParser#outputPGN(boolean)}.
+     * 
+     * @return The PGN text.
+     */
+    @Benchmark
+    public String outputPGN() {
+        return output.outputPGN(true);
+    }
+
+}
@@ -0,0 +1,98 @@
+package game;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks creating positions and finding and notating their moves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PositionBenchmark {
+
+    /** The positions to benchmark: the start position and a busy middlegame. */
+    @Param({
+            GameSettings.DEFAULT_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"
+    })
+    public String fen;
+
+    /** The position created from {@link #fen}. */
+    private Position position;
+
+    /** A legal move of {@link #position}. */
+    private Move move;
+
+    /** The short algebraic notation of {@link #move}. */
+    private String san;
+
+    /**
+     * Creates the position and picks the last of its legal moves to benchmark.
+     */
+    @Setup
+    public void setup() {
+
+        position = new Position(fen);
+        move = position.getMoves().get(position.getMoves().size() - 1);
+
+        move.updateMoveNotation();
+        san = move.getMoveNotation();
+
+    }
+
+    /**
+     * Benchmarks {@link Position#Position(String)}.
+     * 
+     * @return The new position.
+     */
+    @Benchmark
+    public Position fromFen() {
+        return new Position(fen);
+    }
+
+    /**
+     * Benchmarks {@link Position#Position(Position, Move, char, boolean)} with
+     * checkmate checked for, as when a move is made in a game.
+     * 
+     * @return The new position.
+     * @throws Exception If the move cannot be made.
+     */
+    @Benchmark
+    public Position fromMove() throws Exception {
+        return new Position(position, move, 'Q', true);
+    }
+
+    /**
+     * Benchmarks {@link Position#getMoveBySAN(String)}.
+     * 
+     * @return The move found.
+     * @throws Exception If the move cannot be found.
+     */
+    @Benchmark
+    public Move getMoveBySAN() throws Exception {
+        return position.getMoveBySAN(san);
+    }
+
+    /**
+     * Benchmarks {@link Move#updateMoveNotation()}.
+     * 
+     * @return The updated move notation.
+     */
+    @Benchmark
+    public String updateMoveNotation() {
+
+        move.updateMoveNotation();
+        return move.getMoveNotation();
+
+    }
+
+}
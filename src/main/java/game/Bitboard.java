@@ -0,0 +1,241 @@
+package game;
+
+/**
+ * Constants and helpers for the 64-bit bitboard representation used internally
+ * by {@link Position}.
+ * 
+ * <p>
+ * Squares are indexed from {@code 0} (a1) to {@code 63} (h8), rank by rank, so
+ * that the index of a square is {@code (rank - 1) * 8 + (file - 1)}. Each piece
+ * type and color has its own bitboard, indexed by the piece constants in this
+ * class (e.g. {@link #WHITE_KNIGHT}).
+ */
+public final class Bitboard {
+
+    /** The piece type of a pawn. */
+    public static final int PAWN = 0;
+
+    /** The piece type of a knight. */
+    public static final int KNIGHT = 1;
+
+    /** The piece type of a bishop. */
+    public static final int BISHOP = 2;
+
+    /** The piece type of a rook. */
+    public static final int ROOK = 3;
+
+    /** The piece type of a queen. */
+    public static final int QUEEN = 4;
+
+    /** The piece type of a king. */
+    public static final int KING = 5;
+
+    /** The index of the white pawn bitboard. */
+    public static final int WHITE_PAWN = 0;
+
+    /** The index of the white knight bitboard. */
+    public static final int WHITE_KNIGHT = 1;
+
+    /** The index of the white bishop bitboard. */
+    public static final int WHITE_BISHOP = 2;
+
+    /** The index of the white rook bitboard. */
+    public static final int WHITE_ROOK = 3;
+
+    /** The index of the white queen bitboard. */
+    public static final int WHITE_QUEEN = 4;
+
+    /** The index of the white king bitboard. */
+    public static final int WHITE_KING = 5;
+
+    /** The index of the black pawn bitboard. */
+    public static final int BLACK_PAWN = 6;
+
+    /** The index of the black knight bitboard. */
+    public static final int BLACK_KNIGHT = 7;
+
+    /** The index of the black bishop bitboard. */
+    public static final int BLACK_BISHOP = 8;
+
+    /** The index of the black rook bitboard. */
+    public static final int BLACK_ROOK = 9;
+
+    /** The index of the black queen bitboard. */
+    public static final int BLACK_QUEEN = 10;
+
+    /** The index of the black king bitboard. */
+    public static final int BLACK_KING = 11;
+
+    /** The number of piece bitboards. */
+    public static final int PIECE_COUNT = 12;
+
+    /** Marks a square that has no piece on it. */
+    public static final int EMPTY = -1;
+
+    /** The piece codes, in order of piece type. */
+    public static final String CODES = "PNBRQK";
+
+    /**
+     * The number of points each piece type is worth, in order of piece type.
+     * 
+     * @see game.pieces.Piece#getPoints()
+     */
+    public static final int[] POINTS = { 1, 3, 3, 5, 9, 0 };
+
+    /** The squares on the a-file. */
+    public static final long FILE_A = 0x0101010101010101L;
+
+    /** The squares on the h-file. */
+    public static final long FILE_H = FILE_A << 7;
+
+    /** The squares on the first rank. */
+    public static final long RANK_1 = 0xFFL;
+
+    /** The squares on the eighth rank. */
+    public static final long RANK_8 = RANK_1 << 56;
+
+    /** The light squares of the board. */
+    public static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
+    /**
+     * Gets the square index of the given file and rank.
+     * 
+     * @param file The file, from 1-8.
+     * @param rank The rank, from 1-8.
+     * @return The square index, from 0-63.
+     */
+    public static int square(int file, int rank) {
+        return (rank - 1) * 8 + (file - 1);
+    }
+
+    /**
+     * Gets the square index of the given {@link Square}.
+     * 
+     * @param square The square.
+     * @return The square index, from 0-63.
+     */
+    public static int square(Square square) {
+        return square(square.getFile(), square.getRank());
+    }
+
+    /**
+     * Gets the file of the given square index.
+     * 
+     * @param square The square index.
+     * @return The file, from 1-8.
+     */
+    public static int file(int square) {
+        return (square & 7) + 1;
+    }
+
+    /**
+     * Gets the rank of the given square index.
+     * 
+     * @param square The square index.
+     * @return The rank, from 1-8.
+     */
+    public static int rank(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    /**
+     * Creates a {@link Square} object from the given square index.
+     * 
+     * @param square The square index.
+     * @return A new {@link Square} object.
+     */
+    public static Square toSquare(int square) {
+        return new Square(file(square), rank(square));
+    }
+
+    /**
+     * Gets the bitboard index of the given piece type and color.
+     * 
+     * @param type  The piece type, such as {@link #KNIGHT}.
+     * @param white The color of the piece.
+     * @return The bitboard index.
+     */
+    public static int index(int type, boolean white) {
+        return white ? type : type + 6;
+    }
+
+    /**
+     * Gets the bitboard index of the given piece code and color.
+     * 
+     * @param code  The piece code, such as {@code 'N'}.
+     * @param white The color of the piece.
+     * @return The bitboard index, or {@link #EMPTY} if the code is invalid.
+     */
+    public static int index(char code, boolean white) {
+
+        final int type = CODES.indexOf(code);
+
+        return type < 0 ? EMPTY : index(type, white);
+
+    }
+
+    /**
+     * Gets the piece type of the given bitboard index.
+     * 
+     * @param index The bitboard index.
+     * @return The piece type.
+     */
+    public static int type(int index) {
+        return index % 6;
+    }
+
+    /**
+     * Gets the color of the given bitboard index.
+     * 
+     * @param index The bitboard index.
+     * @return {@code true} if the index is of a white piece.
+     */
+    public static boolean isWhite(int index) {
+        return index < 6;
+    }
+
+    /**
+     * Gets the piece code of the given bitboard index.
+     * 
+     * @param index The bitboard index.
+     * @return The piece code, such as {@code 'N'}.
+     */
+    public static char code(int index) {
+        return CODES.charAt(type(index));
+    }
+
+    /**
+     * Gets the FEN character of the given bitboard index, uppercase for white and
+     * lowercase for black.
+     * 
+     * @param index The bitboard index.
+     * @return The FEN character.
+     */
+    public static char fenChar(int index) {
+        return isWhite(index) ? code(index) : Character.toLowerCase(code(index));
+    }
+
+    /**
+     * Gets the bit of the given square index.
+     * 
+     * @param square The square index.
+     * @return A bitboard with only that square set.
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Gets the index of the lowest square set on the bitboard.
+     * 
+     * @param bitboard The bitboard, which should not be {@code 0}.
+     * @return The square index.
+     */
+    public static int first(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    private Bitboard() {
+    }
+
+}
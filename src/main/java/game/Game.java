@@ -1,5 +1,7 @@
 package game;
 
+import java.io.StringWriter;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -13,6 +15,8 @@ import java.util.concurrent.TimeUnit;
 import game.GameEvent.Type;
 import game.PGN.PGNMove;
 import game.PGN.PGNParser;
+import game.PGN.PGNWriter;
+import game.database.OpeningExplorer;
 
 /**
  * A game of chess.
@@ -197,6 +201,12 @@ public class Game {
      */
     private boolean paused;
 
+    /**
+     * Whether or not the game has been added to the
+     * {@link OpeningExplorer#getDefault() opening explorer}.
+     */
+    private boolean explored;
+
     /**
      * The player that offered a draw. {@code null} if no draw has been offered or
      * the previous draw offer has been declined.
@@ -658,7 +668,8 @@ public class Game {
 
     /**
      * Checks if the game is over based on the current position. Checks for
-     * checkmate, insufficient material, and stalemate.
+     * checkmate, insufficient material, stalemate, the fifty-move rule and
+     * repetition.
      */
     public void checkGameOver() {
 
@@ -676,13 +687,17 @@ public class Game {
 
         else {
 
-            String curr = getLastPos().toString().split(" ")[0];
+            final long curr = getLastPos().getHashKey();
 
             int sameCount = 1;
 
-            for (int i = 0; i < positions.size() - 1; i++) {
+            // Positions before the last capture or pawn move cannot repeat, and
+            // only positions with the same color to move can be the same
+            final int first = Math.max(0, positions.size() - 1 - getLastPos().getFiftyMoveCounter());
 
-                if (positions.get(i).toString().split(" ")[0].equals(curr))
+            for (int i = positions.size() - 3; i >= first; i -= 2) {
+
+                if (positions.get(i).getHashKey() == curr)
                     ++sameCount;
 
             }
@@ -712,10 +727,29 @@ public class Game {
             flagfallChecker.shutdownNow();
 
         stopTimer();
+        explore();
         fireEvent(new GameEvent(Type.OVER));
 
     }
 
+    /**
+     * Adds the game to the {@link OpeningExplorer#getDefault() opening explorer}
+     * once it is over, if it has not been added already. Games that are
+     * terminated are not added, as they have no result. Games created from a
+     * PGN are not added unless they are played to the end, so that replaying a
+     * game does not count it; the callers that load a finished game from a PGN
+     * add it to the explorer themselves.
+     */
+    private void explore() {
+
+        if (explored)
+            return;
+
+        explored = true;
+        OpeningExplorer.getDefault().add(this);
+
+    }
+
     /**
      * Finds the move with the given {@code origin} and {@code destination} then
      * executes it.
@@ -1070,6 +1104,41 @@ public class Game {
      */
     public String exportPosition(boolean includeTags, boolean includeClock) throws Exception {
 
+        final StringWriter str = new StringWriter();
+        exportPosition(str, includeTags, includeClock);
+
+        return str.toString();
+
+    }
+
+    /**
+     * Exports the game to PGN format, writing it directly to the given writer.
+     * 
+     * @param out          The writer to write the game to. To export many games
+     *                     to one file, use a single {@link PGNWriter} and
+     *                     {@link #toPGN(boolean)} instead.
+     * @param includeTags  Whether or not the tags should be included. If
+     *                     {@code false}, just the moves will be listed.
+     * @param includeClock Whether or not the clock timestamps should be included
+     *                     after each move.
+     * @throws Exception If there was an error exporting the game.
+     * 
+     * @see game.PGN.PGNWriter
+     */
+    public void exportPosition(Writer out, boolean includeTags, boolean includeClock) throws Exception {
+        new PGNWriter(out).write(toPGN(includeClock), includeTags);
+    }
+
+    /**
+     * Creates the PGN of the game, with the tags that are exported.
+     * 
+     * @param includeClock Whether or not the clock timestamps should be included
+     *                     after each move.
+     * @return The game as a parsed PGN.
+     * @throws Exception If there was an error exporting the game.
+     */
+    public PGNParser toPGN(boolean includeClock) throws Exception {
+
         Map<String, String> tags = new LinkedHashMap<>();
 
         // The start date
@@ -1124,7 +1193,7 @@ public class Game {
 
         }
 
-        return new PGNParser(this, tags, includeClock).outputPGN(includeTags);
+        return new PGNParser(this, tags, includeClock);
 
     }
 
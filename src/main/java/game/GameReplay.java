@@ -0,0 +1,622 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import game.Game.Result;
+import game.PGN.PGNMove;
+import game.PGN.PGNParser;
+
+/**
+ * A lightweight replay of the moves of a parsed PGN, for when only the final
+ * position, the result and a few facts about a game are needed.
+ * 
+ * <p>
+ * Unlike importing with {@link Game#Game(PGNParser, GameSettings, boolean)},
+ * the moves are made on a single {@link Position} with
+ * {@link Position#makeMove(int)}, and no {@link Move} objects are created. The
+ * moves are only checked to be legal. The notation, opening and clock times of
+ * each move are only computed if requested with {@link #NOTATION},
+ * {@link #OPENINGS} and {@link #CLOCKS}. A {@link Position} of any move, or the
+ * full {@link Game}, can be created afterwards with {@link #getPosition(int)}
+ * and {@link #toGame(GameSettings)}.
+ */
+public class GameReplay {
+
+    /** Option to compute the notation of each move, including check marks. */
+    public static final int NOTATION = 1;
+
+    /** Option to find the opening of the game. */
+    public static final int OPENINGS = 2;
+
+    /** Option to read the clock time at the end of each move. */
+    public static final int CLOCKS = 4;
+
+    /** The parsed PGN that was replayed. */
+    private final PGNParser pgn;
+
+    /** The options the game was replayed with. */
+    private final int options;
+
+    /** The starting position of the game, which is not changed. */
+    private final Position start;
+
+    /** The position after the last move. */
+    private final Position position;
+
+    /** The moves of the game, encoded as described in {@link MoveGenerator}. */
+    private final int[] moves;
+
+    /**
+     * The notation of each move, or {@code null} if not replayed with
+     * {@link #NOTATION}.
+     */
+    private final String[] notation;
+
+    /**
+     * The time on the clock at the end of each move in milliseconds, or
+     * {@code -1} if the move has none, or {@code null} if not replayed with
+     * {@link #CLOCKS}.
+     */
+    private final long[] clocks;
+
+    /**
+     * The opening of the latest position that has one, or {@code null} if there
+     * is none or the game was not replayed with {@link #OPENINGS}.
+     */
+    private final Opening opening;
+
+    /** Whether or not the final position is checkmate. */
+    private final boolean checkmate;
+
+    /** Whether or not the final position is stalemate. */
+    private final boolean stalemate;
+
+    /**
+     * The result of the game, from the Result tag of the PGN or, if it has none,
+     * from the final position.
+     */
+    private final Result result;
+
+    /**
+     * Replays the moves of the given PGN.
+     * 
+     * @param pgn     The parsed PGN.
+     * @param options The information to compute for each move, a combination of
+     *                {@link #NOTATION}, {@link #OPENINGS} and {@link #CLOCKS}.
+     * @throws Exception If a move of the PGN is invalid.
+     */
+    public GameReplay(PGNParser pgn, int options) throws Exception {
+
+        this.pgn = pgn;
+        this.options = options;
+
+        final String setup = pgn.getTags().getOrDefault("SetUp", "");
+        final String fen = pgn.getTags().getOrDefault("FEN", "");
+
+        this.start = setup.equals("1") && !fen.equals("") ? new Position(fen) : new Position();
+        this.position = new Position(start);
+
+        final ArrayList<PGNMove> pMoves = pgn.getMoves();
+
+        this.moves = new int[pMoves.size()];
+        this.notation = (options & NOTATION) != 0 ? new String[moves.length] : null;
+        this.clocks = (options & CLOCKS) != 0 ? new long[moves.length] : null;
+
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+        Opening opening = (options & OPENINGS) != 0 ? start.getOpening() : null;
+
+        for (int i = 0; i < moves.length; i++) {
+
+            final String m = pMoves.get(i).getMoveText();
+
+            try {
+
+                final int move = findMove(position, buffer, count, m);
+                final String san = notation != null ? getNotation(position, buffer, count, move) : null;
+
+                moves[i] = move;
+                position.makeMove(move);
+
+                count = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+                if (notation != null)
+                    notation[i] = san + (!position.isInCheck() ? "" : count == 0 ? "#" : "+");
+
+            } catch (Exception e) {
+                throw new Exception("Error importing PGN at move " + i + ", \"" + m + "\". " + e.getMessage());
+            }
+
+            if (clocks != null)
+                clocks[i] = pMoves.get(i).getTimerEnd();
+
+            if ((options & OPENINGS) != 0) {
+
+                final Opening found = Opening.getOpening(position);
+                if (found != null)
+                    opening = found;
+
+            }
+
+        }
+
+        this.opening = opening;
+        this.checkmate = count == 0 && position.isInCheck();
+        this.stalemate = count == 0 && !position.isInCheck();
+
+        switch (pgn.getTags().getOrDefault("Result", "*")) {
+            case "1/2-1/2":
+                result = Result.DRAW;
+                break;
+            case "1-0":
+                result = Result.WHITE_WIN;
+                break;
+            case "0-1":
+                result = Result.BLACK_WIN;
+                break;
+            default:
+                result = checkmate ? (position.isWhite() ? Result.BLACK_WIN : Result.WHITE_WIN)
+                        : stalemate ? Result.DRAW : Result.IN_PROGRESS;
+        }
+
+    }
+
+    /**
+     * Gets the parsed PGN that was replayed.
+     * 
+     * @return {@link #pgn}
+     */
+    public PGNParser getPgn() {
+        return pgn;
+    }
+
+    /**
+     * Gets the options the game was replayed with.
+     * 
+     * @return {@link #options}
+     */
+    public int getOptions() {
+        return options;
+    }
+
+    /**
+     * Gets the number of moves (plies) of the game.
+     * 
+     * @return The number of moves.
+     */
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    /**
+     * Gets the moves of the game, encoded as described in {@link MoveGenerator}.
+     * 
+     * @return A copy of {@link #moves}.
+     */
+    public int[] getMoves() {
+        return Arrays.copyOf(moves, moves.length);
+    }
+
+    /**
+     * Gets the notation of each move, including check marks.
+     * 
+     * @return {@link #notation}
+     * @throws RuntimeException If the game was not replayed with
+     *                          {@link #NOTATION}.
+     */
+    public String[] getNotation() throws RuntimeException {
+
+        if (notation == null)
+            throw new RuntimeException("Game was not replayed with notation.");
+
+        return Arrays.copyOf(notation, notation.length);
+
+    }
+
+    /**
+     * Gets the time on the clock at the end of each move.
+     * 
+     * @return {@link #clocks}
+     * @throws RuntimeException If the game was not replayed with {@link #CLOCKS}.
+     */
+    public long[] getClocks() throws RuntimeException {
+
+        if (clocks == null)
+            throw new RuntimeException("Game was not replayed with clocks.");
+
+        return Arrays.copyOf(clocks, clocks.length);
+
+    }
+
+    /**
+     * Gets the opening of the latest position of the game that has one.
+     * 
+     * @return {@link #opening}
+     * @throws RuntimeException If the game was not replayed with
+     *                          {@link #OPENINGS}.
+     */
+    public Opening getOpening() throws RuntimeException {
+
+        if ((options & OPENINGS) == 0)
+            throw new RuntimeException("Game was not replayed with openings.");
+
+        return opening;
+
+    }
+
+    /**
+     * Gets the position after the last move. The position should not be
+     * changed.
+     * 
+     * @return {@link #position}
+     */
+    public Position getFinalPosition() {
+        return position;
+    }
+
+    /**
+     * Checks if the final position is checkmate.
+     * 
+     * @return {@link #checkmate}
+     */
+    public boolean isCheckmate() {
+        return checkmate;
+    }
+
+    /**
+     * Checks if the final position is stalemate.
+     * 
+     * @return {@link #stalemate}
+     */
+    public boolean isStalemate() {
+        return stalemate;
+    }
+
+    /**
+     * Gets the result of the game.
+     * 
+     * @return {@link #result}
+     */
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * Creates the position after the given number of moves. The position has no
+     * {@link Move} that led to it.
+     * 
+     * @param ply The number of moves, from {@code 0} to {@link #getMoveCount()}.
+     * @return A new position.
+     */
+    public Position getPosition(int ply) {
+
+        if (ply < 0 || ply > moves.length)
+            throw new IndexOutOfBoundsException("Invalid ply " + ply + ".");
+
+        final Position p = new Position(start);
+
+        for (int i = 0; i < ply; i++)
+            p.makeMove(moves[i]);
+
+        return p;
+
+    }
+
+    /**
+     * Creates the full {@link Game} of the replayed PGN, with every position.
+     * 
+     * @param settings The settings used for the game.
+     * @return The game.
+     * @throws Exception If there is an error importing the game.
+     */
+    public Game toGame(GameSettings settings) throws Exception {
+        return new Game(pgn, settings, false);
+    }
+
+    /**
+     * Finds the legal move with the given short algebraic notation (SAN).
+     * 
+     * @param position The position the move is made from.
+     * @param legal    The legal moves of the position.
+     * @param count    The number of legal moves.
+     * @param san      The SAN of the move.
+     * @return The encoded move.
+     * @throws Exception If the notation is invalid, or no single legal move
+     *                   matches it.
+     */
+    public static int findMove(Position position, int[] legal, int count, CharSequence san) throws Exception {
+
+        // The notation is read in place between begin and end
+        int begin = 0;
+        int end = san.length();
+
+        while (begin < end && Character.isWhitespace(san.charAt(begin)))
+            begin++;
+
+        while (end > begin
+                && (Character.isWhitespace(san.charAt(end - 1)) || "+#!?".indexOf(san.charAt(end - 1)) >= 0))
+            end--;
+
+        if (end - begin >= 3 && (san.charAt(begin) == 'O' || san.charAt(begin) == '0')
+                && san.charAt(begin + 1) == '-' && san.charAt(begin + 2) == san.charAt(begin)) {
+
+            final int file = end - begin >= 5 && san.charAt(begin + 3) == '-'
+                    && san.charAt(begin + 4) == san.charAt(begin) ? 3 : 7;
+
+            for (int i = 0; i < count; i++) {
+
+                if ((legal[i] & MoveGenerator.CASTLE) != 0
+                        && Bitboard.file(MoveGenerator.getDestination(legal[i])) == file)
+                    return legal[i];
+
+            }
+
+            throw new Exception("Move not found.");
+
+        }
+
+        // Promotion, written as e8=Q or e8Q
+        int promote = 0;
+        int equals = -1;
+
+        for (int i = begin; i < end && equals < 0; i++) {
+
+            if (san.charAt(i) == '=')
+                equals = i;
+
+        }
+
+        if (equals >= 0) {
+
+            promote = equals + 1 < end ? "NBRQ".indexOf(san.charAt(equals + 1)) + 1 : 0;
+
+            if (promote == 0)
+                throw new Exception("Invalid promote type.");
+
+            end = equals;
+
+        } else if (end - begin > 2 && "NBRQ".indexOf(san.charAt(end - 1)) >= 0
+                && Character.isDigit(san.charAt(end - 2))) {
+
+            promote = "NBRQ".indexOf(san.charAt(end - 1)) + 1;
+            end--;
+
+        }
+
+        if (end - begin < 2)
+            throw new Exception("No destination square.");
+
+        final char dFile = san.charAt(end - 2);
+        final char dRank = san.charAt(end - 1);
+
+        if (dFile < 'a' || dFile > 'h' || dRank < '1' || dRank > '8')
+            throw new Exception("No destination square.");
+
+        final int destination = Bitboard.square(dFile - 'a' + 1, dRank - '0');
+
+        final char first = san.charAt(begin);
+        int type = Bitboard.CODES.indexOf(first);
+        int i = begin + 1;
+
+        if (first >= 'a' && first <= 'h') {
+            type = Bitboard.PAWN;
+            i = begin;
+        } else if (type < 0)
+            throw new Exception("Invalid piece type.");
+
+        int oFile = -1;
+        int oRank = -1;
+
+        for (; i < end - 2; i++) {
+
+            final char c = san.charAt(i);
+
+            if (c >= 'a' && c <= 'h')
+                oFile = c - 'a' + 1;
+            else if (c >= '1' && c <= '8')
+                oRank = c - '0';
+            else if (c != 'x' && c != '-' && c != ':')
+                throw new Exception("Invalid move notation.");
+
+        }
+
+        int found = 0;
+        int matches = 0;
+
+        for (int m = 0; m < count; m++) {
+
+            final int move = legal[m];
+            final int origin = MoveGenerator.getOrigin(move);
+
+            if (MoveGenerator.getDestination(move) != destination || (move & MoveGenerator.CASTLE) != 0
+                    || Bitboard.type(position.getPieceIndex(origin)) != type)
+                continue;
+
+            if ((oFile != -1 && Bitboard.file(origin) != oFile) || (oRank != -1 && Bitboard.rank(origin) != oRank))
+                continue;
+
+            final int movePromote = MoveGenerator.getPromoteType(move);
+
+            if (movePromote != 0 && movePromote != (promote == 0 ? Bitboard.QUEEN : promote))
+                continue;
+
+            if (movePromote != 0 && promote == 0)
+                throw new Exception("Invalid promote type.");
+
+            found = move;
+            ++matches;
+
+        }
+
+        if (matches == 0)
+            throw new Exception("Move not found.");
+
+        if (matches > 1)
+            throw new Exception("Multiple possible moves.");
+
+        return found;
+
+    }
+
+    /**
+     * Finds the legal move with the given long algebraic notation, as output by
+     * UCI engines, such as {@code e2e4} or {@code e7e8q}. Castling may be written
+     * as the king moving to its destination or, as in Chess960, to the square of
+     * the rook it castles with.
+     * 
+     * @param position The position the move is made from.
+     * @param legal    The legal moves of the position.
+     * @param count    The number of legal moves.
+     * @param lan      The long algebraic notation of the move.
+     * @return The encoded move.
+     * @throws Exception If the notation is invalid, or no legal move matches it.
+     */
+    public static int findLongMove(Position position, int[] legal, int count, CharSequence lan) throws Exception {
+
+        if (lan.length() < 4 || !isSquare(lan, 0) || !isSquare(lan, 2))
+            throw new Exception("Invalid move notation.");
+
+        final int origin = Bitboard.square(lan.charAt(0) - 'a' + 1, lan.charAt(1) - '0');
+        final int destination = Bitboard.square(lan.charAt(2) - 'a' + 1, lan.charAt(3) - '0');
+        final int promote = lan.length() > 4 ? "nbrq".indexOf(Character.toLowerCase(lan.charAt(4))) + 1 : 0;
+
+        int castle = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            final int move = legal[i];
+
+            if (MoveGenerator.getOrigin(move) != origin)
+                continue;
+
+            if (MoveGenerator.getDestination(move) == destination && MoveGenerator.getPromoteType(move) == promote)
+                return move;
+
+            // The king moving onto its own rook, to the side of the castle
+            if ((move & MoveGenerator.CASTLE) != 0 && Bitboard.rank(destination) == Bitboard.rank(origin)
+                    && (Bitboard.file(destination) > Bitboard.file(origin)) == (Bitboard
+                            .file(MoveGenerator.getDestination(move)) == 7))
+                castle = move;
+
+        }
+
+        if (castle == 0)
+            throw new Exception("Move not found.");
+
+        return castle;
+
+    }
+
+    /**
+     * Gets the long algebraic notation of a move, as used by UCI engines, such as
+     * {@code e2e4} or {@code e7e8q}. Castling is written as the king moving to
+     * the square of the rook it castles with, which is unambiguous in Chess960.
+     * 
+     * @param position The position the move is made from.
+     * @param move     The encoded move.
+     * @return The long algebraic notation of the move.
+     * @see #findLongMove(Position, int[], int, CharSequence)
+     */
+    public static String getLongNotation(Position position, int move) {
+
+        final int origin = MoveGenerator.getOrigin(move);
+        int destination = MoveGenerator.getDestination(move);
+
+        if ((move & MoveGenerator.CASTLE) != 0) {
+            destination = Bitboard.square(Bitboard.file(destination) == 3 ? position.getaSideRookFile()
+                    : position.gethSideRookFile(), Bitboard.rank(origin));
+        }
+
+        final String notation = Bitboard.toSquare(origin).toString() + Bitboard.toSquare(destination);
+        final int promote = MoveGenerator.getPromoteType(move);
+
+        return promote == 0 ? notation : notation + Character.toLowerCase(Bitboard.CODES.charAt(promote));
+
+    }
+
+    /**
+     * Gets the notation of a legal move, in the same form as
+     * {@link Move#getMoveNotation()}.
+     * 
+     * @param position The position the move is made from.
+     * @param legal    The legal moves of the position.
+     * @param count    The number of legal moves.
+     * @param move     The encoded move.
+     * @return The notation of the move, without check marks.
+     */
+    public static String getNotation(Position position, int[] legal, int count, int move) {
+
+        final int origin = MoveGenerator.getOrigin(move);
+        final int destination = MoveGenerator.getDestination(move);
+
+        if ((move & MoveGenerator.CASTLE) != 0)
+            return Bitboard.file(destination) == 7 ? "0-0" : "0-0-0";
+
+        final int index = position.getPieceIndex(origin);
+        final boolean capture = (move & (MoveGenerator.CAPTURE | MoveGenerator.EN_PASSANT)) != 0;
+
+        final StringBuilder str = new StringBuilder(8);
+
+        if (Bitboard.type(index) != Bitboard.PAWN) {
+
+            str.append(Bitboard.code(index));
+
+            // Disambiguate from the other pieces of the same kind that can move there
+            boolean other = false;
+            boolean sameFile = false;
+            boolean sameRank = false;
+
+            for (int i = 0; i < count; i++) {
+
+                final int o = MoveGenerator.getOrigin(legal[i]);
+
+                if (o == origin || MoveGenerator.getDestination(legal[i]) != destination
+                        || (legal[i] & MoveGenerator.CASTLE) != 0 || position.getPieceIndex(o) != index)
+                    continue;
+
+                other = true;
+                sameFile |= Bitboard.file(o) == Bitboard.file(origin);
+                sameRank |= Bitboard.rank(o) == Bitboard.rank(origin);
+
+            }
+
+            if (sameRank || (other && !sameFile))
+                str.append((char) (Bitboard.file(origin) + 96));
+
+            if (sameFile)
+                str.append(Bitboard.rank(origin));
+
+        } else if (capture) {
+            str.append((char) (Bitboard.file(origin) + 96));
+        }
+
+        if (capture)
+            str.append('x');
+
+        str.append(Bitboard.toSquare(destination));
+
+        if (MoveGenerator.getPromoteType(move) != 0)
+            str.append('=').append(Bitboard.CODES.charAt(MoveGenerator.getPromoteType(move)));
+
+        return str.toString();
+
+    }
+
+    /**
+     * Gets whether or not there is a square, such as {@code e4}, at an index of
+     * some text.
+     * 
+     * @param text  The text.
+     * @param index The index of the file of the square.
+     * @return Whether or not there is a square at the index.
+     */
+    private static boolean isSquare(CharSequence text, int index) {
+
+        return text.charAt(index) >= 'a' && text.charAt(index) <= 'h' && text.charAt(index + 1) >= '1'
+                && text.charAt(index + 1) <= '8';
+
+    }
+
+}
@@ -138,6 +138,34 @@ public class Move {
 
     }
 
+    /**
+     * Initializes a new move from a move encoded by {@link MoveGenerator}. The
+     * encoded move is trusted to be pseudo-legal in the given position, so it is
+     * not validated again.
+     * 
+     * @param position The position the move being made from.
+     * @param move     The encoded move.
+     * @see MoveGenerator#encode(int, int, int, int)
+     */
+    public Move(Position position, int move) {
+
+        this.position = position;
+
+        this.origin = Bitboard.toSquare(MoveGenerator.getOrigin(move));
+        this.destination = Bitboard.toSquare(MoveGenerator.getDestination(move));
+        this.piece = position.getPieceAtSquare(origin);
+
+        this.white = piece.isWhite();
+        this.castle = (move & MoveGenerator.CASTLE) != 0;
+        this.enPassant = (move & MoveGenerator.EN_PASSANT) != 0;
+        this.capture = (move & MoveGenerator.CAPTURE) != 0;
+        this.promoteType = MoveGenerator.getPromoteType(move) != 0 ? '?' : '0';
+
+        this.rook = castle ? position.getRook(destination.getFile() == 3, white) : null;
+        this.capturePiece = capture ? position.getPieceAtSquare(getCaptureSquare()) : null;
+
+    }
+
     /**
      * Gets the position this move is being made from.
      * 
@@ -416,7 +444,7 @@ public class Move {
 
     /**
      * Initializes the move, checking if it is valid.
-     *
+     * 
      * @throws Exception If the move is invalid.
      */
     private void initMove() throws Exception {
@@ -0,0 +1,657 @@
+package game;
+
+import java.util.ArrayList;
+
+/**
+ * Generates the pseudo-legal moves of a {@link Position} from its bitboards,
+ * using precomputed attack tables for knights, kings and pawns and ray lookups
+ * for sliding pieces.
+ * 
+ * <p>
+ * Moves are written into a caller supplied {@code int} buffer in an encoded
+ * form, so generating them does not create any {@link Move} objects. An encoded
+ * move stores the origin square in bits 0-5, the destination square in bits
+ * 6-11, the promotion piece type in bits 12-14 and the flags above that. For a
+ * castle move, the destination is the square the king ends up on, as with
+ * {@link Move#getDestination()}.
+ * 
+ * @see Bitboard
+ */
+public final class MoveGenerator {
+
+    /**
+     * The size a move buffer should be to hold every move of any position.
+     */
+    public static final int MAX_MOVES = 256;
+
+    /** Flag set on moves that capture a piece, including en passant moves. */
+    public static final int CAPTURE = 1 << 15;
+
+    /** Flag set on en passant moves. */
+    public static final int EN_PASSANT = 1 << 16;
+
+    /** Flag set on castle moves. */
+    public static final int CASTLE = 1 << 17;
+
+    /** Flag set on pawn moves that move two squares forward. */
+    public static final int DOUBLE_PUSH = 1 << 18;
+
+    /** The squares a knight attacks from each square. */
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+
+    /** The squares a king attacks from each square. */
+    private static final long[] KING_ATTACKS = new long[64];
+
+    /**
+     * The squares a pawn attacks from each square. Index {@code 0} is for white
+     * pawns and index {@code 1} is for black pawns.
+     */
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    /**
+     * The file and rank steps of each ray direction. The first four directions
+     * point towards higher square indexes, the last four towards lower ones.
+     */
+    private static final int[][] DIRECTIONS = {
+            { 0, 1 }, { 1, 0 }, { 1, 1 }, { -1, 1 },
+            { 0, -1 }, { -1, 0 }, { -1, -1 }, { 1, -1 }
+    };
+
+    /** The squares from each square to the edge of the board, per direction. */
+    private static final long[][] RAYS = new long[8][64];
+
+    static {
+
+        final int[][] knightSteps = { { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 },
+                { -1, 2 } };
+
+        for (int sq = 0; sq < 64; sq++) {
+
+            final int file = Bitboard.file(sq);
+            final int rank = Bitboard.rank(sq);
+
+            for (int[] step : knightSteps)
+                KNIGHT_ATTACKS[sq] |= bitIfValid(file + step[0], rank + step[1]);
+
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+
+                KING_ATTACKS[sq] |= bitIfValid(file + DIRECTIONS[d][0], rank + DIRECTIONS[d][1]);
+
+                for (int f = file + DIRECTIONS[d][0], r = rank + DIRECTIONS[d][1]; f >= 1 && f <= 8 && r >= 1
+                        && r <= 8; f += DIRECTIONS[d][0], r += DIRECTIONS[d][1])
+                    RAYS[d][sq] |= Bitboard.bit(Bitboard.square(f, r));
+
+            }
+
+            PAWN_ATTACKS[0][sq] = bitIfValid(file - 1, rank + 1) | bitIfValid(file + 1, rank + 1);
+            PAWN_ATTACKS[1][sq] = bitIfValid(file - 1, rank - 1) | bitIfValid(file + 1, rank - 1);
+
+        }
+
+    }
+
+    /**
+     * Generates the pseudo-legal moves of the color whose turn it is, including
+     * castle moves. Moves may still leave the king in check.
+     * 
+     * @param position The position to generate the moves of.
+     * @param buffer   The buffer to write the moves to. Should be at least
+     *                 {@link #MAX_MOVES} long.
+     * @return The amount of moves written to the buffer.
+     */
+    public static int generate(Position position, int[] buffer) {
+
+        final int count = generate(position, position.isWhite(), -1L, buffer, 0);
+
+        return generateCastles(position, buffer, count);
+
+    }
+
+    /**
+     * Generates the pseudo-legal moves of the pieces of the given color on the
+     * given squares, not including castle moves. En passant moves are only
+     * generated if it is that color's turn.
+     * 
+     * @param position The position to generate the moves of.
+     * @param white    The color of the pieces to generate the moves of.
+     * @param origins  The squares of the pieces to generate the moves of.
+     * @param buffer   The buffer to write the moves to.
+     * @param count    The index in the buffer to start writing at.
+     * @return The index in the buffer after the last move written.
+     */
+    public static int generate(Position position, boolean white, long origins, int[] buffer, int count) {
+
+        final long own = position.getOccupied(white);
+        final long enemy = position.getOccupied(!white);
+        final long occupied = own | enemy;
+
+        // Pawns
+        final long promoteRank = white ? Bitboard.RANK_8 : Bitboard.RANK_1;
+        final long startRank = white ? Bitboard.RANK_1 << 8 : Bitboard.RANK_8 >>> 8;
+        final int forward = white ? 8 : -8;
+
+        for (long b = position.getBitboard(Bitboard.index(Bitboard.PAWN, white)) & origins; b != 0; b &= b - 1) {
+
+            final int from = Bitboard.first(b);
+            final int to = from + forward;
+
+            if ((occupied & Bitboard.bit(to)) == 0) {
+
+                count = addPawnMove(buffer, count, from, to, 0, promoteRank);
+
+                if ((startRank & Bitboard.bit(from)) != 0 && (occupied & Bitboard.bit(to + forward)) == 0)
+                    buffer[count++] = encode(from, to + forward, 0, DOUBLE_PUSH);
+
+            }
+
+            for (long a = PAWN_ATTACKS[white ? 0 : 1][from] & enemy; a != 0; a &= a - 1)
+                count = addPawnMove(buffer, count, from, Bitboard.first(a), CAPTURE, promoteRank);
+
+        }
+
+        final int ep = position.getEnPassantSquare();
+
+        if (ep != Bitboard.EMPTY && white == position.isWhite()) {
+
+            final int captured = ep - forward;
+
+            if ((occupied & Bitboard.bit(ep)) == 0 && captured >= 0 && captured < 64
+                    && (position.getBitboard(Bitboard.index(Bitboard.PAWN, !white)) & Bitboard.bit(captured)) != 0) {
+
+                for (long a = PAWN_ATTACKS[white ? 1 : 0][ep]
+                        & position.getBitboard(Bitboard.index(Bitboard.PAWN, white)) & origins; a != 0; a &= a - 1)
+                    buffer[count++] = encode(Bitboard.first(a), ep, 0, CAPTURE | EN_PASSANT);
+
+            }
+
+        }
+
+        // Pieces
+        for (int type = Bitboard.KNIGHT; type <= Bitboard.KING; type++) {
+
+            for (long b = position.getBitboard(Bitboard.index(type, white)) & origins; b != 0; b &= b - 1) {
+
+                final int from = Bitboard.first(b);
+                final long targets = getAttacks(type, from, occupied) & ~own;
+
+                for (long t = targets; t != 0; t &= t - 1) {
+
+                    final int to = Bitboard.first(t);
+                    buffer[count++] = encode(from, to, 0, (enemy & Bitboard.bit(to)) != 0 ? CAPTURE : 0);
+
+                }
+
+            }
+
+        }
+
+        return count;
+
+    }
+
+    /**
+     * Removes the moves that leave the king of the color whose turn it is in check
+     * from the buffer, keeping the order of the remaining moves.
+     * 
+     * <p>
+     * Most moves are checked with the pinned pieces of the position, without
+     * making them. King moves are checked by whether or not their destination is
+     * attacked. Only castle moves, en passant moves and moves made while in check
+     * are made and unmade on the position to check them.
+     * 
+     * @param position The position the moves were generated from.
+     * @param buffer   The pseudo-legal moves.
+     * @param count    The amount of moves in the buffer.
+     * @return The amount of legal moves, which are now at the start of the buffer.
+     */
+    public static int filterLegal(Position position, int[] buffer, int count) {
+
+        final boolean white = position.isWhite();
+        final long king = position.getBitboard(Bitboard.index(Bitboard.KING, white));
+
+        if (king == 0)
+            return count;
+
+        final int kingSquare = Bitboard.first(king);
+        final boolean check = isAttacked(position, kingSquare, !white);
+        final long pinned = getPinned(position, kingSquare, white);
+        final long occupied = position.getOccupied();
+
+        int legal = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            final int move = buffer[i];
+            final int from = getOrigin(move);
+            final boolean isLegal;
+
+            if ((move & CASTLE) != 0 || (move & EN_PASSANT) != 0)
+                isLegal = isLegal(position, move);
+            else if (from == kingSquare)
+                isLegal = !isAttacked(position, getDestination(move), !white, occupied & ~king);
+            else if (check)
+                isLegal = isLegal(position, move);
+            else if ((pinned & Bitboard.bit(from)) == 0)
+                isLegal = true;
+            else
+                isLegal = (getRayThrough(kingSquare, from) & Bitboard.bit(getDestination(move))) != 0;
+
+            if (isLegal)
+                buffer[legal++] = move;
+
+        }
+
+        return legal;
+
+    }
+
+    /**
+     * Checks if the given pseudo-legal move does not leave the king of the color
+     * making it in check, by making and unmaking it on the position.
+     * 
+     * @param position The position the move was generated from.
+     * @param move     The encoded move.
+     * @return If the move is legal.
+     */
+    public static boolean isLegal(Position position, int move) {
+
+        final boolean white = position.isWhite();
+
+        position.makeMove(move);
+
+        final long king = position.getBitboard(Bitboard.index(Bitboard.KING, white));
+        final boolean legal = king == 0 || !isAttacked(position, Bitboard.first(king), !white);
+
+        position.unmakeMove();
+
+        return legal;
+
+    }
+
+    /**
+     * Gets the pieces of the given color that are pinned to their king by an
+     * enemy sliding piece.
+     * 
+     * @param position   The position.
+     * @param kingSquare The square index of the king.
+     * @param white      The color of the king.
+     * @return The squares of the pinned pieces.
+     */
+    public static long getPinned(Position position, int kingSquare, boolean white) {
+
+        final long own = position.getOccupied(white);
+        final long occupied = position.getOccupied();
+        final long queens = position.getBitboard(Bitboard.index(Bitboard.QUEEN, !white));
+        final long rooks = position.getBitboard(Bitboard.index(Bitboard.ROOK, !white)) | queens;
+        final long bishops = position.getBitboard(Bitboard.index(Bitboard.BISHOP, !white)) | queens;
+
+        long pinned = 0;
+
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+
+            final long blocker = getRayAttacks(d, kingSquare, occupied) & occupied & own;
+
+            if (blocker == 0)
+                continue;
+
+            final long pinner = getRayAttacks(d, kingSquare, occupied & ~blocker) & occupied & ~blocker;
+            final boolean straight = DIRECTIONS[d][0] == 0 || DIRECTIONS[d][1] == 0;
+
+            if ((pinner & (straight ? rooks : bishops)) != 0)
+                pinned |= blocker;
+
+        }
+
+        return pinned;
+
+    }
+
+    /**
+     * Checks if the given square is attacked by any piece of the given color.
+     * 
+     * @param position The position to check.
+     * @param square   The square index.
+     * @param byWhite  The color of the attacking pieces.
+     * @return If the square is attacked.
+     */
+    public static boolean isAttacked(Position position, int square, boolean byWhite) {
+
+        return isAttacked(position, square, byWhite, position.getOccupied());
+
+    }
+
+    /**
+     * Checks if the given square is attacked by any piece of the given color, with
+     * the given squares treated as occupied for sliding pieces.
+     * 
+     * @param position The position to check.
+     * @param square   The square index.
+     * @param byWhite  The color of the attacking pieces.
+     * @param occupied The occupied squares that block sliding pieces.
+     * @return If the square is attacked.
+     */
+    public static boolean isAttacked(Position position, int square, boolean byWhite, long occupied) {
+
+        final long queens = position.getBitboard(Bitboard.index(Bitboard.QUEEN, byWhite));
+
+        return (PAWN_ATTACKS[byWhite ? 1 : 0][square]
+                & position.getBitboard(Bitboard.index(Bitboard.PAWN, byWhite))) != 0
+                || (KNIGHT_ATTACKS[square] & position.getBitboard(Bitboard.index(Bitboard.KNIGHT, byWhite))) != 0
+                || (KING_ATTACKS[square] & position.getBitboard(Bitboard.index(Bitboard.KING, byWhite))) != 0
+                || (getBishopAttacks(square, occupied)
+                        & (position.getBitboard(Bitboard.index(Bitboard.BISHOP, byWhite)) | queens)) != 0
+                || (getRookAttacks(square, occupied)
+                        & (position.getBitboard(Bitboard.index(Bitboard.ROOK, byWhite)) | queens)) != 0;
+
+    }
+
+    /**
+     * Gets the squares a piece of the given type attacks from the given square.
+     * Pawns are not supported, as their attacks depend on their color.
+     * 
+     * @param type     The piece type, such as {@link Bitboard#KNIGHT}.
+     * @param square   The square index of the piece.
+     * @param occupied The occupied squares that block sliding pieces.
+     * @return The attacked squares, including those occupied by either color.
+     * @see #getPawnAttacks(int, boolean)
+     */
+    public static long getAttacks(int type, int square, long occupied) {
+
+        switch (type) {
+            case Bitboard.KNIGHT:
+                return KNIGHT_ATTACKS[square];
+            case Bitboard.BISHOP:
+                return getBishopAttacks(square, occupied);
+            case Bitboard.ROOK:
+                return getRookAttacks(square, occupied);
+            case Bitboard.QUEEN:
+                return getBishopAttacks(square, occupied) | getRookAttacks(square, occupied);
+            case Bitboard.KING:
+                return KING_ATTACKS[square];
+            default:
+                throw new IllegalArgumentException("Invalid piece type.");
+        }
+
+    }
+
+    /**
+     * Gets the squares a pawn of the given color attacks from the given square.
+     * 
+     * @param square The square index of the pawn.
+     * @param white  The color of the pawn.
+     * @return The attacked squares.
+     */
+    public static long getPawnAttacks(int square, boolean white) {
+        return PAWN_ATTACKS[white ? 0 : 1][square];
+    }
+
+    /**
+     * Gets the squares a bishop attacks from the given square.
+     * 
+     * @param square   The square index.
+     * @param occupied The occupied squares that block the bishop.
+     * @return The attacked squares, including the first blocker of each ray.
+     */
+    public static long getBishopAttacks(int square, long occupied) {
+
+        return getRayAttacks(2, square, occupied) | getRayAttacks(3, square, occupied)
+                | getRayAttacks(6, square, occupied) | getRayAttacks(7, square, occupied);
+
+    }
+
+    /**
+     * Gets the squares a rook attacks from the given square.
+     * 
+     * @param square   The square index.
+     * @param occupied The occupied squares that block the rook.
+     * @return The attacked squares, including the first blocker of each ray.
+     */
+    public static long getRookAttacks(int square, long occupied) {
+
+        return getRayAttacks(0, square, occupied) | getRayAttacks(1, square, occupied)
+                | getRayAttacks(4, square, occupied) | getRayAttacks(5, square, occupied);
+
+    }
+
+    /**
+     * Converts the encoded moves in the buffer to {@link Move} objects. Only one
+     * {@link Move} is created for each set of promotion moves, with its promote
+     * type left as {@code '?'}.
+     * 
+     * @param position The position the moves are made from.
+     * @param buffer   The encoded moves.
+     * @param count    The amount of moves in the buffer.
+     * @return The list of moves.
+     */
+    public static ArrayList<Move> toMoves(Position position, int[] buffer, int count) {
+
+        ArrayList<Move> moves = new ArrayList<Move>(count);
+
+        for (int i = 0; i < count; i++) {
+
+            final int promote = getPromoteType(buffer[i]);
+
+            if (promote == 0 || promote == Bitboard.QUEEN)
+                moves.add(new Move(position, buffer[i]));
+
+        }
+
+        return moves;
+
+    }
+
+    /**
+     * Encodes a move.
+     * 
+     * @param origin      The origin square index.
+     * @param destination The destination square index.
+     * @param promoteType The piece type to promote to, or {@code 0} if the move is
+     *                    not a promotion.
+     * @param flags       The flags of the move, such as {@link #CAPTURE}.
+     * @return The encoded move.
+     */
+    public static int encode(int origin, int destination, int promoteType, int flags) {
+        return origin | (destination << 6) | (promoteType << 12) | flags;
+    }
+
+    /**
+     * Gets the origin square index of an encoded move.
+     * 
+     * @param move The encoded move.
+     * @return The origin square index.
+     */
+    public static int getOrigin(int move) {
+        return move & 63;
+    }
+
+    /**
+     * Gets the destination square index of an encoded move.
+     * 
+     * @param move The encoded move.
+     * @return The destination square index.
+     */
+    public static int getDestination(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * Gets the promotion piece type of an encoded move.
+     * 
+     * @param move The encoded move.
+     * @return The piece type to promote to, or {@code 0} if the move is not a
+     *         promotion.
+     */
+    public static int getPromoteType(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    /**
+     * Generates the castle moves of the color whose turn it is. Castling is only
+     * generated when the king is not in check, the squares between the king, the
+     * rook and their destinations are empty, and the king does not pass through
+     * an attacked square.
+     * 
+     * @param position The position to generate the moves of.
+     * @param buffer   The buffer to write the moves to.
+     * @param count    The index in the buffer to start writing at.
+     * @return The index in the buffer after the last move written.
+     */
+    private static int generateCastles(Position position, int[] buffer, int count) {
+
+        final boolean white = position.isWhite();
+        final long king = position.getBitboard(Bitboard.index(Bitboard.KING, white));
+        final int homeRank = white ? 1 : 8;
+
+        if (king == 0 || (king & (white ? Bitboard.RANK_1 : Bitboard.RANK_8)) == 0)
+            return count;
+
+        final int kingSquare = Bitboard.first(king);
+
+        if (isAttacked(position, kingSquare, !white))
+            return count;
+
+        for (int side = 0; side < 2; side++) {
+
+            final boolean aSide = side == 0;
+
+            if (!position.canCastle(white, aSide))
+                continue;
+
+            final int rookSquare = Bitboard.square(aSide ? position.getaSideRookFile() : position.gethSideRookFile(),
+                    homeRank);
+
+            if ((position.getBitboard(Bitboard.index(Bitboard.ROOK, white)) & Bitboard.bit(rookSquare)) == 0)
+                continue;
+
+            final int kingDestination = Bitboard.square(aSide ? 3 : 7, homeRank);
+            final int rookDestination = Bitboard.square(aSide ? 4 : 6, homeRank);
+
+            final long kingPath = between(kingSquare, kingDestination) | Bitboard.bit(kingDestination);
+            final long rookPath = between(rookSquare, rookDestination) | Bitboard.bit(rookDestination);
+            final long blockers = position.getOccupied() & ~Bitboard.bit(kingSquare) & ~Bitboard.bit(rookSquare);
+
+            if (((kingPath | rookPath) & blockers) != 0)
+                continue;
+
+            boolean attacked = false;
+            for (long p = kingPath; !attacked && p != 0; p &= p - 1)
+                attacked = isAttacked(position, Bitboard.first(p), !white);
+
+            if (!attacked)
+                buffer[count++] = encode(kingSquare, kingDestination, 0, CASTLE);
+
+        }
+
+        return count;
+
+    }
+
+    /**
+     * Gets the squares strictly between two squares on the same rank.
+     * 
+     * @param from The first square index.
+     * @param to   The second square index.
+     * @return The squares between them.
+     */
+    private static long between(int from, int to) {
+
+        final int low = Math.min(from, to);
+        final int high = Math.max(from, to);
+
+        if (high - low <= 1)
+            return 0;
+
+        return (Bitboard.bit(high) - 1) & ~((Bitboard.bit(low) << 1) - 1);
+
+    }
+
+    /**
+     * Adds a pawn move to the buffer, expanding it into the four promotion moves
+     * if the pawn reaches the last rank.
+     * 
+     * @param buffer      The buffer to write the moves to.
+     * @param count       The index in the buffer to write at.
+     * @param from        The origin square index.
+     * @param to          The destination square index.
+     * @param flags       The flags of the move.
+     * @param promoteRank The rank the pawn promotes on.
+     * @return The index in the buffer after the last move written.
+     */
+    private static int addPawnMove(int[] buffer, int count, int from, int to, int flags, long promoteRank) {
+
+        if ((promoteRank & Bitboard.bit(to)) != 0) {
+
+            for (int type = Bitboard.QUEEN; type >= Bitboard.KNIGHT; type--)
+                buffer[count++] = encode(from, to, type, flags);
+
+        } else
+            buffer[count++] = encode(from, to, 0, flags);
+
+        return count;
+
+    }
+
+    /**
+     * Gets the ray from the first square that passes through the second square.
+     * 
+     * @param from    The square index the ray starts from.
+     * @param through The square index on the ray.
+     * @return The squares of the ray, or {@code 0} if the squares are not on a
+     *         shared rank, file or diagonal.
+     */
+    private static long getRayThrough(int from, int through) {
+
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+
+            if ((RAYS[d][from] & Bitboard.bit(through)) != 0)
+                return RAYS[d][from];
+
+        }
+
+        return 0;
+
+    }
+
+    /**
+     * Gets the attacks along one ray, stopping at (and including) the first
+     * occupied square.
+     * 
+     * @param direction The index of the direction in {@link #DIRECTIONS}.
+     * @param square    The square index the ray starts from.
+     * @param occupied  The occupied squares.
+     * @return The attacked squares along the ray.
+     */
+    private static long getRayAttacks(int direction, int square, long occupied) {
+
+        final long ray = RAYS[direction][square];
+        final long blockers = ray & occupied;
+
+        if (blockers == 0)
+            return ray;
+
+        final int blocker = direction < 4 ? Bitboard.first(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+
+        return ray ^ RAYS[direction][blocker];
+
+    }
+
+    /**
+     * Gets the bit of the given file and rank, if it is on the board.
+     * 
+     * @param file The file.
+     * @param rank The rank.
+     * @return The bit of the square, or {@code 0} if it is off the board.
+     */
+    private static long bitIfValid(int file, int rank) {
+
+        if (file < 1 || file > 8 || rank < 1 || rank > 8)
+            return 0;
+
+        return Bitboard.bit(Bitboard.square(file, rank));
+
+    }
+
+    private MoveGenerator() {
+    }
+
+}
@@ -1,6 +1,10 @@
 package game;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -9,9 +13,105 @@ import java.util.*;
  */
 public class Opening {
 
+    /** The path of the openings file on the classpath. */
+    public static final String OPENINGS_PATH = "/tsv/openings.tsv";
+
+    /**
+     * The openings of {@link #OPENINGS_PATH}, keyed by the hash of their board
+     * position. Loaded once, the first time an opening is looked up.
+     */
+    private static final class Index {
+
+        /**
+         * The openings, keyed by {@link Zobrist#getPlacementKey(String)} of their
+         * FEN. Where several openings lead to the same board position, the first in
+         * the file is used, the same as
+         * {@link Opening#getOpening(String, InputStream)}.
+         */
+        private static final Map<Long, Opening> OPENINGS;
+
+        static {
+
+            final HashMap<Long, Opening> map = new HashMap<Long, Opening>();
+
+            for (Opening opening : load(Opening.class.getResourceAsStream(OPENINGS_PATH)))
+                map.putIfAbsent(Zobrist.getPlacementKey(opening.getFen()), opening);
+
+            OPENINGS = Collections.unmodifiableMap(map);
+
+        }
+
+    }
+
+    /**
+     * Gets the opening that leads to the board position of the given position.
+     * The openings file is only read the first time this is called, after which no
+     * I/O is done.
+     * 
+     * @param position The position to check.
+     * @return The opening that matches the position, or {@code null} if none do.
+     * @throws RuntimeException If the openings file could not be read.
+     */
+    public static Opening getOpening(Position position) throws RuntimeException {
+        return Index.OPENINGS.get(position.getPlacementKey());
+    }
+
+    /**
+     * Gets the opening that leads to the given board position.
+     * 
+     * @param placement The board position component of a FEN, up to the first
+     *                  space.
+     * @return The opening that matches the board position, or {@code null} if none
+     *         do.
+     * @throws RuntimeException If the openings file could not be read, or the
+     *                          board position is invalid.
+     */
+    public static Opening getOpeningByFen(String placement) throws RuntimeException {
+        return Index.OPENINGS.get(Zobrist.getPlacementKey(placement));
+    }
+
+    /**
+     * Reads all of the openings in the given file.
+     * 
+     * @param openings A tab-separated values file, formatted the same as for
+     *                 {@link #getOpening(String, InputStream)}.
+     * @return The openings, in the order of the file.
+     * @throws RuntimeException If the file could not be read.
+     */
+    static List<Opening> load(InputStream openings) throws RuntimeException {
+
+        if (openings == null)
+            throw new RuntimeException("Error loading openings: File not found.");
+
+        final ArrayList<Opening> list = new ArrayList<Opening>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(openings, StandardCharsets.UTF_8))) {
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                final String[] a = line.trim().split("\t");
+
+                if (a.length < 4)
+                    continue;
+
+                list.add(new Opening(a[0], a[1], a[2], a[3]));
+
+            }
+
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Error loading openings: " + e.getMessage());
+        }
+
+        return list;
+
+    }
+
     /**
      * Gets the opening of the position with the given FEN from the openings in the
-     * given file.
+     * given file. The whole file is read on each call, so
+     * {@link #getOpening(Position)} should be used for the built-in openings.
      * 
      * @param fen      The FEN of the position to check.
      * @param openings A tab-separated values file, formatted
@@ -0,0 +1,431 @@
+package game;
+
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * A tree of the move sequences of the openings in {@link Opening#OPENINGS_PATH},
+ * with one {@link Node} for each move (ply) of each sequence. Sequences that
+ * share their first moves share the nodes of those moves.
+ * 
+ * <p>
+ * The nodes are also indexed by the board position they lead to, so that a
+ * position reached by a different order of moves (a transposition) can still be
+ * found, and so that a node that is not the end of a named sequence is still
+ * named if its board position is that of a named opening.
+ */
+public final class OpeningTree {
+
+    /**
+     * The tree of the openings of {@link Opening#OPENINGS_PATH}. Built once, the
+     * first time it is requested.
+     */
+    private static final class Default {
+
+        /** The tree. */
+        private static final OpeningTree TREE = load(Opening.class.getResourceAsStream(Opening.OPENINGS_PATH));
+
+    }
+
+    /**
+     * Gets the tree of the openings of {@link Opening#OPENINGS_PATH}. The openings
+     * file is only read the first time this is called.
+     * 
+     * @return The tree of the built-in openings.
+     * @throws RuntimeException If the openings file could not be read.
+     */
+    public static OpeningTree getDefault() throws RuntimeException {
+        return Default.TREE;
+    }
+
+    /**
+     * Builds a tree from the openings in the given file.
+     * 
+     * @param openings A tab-separated values file, formatted the same as for
+     *                 {@link Opening#getOpening(String, InputStream)}.
+     * @return The tree of the openings.
+     * @throws RuntimeException If the file could not be read, or a sequence of
+     *                          moves in it is invalid.
+     */
+    public static OpeningTree load(InputStream openings) throws RuntimeException {
+
+        final OpeningTree tree = new OpeningTree();
+        final List<Opening> list = Opening.load(openings);
+
+        // The first opening of each board position, for naming transpositions
+        final HashMap<Long, Opening> named = new HashMap<Long, Opening>();
+
+        // The position of each node, which is only needed while the tree is built
+        final Map<Node, Position> positions = new HashMap<Node, Position>();
+        positions.put(tree.root, new Position());
+
+        for (Opening opening : list) {
+
+            named.putIfAbsent(Zobrist.getPlacementKey(opening.getFen()), opening);
+
+            Node node = tree.root;
+
+            for (String san : getMoves(opening.getSequence())) {
+
+                Node child = node.children.get(normalize(san));
+
+                if (child == null) {
+
+                    final Position prev = positions.get(node);
+                    final Position position;
+
+                    try {
+                        position = new Position(prev, prev.getMoveBySAN(san), '0', true);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Error loading opening \"" + opening.getName() + "\" at move \""
+                                + san + "\": " + e.getMessage());
+                    }
+
+                    child = new Node(node, san, position.getPlacementKey());
+                    node.children.put(normalize(san), child);
+                    positions.put(child, position);
+
+                    tree.transpositions.putIfAbsent(child.placementKey, child);
+
+                }
+
+                node = child;
+
+            }
+
+            if (node.opening == null)
+                node.opening = opening;
+
+        }
+
+        // Name the nodes that transpose into a named opening
+        for (Node node : positions.keySet()) {
+
+            if (node.opening == null && node != tree.root)
+                node.transposedOpening = named.get(node.placementKey);
+
+        }
+
+        return tree;
+
+    }
+
+    /**
+     * Splits a sequence of moves, such as {@code "1. e4 e5 2. Nf3"}, into the SAN
+     * of each move, leaving out the move numbers.
+     * 
+     * @param sequence The sequence of moves.
+     * @return The SAN of each move, in order.
+     */
+    private static List<String> getMoves(String sequence) {
+
+        final ArrayList<String> moves = new ArrayList<String>();
+
+        for (String token : sequence.trim().split("\\s+")) {
+
+            if (!token.isEmpty() && !token.endsWith("."))
+                moves.add(token);
+
+        }
+
+        return moves;
+
+    }
+
+    /**
+     * Removes the parts of a SAN that do not identify the move, so that moves
+     * written with or without check marks and annotations are the same.
+     * 
+     * @param san The SAN of a move.
+     * @return The SAN without check marks or annotations, with castling written
+     *         with the letter {@code O}.
+     */
+    private static String normalize(String san) {
+
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0)
+            end--;
+
+        return san.substring(0, end).trim().replace('0', 'O');
+
+    }
+
+    /**
+     * A move of an opening sequence.
+     */
+    public static final class Node {
+
+        /** The node of the previous move, or {@code null} if this is the root. */
+        private final Node parent;
+
+        /** The SAN of the move of this node, or {@code null} if this is the root. */
+        private final String san;
+
+        /** The number of moves from the start of the game to this node. */
+        private final int ply;
+
+        /**
+         * The hash of the board position this node leads to.
+         * 
+         * @see Position#getPlacementKey()
+         */
+        private final long placementKey;
+
+        /**
+         * The nodes of the moves that follow this move, keyed by their SAN without
+         * check marks.
+         */
+        private final LinkedHashMap<String, Node> children;
+
+        /**
+         * The opening whose sequence ends at this node, or {@code null} if none do.
+         */
+        private Opening opening;
+
+        /**
+         * The opening whose board position is the same as this node's, if no
+         * sequence ends at this node. Otherwise, {@code null}.
+         */
+        private Opening transposedOpening;
+
+        /**
+         * Creates a new node.
+         * 
+         * @param parent       The node of the previous move.
+         * @param san          The SAN of the move.
+         * @param placementKey The hash of the board position the move leads to.
+         */
+        private Node(Node parent, String san, long placementKey) {
+
+            this.parent = parent;
+            this.san = san;
+            this.ply = parent == null ? 0 : parent.ply + 1;
+            this.placementKey = placementKey;
+            this.children = new LinkedHashMap<String, Node>(4);
+
+        }
+
+        /**
+         * Gets the node of the previous move.
+         * 
+         * @return {@link #parent}
+         */
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * Gets the SAN of the move of this node.
+         * 
+         * @return {@link #san}
+         */
+        public String getSan() {
+            return san;
+        }
+
+        /**
+         * Gets the number of moves from the start of the game to this node.
+         * 
+         * @return {@link #ply}
+         */
+        public int getPly() {
+            return ply;
+        }
+
+        /**
+         * Gets the hash of the board position this node leads to.
+         * 
+         * @return {@link #placementKey}
+         */
+        public long getPlacementKey() {
+            return placementKey;
+        }
+
+        /**
+         * Gets the node of the given move that follows this one.
+         * 
+         * @param san The SAN of the move.
+         * @return The node, or {@code null} if no opening continues with the move.
+         */
+        public Node getChild(String san) {
+            return children.get(normalize(san));
+        }
+
+        /**
+         * Gets the nodes of the moves that follow this one, in the order they
+         * first appear in the openings file.
+         * 
+         * @return {@link #children}
+         */
+        public Collection<Node> getChildren() {
+            return Collections.unmodifiableCollection(children.values());
+        }
+
+        /**
+         * Gets the opening of this node: either the opening whose sequence ends
+         * here, or the opening whose board position this node transposes into.
+         * 
+         * @return The opening, or {@code null} if this node is not named.
+         */
+        public Opening getOpening() {
+            return opening != null ? opening : transposedOpening;
+        }
+
+        /**
+         * Gets the opening of this node, or of the closest node before it that is
+         * named.
+         * 
+         * @return The opening, or {@code null} if neither this node nor any node
+         *         before it is named.
+         */
+        public Opening getDeepestNamed() {
+
+            for (Node n = this; n != null; n = n.parent) {
+
+                if (n.getOpening() != null)
+                    return n.getOpening();
+
+            }
+
+            return null;
+
+        }
+
+        /**
+         * Gets the openings whose sequences continue from this node, in the order
+         * of the openings file. Does not include the opening of this node.
+         * 
+         * @return The openings that continue from this node.
+         */
+        public List<Opening> getContinuations() {
+
+            final ArrayList<Opening> continuations = new ArrayList<Opening>();
+            final ArrayDeque<Node> stack = new ArrayDeque<Node>(children.values());
+
+            while (!stack.isEmpty()) {
+
+                final Node n = stack.pop();
+
+                if (n.opening != null)
+                    continuations.add(n.opening);
+
+                final ArrayList<Node> next = new ArrayList<Node>(n.children.values());
+                for (int i = next.size() - 1; i >= 0; i--)
+                    stack.push(next.get(i));
+
+            }
+
+            return continuations;
+
+        }
+
+        /**
+         * Gets the SAN of each move from the start of the game to this node.
+         * 
+         * @return The sequence of moves.
+         */
+        public List<String> getSequence() {
+
+            final String[] sequence = new String[ply];
+
+            for (Node n = this; n.parent != null; n = n.parent)
+                sequence[n.ply - 1] = n.san;
+
+            return Arrays.asList(sequence);
+
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", getSequence());
+        }
+
+    }
+
+    /** The node before the first move. */
+    private final Node root;
+
+    /**
+     * The first node that leads to each board position, keyed by
+     * {@link Node#placementKey}.
+     */
+    private final HashMap<Long, Node> transpositions;
+
+    /**
+     * Creates an empty tree.
+     */
+    private OpeningTree() {
+
+        this.root = new Node(null, null, Zobrist.getPlacementKey(GameSettings.DEFAULT_FEN));
+        this.transpositions = new HashMap<Long, Node>();
+
+    }
+
+    /**
+     * Gets the node before the first move.
+     * 
+     * @return {@link #root}
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Finds the node of the given sequence of moves from the starting position.
+     * 
+     * @param sequence The SAN of each move, in order.
+     * @return The node, or {@code null} if no opening follows the sequence.
+     */
+    public Node find(List<String> sequence) {
+
+        Node node = root;
+
+        for (int i = 0; i < sequence.size() && node != null; i++)
+            node = node.getChild(sequence.get(i));
+
+        return node;
+
+    }
+
+    /**
+     * Finds the node of the moves that led to the given position of a game. If the
+     * moves leave the tree but lead to a board position that is in it, the node
+     * of that board position is found.
+     * 
+     * @param game     The game.
+     * @param position The index of the position in {@link Game#getPositions()}.
+     * @return The node, or {@code null} if the position is not in the tree.
+     */
+    public Node find(Game game, int position) {
+
+        final List<Position> positions = game.getPositions();
+
+        if (positions.get(0).getPlacementKey() != root.placementKey || !positions.get(0).isWhite())
+            return null;
+
+        Node node = root;
+
+        for (int i = 1; i <= position && node != null; i++)
+            node = node.getChild(positions.get(i).getMove().getMoveNotation());
+
+        return node != null ? node : find(positions.get(position));
+
+    }
+
+    /**
+     * Finds the first node that leads to the board position of the given position,
+     * regardless of the moves that led to it.
+     * 
+     * @param position The position.
+     * @return The node, or {@code null} if the board position is not in the tree.
+     */
+    public Node find(Position position) {
+
+        if (position.getPlacementKey() == root.placementKey)
+            return root;
+
+        return transpositions.get(position.getPlacementKey());
+
+    }
+
+}
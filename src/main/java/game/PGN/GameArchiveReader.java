@@ -0,0 +1,402 @@
+package game.PGN;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import game.GameReplay;
+import game.MoveGenerator;
+import game.Position;
+
+/**
+ * Reads games from an archive written by {@link GameArchiveWriter}. Any game
+ * can be read directly by its index without reading the games before it, and
+ * games can be read from several threads at once.
+ * 
+ * <p>
+ * The archive can either be read from the file as games are requested, or be
+ * memory-mapped so that reads are served from the page cache without system
+ * calls and without loading the archive into the heap.
+ */
+public class GameArchiveReader implements Closeable {
+
+    /** The number of bits of the size of each mapped segment of the file. */
+    private static final int SEGMENT_BITS = 30;
+
+    /** The file of the archive. */
+    private final FileChannel channel;
+
+    /**
+     * The segments of the memory-mapped file, each {@code 1 << SEGMENT_BITS}
+     * bytes except the last, or {@code null} if the file is not mapped.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /** The size of the archive file, in bytes. */
+    private final long size;
+
+    /** The number of games in the archive. */
+    private final int count;
+
+    /** The offset of the index of the archive. */
+    private final long indexOffset;
+
+    /**
+     * Opens the archive at the given path, without mapping it.
+     * 
+     * @param path The path of the archive.
+     * @throws IOException If the file could not be opened or is not an archive.
+     */
+    public GameArchiveReader(Path path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * Opens the archive at the given path.
+     * 
+     * @param path The path of the archive.
+     * @param map  Whether or not to memory-map the file.
+     * @throws IOException If the file could not be opened or is not an archive.
+     */
+    public GameArchiveReader(Path path, boolean map) throws IOException {
+
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+
+            size = channel.size();
+
+            if (map) {
+
+                segments = new MappedByteBuffer[(int) ((size + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS)];
+
+                for (int i = 0; i < segments.length; i++) {
+
+                    final long start = (long) i << SEGMENT_BITS;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(1L << SEGMENT_BITS, size - start));
+
+                }
+
+            } else {
+                segments = null;
+            }
+
+            if (size < GameArchiveWriter.HEADER_SIZE + GameArchiveWriter.FOOTER_SIZE)
+                throw new IOException("File is not a game archive.");
+
+            final ByteBuffer header = read(0, GameArchiveWriter.HEADER_SIZE);
+
+            if (header.getInt() != GameArchiveWriter.MAGIC)
+                throw new IOException("File is not a game archive.");
+
+            if (header.getShort() != GameArchiveWriter.VERSION)
+                throw new IOException("Unsupported game archive version.");
+
+            final ByteBuffer footer = read(size - GameArchiveWriter.FOOTER_SIZE, GameArchiveWriter.FOOTER_SIZE);
+
+            indexOffset = footer.getLong();
+            count = footer.getInt();
+
+            if (footer.getInt() != GameArchiveWriter.MAGIC
+                    || indexOffset + (count + 1) * 8L != size - GameArchiveWriter.FOOTER_SIZE)
+                throw new IOException("Game archive is incomplete.");
+
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+    }
+
+    /**
+     * Gets the number of games in the archive.
+     * 
+     * @return {@link #count}
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Checks if the archive is memory-mapped.
+     * 
+     * @return Whether or not the archive is memory-mapped.
+     */
+    public boolean isMapped() {
+        return segments != null;
+    }
+
+    /**
+     * Reads the starting position of the given game.
+     * 
+     * @param index The index of the game.
+     * @return A new position, from the FEN tag of the game if it has one.
+     * @throws IOException If the game could not be read or the FEN is invalid.
+     */
+    public Position readStart(int index) throws IOException {
+        return getStart(readTags(readRecord(index)));
+    }
+
+    /**
+     * Reads the moves of the given game as they are stored, as the index of each
+     * move in the legal moves of the position it is made from.
+     * 
+     * @param index The index of the game.
+     * @return The legal move index of each move.
+     * @throws IOException If the game could not be read.
+     */
+    public int[] readMoveIndices(int index) throws IOException {
+
+        final ByteBuffer record = readRecord(index);
+        readTags(record);
+
+        final int[] indices = new int[record.getInt()];
+
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = record.getShort() & 0xFFFF;
+
+        return indices;
+
+    }
+
+    /**
+     * Reads the tags of the given game.
+     * 
+     * @param index The index of the game.
+     * @return The tags, in the order they were written.
+     * @throws IOException If the game could not be read.
+     */
+    public Map<String, String> readTags(int index) throws IOException {
+        return readTags(readRecord(index));
+    }
+
+    /**
+     * Reads the moves of the given game, encoded as described in
+     * {@link MoveGenerator}.
+     * 
+     * @param index The index of the game.
+     * @return The moves.
+     * @throws IOException If the game could not be read or is invalid.
+     */
+    public int[] readMoves(int index) throws IOException {
+
+        final ByteBuffer record = readRecord(index);
+        final Position position = getStart(readTags(record));
+
+        final int[] moves = new int[record.getInt()];
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+        for (int i = 0; i < moves.length; i++) {
+
+            moves[i] = getMove(position, buffer, record.getShort() & 0xFFFF, index, i);
+            position.makeMove(moves[i]);
+
+        }
+
+        return moves;
+
+    }
+
+    /**
+     * Reads the given game as a parsed PGN, with the notation of each move.
+     * 
+     * @param index The index of the game.
+     * @return The game.
+     * @throws IOException If the game could not be read or is invalid.
+     */
+    public PGNParser read(int index) throws IOException {
+
+        final ByteBuffer record = readRecord(index);
+        final Map<String, String> tags = readTags(record);
+        final Position position = getStart(tags);
+
+        final int length = record.getInt();
+        final ArrayList<String> moves = new ArrayList<String>(length);
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+        int legal = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+        for (int i = 0; i < length; i++) {
+
+            final int m = record.getShort() & 0xFFFF;
+
+            if (m >= legal)
+                throw new IOException("Invalid move " + i + " of game " + index + ".");
+
+            final String san = GameReplay.getNotation(position, buffer, legal, buffer[m]);
+
+            position.makeMove(buffer[m]);
+            legal = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+            moves.add(san + (!position.isInCheck() ? "" : legal == 0 ? "#" : "+"));
+
+        }
+
+        return new PGNParser(tags, moves);
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Gets the move with the given legal move index.
+     * 
+     * @param position The position the move is made from.
+     * @param buffer   The buffer to generate moves into.
+     * @param m        The legal move index.
+     * @param game     The index of the game, for the error message.
+     * @param move     The index of the move, for the error message.
+     * @return The encoded move.
+     * @throws IOException If the index is not that of a legal move.
+     */
+    private static int getMove(Position position, int[] buffer, int m, int game, int move) throws IOException {
+
+        final int legal = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+        if (m >= legal)
+            throw new IOException("Invalid move " + move + " of game " + game + ".");
+
+        return buffer[m];
+
+    }
+
+    /**
+     * Creates the starting position of a game from its tags.
+     * 
+     * @param tags The tags of the game.
+     * @return The starting position.
+     * @throws IOException If the FEN tag is invalid.
+     */
+    private static Position getStart(Map<String, String> tags) throws IOException {
+
+        final String setup = tags.getOrDefault("SetUp", "");
+        final String fen = tags.getOrDefault("FEN", "");
+
+        try {
+            return setup.equals("1") && !fen.equals("") ? new Position(fen) : new Position();
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid FEN tag: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Reads the tags at the start of a game record.
+     * 
+     * @param record The record, positioned at its start.
+     * @return The tags.
+     */
+    private static Map<String, String> readTags(ByteBuffer record) {
+
+        final int size = record.getShort() & 0xFFFF;
+        final LinkedHashMap<String, String> tags = new LinkedHashMap<String, String>();
+
+        for (int i = 0; i < size; i++)
+            tags.put(readString(record), readString(record));
+
+        return tags;
+
+    }
+
+    /**
+     * Reads a string written by {@link GameArchiveWriter}.
+     * 
+     * @param record The record, positioned at the string.
+     * @return The string.
+     */
+    private static String readString(ByteBuffer record) {
+
+        final int length = record.getShort() & 0xFFFF;
+        final String str = new String(record.array(), record.arrayOffset() + record.position(), length,
+                StandardCharsets.UTF_8);
+
+        record.position(record.position() + length);
+
+        return str;
+
+    }
+
+    /**
+     * Reads the record of the given game.
+     * 
+     * @param index The index of the game.
+     * @return The record.
+     * @throws IOException If the game could not be read.
+     */
+    private ByteBuffer readRecord(int index) throws IOException {
+
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Invalid game index " + index + ".");
+
+        final ByteBuffer offsets = read(indexOffset + index * 8L, 16);
+        final long start = offsets.getLong();
+        final long end = offsets.getLong();
+
+        if (end < start || end - start > Integer.MAX_VALUE)
+            throw new IOException("Game archive index is corrupt.");
+
+        return read(start, (int) (end - start));
+
+    }
+
+    /**
+     * Reads bytes of the archive, from any thread.
+     * 
+     * @param position The offset to read from.
+     * @param length   The number of bytes to read.
+     * @return The bytes read.
+     * @throws IOException If the bytes could not be read.
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        if (segments != null) {
+
+            if (position < 0 || position + length > size)
+                throw new EOFException("Unexpected end of game archive.");
+
+            int read = 0;
+
+            while (read < length) {
+
+                final long p = position + read;
+                final int offset = (int) (p & ((1L << SEGMENT_BITS) - 1));
+                final MappedByteBuffer segment = segments[(int) (p >>> SEGMENT_BITS)];
+                final int n = Math.min(length - read, segment.capacity() - offset);
+
+                segment.get(offset, buffer.array(), read, n);
+                read += n;
+
+            }
+
+            return buffer;
+
+        }
+
+        while (buffer.hasRemaining()) {
+
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of game archive.");
+
+        }
+
+        buffer.flip();
+        return buffer;
+
+    }
+
+}
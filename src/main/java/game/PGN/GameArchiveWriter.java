@@ -0,0 +1,296 @@
+package game.PGN;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import game.GameReplay;
+import game.MoveGenerator;
+import game.Position;
+
+/**
+ * Writes games to a compact binary archive that can be read back in any order
+ * with {@link GameArchiveReader}.
+ * 
+ * <p>
+ * Rather than its notation, each move is stored as its index in the list of
+ * legal moves of the position it was made from, as generated by
+ * {@link MoveGenerator}, in two bytes. Only the tags and moves of a game are
+ * stored, not comments, NAGs or variations. All numbers are big-endian.
+ * 
+ * <pre>
+ * Header:  int MAGIC, short VERSION, short 0
+ * Games:   short tag count, then for each tag: the key and value, each an
+ *          unsigned short byte length followed by UTF-8 bytes;
+ *          int move count, then each move as an unsigned short legal move index
+ * Index:   long offset of each game, then the offset of the end of the last game
+ * Footer:  long offset of the index, int game count, int MAGIC
+ * </pre>
+ * 
+ * <p>
+ * Can be run from the command line with
+ * {@code GameArchiveWriter <pgn file> <archive file>} to convert every valid
+ * game of a {@code .pgn} file into an archive.
+ */
+public class GameArchiveWriter implements Closeable {
+
+    /** The first and last four bytes of an archive, {@code "CHSA"}. */
+    static final int MAGIC = 0x43485341;
+
+    /** The version of the archive format. */
+    static final short VERSION = 1;
+
+    /** The size of the header, in bytes. */
+    static final int HEADER_SIZE = 8;
+
+    /** The size of the footer, in bytes. */
+    static final int FOOTER_SIZE = 16;
+
+    /**
+     * Converts a {@code .pgn} file into an archive from the command line.
+     * 
+     * @param args The path of the {@code .pgn} file and of the archive.
+     * @throws Exception If either file could not be read or written.
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length != 2) {
+            System.out.println("Usage: GameArchiveWriter <pgn file> <archive file>");
+            return;
+        }
+
+        try (PGNReader reader = new PGNReader(Path.of(args[0]));
+                GameArchiveWriter writer = new GameArchiveWriter(Path.of(args[1]))) {
+
+            while (reader.hasNext()) {
+
+                final PGNReader.Entry entry = reader.next();
+
+                try {
+                    writer.write(entry.getParser());
+                } catch (Exception e) {
+                    System.out.println("Skipped game " + (entry.getIndex() + 1) + " @ " + entry.getOffset() + ": "
+                            + e.getMessage());
+                }
+
+            }
+
+            System.out.println("Wrote " + writer.getCount() + " games.");
+
+        }
+
+    }
+
+    /** The stream the archive is written to. */
+    private final DataOutputStream out;
+
+    /** The buffer each game is written to before it is added to the archive. */
+    private final ByteArrayOutputStream record;
+
+    /** Writes to {@link #record}. */
+    private final DataOutputStream recordOut;
+
+    /** The offset of each game written so far. */
+    private long[] offsets;
+
+    /** The number of games written so far. */
+    private int count;
+
+    /** The number of bytes written to the archive so far. */
+    private long offset;
+
+    /** Whether or not the archive has been closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new archive at the given path, replacing any file already there.
+     * 
+     * @param path The path of the archive.
+     * @throws IOException If the file could not be created.
+     */
+    public GameArchiveWriter(Path path) throws IOException {
+        this(Files.newOutputStream(path));
+    }
+
+    /**
+     * Creates a new archive that is written to the given stream. The stream is
+     * closed once the archive is closed.
+     * 
+     * @param out The stream to write to.
+     * @throws IOException If the header could not be written.
+     */
+    public GameArchiveWriter(OutputStream out) throws IOException {
+
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.record = new ByteArrayOutputStream(1024);
+        this.recordOut = new DataOutputStream(record);
+        this.offsets = new long[1024];
+
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+        this.out.writeShort(0);
+        this.offset = HEADER_SIZE;
+
+    }
+
+    /**
+     * Gets the number of games written so far.
+     * 
+     * @return {@link #count}
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Replays and writes the given game.
+     * 
+     * @param pgn The parsed PGN of the game.
+     * @return The index of the game in the archive.
+     * @throws Exception If a move of the game is invalid, or the game could not
+     *                   be written.
+     */
+    public int write(PGNParser pgn) throws Exception {
+        return write(pgn.replay(0));
+    }
+
+    /**
+     * Writes the given replayed game.
+     * 
+     * @param replay The replayed game.
+     * @return The index of the game in the archive.
+     * @throws IOException If the game could not be written.
+     */
+    public int write(GameReplay replay) throws IOException {
+
+        final Position position = replay.getPosition(0);
+        final int[] moves = replay.getMoves();
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+        final int[] indices = new int[moves.length];
+
+        for (int i = 0; i < moves.length; i++) {
+
+            final int legal = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+            indices[i] = -1;
+            for (int m = 0; m < legal && indices[i] == -1; m++) {
+
+                if (buffer[m] == moves[i])
+                    indices[i] = m;
+
+            }
+
+            if (indices[i] == -1)
+                throw new IOException("Move " + i + " of the game is not legal.");
+
+            position.makeMove(moves[i]);
+
+        }
+
+        return write(replay.getPgn().getTags(), indices);
+
+    }
+
+    /**
+     * Writes a game from its tags and the legal move index of each move.
+     * 
+     * @param tags    The tags of the game.
+     * @param indices The index of each move in the legal moves of its position.
+     * @return The index of the game in the archive.
+     * @throws IOException If the game could not be written.
+     */
+    private int write(Map<String, String> tags, int[] indices) throws IOException {
+
+        if (closed)
+            throw new IOException("Archive is closed.");
+
+        if (tags.size() > 0xFFFF)
+            throw new IOException("Too many tags.");
+
+        record.reset();
+
+        recordOut.writeShort(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+
+            writeString(tag.getKey());
+            writeString(tag.getValue());
+
+        }
+
+        recordOut.writeInt(indices.length);
+        for (int index : indices)
+            recordOut.writeShort(index);
+
+        if (count == offsets.length)
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+
+        offsets[count] = offset;
+
+        record.writeTo(out);
+        offset += record.size();
+
+        return count++;
+
+    }
+
+    /**
+     * Writes a string to {@link #record} as its UTF-8 byte length followed by its
+     * bytes.
+     * 
+     * @param str The string.
+     * @throws IOException If the string is too long.
+     */
+    private void writeString(String str) throws IOException {
+
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length > 0xFFFF)
+            throw new IOException("Tag is too long.");
+
+        recordOut.writeShort(bytes.length);
+        recordOut.write(bytes);
+
+    }
+
+    /**
+     * Writes the index and footer and closes the archive.
+     * 
+     * @throws IOException If the archive could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed)
+            return;
+
+        closed = true;
+
+        try {
+
+            final long indexOffset = offset;
+
+            for (int i = 0; i < count; i++)
+                out.writeLong(offsets[i]);
+
+            out.writeLong(indexOffset);
+
+            out.writeLong(indexOffset);
+            out.writeInt(count);
+            out.writeInt(MAGIC);
+
+        } finally {
+            out.close();
+        }
+
+    }
+
+}
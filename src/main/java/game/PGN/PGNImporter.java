@@ -0,0 +1,345 @@
+package game.PGN;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import game.Game;
+import game.GameSettings;
+
+/**
+ * Imports and validates every game of a {@code .pgn} file in parallel. The
+ * games are read one at a time by a {@link PGNReader} and each is parsed and
+ * replayed as a {@link Game} on a work-stealing pool, with the number of games
+ * waiting to be imported bounded so that memory use does not grow with the
+ * size of the file.
+ * 
+ * <p>
+ * Can be run from the command line with {@code PGNImporter <file> [threads]},
+ * which prints the number of games imported, the games per second and each
+ * game that could not be imported.
+ */
+public class PGNImporter {
+
+    /**
+     * A game that could not be imported.
+     */
+    public static class ImportError {
+
+        /** The index of the game in the file, starting at {@code 0}. */
+        private final long index;
+
+        /** The offset of the game in the file. */
+        private final long offset;
+
+        /** The reason the game could not be imported. */
+        private final String message;
+
+        /**
+         * Creates a new import error.
+         * 
+         * @param index   The index of the game in the file.
+         * @param offset  The offset of the game in the file.
+         * @param message The reason the game could not be imported.
+         */
+        private ImportError(long index, long offset, String message) {
+
+            this.index = index;
+            this.offset = offset;
+            this.message = message;
+
+        }
+
+        /**
+         * Gets the index of the game in the file.
+         * 
+         * @return {@link #index}
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the offset of the game in the file.
+         * 
+         * @return {@link #offset}
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Gets the reason the game could not be imported.
+         * 
+         * @return {@link #message}
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Game " + (index + 1) + " @ " + offset + ": " + message;
+        }
+
+    }
+
+    /**
+     * The outcome of importing a file.
+     */
+    public static class Result {
+
+        /** The number of games read from the file. */
+        private final long games;
+
+        /** The number of games that were imported. */
+        private final long imported;
+
+        /** The games that could not be imported, in the order of the file. */
+        private final List<ImportError> errors;
+
+        /** The time the import took, in nanoseconds. */
+        private final long time;
+
+        /**
+         * Creates a new result.
+         * 
+         * @param games    The number of games read.
+         * @param imported The number of games imported.
+         * @param errors   The games that could not be imported.
+         * @param time     The time the import took, in nanoseconds.
+         */
+        private Result(long games, long imported, List<ImportError> errors, long time) {
+
+            this.games = games;
+            this.imported = imported;
+            this.errors = errors;
+            this.time = time;
+
+        }
+
+        /**
+         * Gets the number of games read from the file.
+         * 
+         * @return {@link #games}
+         */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * Gets the number of games that were imported.
+         * 
+         * @return {@link #imported}
+         */
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * Gets the games that could not be imported.
+         * 
+         * @return {@link #errors}
+         */
+        public List<ImportError> getErrors() {
+            return errors;
+        }
+
+        /**
+         * Gets the time the import took.
+         * 
+         * @return {@link #time}, in nanoseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Gets the number of games read per second.
+         * 
+         * @return The games per second.
+         */
+        public double getGamesPerSecond() {
+            return time <= 0 ? 0 : games * 1000000000.0 / time;
+        }
+
+        @Override
+        public String toString() {
+            return "Imported " + imported + " of " + games + " games in " + (time / 1000000) + " ms ("
+                    + Math.round(getGamesPerSecond()) + " games/s), " + errors.size() + " errors";
+        }
+
+    }
+
+    /**
+     * Imports a file from the command line.
+     * 
+     * @param args The path of the file, and optionally the number of threads.
+     * @throws Exception If the file could not be read.
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: PGNImporter <file> [threads]");
+            return;
+        }
+
+        final int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+
+        final PGNImporter importer = new PGNImporter(threads);
+
+        try {
+
+            final Result result = importer.importFile(Path.of(args[0]), game -> {
+            });
+
+            for (ImportError error : result.getErrors())
+                System.out.println(error);
+
+            System.out.println(result);
+
+        } finally {
+            importer.shutdown();
+        }
+
+    }
+
+    /** The pool the games are imported on. */
+    private final ForkJoinPool pool;
+
+    /** The settings each game is created with. */
+    private final GameSettings settings;
+
+    /** The most games that can be waiting to be imported at once. */
+    private final int maxPending;
+
+    /**
+     * Creates a new importer with a pool of the given number of threads. Games are
+     * created with the time control of their PGN.
+     * 
+     * @param parallelism The number of threads to import games on.
+     * @throws Exception If the default settings are invalid.
+     */
+    public PGNImporter(int parallelism) throws Exception {
+        this(parallelism, new GameSettings(0, 0, false, false, false, false));
+    }
+
+    /**
+     * Creates a new importer with a pool of the given number of threads.
+     * 
+     * @param parallelism The number of threads to import games on.
+     * @param settings    The settings each game is created with. The time control
+     *                    of the PGN is used rather than that of the settings.
+     */
+    public PGNImporter(int parallelism, GameSettings settings) {
+
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+
+        this.pool = new ForkJoinPool(parallelism);
+        this.settings = settings;
+        this.maxPending = parallelism * 16;
+
+    }
+
+    /**
+     * Imports every game of the file at the given path.
+     * 
+     * @param path     The path of the file.
+     * @param consumer Receives each game that is imported. Called from the threads
+     *                 of the pool, so must be thread-safe.
+     * @return The outcome of the import.
+     * @throws IOException          If the file could not be read.
+     * @throws InterruptedException If interrupted while waiting for games to be
+     *                              imported.
+     */
+    public Result importFile(Path path, Consumer<Game> consumer) throws IOException, InterruptedException {
+
+        try (PGNReader reader = new PGNReader(path)) {
+            return importGames(reader, consumer);
+        }
+
+    }
+
+    /**
+     * Imports every remaining game of the given reader, returning once all have
+     * been imported.
+     * 
+     * @param reader   The reader of the games.
+     * @param consumer Receives each game that is imported. Called from the threads
+     *                 of the pool, so must be thread-safe.
+     * @return The outcome of the import.
+     * @throws InterruptedException If interrupted while waiting for games to be
+     *                              imported.
+     * @throws RuntimeException     If the file could not be read.
+     */
+    public Result importGames(PGNReader reader, Consumer<Game> consumer)
+            throws InterruptedException, RuntimeException {
+
+        final long start = System.nanoTime();
+
+        final Semaphore pending = new Semaphore(maxPending);
+        final AtomicLong imported = new AtomicLong();
+        final ConcurrentLinkedQueue<ImportError> errors = new ConcurrentLinkedQueue<ImportError>();
+
+        long games = 0;
+
+        try {
+
+            while (reader.hasNext()) {
+
+                final PGNReader.Entry entry = reader.next();
+                ++games;
+
+                pending.acquire();
+
+                pool.execute(() -> {
+
+                    try {
+
+                        final Game game = new Game(entry.getParser(), settings, false);
+                        imported.incrementAndGet();
+                        consumer.accept(game);
+
+                    } catch (Exception e) {
+                        errors.add(new ImportError(entry.getIndex(), entry.getOffset(), e.getMessage()));
+                    } finally {
+                        pending.release();
+                    }
+
+                });
+
+            }
+
+        } finally {
+
+            // Wait for the games already submitted
+            pending.acquireUninterruptibly(maxPending);
+            pending.release(maxPending);
+
+        }
+
+        final ArrayList<ImportError> sorted = new ArrayList<ImportError>(errors);
+        sorted.sort(Comparator.comparingLong(ImportError::getIndex));
+
+        return new Result(games, imported.get(), Collections.unmodifiableList(sorted), System.nanoTime() - start);
+
+    }
+
+    /**
+     * Stops the threads of the pool once the games being imported are done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+}
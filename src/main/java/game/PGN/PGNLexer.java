@@ -0,0 +1,415 @@
+package game.PGN;
+
+/**
+ * Splits the text of a PGN game into the tokens described in the PGN standard,
+ * one at a time. The lexer reads the text in place, so the only objects it
+ * creates are the strings of the tokens whose text is requested.
+ * 
+ * <p>
+ * Characters that cannot start a token, such as whitespace, are skipped. A
+ * brace comment or string that is not closed is not a token, so its opening
+ * character is skipped and the text after it is read as tokens.
+ */
+public class PGNLexer {
+
+    /**
+     * The types of tokens.
+     */
+    public enum Type {
+
+        /** A game termination marker: {@code 1-0}, {@code 0-1}, {@code 1/2-1/2} or {@code *}. */
+        TERMINATION,
+
+        /** A period, which follows a move number. */
+        PERIOD,
+
+        /** The {@code [} that starts a tag pair. */
+        TAG_OPEN,
+
+        /** The {@code ]} that ends a tag pair. */
+        TAG_CLOSE,
+
+        /** The {@code (} that starts a recursive annotation variation. */
+        RAV_OPEN,
+
+        /** The {@code )} that ends a recursive annotation variation. */
+        RAV_CLOSE,
+
+        /** A numeric annotation glyph, such as {@code $1}. */
+        NAG,
+
+        /**
+         * A move number, which is a symbol made of only digits.
+         */
+        NUMBER,
+
+        /** A symbol, such as a move or the key of a tag. */
+        SYMBOL,
+
+        /** A string in quotes, which is the value of a tag. */
+        STRING,
+
+        /** A comment in braces. */
+        COMMENT,
+
+        /** A comment from a semicolon to the end of the line. */
+        LINE_COMMENT,
+
+        /** A move suffix annotation, such as {@code !?}. */
+        SUFFIX,
+
+        /** The end of the text. */
+        END
+
+    }
+
+    /** The text being read. */
+    private final CharSequence text;
+
+    /** The index after the last token that was read. */
+    private int position;
+
+    /** The type of the last token that was read. */
+    private Type type;
+
+    /** The index of the first character of the last token. */
+    private int start;
+
+    /** The index after the last character of the last token. */
+    private int end;
+
+    /**
+     * Creates a new lexer that reads the given text from the beginning.
+     * 
+     * @param text The text of the game.
+     */
+    public PGNLexer(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * Reads the next token.
+     * 
+     * @return The type of the token, or {@link Type#END} if there are no more.
+     */
+    public Type next() {
+
+        final int length = text.length();
+
+        while (position < length) {
+
+            final int s = position;
+            final char c = text.charAt(s);
+
+            type = null;
+
+            switch (c) {
+                case '*':
+                    token(Type.TERMINATION, s, s + 1);
+                    break;
+                case '.':
+                    token(Type.PERIOD, s, s + 1);
+                    break;
+                case '[':
+                    token(Type.TAG_OPEN, s, s + 1);
+                    break;
+                case ']':
+                    token(Type.TAG_CLOSE, s, s + 1);
+                    break;
+                case '(':
+                    token(Type.RAV_OPEN, s, s + 1);
+                    break;
+                case ')':
+                    token(Type.RAV_CLOSE, s, s + 1);
+                    break;
+                case '$': {
+
+                    final int e = skipDigits(s + 1);
+
+                    if (e > s + 1)
+                        token(Type.NAG, s, e);
+
+                    break;
+
+                }
+                case '"': {
+
+                    final int e = indexOf('"', s + 1);
+
+                    if (e >= 0)
+                        token(Type.STRING, s, e + 1);
+
+                    break;
+
+                }
+                case '{': {
+
+                    final int e = indexOf('}', s + 1);
+
+                    if (e >= 0)
+                        token(Type.COMMENT, s, e + 1);
+
+                    break;
+
+                }
+                case ';': {
+
+                    final int e = indexOf('\n', s + 1);
+                    token(Type.LINE_COMMENT, s, e >= 0 ? e : length);
+                    break;
+
+                }
+                case '?':
+                case '!': {
+
+                    final int e = s + 1 < length && (text.charAt(s + 1) == '?' || text.charAt(s + 1) == '!') ? s + 2
+                            : s + 1;
+                    token(Type.SUFFIX, s, e);
+                    break;
+
+                }
+                default:
+
+                    if (isLetterOrDigit(c)) {
+
+                        final int t = getTerminationEnd(s);
+
+                        if (t > 0) {
+                            token(Type.TERMINATION, s, t);
+                        } else {
+
+                            int e = s + 1;
+                            while (e < length && isSymbolChar(text.charAt(e)))
+                                ++e;
+
+                            token(skipDigits(s) == e ? Type.NUMBER : Type.SYMBOL, s, e);
+
+                        }
+
+                    }
+
+            }
+
+            if (type != null)
+                return type;
+
+            // Not the start of a token
+            ++position;
+
+        }
+
+        type = Type.END;
+        start = end = length;
+
+        return type;
+
+    }
+
+    /**
+     * Gets the type of the last token.
+     * 
+     * @return {@link #type}
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the index of the first character of the last token.
+     * 
+     * @return {@link #start}
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the index after the last character of the last token.
+     * 
+     * @return {@link #end}
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the text of the last token.
+     * 
+     * @return The text of the token.
+     */
+    public String getText() {
+        return text.subSequence(start, end).toString();
+    }
+
+    /**
+     * Gets the content of the last token, without the quotes of a string, the
+     * braces of a comment, the semicolon of a line comment or the dollar sign of
+     * a NAG.
+     * 
+     * @return The content of the token.
+     */
+    public String getContent() {
+
+        switch (type) {
+            case STRING:
+            case COMMENT:
+                return text.subSequence(start + 1, end - 1).toString();
+            case LINE_COMMENT:
+            case NAG:
+                return text.subSequence(start + 1, end).toString();
+            default:
+                return getText();
+        }
+
+    }
+
+    /**
+     * Gets the value of the last token if it is a {@link Type#NUMBER} or
+     * {@link Type#NAG}.
+     * 
+     * @return The value of the number.
+     * @throws NumberFormatException If the number is too large.
+     */
+    public int getInt() throws NumberFormatException {
+
+        long value = 0;
+
+        for (int i = type == Type.NAG ? start + 1 : start; i < end; i++) {
+
+            value = value * 10 + (text.charAt(i) - '0');
+
+            if (value > Integer.MAX_VALUE)
+                throw new NumberFormatException("Number is too large.");
+
+        }
+
+        return (int) value;
+
+    }
+
+    /**
+     * Gets whether or not the last token is the given single character.
+     * 
+     * @param c The character.
+     * @return Whether or not the token is that character.
+     */
+    public boolean is(char c) {
+        return end - start == 1 && text.charAt(start) == c;
+    }
+
+    /**
+     * Sets the last token and moves past it.
+     * 
+     * @param type  The type of the token.
+     * @param start The index of the first character of the token.
+     * @param end   The index after the last character of the token.
+     */
+    private void token(Type type, int start, int end) {
+
+        this.type = type;
+        this.start = start;
+        this.end = end;
+        this.position = end;
+
+    }
+
+    /**
+     * Gets the end of a termination marker starting at the given index.
+     * 
+     * @param s The index.
+     * @return The index after the marker, or {@code -1} if there is none.
+     */
+    private int getTerminationEnd(int s) {
+
+        if (startsWith(s, "1-0") || startsWith(s, "0-1"))
+            return s + 3;
+
+        if (startsWith(s, "1/2-1/2"))
+            return s + 7;
+
+        return -1;
+
+    }
+
+    /**
+     * Gets whether or not the text has the given string at an index.
+     * 
+     * @param s      The index.
+     * @param prefix The string.
+     * @return Whether or not the string is at the index.
+     */
+    private boolean startsWith(int s, String prefix) {
+
+        if (s + prefix.length() > text.length())
+            return false;
+
+        for (int i = 0; i < prefix.length(); i++) {
+
+            if (text.charAt(s + i) != prefix.charAt(i))
+                return false;
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Finds the next index of a character.
+     * 
+     * @param c    The character.
+     * @param from The index to start looking from.
+     * @return The index of the character, or {@code -1} if it is not found.
+     */
+    private int indexOf(char c, int from) {
+
+        for (int i = from; i < text.length(); i++) {
+
+            if (text.charAt(i) == c)
+                return i;
+
+        }
+
+        return -1;
+
+    }
+
+    /**
+     * Skips the digits starting at an index.
+     * 
+     * @param from The index.
+     * @return The index of the first character that is not a digit.
+     */
+    private int skipDigits(int from) {
+
+        int i = from;
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9')
+            ++i;
+
+        return i;
+
+    }
+
+    /**
+     * Gets whether or not a character is an ASCII letter or digit, which can
+     * start a symbol.
+     * 
+     * @param c The character.
+     * @return Whether or not the character can start a symbol.
+     */
+    private static boolean isLetterOrDigit(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Gets whether or not a character can be part of a symbol after its first
+     * character.
+     * 
+     * @param c The character.
+     * @return Whether or not the character can continue a symbol.
+     */
+    private static boolean isSymbolChar(char c) {
+        return isLetterOrDigit(c) || c == '_' || c == '+' || c == '#' || c == '=' || c == ':' || c == '-';
+    }
+
+}
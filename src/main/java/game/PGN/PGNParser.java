@@ -1,12 +1,14 @@
 package game.PGN;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import game.Game;
+import game.GameReplay;
 import game.Position;
 import game.Game.Result;
 
@@ -16,11 +18,6 @@ import game.Game.Result;
  */
 public class PGNParser {
 
-    /**
-     * Matches the various tokens described in the PGN standard.
-     */
-    private static final String TOKEN_REGEX = "(?<termination>1-0|0-1|1/2-1/2|\\*)|(?<period>\\.)|\\[|\\]|\\(|\\)|\\<|\\>|(?<nag>\\$[\\d]+)|(?<symbol>[A-Za-z0-9][A-Za-z0-9_+#=:\\-]*)|(?<num>[\\d]+)|(?<str>\"[^\"]*\")|(?<comment>\\{[^}]*\\})|(?<eol>\\;([^\\n]*))|(?<suffix>[?!]{1,2})";
-
     /**
      * Converts a time in milliseconds to the format used in the %clk tag.
      * 
@@ -130,6 +127,45 @@ public class PGNParser {
 
     }
 
+    /**
+     * Creates a PGN game from its tags and the SAN of each move. The termination
+     * of the last move is set from the Result tag.
+     * 
+     * @param tags  The tags of the game.
+     * @param moves The SAN of each move, in order.
+     */
+    public PGNParser(Map<String, String> tags, List<String> moves) {
+
+        text = "";
+        this.tags = tags;
+        this.moves = new ArrayList<>();
+        comments = new ArrayList<>();
+
+        for (int i = 0; i < moves.size(); i++)
+            this.moves.add(new PGNMove(moves.get(i), i));
+
+        if (this.moves.size() > 0) {
+
+            final PGNMove last = this.moves.get(this.moves.size() - 1);
+
+            switch (tags.getOrDefault("Result", "*")) {
+                case "1-0":
+                    last.setTermination(Result.WHITE_WIN);
+                    break;
+                case "0-1":
+                    last.setTermination(Result.BLACK_WIN);
+                    break;
+                case "1/2-1/2":
+                    last.setTermination(Result.DRAW);
+                    break;
+                default:
+                    last.setTermination(Result.IN_PROGRESS);
+            }
+
+        }
+
+    }
+
     /**
      * Gets the text.
      * 
@@ -148,6 +184,15 @@ public class PGNParser {
         return tags;
     }
 
+    /**
+     * Gets the comments before the first move.
+     * 
+     * @return {@link #comments}
+     */
+    public ArrayList<String> getComments() {
+        return comments;
+    }
+
     /**
      * Gets the moves.
      * 
@@ -157,6 +202,20 @@ public class PGNParser {
         return moves;
     }
 
+    /**
+     * Replays the moves of this PGN without creating a full {@link Game}.
+     * 
+     * @param options The information to compute for each move, a combination of
+     *                {@link GameReplay#NOTATION}, {@link GameReplay#OPENINGS} and
+     *                {@link GameReplay#CLOCKS}.
+     * @return The replayed game.
+     * @throws Exception If a move is invalid.
+     * @see GameReplay
+     */
+    public GameReplay replay(int options) throws Exception {
+        return new GameReplay(this, options);
+    }
+
     /**
      * Gets the amount of time each side has based on the TimeControl tag.
      * 
@@ -205,81 +264,20 @@ public class PGNParser {
      * @param includeTags Whether or not to include the game info tags. If
      *                    {@code false}, only the movetext will be included.
      * @return The game in PGN format.
+     * @see PGNWriter
      */
     public String outputPGN(boolean includeTags) {
 
-        String str = "";
-
-        if (includeTags) {
-
-            str += "[Event \"" + tags.getOrDefault("Event", "?") + "\"]\n";
-            str += "[Site \"" + tags.getOrDefault("Site", "?") + "\"]\n";
-            str += "[Date \"" + tags.getOrDefault("Date", "????.??.??") + "\"]\n";
-            str += "[Round \"" + tags.getOrDefault("Round", "-") + "\"]\n";
-            str += "[White \"" + tags.getOrDefault("White", "?") + "\"]\n";
-            str += "[Black \"" + tags.getOrDefault("Black", "?") + "\"]\n";
-            str += "[Result \"" + tags.getOrDefault("Result", "*") + "\"]\n";
-
-            for (Map.Entry<String, String> tag : tags.entrySet()) {
-
-                if (tag.getKey().equals("Event") || tag.getKey().equals("Site") || tag.getKey().equals("Date")
-                        || tag.getKey().equals("Round") || tag.getKey().equals("White") || tag.getKey().equals("Black")
-                        || tag.getKey().equals("Result"))
-                    continue;
-
-                str += "[" + tag.getKey() + " \"" + tag.getValue() + "\"]\n";
-
-            }
-
-            str += "\n";
-
-        }
-
-        String moveList = "";
-
-        for (int i = 0; i < comments.size(); i++) {
-
-            moveList += "{" + comments.get(i) + "}\n";
-
-        }
-
-        for (int i = 0; i < moves.size(); i++) {
-
-            PGNMove m = moves.get(i);
-
-            moveList += " " + ((i / 2) + 1) + ".";
-
-            moveList += " " + m;
-
-            if (i + 1 < moves.size()) {
-
-                PGNMove o = moves.get(++i);
-
-                if (moves.get(i).getComments().size() > 0 ||
-                        moves.get(i).getNag() != 0)
-                    moveList += " " + ((i / 2) + 1) + "...";
-
-                moveList += " " + o;
-
-            }
+        final StringWriter str = new StringWriter();
 
+        try {
+            new PGNWriter(str).write(this, includeTags);
+        } catch (IOException e) {
+            throw new RuntimeException("Error outputting PGN: " + e.getMessage());
         }
 
-        while (moveList.length() > 80) {
-
-            int find = moveList.lastIndexOf(" ", 80);
-
-            if (find <= -1)
-                find = 79;
-
-            str += moveList.substring(0, find + 1).trim() + "\n";
-            moveList = moveList.substring(find + 1);
+        return str.toString();
 
-        }
-        str += moveList;
-        str += "\n";
-
-        return str;
     }
 
     /**
@@ -290,163 +288,198 @@ public class PGNParser {
      */
     private void parse() throws Exception {
 
-        Matcher t = Pattern.compile(TOKEN_REGEX).matcher(text);
+        final PGNLexer t = new PGNLexer(text);
         int ravDepth = 0;
 
-        while (t.find()) {
-
-            String tok = t.group();
+        while (t.next() != PGNLexer.Type.END) {
 
-            if (tok.equals("[")) {
+            switch (t.getType()) {
 
-                if (t.find()) {
+                case TAG_OPEN: {
 
-                    String key = t.group();
+                    if (t.next() == PGNLexer.Type.END)
+                        throw new Exception("Tag started @ " + t.getStart() + ", but no key found.");
 
-                    if (t.find()) {
+                    final String key = t.getText();
 
-                        String value = String.join("", t.group().split("\""));
+                    if (t.next() == PGNLexer.Type.END)
+                        throw new Exception("Tag and key found @ " + t.getStart() + ", but no value found.");
 
-                        if (t.find()) {
+                    final String value = t.getType() == PGNLexer.Type.STRING ? t.getContent() : t.getText();
 
-                            if (t.group().equals("]")) {
+                    if (t.next() != PGNLexer.Type.TAG_CLOSE)
+                        throw new Exception("Tag @ " + t.getStart() + " not closed.");
 
-                                tags.put(key, value);
+                    tags.put(key, value);
+                    break;
 
-                            } else {
-                                throw new Exception("Tag @ " + t.start() + " not closed.");
-                            }
-
-                        } else {
-                            throw new Exception("Tag @ " + t.start() + " not closed.");
-                        }
+                }
 
-                    } else {
-                        throw new Exception("Tag and key found @ " + t.start() + ", but no value found.");
-                    }
+                case TERMINATION: {
 
-                } else {
-                    throw new Exception("Tag started @ " + t.start() + ", but no key found.");
-                }
+                    final ArrayList<PGNMove> line = getLast(ravDepth);
 
-            } else if (tok.matches("1-0|0-1|1/2-1/2|\\*")) {
+                    // A game with no moves has nothing to attach its termination to
+                    if (line.size() == 0)
+                        break;
 
-                PGNMove last = getLast(ravDepth).get(getLast(ravDepth).size() - 1);
+                    final PGNMove last = line.get(line.size() - 1);
 
-                switch (tok) {
-                    case "1-0":
+                    if (t.is('*'))
+                        last.setTermination(Result.IN_PROGRESS);
+                    else if (t.getEnd() - t.getStart() > 3)
+                        last.setTermination(Result.DRAW);
+                    else if (text.charAt(t.getStart()) == '1')
                         last.setTermination(Result.WHITE_WIN);
-                        break;
-                    case "0-1":
+                    else
                         last.setTermination(Result.BLACK_WIN);
-                        break;
-                    case "1/2-1/2":
-                        last.setTermination(Result.DRAW);
-                        break;
-                    case "*":
-                        last.setTermination(Result.IN_PROGRESS);
+
+                    break;
 
                 }
 
                 // Comments
-            } else if (tok.matches("\\{[^}]*\\}|\\;([^\\n]*)")) {
+                case COMMENT:
+                case LINE_COMMENT: {
 
-                boolean eol = tok.startsWith(";");
-                String comment = eol ? tok.substring(1) : tok.substring(1, tok.length() - 1);
+                    final String comment = t.getContent();
 
-                if (moves.size() == 0)
-                    comments.add(comment);
-                else
-                    getLast(ravDepth).get(getLast(ravDepth).size() - 1).getComments()
-                            .add(comment.replaceAll("\n", " "));
+                    if (moves.size() == 0)
+                        comments.add(comment);
+                    else
+                        getLast(ravDepth).get(getLast(ravDepth).size() - 1).getComments()
+                                .add(comment.replace('\n', ' '));
+
+                    break;
+
+                }
 
                 // NAGs
-            } else if (tok.matches("\\$[\\d]+")) {
+                case NAG: {
+
+                    if (getLast(ravDepth).size() == 0)
+                        throw new Exception("Error @ " + t.getStart() + ". NAG given before a move.");
+
+                    try {
+                        getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(t.getInt());
+                    } catch (NumberFormatException e) {
+                        throw new Exception("Error @ " + t.getStart() + ". Invalid NAG.");
+                    }
 
-                if (getLast(ravDepth).size() == 0)
-                    throw new Exception("Error @ " + t.start() + ". NAG given before a move.");
+                    break;
 
-                try {
-                    getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(Integer.parseInt(tok.substring(1)));
-                } catch (Exception e) {
-                    throw new Exception("Error @ " + t.start() + ". Invalid NAG.");
                 }
 
                 // Suffixes
-            } else if (tok.matches("[?!]{1,2}")) {
-
-                if (getLast(ravDepth).size() == 0)
-                    throw new Exception("Error @ " + t.start() + ". Suffix given before a move.");
+                case SUFFIX: {
+
+                    if (getLast(ravDepth).size() == 0)
+                        throw new Exception("Error @ " + t.getStart() + ". Suffix given before a move.");
+
+                    final int nag;
+
+                    switch (t.getText()) {
+                        case "!":
+                            nag = 1;
+                            break;
+                        case "?":
+                            nag = 2;
+                            break;
+                        case "!!":
+                            nag = 3;
+                            break;
+                        case "!?":
+                            nag = 4;
+                            break;
+                        case "?!":
+                            nag = 5;
+                            break;
+                        case "??":
+                            nag = 6;
+                            break;
+                        default:
+                            throw new Exception("Error @ " + t.getStart() + ". Invalid suffix.");
+                    }
 
-                switch (tok) {
+                    getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(nag);
+                    break;
 
-                    case "!":
-                        getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(1);
-                        break;
-                    case "?":
-                        getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(2);
-                        break;
-                    case "!!":
-                        getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(3);
-                        break;
-                    case "!?":
-                        getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(4);
-                        break;
-                    case "?!":
-                        getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(5);
-                        break;
-                    case "??":
-                        getLast(ravDepth).get(getLast(ravDepth).size() - 1).setNag(6);
-                        break;
-                    default:
-                        throw new Exception("Error @ " + t.start() + ". Invalid suffix.");
                 }
 
                 // RAV
-            } else if (tok.matches("\\(")) {
+                case RAV_OPEN: {
+
+                    ++ravDepth;
+
+                    if (moves.size() == 0)
+                        throw new Exception("Error @ " + t.getStart() + ". RAV given before a move.");
 
-                ++ravDepth;
+                    ArrayList<ArrayList<PGNMove>> a = moves.get(moves.size() - 1).getRav();
+                    for (int i = 1; i < ravDepth; i++) {
 
-                if (moves.size() == 0)
-                    throw new Exception("Error @ " + t.start() + ". RAV given before a move.");
+                        ArrayList<PGNMove> r = a.get(a.size() - 1);
+                        a = r.get(r.size() - 1).getRav();
 
-                ArrayList<ArrayList<PGNMove>> a = moves.get(moves.size() - 1).getRav();
-                for (int i = 1; i < ravDepth; i++) {
+                    }
 
-                    ArrayList<PGNMove> r = a.get(a.size() - 1);
-                    a = r.get(r.size() - 1).getRav();
+                    a.add(new ArrayList<PGNMove>());
+                    break;
 
                 }
 
-                a.add(new ArrayList<PGNMove>());
+                case RAV_CLOSE: {
+
+                    --ravDepth;
+
+                    if (ravDepth < 0)
+                        throw new Exception("Error @ " + t.getStart() + ". Unmatched closing parentheses.");
+
+                    break;
+
+                }
 
                 // Move numbers
-            } else if (tok.matches("\\)")) {
-                --ravDepth;
+                case NUMBER: {
+
+                    final int expected = ravDepth == 0 ? (moves.size() + 2) / 2
+                            : (getLast(ravDepth - 1).get(getLast(ravDepth - 1).size() - 1).getMoveNumber() + 2
+                                    + getLast(ravDepth).size()) / 2;
+
+                    int number;
+
+                    try {
+                        number = t.getInt();
+                    } catch (NumberFormatException e) {
+                        number = -1;
+                    }
+
+                    if (number != expected)
+                        throw new Exception("Error @ " + t.getStart() + ". Unexpected move number.");
+
+                    break;
 
-                if (ravDepth < 0)
-                    throw new Exception("Error @ " + t.start() + ". Unmatched closing parentheses.");
+                }
 
-            } else if (tok.matches("[\\d]+")) {
+                case SYMBOL: {
 
-                if ((ravDepth == 0 && (int) Math.ceil((moves.size() + 1) / 2.0) != Integer.parseInt(tok))
-                        || (ravDepth > 0 && (int) Math
-                                .ceil((getLast(ravDepth - 1).get(getLast(ravDepth - 1).size() - 1).getMoveNumber() + 1
-                                        + getLast(ravDepth).size()) / 2.0) != Integer.parseInt(tok)))
-                    throw new Exception("Error @ " + t.start() + ". Unexpected move number.");
+                    if (ravDepth == 0)
+                        moves.add(new PGNMove(t.getText(), moves.size()));
+                    else {
 
-            } else if (tok.matches("[A-Za-z0-9][A-Za-z0-9_+#=:\\-]*")) {
+                        ArrayList<PGNMove> a = getLast(ravDepth);
+                        a.add(new PGNMove(t.getText(),
+                                getLast(ravDepth - 1).get(getLast(ravDepth - 1).size() - 1).getMoveNumber()
+                                        + a.size()));
 
-                if (ravDepth == 0)
-                    moves.add(new PGNMove(tok, moves.size()));
-                else {
+                    }
 
-                    ArrayList<PGNMove> a = getLast(ravDepth);
-                    a.add(new PGNMove(tok,
-                            getLast(ravDepth - 1).get(getLast(ravDepth - 1).size() - 1).getMoveNumber() + a.size()));
+                    break;
 
                 }
 
+                default:
+                    break;
+
             }
 
         }
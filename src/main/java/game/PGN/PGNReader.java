@@ -0,0 +1,702 @@
+package game.PGN;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the games of a {@code .pgn} file that may contain any number of games,
+ * one at a time, without reading the whole file into memory. Each game is
+ * returned as an {@link Entry}, which can be parsed with {@link PGNParser}.
+ * 
+ * <p>
+ * A new game starts at a tag line (a line starting with {@code [}) that follows
+ * the movetext of the previous game, or at the first line after a game
+ * termination marker. Only one game is held in memory at a time, and games
+ * longer than {@link #getMaxGameLength()} are skipped, so that one bad game does
+ * not stop the rest of the file from being read.
+ * 
+ * <p>
+ * Each entry records where it starts in the file and its length, in bytes if
+ * read from an {@link InputStream} or {@link Path}, or in characters if read
+ * from a {@link Reader}, so that a game that cannot be parsed can be found and
+ * logged.
+ */
+public class PGNReader implements Iterator<PGNReader.Entry>, Closeable {
+
+    /** The default maximum length of a game, in bytes or characters. */
+    public static final int DEFAULT_MAX_GAME_LENGTH = 1 << 20;
+
+    /** The size of the buffer the input is read through. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * A game read from a {@code .pgn} file, which is parsed the first time it is
+     * requested.
+     */
+    public static class Entry {
+
+        /** The index of this game in the file, starting at {@code 0}. */
+        private final long index;
+
+        /** The offset of the first line of this game in the file. */
+        private final long offset;
+
+        /**
+         * The length of this game in the file, including any blank lines after it.
+         */
+        private final long length;
+
+        /**
+         * The text of this game, or {@code null} if it was longer than the maximum
+         * length.
+         */
+        private final String text;
+
+        /** The parsed game, or {@code null} if it has not been parsed or is invalid. */
+        private PGNParser parser;
+
+        /**
+         * The error found when reading or parsing this game, or {@code null} if
+         * there was none.
+         */
+        private Exception error;
+
+        /**
+         * Creates a new entry.
+         * 
+         * @param index  The index of the game in the file.
+         * @param offset The offset of the first line of the game.
+         * @param length The length of the game.
+         * @param text   The text of the game, or {@code null} if it was too long.
+         * @param error  The error found when reading the game, if any.
+         */
+        private Entry(long index, long offset, long length, String text, Exception error) {
+
+            this.index = index;
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+            this.error = error;
+
+        }
+
+        /**
+         * Gets the index of this game in the file.
+         * 
+         * @return {@link #index}
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the offset of the first line of this game in the file.
+         * 
+         * @return {@link #offset}
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Gets the length of this game in the file.
+         * 
+         * @return {@link #length}
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Gets the text of this game.
+         * 
+         * @return {@link #text}
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Parses this game, if it has not been parsed yet.
+         * 
+         * @return The parsed game.
+         * @throws Exception If the game was too long or could not be parsed.
+         */
+        public synchronized PGNParser getParser() throws Exception {
+
+            if (error != null)
+                throw error;
+
+            if (parser == null) {
+
+                try {
+                    parser = new PGNParser(text);
+                } catch (Exception e) {
+                    error = new Exception("Error parsing game " + (index + 1) + " @ " + offset + ". "
+                            + e.getMessage());
+                    throw error;
+                }
+
+            }
+
+            return parser;
+
+        }
+
+        /**
+         * Parses this game, if it has not been parsed yet, and gets the error
+         * found when reading or parsing it.
+         * 
+         * @return The error, or {@code null} if the game was parsed.
+         */
+        public Exception getError() {
+
+            try {
+                getParser();
+            } catch (Exception e) {
+                return e;
+            }
+
+            return null;
+
+        }
+
+    }
+
+    /** The stream being read, or {@code null} if a {@link Reader} is being read. */
+    private final InputStream in;
+
+    /** The reader being read, or {@code null} if a stream is being read. */
+    private final Reader reader;
+
+    /** The character set the bytes of {@link #in} are decoded with. */
+    private final Charset charset;
+
+    /**
+     * The maximum length of a game that will be kept in memory, in bytes if a
+     * stream is being read or characters if a {@link Reader} is, like
+     * {@link #offset}.
+     */
+    private final int maxGameLength;
+
+    /** The bytes read from {@link #in} that have not been used yet. */
+    private final byte[] bytes;
+
+    /** The characters read from {@link #reader} that have not been used yet. */
+    private final char[] chars;
+
+    /** The index of the next unused byte or character in the buffer. */
+    private int bufferPos;
+
+    /** The number of bytes or characters in the buffer. */
+    private int bufferLimit;
+
+    /** The bytes of the line being read. Grows up to {@link #maxGameLength}. */
+    private byte[] lineBytes;
+
+    /** The line being read, if a {@link Reader} is being read. */
+    private final StringBuilder lineChars;
+
+    /** The offset of the next line in the file. */
+    private long offset;
+
+    /**
+     * A line that has been read but belongs to the next game, or {@code null} if
+     * there is none.
+     */
+    private String pendingLine;
+
+    /** The offset of {@link #pendingLine}. */
+    private long pendingOffset;
+
+    /** The offset of the line after {@link #pendingLine}. */
+    private long pendingEnd;
+
+    /** Whether or not the line most recently read was longer than the maximum. */
+    private boolean lineTooLong;
+
+    /** The next game, or {@code null} if it has not been read yet. */
+    private Entry next;
+
+    /** The number of games read so far. */
+    private long count;
+
+    /** Whether or not the end of the file has been reached. */
+    private boolean ended;
+
+    /**
+     * Creates a reader of the given UTF-8 stream. The stream is closed once the
+     * reader is closed.
+     * 
+     * @param in The stream to read.
+     */
+    public PGNReader(InputStream in) {
+        this(in, StandardCharsets.UTF_8, DEFAULT_MAX_GAME_LENGTH);
+    }
+
+    /**
+     * Creates a reader of the given stream. The stream is closed once the reader
+     * is closed.
+     * 
+     * @param in            The stream to read.
+     * @param charset       The character set of the stream.
+     * @param maxGameLength The maximum length of a game, in bytes. Longer games
+     *                      are skipped.
+     */
+    public PGNReader(InputStream in, Charset charset, int maxGameLength) {
+
+        this.in = in;
+        this.reader = null;
+        this.charset = charset;
+        this.maxGameLength = maxGameLength;
+        this.bytes = new byte[BUFFER_SIZE];
+        this.chars = null;
+        this.lineBytes = new byte[256];
+        this.lineChars = null;
+
+    }
+
+    /**
+     * Creates a reader of the given reader. Offsets and lengths are in characters.
+     * The reader is closed once this reader is closed.
+     * 
+     * @param reader The reader to read.
+     */
+    public PGNReader(Reader reader) {
+        this(reader, DEFAULT_MAX_GAME_LENGTH);
+    }
+
+    /**
+     * Creates a reader of the given reader. Offsets and lengths are in characters.
+     * The reader is closed once this reader is closed.
+     * 
+     * @param reader        The reader to read.
+     * @param maxGameLength The maximum length of a game, in characters. Longer
+     *                      games are skipped.
+     */
+    public PGNReader(Reader reader, int maxGameLength) {
+
+        this.in = null;
+        this.reader = reader;
+        this.charset = null;
+        this.maxGameLength = maxGameLength;
+        this.bytes = null;
+        this.chars = new char[BUFFER_SIZE];
+        this.lineBytes = null;
+        this.lineChars = new StringBuilder();
+
+    }
+
+    /**
+     * Creates a reader of the UTF-8 file at the given path.
+     * 
+     * @param path The path of the file.
+     * @throws IOException If the file could not be opened.
+     */
+    public PGNReader(Path path) throws IOException {
+        this(Files.newInputStream(path));
+    }
+
+    /**
+     * Gets the maximum length of a game that will be kept in memory, in bytes if
+     * a stream is being read or characters if a {@link Reader} is.
+     * 
+     * @return {@link #maxGameLength}
+     */
+    public int getMaxGameLength() {
+        return maxGameLength;
+    }
+
+    /**
+     * Gets the offset in the file of the next line that will be read.
+     * 
+     * @return {@link #offset}
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Checks if there is another game in the file.
+     * 
+     * @return Whether or not there is another game.
+     * @throws RuntimeException If the file could not be read.
+     */
+    @Override
+    public boolean hasNext() throws RuntimeException {
+
+        if (next == null && !ended) {
+
+            try {
+                next = readGame();
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading PGN @ " + offset + ": " + e.getMessage());
+            }
+
+        }
+
+        return next != null;
+
+    }
+
+    /**
+     * Reads the next game in the file.
+     * 
+     * @return The next game.
+     * @throws NoSuchElementException If there are no more games.
+     * @throws RuntimeException       If the file could not be read.
+     */
+    @Override
+    public Entry next() throws RuntimeException {
+
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        final Entry entry = next;
+        next = null;
+
+        return entry;
+
+    }
+
+    /**
+     * Gets a sequential stream of the remaining games in the file.
+     * 
+     * @return The stream of games.
+     */
+    public Stream<Entry> stream() {
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Error closing PGN: " + e.getMessage());
+                    }
+                });
+
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        ended = true;
+
+        if (in != null)
+            in.close();
+        else
+            reader.close();
+
+    }
+
+    /**
+     * Reads the lines of the next game.
+     * 
+     * @return The next game, or {@code null} if there are no more games.
+     * @throws IOException If the file could not be read.
+     */
+    private Entry readGame() throws IOException {
+
+        final StringBuilder text = new StringBuilder();
+        long start = -1;
+        boolean tooLong = false;
+
+        boolean movetext = false;
+        boolean inComment = false;
+        boolean terminated = false;
+
+        while (true) {
+
+            final long lineOffset;
+            final long lineEnd;
+            String line;
+
+            if (pendingLine != null) {
+
+                line = pendingLine;
+                lineOffset = pendingOffset;
+                lineEnd = pendingEnd;
+                pendingLine = null;
+
+            } else {
+
+                lineOffset = offset;
+                line = readLine();
+                lineEnd = offset;
+
+                if (line == null) {
+                    ended = true;
+                    break;
+                }
+
+                if (lineOffset == 0 && line.startsWith("\uFEFF"))
+                    line = line.substring(1);
+
+            }
+
+            final String trimmed = line.trim();
+
+            if (trimmed.isEmpty()) {
+
+                if (start >= 0 && !tooLong)
+                    text.append('\n');
+
+                continue;
+
+            }
+
+            // The start of the next game
+            if (start >= 0 && !inComment && (terminated || (movetext && trimmed.startsWith("[")))) {
+
+                pendingLine = line;
+                pendingOffset = lineOffset;
+                pendingEnd = lineEnd;
+
+                return createEntry(start, lineOffset, text, tooLong);
+
+            }
+
+            if (start < 0)
+                start = lineOffset;
+
+            // Measured in the units of the offsets, so bytes of a stream are
+            // counted as read rather than as the characters they decode to
+            if (lineTooLong || lineEnd - start > maxGameLength)
+                tooLong = true;
+
+            if (!tooLong)
+                text.append(line).append('\n');
+
+            if (inComment || !trimmed.startsWith("[")) {
+
+                movetext = true;
+                inComment = isInComment(trimmed, inComment);
+                terminated = !inComment && isTerminated(trimmed);
+
+            }
+
+        }
+
+        return start < 0 ? null : createEntry(start, offset, text, tooLong);
+
+    }
+
+    /**
+     * Creates the entry of a game that has been read.
+     * 
+     * @param start   The offset of the first line of the game.
+     * @param end     The offset of the first line after the game.
+     * @param text    The text of the game.
+     * @param tooLong Whether or not the game was longer than the maximum length.
+     * @return The entry.
+     */
+    private Entry createEntry(long start, long end, StringBuilder text, boolean tooLong) {
+
+        final long index = count++;
+
+        if (tooLong) {
+
+            return new Entry(index, start, end - start, null, new Exception(
+                    "Game " + (index + 1) + " @ " + start + " is longer than " + maxGameLength + "."));
+
+        }
+
+        return new Entry(index, start, end - start, text.toString(), null);
+
+    }
+
+    /**
+     * Checks if a comment is still open at the end of a line of movetext.
+     * 
+     * @param line      The line.
+     * @param inComment Whether or not a comment was open at the start of the line.
+     * @return Whether or not a comment is open at the end of the line.
+     */
+    private static boolean isInComment(String line, boolean inComment) {
+
+        for (int i = 0; i < line.length(); i++) {
+
+            final char c = line.charAt(i);
+
+            if (inComment) {
+
+                if (c == '}')
+                    inComment = false;
+
+            } else if (c == '{') {
+                inComment = true;
+            } else if (c == ';') {
+                // The rest of the line is a comment
+                return false;
+            }
+
+        }
+
+        return inComment;
+
+    }
+
+    /**
+     * Checks if a line of movetext ends with a game termination marker.
+     * 
+     * @param line The line.
+     * @return Whether or not the line ends the game.
+     */
+    private static boolean isTerminated(String line) {
+
+        if (line.indexOf(';') >= 0)
+            return false;
+
+        return line.endsWith("1-0") || line.endsWith("0-1") || line.endsWith("1/2-1/2")
+                || (line.endsWith("*") && (line.length() == 1 || Character.isWhitespace(line.charAt(line.length() - 2))));
+
+    }
+
+    /**
+     * Reads the next line of the file, not including the line terminator, and
+     * advances {@link #offset} past it. Sets {@link #lineTooLong} if the line was
+     * longer than {@link #maxGameLength}, in which case only the start of it is
+     * returned.
+     * 
+     * @return The line, or {@code null} if the end of the file has been reached.
+     * @throws IOException If the file could not be read.
+     */
+    private String readLine() throws IOException {
+
+        lineTooLong = false;
+
+        if (in != null) {
+
+            int length = 0;
+            boolean read = false;
+
+            while (true) {
+
+                if (bufferPos >= bufferLimit) {
+
+                    bufferLimit = in.read(bytes, 0, bytes.length);
+                    bufferPos = 0;
+
+                    if (bufferLimit <= 0) {
+                        bufferLimit = 0;
+                        break;
+                    }
+
+                }
+
+                read = true;
+
+                int end = bufferPos;
+                while (end < bufferLimit && bytes[end] != '\n')
+                    end++;
+
+                final int n = end - bufferPos;
+                final int kept = Math.min(n, maxGameLength - length);
+
+                if (kept < n)
+                    lineTooLong = true;
+
+                if (kept > 0) {
+
+                    if (length + kept > lineBytes.length)
+                        lineBytes = Arrays.copyOf(lineBytes,
+                                Math.min(maxGameLength, Math.max(length + kept, lineBytes.length * 2)));
+
+                    System.arraycopy(bytes, bufferPos, lineBytes, length, kept);
+                    length += kept;
+
+                }
+
+                offset += n;
+                bufferPos = end;
+
+                if (end < bufferLimit) {
+
+                    // Skip the line feed
+                    bufferPos++;
+                    offset++;
+                    break;
+
+                }
+
+            }
+
+            if (!read)
+                return null;
+
+            if (length > 0 && lineBytes[length - 1] == '\r')
+                length--;
+
+            return new String(lineBytes, 0, length, charset);
+
+        }
+
+        lineChars.setLength(0);
+        boolean read = false;
+
+        while (true) {
+
+            if (bufferPos >= bufferLimit) {
+
+                bufferLimit = reader.read(chars, 0, chars.length);
+                bufferPos = 0;
+
+                if (bufferLimit <= 0) {
+                    bufferLimit = 0;
+                    break;
+                }
+
+            }
+
+            read = true;
+
+            int end = bufferPos;
+            while (end < bufferLimit && chars[end] != '\n')
+                end++;
+
+            final int n = end - bufferPos;
+            final int kept = Math.min(n, maxGameLength - lineChars.length());
+
+            if (kept < n)
+                lineTooLong = true;
+
+            lineChars.append(chars, bufferPos, kept);
+
+            offset += n;
+            bufferPos = end;
+
+            if (end < bufferLimit) {
+
+                bufferPos++;
+                offset++;
+                break;
+
+            }
+
+        }
+
+        if (!read)
+            return null;
+
+        if (lineChars.length() > 0 && lineChars.charAt(lineChars.length() - 1) == '\r')
+            lineChars.setLength(lineChars.length() - 1);
+
+        return lineChars.toString();
+
+    }
+
+}
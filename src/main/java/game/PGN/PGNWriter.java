@@ -0,0 +1,386 @@
+package game.PGN;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes games in PGN format to a {@link Writer} as they are output, without
+ * building the text of a game first. The movetext is wrapped in the same pass
+ * it is written in, by keeping track of the length of the current line and
+ * starting a new line before any token that would not fit.
+ * 
+ * <p>
+ * Games written one after another are separated by a blank line, so a writer
+ * can export any number of games to a single {@code .pgn} file.
+ */
+public class PGNWriter implements Closeable, Flushable {
+
+    /** The length of each line of movetext by default. */
+    public static final int DEFAULT_LINE_LENGTH = 80;
+
+    /** The tags that are always output first, in this order. */
+    private static final String[] SEVEN_TAG_ROSTER = { "Event", "Site", "Date", "Round", "White", "Black",
+            "Result" };
+
+    /** The values of the {@link #SEVEN_TAG_ROSTER} tags if they are missing. */
+    private static final String[] SEVEN_TAG_DEFAULTS = { "?", "?", "????.??.??", "-", "?", "?", "*" };
+
+    /** The writer the games are written to. */
+    private final Writer out;
+
+    /**
+     * The most characters on each line of movetext, or {@code 0} if the movetext
+     * is not wrapped. Tokens longer than a line are written on a line of their
+     * own.
+     */
+    private final int lineLength;
+
+    /** The number of characters on the current line of movetext. */
+    private int column;
+
+    /**
+     * Whether or not a variation was started, in which case an opening
+     * parenthesis is written directly before the next token.
+     */
+    private boolean openParenthesis;
+
+    /** The number of games that have been written. */
+    private int count;
+
+    /**
+     * Creates a new writer that wraps movetext at {@link #DEFAULT_LINE_LENGTH}
+     * characters.
+     * 
+     * @param out The writer to write the games to.
+     */
+    public PGNWriter(Writer out) {
+        this(out, DEFAULT_LINE_LENGTH);
+    }
+
+    /**
+     * Creates a new writer.
+     * 
+     * @param out        The writer to write the games to.
+     * @param lineLength The most characters on each line of movetext, or
+     *                   {@code 0} to not wrap the movetext.
+     */
+    public PGNWriter(Writer out, int lineLength) {
+
+        if (lineLength < 0)
+            throw new IllegalArgumentException("Line length must not be negative.");
+
+        this.out = out;
+        this.lineLength = lineLength;
+
+    }
+
+    /**
+     * Gets the number of games that have been written.
+     * 
+     * @return {@link #count}
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Writes a game, with its tags.
+     * 
+     * @param pgn The game.
+     * @throws IOException If the game could not be written.
+     */
+    public void write(PGNParser pgn) throws IOException {
+        write(pgn, true);
+    }
+
+    /**
+     * Writes a game.
+     * 
+     * @param pgn         The game.
+     * @param includeTags Whether or not to include the tags. If {@code false},
+     *                    only the movetext will be written.
+     * @throws IOException If the game could not be written.
+     */
+    public void write(PGNParser pgn, boolean includeTags) throws IOException {
+
+        if (count > 0)
+            out.write('\n');
+
+        if (includeTags) {
+            writeTags(pgn.getTags());
+            out.write('\n');
+        }
+
+        column = 0;
+
+        for (String comment : pgn.getComments())
+            writeComment(comment);
+
+        writeMoves(pgn.getMoves(), true);
+
+        out.write('\n');
+        ++count;
+
+    }
+
+    /**
+     * Writes the tags of a game, starting with the seven tag roster.
+     * 
+     * @param tags The tags.
+     * @throws IOException If the tags could not be written.
+     */
+    public void writeTags(Map<String, String> tags) throws IOException {
+
+        for (int i = 0; i < SEVEN_TAG_ROSTER.length; i++)
+            writeTag(SEVEN_TAG_ROSTER[i], tags.getOrDefault(SEVEN_TAG_ROSTER[i], SEVEN_TAG_DEFAULTS[i]));
+
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+
+            if (!isSevenTagRoster(tag.getKey()))
+                writeTag(tag.getKey(), tag.getValue());
+
+        }
+
+    }
+
+    /**
+     * Writes a sequence of moves, with their NAGs, comments, variations and
+     * terminations.
+     * 
+     * <p>
+     * The number of a move is written before each white move, and before a black
+     * move that does not follow its white move directly, such as the first move of
+     * a variation or a move after a comment.
+     * 
+     * @param moves    The moves.
+     * @param mainLine Whether or not the moves are the main line of a game. The
+     *                 moves of the main line are numbered by their index, and the
+     *                 moves of a variation by their move number.
+     * @throws IOException If the moves could not be written.
+     */
+    private void writeMoves(List<PGNMove> moves, boolean mainLine) throws IOException {
+
+        boolean interrupted = true;
+
+        for (int i = 0; i < moves.size(); i++) {
+
+            final PGNMove move = moves.get(i);
+            final int ply = mainLine ? i : move.getMoveNumber();
+            final boolean black = ply % 2 != 0;
+
+            if (!black)
+                writeToken((ply / 2 + 1) + ".");
+            else if (interrupted)
+                writeToken((ply / 2 + 1) + "...");
+
+            writeToken(move.getMoveText());
+
+            if (move.getNag() > 0)
+                writeToken("$" + move.getNag());
+
+            for (String comment : move.getComments())
+                writeComment(comment);
+
+            for (List<PGNMove> rav : move.getRav()) {
+
+                // The parenthesis is written with the first token of the variation
+                openParenthesis = true;
+                writeMoves(rav, false);
+
+                if (openParenthesis)
+                    startToken(0);
+
+                if (lineLength > 0 && column + 1 > lineLength) {
+                    out.write('\n');
+                    column = 0;
+                }
+
+                out.write(')');
+                ++column;
+
+            }
+
+            if (move.getTermination() != null)
+                writeTermination(move);
+
+            interrupted = move.getComments().size() > 0 || move.getNag() != 0 || move.getRav().size() > 0;
+
+        }
+
+    }
+
+    /**
+     * Writes the termination marker after a move, if it has one that ends the
+     * game.
+     * 
+     * @param move The move.
+     * @throws IOException If the marker could not be written.
+     */
+    private void writeTermination(PGNMove move) throws IOException {
+
+        switch (move.getTermination()) {
+            case WHITE_WIN:
+                writeToken("1-0");
+                break;
+            case BLACK_WIN:
+                writeToken("0-1");
+                break;
+            case DRAW:
+                writeToken("1/2-1/2");
+                break;
+            case IN_PROGRESS:
+                writeToken("*");
+                break;
+            default:
+                break;
+        }
+
+    }
+
+    /**
+     * Writes a comment in braces. The comment is wrapped at its whitespace like
+     * the rest of the movetext.
+     * 
+     * @param comment The text of the comment.
+     * @throws IOException If the comment could not be written.
+     */
+    private void writeComment(String comment) throws IOException {
+
+        int start = 0;
+        boolean first = true;
+
+        while (true) {
+
+            while (start < comment.length() && Character.isWhitespace(comment.charAt(start)))
+                ++start;
+
+            int end = start;
+            while (end < comment.length() && !Character.isWhitespace(comment.charAt(end)))
+                ++end;
+
+            int rest = end;
+            while (rest < comment.length() && Character.isWhitespace(comment.charAt(rest)))
+                ++rest;
+
+            final boolean last = rest >= comment.length();
+
+            startToken((end - start) + (first ? 1 : 0) + (last ? 1 : 0));
+
+            if (first)
+                out.write('{');
+
+            out.write(comment, start, end - start);
+
+            if (last)
+                out.write('}');
+
+            column += (end - start) + (first ? 1 : 0) + (last ? 1 : 0);
+
+            if (last)
+                break;
+
+            start = end;
+            first = false;
+
+        }
+
+    }
+
+    /**
+     * Writes a token of movetext.
+     * 
+     * @param token The token.
+     * @throws IOException If the token could not be written.
+     */
+    private void writeToken(String token) throws IOException {
+
+        startToken(token.length());
+        out.write(token);
+        column += token.length();
+
+    }
+
+    /**
+     * Writes the space before a token of movetext, or starts a new line if the
+     * token would not fit on the current one. Also writes the opening parenthesis
+     * of a variation that was just started.
+     * 
+     * @param length The length of the token.
+     * @throws IOException If the space could not be written.
+     */
+    private void startToken(int length) throws IOException {
+
+        if (openParenthesis)
+            ++length;
+
+        if (column > 0) {
+
+            if (lineLength > 0 && column + 1 + length > lineLength) {
+                out.write('\n');
+                column = 0;
+            } else {
+                out.write(' ');
+                ++column;
+            }
+
+        }
+
+        if (openParenthesis) {
+            out.write('(');
+            ++column;
+            openParenthesis = false;
+        }
+
+    }
+
+    /**
+     * Writes a tag pair on its own line.
+     * 
+     * @param key   The key of the tag.
+     * @param value The value of the tag.
+     * @throws IOException If the tag could not be written.
+     */
+    private void writeTag(String key, String value) throws IOException {
+
+        out.write('[');
+        out.write(key);
+        out.write(" \"");
+        out.write(value);
+        out.write("\"]\n");
+
+    }
+
+    /**
+     * Gets whether or not the given tag is one of the seven tag roster.
+     * 
+     * @param key The key of the tag.
+     * @return Whether or not the tag is always output first.
+     */
+    private static boolean isSevenTagRoster(String key) {
+
+        for (String tag : SEVEN_TAG_ROSTER) {
+
+            if (tag.equals(key))
+                return true;
+
+        }
+
+        return false;
+
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
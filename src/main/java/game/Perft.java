@@ -0,0 +1,166 @@
+package game;
+
+import java.io.PrintStream;
+
+/**
+ * Counts the leaf nodes of the legal move tree of a position to a given depth,
+ * used to validate and time the move generation of {@link Position}.
+ * 
+ * <p>
+ * Run from the command line as {@code Perft <fen> <depth>}, it prints the node
+ * count below each legal move of the position (divide), the total and the nodes
+ * per second. The regression suite of standard and Chess960 positions is
+ * {@code PerftTest}, run by {@code gradle test}.
+ * 
+ * <p>
+ * See: <a href=
+ * "https://www.chessprogramming.org/Perft_Results">https://www.chessprogramming.org/Perft_Results</a>
+ */
+public final class Perft {
+
+    /**
+     * Runs perft from the command line.
+     * 
+     * @param args A FEN and a depth.
+     */
+    public static void main(String[] args) {
+
+        if (args.length == 2) {
+
+            final int depth;
+
+            try {
+                depth = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid depth.");
+            }
+
+            if (depth < 1)
+                throw new RuntimeException("Depth must be at least 1.");
+
+            final long start = System.nanoTime();
+            final long nodes = divide(new Position(args[0]), depth, System.out);
+            final long time = System.nanoTime() - start;
+
+            System.out.println();
+            System.out.println("Nodes: " + nodes);
+            System.out.println("Time: " + (time / 1000000) + " ms");
+            System.out.println("NPS: " + getNodesPerSecond(nodes, time));
+
+        } else {
+
+            System.out.println("Usage: Perft <fen> <depth>");
+
+        }
+
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree of the given position, by
+     * making and unmaking each move on it. The position is the same once this
+     * returns.
+     * 
+     * @param position The position to count from.
+     * @param depth    The depth to count to.
+     * @return The number of leaf nodes.
+     */
+    public static long perft(Position position, int depth) {
+
+        if (depth == 0)
+            return 1;
+
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        final int count = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+        if (depth == 1)
+            return count;
+
+        long nodes = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            position.makeMove(buffer[i]);
+            nodes += perft(position, depth - 1);
+            position.unmakeMove();
+
+        }
+
+        return nodes;
+
+    }
+
+    /**
+     * Counts the leaf nodes below each legal move of the given position, printing
+     * the count of each move in long algebraic notation.
+     * 
+     * @param position The position to count from.
+     * @param depth    The depth to count to, which should be at least 1.
+     * @param out      The stream to print the counts to.
+     * @return The total number of leaf nodes.
+     */
+    public static long divide(Position position, int depth, PrintStream out) {
+
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        final int count = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+        long total = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            final String move = toLAN(position, buffer[i]);
+
+            position.makeMove(buffer[i]);
+            final long nodes = perft(position, depth - 1);
+            position.unmakeMove();
+
+            out.println(move + ": " + nodes);
+            total += nodes;
+
+        }
+
+        return total;
+
+    }
+
+    /**
+     * Gets the long algebraic notation of an encoded move, in the same form as
+     * {@link Move#toString()}.
+     * 
+     * @param position The position the move is made from.
+     * @param move     The encoded move.
+     * @return The move in long algebraic notation.
+     */
+    private static String toLAN(Position position, int move) {
+
+        final int origin = MoveGenerator.getOrigin(move);
+        int destination = MoveGenerator.getDestination(move);
+
+        // Castle moves are denoted by the square of the rook
+        if ((move & MoveGenerator.CASTLE) != 0)
+            destination = Bitboard.square(Bitboard.file(destination) == 3 ? position.getaSideRookFile()
+                    : position.gethSideRookFile(), Bitboard.rank(destination));
+
+        String str = Bitboard.toSquare(origin).toString() + Bitboard.toSquare(destination).toString();
+
+        if (MoveGenerator.getPromoteType(move) != 0)
+            str += Character.toLowerCase(Bitboard.CODES.charAt(MoveGenerator.getPromoteType(move)));
+
+        return str;
+
+    }
+
+    /**
+     * Calculates the nodes per second.
+     * 
+     * @param nodes The number of nodes.
+     * @param nanos The time taken in nanoseconds.
+     * @return The nodes per second.
+     */
+    private static long getNodesPerSecond(long nodes, long nanos) {
+        return nanos <= 0 ? 0 : nodes * 1000000000L / nanos;
+    }
+
+    private Perft() {
+    }
+
+}
@@ -1,10 +1,9 @@
 package game;
 
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import java.util.*;
 
 import game.pieces.Bishop;
@@ -180,6 +179,62 @@ public class Position {
 
     }
 
+    /**
+     * Whether or not legal moves should be filtered in parallel on
+     * {@link #filterPool}.
+     * 
+     * @see #setParallelFiltering(boolean)
+     */
+    private static volatile boolean parallelFiltering = false;
+
+    /**
+     * The pool shared by every position for filtering legal moves in parallel.
+     * Only created once parallel filtering is first used.
+     */
+    private static ForkJoinPool filterPool;
+
+    /**
+     * Sets whether or not legal moves should be filtered in parallel, on a shared
+     * pool bounded by the number of available processors. Filtering is fast
+     * enough on a single thread in most cases, so this is off by default.
+     * 
+     * @param parallel Whether or not to filter in parallel.
+     */
+    public static void setParallelFiltering(boolean parallel) {
+        parallelFiltering = parallel;
+    }
+
+    /**
+     * Gets whether or not legal moves are filtered in parallel.
+     * 
+     * @return {@link #parallelFiltering}
+     */
+    public static boolean isParallelFiltering() {
+        return parallelFiltering;
+    }
+
+    /**
+     * Gets the pool used for filtering legal moves in parallel, creating it if it
+     * does not exist yet.
+     * 
+     * @return {@link #filterPool}
+     */
+    private static synchronized ForkJoinPool getFilterPool() {
+
+        if (filterPool == null)
+            filterPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        return filterPool;
+
+    }
+
+    /**
+     * The buffer moves are generated into, reused by every position created on
+     * the same thread.
+     */
+    private static final ThreadLocal<int[]> MOVE_BUFFER = ThreadLocal
+            .withInitial(() -> new int[MoveGenerator.MAX_MOVES]);
+
     /**
      * The number of moves made in this game (including the move that led to
      * this position.) Starts at {@code 0} for the default position as no moves have
@@ -188,7 +243,47 @@ public class Position {
     private int moveNumber;
 
     /**
-     * A 2D array that matches the board and stores the pieces.
+     * The bitboards of each piece type and color, indexed by the piece constants
+     * in {@link Bitboard}. Together with {@link #whiteOccupied} and
+     * {@link #blackOccupied}, this is the board state of the position.
+     */
+    private long[] bitboards;
+
+    /** The squares occupied by white pieces. */
+    private long whiteOccupied;
+
+    /** The squares occupied by black pieces. */
+    private long blackOccupied;
+
+    /**
+     * The Zobrist hash of this position, updated incrementally as pieces are
+     * moved.
+     * 
+     * @see Zobrist
+     */
+    private long hashKey;
+
+    /**
+     * The middlegame and endgame values of the white pieces minus those of the
+     * black pieces, packed into one number and updated as pieces are moved.
+     * 
+     * @see PieceSquareTable#getPacked(int, int)
+     */
+    private int score;
+
+    /**
+     * The phase of the game and the points of each color, packed into one number
+     * and updated as pieces are moved.
+     * 
+     * @see PieceSquareTable#getMaterial(int)
+     */
+    private int material;
+
+    /**
+     * A 2D array that matches the board and stores the pieces. Only materialized
+     * from {@link #bitboards} once it is requested.
+     * 
+     * @see #getPieces()
      */
     private Piece[][] pieces;
 
@@ -201,12 +296,6 @@ public class Position {
     /** The move that led to this position. */
     private Move move;
 
-    /** The position of the white king. */
-    private Square whiteKing;
-
-    /** The position of the black king. */
-    private Square blackKing;
-
     /**
      * Whether or not white can a-side castle.
      */
@@ -294,9 +383,28 @@ public class Position {
     private int fiftyMoveCounter;
 
     /**
-     * The square that can be en-passanted from this position.
+     * The square index that can be en-passanted from this position, or
+     * {@link Bitboard#EMPTY} if there is none.
      */
-    private Square enPassantTarget;
+    private int enPassantSquare;
+
+    /**
+     * The encoded moves made with {@link #makeMove(int)} that have not been
+     * unmade yet, with the most recent last.
+     */
+    private int[] undoMoves;
+
+    /**
+     * The state of the position before each move in {@link #undoMoves}, as packed
+     * by {@link #packState(int)}.
+     */
+    private long[] undoStates;
+
+    /** The hash of the position before each move in {@link #undoMoves}. */
+    private long[] undoKeys;
+
+    /** The number of moves in {@link #undoMoves}. */
+    private int undoCount;
 
     /** Whether or not mate has been checked. */
     private boolean mateChecked;
@@ -318,6 +426,7 @@ public class Position {
         this.moveNumber = 0;
         this.timerEnd = -1;
         this.fiftyMoveCounter = 0;
+        this.enPassantSquare = Bitboard.EMPTY;
 
         this.whiteASide = true;
         this.whiteHSide = true;
@@ -328,6 +437,8 @@ public class Position {
         this.hSideRookFile = 8;
 
         initDefaultPosition();
+        this.hashKey = Zobrist.getKey(this);
+
         initMoves(true);
 
     }
@@ -348,207 +459,43 @@ public class Position {
      */
     public Position(Position prev, Move move, char promoteType, boolean checkForMate) throws Exception {
 
-        this.pieces = new Piece[8][8];
+        this(prev);
+
         this.timerEnd = -1;
-        this.white = !move.isWhite();
-        this.moveNumber = prev.getMoveNumber() + 1;
         this.move = move;
 
-        this.whiteASide = prev.isWhiteASide();
-        this.whiteHSide = prev.isWhiteHSide();
-        this.blackASide = prev.isBlackASide();
-        this.blackHSide = prev.isBlackHSide();
-
-        this.aSideRookFile = prev.getaSideRookFile();
-        this.hSideRookFile = prev.gethSideRookFile();
-
-        Piece[][] prevPieces = prev.getPieces();
-
-        for (int r = 0; r < prevPieces.length; r++) {
-
-            for (int f = 0; f < prevPieces[r].length; f++) {
-
-                final Piece old = prevPieces[r][f];
-
-                if (old == null)
-                    continue;
-
-                Piece piece = null;
-                switch (old.getCode()) {
-                    case 'P':
-                        piece = new Pawn(old.getSquare().getFile(), old.getSquare().getRank(), old.isWhite());
-                        break;
-                    case 'K':
-                        piece = new King(old.getSquare().getFile(), old.getSquare().getRank(), old.isWhite());
-
-                        if (piece.isWhite())
-                            whiteKing = piece.getSquare();
-                        else
-                            blackKing = piece.getSquare();
-
-                        break;
-                    case 'N':
-                        piece = new Knight(old.getSquare().getFile(), old.getSquare().getRank(), old.isWhite());
-                        break;
-                    case 'Q':
-                        piece = new Queen(old.getSquare().getFile(), old.getSquare().getRank(), old.isWhite());
-                        break;
-                    case 'B':
-                        piece = new Bishop(old.getSquare().getFile(), old.getSquare().getRank(), old.isWhite());
-                        break;
-                    case 'R':
-                        piece = new Rook(old.getSquare().getFile(), old.getSquare().getRank(), old.isWhite());
-                        break;
-                }
-
-                if (piece != null)
-                    pieces[old.getSquare().getRank() - 1][old.getSquare().getFile() - 1] = piece;
-
-            }
-        }
-
-        if (move.isCapture()) {
-
-            final Square capSquare = move.getCaptureSquare();
-
-            pieces[capSquare.getRank() - 1][capSquare.getFile() - 1] = null;
-
-        }
-
-        final Piece movePiece = pieces[move.getOrigin().getRank() - 1][move.getOrigin().getFile() - 1];
-
-        if (movePiece.getCode() == 'K') {
-
-            if (movePiece.isWhite()) {
-
-                whiteKing = move.getDestination();
-                whiteASide = false;
-                whiteHSide = false;
-
-            } else {
-
-                blackKing = move.getDestination();
-                blackASide = false;
-                blackHSide = false;
-
-            }
-
-        } else if (movePiece.getCode() == 'R') {
-
-            if (movePiece.isWhite()) {
-
-                if (move.getOrigin().getFile() == aSideRookFile)
-                    whiteASide = false;
-                else if (move.getOrigin().getFile() == hSideRookFile)
-                    whiteHSide = false;
-
-            } else {
-
-                if (move.getOrigin().getFile() == aSideRookFile)
-                    blackASide = false;
-                else if (move.getOrigin().getFile() == hSideRookFile)
-                    blackHSide = false;
-
-            }
-
-        }
-
-        if (movePiece.getCode() == 'P' && move.getMoveDistance() == 2)
-            enPassantTarget = new Square(move.getDestination().getFile(),
-                    move.getDestination().getRank() + (move.isWhite() ? -1 : 1));
-
-        movePiece.setSquare(move.getDestination());
-
-        pieces[move.getOrigin().getRank() - 1][move.getOrigin().getFile() - 1] = null;
-
-        if (move.isCastle()) {
-
-            final Piece rook = getPieceAtSquare(move.getRookOrigin());
-            rook.setSquare(move.getRookDestination());
-
-            if (move.isWhite()) {
-
-                whiteASide = false;
-                whiteHSide = false;
-
-            } else {
-
-                blackASide = false;
-                blackHSide = false;
-
-            }
-
-            pieces[move.getRookOrigin().getRank() - 1][move.getRookOrigin().getFile() - 1] = null;
-            pieces[move.getRookDestination().getRank() - 1][move.getRookDestination().getFile() - 1] = rook;
-
-        }
-
-        pieces[move.getDestination().getRank() - 1][move.getDestination().getFile() - 1] = movePiece;
+        char promote = move.getPromoteType();
 
-        if (move.getPromoteType() == '?' && checkForMate) {
+        if (promote == '?' && checkForMate) {
 
             if (promoteType != 'Q' && promoteType != 'R' && promoteType != 'B' && promoteType != 'N')
                 throw new Exception("Invalid promote type.");
 
             move.setPromoteType(promoteType);
+            promote = promoteType;
 
-            final Square moveDest = move.getDestination();
-
-            switch (promoteType) {
-                case 'Q':
-                    setSquare(moveDest, new Queen(moveDest.getFile(), moveDest.getRank(), movePiece.isWhite()));
-                    break;
-                case 'R':
-                    setSquare(moveDest, new Rook(moveDest.getFile(), moveDest.getRank(), movePiece.isWhite()));
-                    break;
-                case 'B':
-                    setSquare(moveDest, new Bishop(moveDest.getFile(), moveDest.getRank(), movePiece.isWhite()));
-                    break;
-                case 'N':
-                    setSquare(moveDest, new Knight(moveDest.getFile(), moveDest.getRank(), movePiece.isWhite()));
-                    break;
-            }
-
-        } else if (move.getPromoteType() != '0' && checkForMate) {
+        } else if (promote != '0' && checkForMate) {
 
-            if (move.getPromoteType() != 'Q'
-                    && move.getPromoteType() != 'R'
-                    && move.getPromoteType() != 'B'
-                    && move.getPromoteType() != 'N')
+            if (promote != 'Q' && promote != 'R' && promote != 'B' && promote != 'N')
                 throw new Exception("Invalid promote type.");
 
-            final Square moveDest = move.getDestination();
-
-            switch (move.getPromoteType()) {
-                case 'Q':
-                    setSquare(moveDest, new Queen(moveDest.getFile(), moveDest.getRank(), movePiece.isWhite()));
-                    break;
-                case 'R':
-                    setSquare(moveDest, new Rook(moveDest.getFile(), moveDest.getRank(), movePiece.isWhite()));
-                    break;
-                case 'B':
-                    setSquare(moveDest, new Bishop(moveDest.getFile(), moveDest.getRank(), movePiece.isWhite()));
-                    break;
-                case 'N':
-                    setSquare(moveDest, new Knight(moveDest.getFile(), moveDest.getRank(), movePiece.isWhite()));
-                    break;
-            }
+        } else if (promote != '0') {
+
+            // The promotion piece does not affect legality, so any piece will do
+            promote = 'Q';
 
         }
 
+        applyMove(encode(move, promote));
+
         move.updateMoveNotation();
         initMoves(checkForMate);
 
         if (checkForMate) {
 
-            if (move.isCapture() || move.getPiece().getCode() == 'P')
-                this.fiftyMoveCounter = 0;
-            else
-                this.fiftyMoveCounter = prev.getFiftyMoveCounter() + 1;
-
             try {
 
-                opening = Opening.getOpening(this.toString(), getClass().getResourceAsStream("/tsv/openings.tsv"));
+                opening = Opening.getOpening(this);
 
                 if (opening == null)
                     opening = prev.getOpening();
@@ -562,6 +509,45 @@ public class Position {
 
     }
 
+    /**
+     * Creates a copy of the given position, that moves can be made on with
+     * {@link #makeMove(int)} without affecting the original. The list of moves,
+     * timer and redo information are not copied.
+     * 
+     * @param position The position to copy.
+     */
+    public Position(Position position) {
+
+        this.bitboards = position.bitboards.clone();
+        this.whiteOccupied = position.whiteOccupied;
+        this.blackOccupied = position.blackOccupied;
+
+        this.whiteASide = position.whiteASide;
+        this.whiteHSide = position.whiteHSide;
+        this.blackASide = position.blackASide;
+        this.blackHSide = position.blackHSide;
+
+        this.aSideRookFile = position.aSideRookFile;
+        this.hSideRookFile = position.hSideRookFile;
+
+        this.white = position.white;
+        this.moveNumber = position.moveNumber;
+        this.fiftyMoveCounter = position.fiftyMoveCounter;
+        this.enPassantSquare = position.enPassantSquare;
+        this.hashKey = position.hashKey;
+
+        this.score = position.score;
+        this.material = position.material;
+
+        this.inCheck = position.inCheck;
+        this.givingCheck = position.givingCheck;
+
+        this.move = position.move;
+        this.opening = position.opening;
+        this.timerEnd = -1;
+
+    }
+
     /**
      * Creates a new {@link Position} object from the given starting position.
      * 
@@ -574,8 +560,9 @@ public class Position {
         if (a.length != 6)
             throw new RuntimeException("Invalid FEN.");
 
-        this.pieces = new Piece[8][8];
+        this.bitboards = new long[Bitboard.PIECE_COUNT];
         this.mateChecked = false;
+        this.enPassantSquare = Bitboard.EMPTY;
 
         this.timerEnd = -1;
 
@@ -625,38 +612,15 @@ public class Position {
                 } else {
                     // Pieces
 
-                    if (!(c + "").matches("[KQBRNPkqbrnp]"))
+                    final int index = Bitboard.index(Character.toUpperCase(c), Character.isUpperCase(c));
+
+                    if (index == Bitboard.EMPTY)
                         throw new RuntimeException("Unexpected piece type.");
-                    boolean white = Character.isUpperCase(c);
-                    switch (Character.toUpperCase(c)) {
-                        case 'K':
-                            pieces[7 - r][f] = new King(f + 1, 8 - r, white);
 
-                            if (white)
-                                whiteKing = new Square(f + 1, 8 - r);
-                            else
-                                blackKing = new Square(f + 1, 8 - r);
-
-                            break;
-                        case 'Q':
-                            pieces[7 - r][f] = new Queen(f + 1, 8 - r, white);
-                            break;
-                        case 'R':
-                            pieces[7 - r][f] = new Rook(f + 1, 8 - r, white);
-                            break;
-                        case 'B':
-                            pieces[7 - r][f] = new Bishop(f + 1, 8 - r, white);
-                            break;
-                        case 'N':
-                            pieces[7 - r][f] = new Knight(f + 1, 8 - r, white);
-                            break;
-                        case 'P':
-                            pieces[7 - r][f] = new Pawn(f + 1, 8 - r, white);
-
-                            break;
-                        default:
-                            throw new RuntimeException("Unexpected piece.");
-                    }
+                    if (f > 7)
+                        throw new RuntimeException("Invalid rank.");
+
+                    putPiece(index, Bitboard.square(f + 1, 8 - r));
 
                     ++f;
 
@@ -669,13 +633,23 @@ public class Position {
         if (!a[3].equals("-")) {
 
             try {
-                enPassantTarget = new Square(a[3]);
+
+                final Square target = new Square(a[3]);
+
+                if (!target.isValid())
+                    throw new Exception();
+
+                enPassantSquare = Bitboard.square(target);
+
             } catch (Exception e) {
                 throw new RuntimeException("Invalid en passant target square.");
             }
 
         }
 
+        this.aSideRookFile = 1;
+        this.hSideRookFile = 8;
+
         if (!a[2].equals("-")) {
             for (int i = 0; i < a[2].length(); i++) {
 
@@ -683,27 +657,31 @@ public class Position {
                 switch (c) {
 
                     case 'K':
-                        whiteASide = true;
-                        aSideRookFile = 1;
-                        break;
-                    case 'Q':
                         whiteHSide = true;
                         hSideRookFile = 8;
                         break;
-                    case 'k':
-                        blackASide = true;
+                    case 'Q':
+                        whiteASide = true;
                         aSideRookFile = 1;
                         break;
-                    case 'q':
+                    case 'k':
                         blackHSide = true;
                         hSideRookFile = 8;
                         break;
+                    case 'q':
+                        blackASide = true;
+                        aSideRookFile = 1;
+                        break;
                     default:
 
                         boolean w = Character.isUpperCase(c);
                         char lc = Character.toLowerCase(c);
                         int file = lc - 96;
-                        if (file < (w ? whiteKing : blackKing).getFile()) {
+
+                        if (getKingSquare(w) == null)
+                            throw new RuntimeException("Invalid castling availability.");
+
+                        if (file < getKingSquare(w).getFile()) {
 
                             aSideRookFile = file;
 
@@ -712,7 +690,7 @@ public class Position {
                             else
                                 blackASide = true;
 
-                        } else if (file > (w ? whiteKing : blackKing).getFile()) {
+                        } else if (file > getKingSquare(w).getFile()) {
 
                             hSideRookFile = file;
 
@@ -728,11 +706,13 @@ public class Position {
             }
         }
 
+        this.hashKey = Zobrist.getKey(this);
+
         initMoves(true);
 
         try {
 
-            opening = Opening.getOpening(this.toString(), getClass().getResourceAsStream("/tsv/openings.tsv"));
+            opening = Opening.getOpening(this);
 
         } catch (RuntimeException e) {
             throw new RuntimeException(
@@ -768,10 +748,20 @@ public class Position {
     /**
      * Gets the en passant target square for this position.
      * 
-     * @return {@link #enPassantTarget}
+     * @return A new {@link Square} object of {@link #enPassantSquare}, or
+     *         {@code null} if there is no en passant target.
      */
     public Square getEnPassantTarget() {
-        return enPassantTarget;
+        return enPassantSquare == Bitboard.EMPTY ? null : Bitboard.toSquare(enPassantSquare);
+    }
+
+    /**
+     * Gets the en passant target square index for this position.
+     * 
+     * @return {@link #enPassantSquare}
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
     }
 
     /**
@@ -784,12 +774,95 @@ public class Position {
     }
 
     /**
-     * Gets the two-dimensional array of the pieces.
+     * Gets the two-dimensional array of the pieces. The array is materialized from
+     * the bitboards the first time it is requested, and the same {@link Piece}
+     * objects are returned for every following call.
      * 
      * @return {@link #pieces}
      */
     public Piece[][] getPieces() {
+
+        if (pieces == null) {
+
+            Piece[][] materialized = new Piece[8][8];
+
+            for (int i = 0; i < Bitboard.PIECE_COUNT; i++) {
+
+                for (long b = bitboards[i]; b != 0; b &= b - 1) {
+
+                    final int square = Bitboard.first(b);
+                    materialized[Bitboard.rank(square) - 1][Bitboard.file(square) - 1] = createPiece(i, square);
+
+                }
+
+            }
+
+            pieces = materialized;
+
+        }
+
         return pieces;
+
+    }
+
+    /**
+     * Gets the bitboard of the given piece type and color.
+     * 
+     * @param index The bitboard index, such as {@link Bitboard#WHITE_KNIGHT}.
+     * @return The squares occupied by that piece.
+     */
+    public long getBitboard(int index) {
+        return bitboards[index];
+    }
+
+    /**
+     * Gets the squares occupied by the pieces of the given color.
+     * 
+     * @param white The color of the pieces.
+     * @return The squares occupied by that color.
+     */
+    public long getOccupied(boolean white) {
+        return white ? whiteOccupied : blackOccupied;
+    }
+
+    /**
+     * Gets the squares occupied by any piece.
+     * 
+     * @return The occupied squares.
+     */
+    public long getOccupied() {
+        return whiteOccupied | blackOccupied;
+    }
+
+    /**
+     * Gets the bitboard index of the piece on the given square.
+     * 
+     * @param square The square index, from 0-63.
+     * @return The bitboard index of the piece, or {@link Bitboard#EMPTY} if there is
+     *         no piece on the square.
+     */
+    public int getPieceIndex(int square) {
+
+        final long bit = Bitboard.bit(square);
+
+        if ((whiteOccupied & bit) != 0) {
+
+            for (int i = Bitboard.WHITE_PAWN; i <= Bitboard.WHITE_KING; i++) {
+                if ((bitboards[i] & bit) != 0)
+                    return i;
+            }
+
+        } else if ((blackOccupied & bit) != 0) {
+
+            for (int i = Bitboard.BLACK_PAWN; i <= Bitboard.BLACK_KING; i++) {
+                if ((bitboards[i] & bit) != 0)
+                    return i;
+            }
+
+        }
+
+        return Bitboard.EMPTY;
+
     }
 
     /**
@@ -867,12 +940,18 @@ public class Position {
     /**
      * Gets the list of moves.
      * 
-     * @return A list of the {@link Move} objects possible in this position. If
-     *         {@code checkForMate} is {@code true} when constructor is called,
-     *         moves that lead to check will not be included.
+     * @return A list of the {@link Move} objects possible for the color whose
+     *         turn it is in this position. If {@code checkForMate} is
+     *         {@code true} when constructor is called, moves that lead to check
+     *         will not be included.
      */
     public ArrayList<Move> getMoves() {
+
+        if (moves == null)
+            generateMoves();
+
         return moves;
+
     }
 
     /**
@@ -966,10 +1045,42 @@ public class Position {
 
     }
 
+    /**
+     * Gets the Zobrist hash of this position, which covers the pieces, the color
+     * whose turn it is, castling availability and en passant availability.
+     * Positions that are the same for the purposes of repetition have the same
+     * hash.
+     * 
+     * @return {@link #hashKey}
+     * @see Zobrist
+     */
+    public long getHashKey() {
+        return hashKey;
+    }
+
+    /**
+     * Gets the Zobrist hash of only the pieces of this position, without the color
+     * whose turn it is, castling availability or en passant availability. Matches
+     * the hash of the board position component of the FEN of this position.
+     * 
+     * @return The hash of the pieces of this position.
+     * @see Zobrist#getPlacementKey(String)
+     */
+    public long getPlacementKey() {
+
+        long key = hashKey ^ Zobrist.getCastlingKey(Zobrist.getCastlingRights(this)) ^ Zobrist.getEnPassantKey(this);
+
+        if (!white)
+            key ^= Zobrist.getBlackToMoveKey();
+
+        return key;
+
+    }
+
     /**
      * Checks if the board positions are exactly equal, including castling
      * privilege, en passant availability, turn, move number, and fifty move
-     * counter.
+     * counter. The board positions are compared by their {@link #hashKey}.
      */
     @Override
     public boolean equals(Object compare) {
@@ -979,8 +1090,18 @@ public class Position {
 
         Position casted = (Position) (compare);
 
-        return toString().equals(casted.toString());
+        return hashKey == casted.hashKey
+                && moveNumber == casted.moveNumber
+                && fiftyMoveCounter == casted.fiftyMoveCounter;
+
+    }
 
+    /**
+     * Gets the hash code of this position, based on its {@link #hashKey}.
+     */
+    @Override
+    public int hashCode() {
+        return (int) (hashKey ^ (hashKey >>> 32));
     }
 
     /**
@@ -1017,46 +1138,17 @@ public class Position {
 
         ArrayList<Piece> cap = new ArrayList<>();
 
-        int k = 1, q = 1, r = 2, b = 2, n = 2, p = 8;
+        int k = 1 - countPieces(Bitboard.KING, white);
+        int q = 1 - countPieces(Bitboard.QUEEN, white);
+        int r = 2 - countPieces(Bitboard.ROOK, white);
+        int b = 2 - countPieces(Bitboard.BISHOP, white);
+        int n = 2 - countPieces(Bitboard.KNIGHT, white);
+        int p = 8 - countPieces(Bitboard.PAWN, white);
 
-        for (int rk = 0; rk < 8; rk++) {
-
-            for (int f = 0; f < 8; f++) {
-
-                Piece a = pieces[rk][f];
-
-                if (a != null && a.isWhite() == white) {
-
-                    switch (a.getCode()) {
-                        case 'K':
-                            --k;
-                            break;
-                        case 'Q':
-                            --q;
-                            break;
-                        case 'R':
-                            --r;
-                            break;
-                        case 'B':
-                            --b;
-                            break;
-                        case 'N':
-                            --n;
-                            break;
-                        case 'P':
-                            --p;
-                            break;
-                    }
-                }
-
-            }
-
-        }
-
-        while (k > 0) {
-            cap.add(new King(0, 0, white));
-            --k;
-        }
+        while (k > 0) {
+            cap.add(new King(0, 0, white));
+            --k;
+        }
 
         while (q > 0) {
             cap.add(new Queen(0, 0, white));
@@ -1099,22 +1191,7 @@ public class Position {
      */
     public int calculatePieceDelta() {
 
-        int delta = 0;
-
-        for (int r = 0; r < 8; r++) {
-
-            for (int f = 0; f < 8; f++) {
-
-                Piece p = pieces[r][f];
-
-                if (p != null)
-                    delta += (p.isWhite() ? 1 : -1) * p.getPoints();
-
-            }
-
-        }
-
-        return delta;
+        return getPoints(true) - getPoints(false);
 
     }
 
@@ -1145,9 +1222,9 @@ public class Position {
         // Castle moves should be king moving to rook's square.
         Move move = null, maybe = null;
 
-        for (int i = 0; move == null && i < moves.size(); i++) {
+        for (int i = 0; move == null && i < getMoves().size(); i++) {
 
-            Move a = moves.get(i);
+            Move a = getMoves().get(i);
 
             if (!a.isCastle() && a.getOrigin().equals(origin) && a.getDestination().equals(destination))
                 move = a;
@@ -1221,23 +1298,51 @@ public class Position {
      * @see #calculatePieceDelta()
      */
     public int getPoints(boolean white) {
+        return PieceSquareTable.unpackPoints(material, white);
+    }
 
-        int points = 0;
-
-        for (int r = 0; r < 8; r++) {
-
-            for (int f = 0; f < 8; f++) {
-
-                Piece a = pieces[r][f];
+    /**
+     * Gets the middlegame value of the white pieces minus that of the black
+     * pieces.
+     * 
+     * @return The middlegame value.
+     * @see PieceSquareTable#getMidgame(int, int)
+     */
+    public int getMidgame() {
+        return PieceSquareTable.unpackMidgame(score);
+    }
 
-                if (a.isWhite() == white)
-                    points += a.getPoints();
+    /**
+     * Gets the endgame value of the white pieces minus that of the black pieces.
+     * 
+     * @return The endgame value.
+     * @see PieceSquareTable#getEndgame(int, int)
+     */
+    public int getEndgame() {
+        return PieceSquareTable.unpackEndgame(score);
+    }
 
-            }
+    /**
+     * Gets the phase of the game.
+     * 
+     * @return The phase, which is {@link PieceSquareTable#MAX_PHASE} at the
+     *         start of the game.
+     * @see PieceSquareTable#blend(int, int, int)
+     */
+    public int getPhase() {
+        return PieceSquareTable.unpackPhase(material);
+    }
 
-        }
+    /**
+     * Counts the pieces of the given type and color.
+     * 
+     * @param type  The piece type, such as {@link Bitboard#KNIGHT}.
+     * @param white The color of the pieces.
+     * @return The amount of those pieces on the board.
+     */
+    public int countPieces(int type, boolean white) {
 
-        return points;
+        return Long.bitCount(bitboards[Bitboard.index(type, white)]);
 
     }
 
@@ -1245,11 +1350,19 @@ public class Position {
      * Sets the square of a piece.
      * 
      * @param square The square to set the piece to.
-     * @param piece  The piece to set.
+     * @param piece  The piece to set. May be {@code null} to clear the square.
      */
     public void setSquare(Square square, Piece piece) {
 
-        pieces[square.getRank() - 1][square.getFile() - 1] = piece;
+        final int sq = Bitboard.square(square);
+
+        removePiece(sq);
+
+        if (piece != null)
+            putPiece(Bitboard.index(piece.getCode(), piece.isWhite()), sq);
+
+        if (pieces != null)
+            pieces[square.getRank() - 1][square.getFile() - 1] = piece;
 
     }
 
@@ -1261,7 +1374,12 @@ public class Position {
      *         square.
      */
     public Piece getPieceAtSquare(Square square) {
-        return pieces[square.getRank() - 1][square.getFile() - 1];
+
+        if (!square.isValid() || getPieceIndex(Bitboard.square(square)) == Bitboard.EMPTY)
+            return null;
+
+        return getPieces()[square.getRank() - 1][square.getFile() - 1];
+
     }
 
     /**
@@ -1276,9 +1394,9 @@ public class Position {
 
         ArrayList<Piece> pieces = new ArrayList<Piece>();
 
-        for (int i = 0; i < moves.size(); i++) {
+        for (int i = 0; i < getMoves().size(); i++) {
 
-            Move m = moves.get(i);
+            Move m = getMoves().get(i);
             if (m.isCapture() && m.getCaptureSquare().equals(square))
                 pieces.add(m.getPiece());
 
@@ -1299,9 +1417,9 @@ public class Position {
 
         ArrayList<Piece> pieces = new ArrayList<Piece>();
 
-        for (int i = 0; i < moves.size(); i++) {
+        for (int i = 0; i < getMoves().size(); i++) {
 
-            Move m = moves.get(i);
+            Move m = getMoves().get(i);
             if (m.getDestination().equals(square))
                 pieces.add(m.getPiece());
 
@@ -1323,9 +1441,9 @@ public class Position {
 
         ArrayList<Piece> pieces = new ArrayList<Piece>();
 
-        for (int i = 0; i < moves.size(); i++) {
+        for (int i = 0; i < getMoves().size(); i++) {
 
-            Move m = moves.get(i);
+            Move m = getMoves().get(i);
             if (m.isWhite() == white && m.getDestination().equals(square))
                 pieces.add(m.getPiece());
 
@@ -1367,10 +1485,10 @@ public class Position {
 
         ArrayList<Move> pieceMoves = new ArrayList<Move>();
 
-        for (int i = 0; i < moves.size(); i++) {
+        for (int i = 0; i < getMoves().size(); i++) {
 
-            if (moves.get(i).getPiece().equals(piece))
-                pieceMoves.add(moves.get(i));
+            if (getMoves().get(i).getPiece().equals(piece))
+                pieceMoves.add(getMoves().get(i));
 
         }
 
@@ -1386,7 +1504,9 @@ public class Position {
      */
     public Square getKingSquare(boolean white) {
 
-        return white ? whiteKing : blackKing;
+        final long king = bitboards[Bitboard.index(Bitboard.KING, white)];
+
+        return king == 0 ? null : Bitboard.toSquare(Bitboard.first(king));
 
     }
 
@@ -1404,41 +1524,30 @@ public class Position {
      */
     public boolean isInsufficientMaterial() {
 
-        ArrayList<Piece> list = getPiecesAsArrayList();
-
-        if (list.size() > 4)
-            return false;
+        final long kings = bitboards[Bitboard.WHITE_KING] | bitboards[Bitboard.BLACK_KING];
+        final long others = getOccupied() & ~kings;
 
         // King and king
-        if (list.size() == 2)
+        if (others == 0)
             return true;
 
-        for (int i = 0; i < list.size(); i++) {
-
-            if (list.get(i).getCode() == 'K') {
-                list.remove(i);
-                --i;
-            }
+        if (Long.bitCount(others) > 2)
+            return false;
 
-        }
+        final long minors = bitboards[Bitboard.WHITE_BISHOP] | bitboards[Bitboard.BLACK_BISHOP]
+                | bitboards[Bitboard.WHITE_KNIGHT] | bitboards[Bitboard.BLACK_KNIGHT];
 
         // King against king and bishop / king against king and knight
-        if (list.size() == 1 && (list.get(0).getCode() == 'B' || list.get(0).getCode() == 'N'))
-            return true;
-        else if (list.size() == 2) {
-
-            Piece one = list.get(0);
-            Piece two = list.get(1);
-
-            // King and bishop against king and bishop, with both being on squares of same
-            // color
-            if (one.isWhite() != two.isWhite()
-                    && one.getSquare().isLightSquare() == two.getSquare().isLightSquare())
-                return true;
+        if (Long.bitCount(others) == 1)
+            return (others & minors) != 0;
 
-        }
+        // King and bishop against king and bishop, with both being on squares of same
+        // color
+        final long whiteBishops = bitboards[Bitboard.WHITE_BISHOP];
+        final long blackBishops = bitboards[Bitboard.BLACK_BISHOP];
 
-        return false;
+        return Long.bitCount(whiteBishops) == 1 && Long.bitCount(blackBishops) == 1
+                && ((whiteBishops & Bitboard.LIGHT_SQUARES) != 0) == ((blackBishops & Bitboard.LIGHT_SQUARES) != 0);
 
     }
 
@@ -1455,7 +1564,7 @@ public class Position {
      */
     public boolean isStalemate() {
 
-        return moves.size() == 0;
+        return getMoves().size() == 0;
 
     }
 
@@ -1467,6 +1576,7 @@ public class Position {
     public ArrayList<Piece> getPiecesAsArrayList() {
 
         ArrayList<Piece> list = new ArrayList<Piece>();
+        Piece[][] pieces = getPieces();
 
         for (int r = 0; r < 8; r++) {
             for (int f = 0; f < 8; f++) {
@@ -1489,75 +1599,73 @@ public class Position {
     @Override
     public String toString() {
 
-        String fen = "";
+        StringBuilder fen = new StringBuilder(90);
 
         // Pieces
-        for (int r = 7; r >= 0; r--) {
+        for (int r = 8; r >= 1; r--) {
 
             int noPieceCount = 0;
 
-            for (int f = 0; f < 8; f++) {
+            for (int f = 1; f <= 8; f++) {
 
-                Piece p = pieces[r][f];
+                final int index = getPieceIndex(Bitboard.square(f, r));
 
-                if (p == null)
+                if (index == Bitboard.EMPTY)
                     ++noPieceCount;
                 else {
 
                     if (noPieceCount > 0) {
 
-                        fen += noPieceCount;
+                        fen.append(noPieceCount);
                         noPieceCount = 0;
 
                     }
 
-                    fen += p.isWhite() ? (p.getCode() + "") : (p.getCode() + "").toLowerCase();
+                    fen.append(Bitboard.fenChar(index));
 
                 }
 
             }
 
-            if (noPieceCount > 0) {
+            if (noPieceCount > 0)
+                fen.append(noPieceCount);
 
-                fen += noPieceCount;
-                noPieceCount = 0;
-
-            }
-
-            if (r > 0)
-                fen += "/";
+            if (r > 1)
+                fen.append('/');
 
         }
 
         // Active Color
-        fen += " " + (isWhite() ? "w" : "b");
+        fen.append(' ').append(isWhite() ? 'w' : 'b').append(' ');
 
         // Castle availability
-
+        final int length = fen.length();
         boolean normalCastleIndicators = aSideRookFile == 1 && hSideRookFile == 8;
 
-        fen += " "
-                + (whiteASide ? (normalCastleIndicators ? "K" : Character.toUpperCase((char) (aSideRookFile + 96)))
-                        : "")
-                + (whiteHSide ? (normalCastleIndicators ? "Q" : Character.toUpperCase((char) (hSideRookFile + 96)))
-                        : "")
-                + (blackASide ? (normalCastleIndicators ? "k" : ((char) (aSideRookFile + 96)))
-                        : "")
-                + (blackHSide ? (normalCastleIndicators ? "q" : ((char) (hSideRookFile + 96)))
-                        : "");
+        if (whiteHSide)
+            fen.append(normalCastleIndicators ? 'K' : Character.toUpperCase((char) (hSideRookFile + 96)));
+
+        if (whiteASide)
+            fen.append(normalCastleIndicators ? 'Q' : Character.toUpperCase((char) (aSideRookFile + 96)));
 
-        if (fen.charAt(fen.length() - 1) == ' ')
-            fen += '-';
+        if (blackHSide)
+            fen.append(normalCastleIndicators ? 'k' : (char) (hSideRookFile + 96));
 
-        fen += " " + (enPassantTarget == null ? "-" : enPassantTarget.toString());
+        if (blackASide)
+            fen.append(normalCastleIndicators ? 'q' : (char) (aSideRookFile + 96));
+
+        if (fen.length() == length)
+            fen.append('-');
+
+        fen.append(' ').append(enPassantSquare == Bitboard.EMPTY ? "-" : getEnPassantTarget().toString());
 
         // Fifty-move rule clock
-        fen += " " + fiftyMoveCounter;
+        fen.append(' ').append(fiftyMoveCounter);
 
         // Fullmove number
-        fen += " " + ((int) Math.ceil(moveNumber / 2.0) + 1);
+        fen.append(' ').append((int) Math.ceil(moveNumber / 2.0) + 1);
 
-        return fen;
+        return fen.toString();
 
     }
 
@@ -1580,6 +1688,121 @@ public class Position {
 
     }
 
+    /**
+     * Makes the given move on this position in place, saving what is needed to
+     * take it back with {@link #unmakeMove()}. Unlike
+     * {@link #Position(Position, Move, char, boolean)}, no new position is
+     * created, so searches can walk the move tree without allocating a position
+     * per move.
+     * 
+     * <p>
+     * The move is not checked for legality, and should come from
+     * {@link MoveGenerator}. The move list is regenerated when it is next
+     * requested, and will include moves that lead to check. The move that led to
+     * this position, the opening, and the timer and redo information are not
+     * updated, so positions in the history of a {@link Game} should not be
+     * modified. Use {@link #Position(Position)} to make a copy first.
+     * 
+     * @param move The encoded move to make.
+     * @see MoveGenerator#encode(int, int, int, int)
+     */
+    public void makeMove(int move) {
+
+        if (undoMoves == null) {
+
+            undoMoves = new int[8];
+            undoStates = new long[8];
+            undoKeys = new long[8];
+
+        } else if (undoCount == undoMoves.length) {
+
+            undoMoves = Arrays.copyOf(undoMoves, undoCount * 2);
+            undoStates = Arrays.copyOf(undoStates, undoCount * 2);
+            undoKeys = Arrays.copyOf(undoKeys, undoCount * 2);
+
+        }
+
+        final long state = packState(Bitboard.EMPTY);
+        final long key = hashKey;
+        final int captured = applyMove(move);
+
+        undoMoves[undoCount] = move;
+        undoStates[undoCount] = state | (captured + 1);
+        undoKeys[undoCount] = key;
+        ++undoCount;
+
+        updateCheck();
+
+    }
+
+    /**
+     * Takes back the last move made with {@link #makeMove(int)}, restoring the
+     * pieces, castling availability, en passant target, fifty-move counter and
+     * move number as they were before it.
+     * 
+     * @throws RuntimeException If there is no move to unmake.
+     */
+    public void unmakeMove() throws RuntimeException {
+
+        if (undoCount == 0)
+            throw new RuntimeException("No move to unmake.");
+
+        --undoCount;
+
+        final int move = undoMoves[undoCount];
+        final long state = undoStates[undoCount];
+
+        white = !white;
+        --moveNumber;
+
+        final int origin = MoveGenerator.getOrigin(move);
+        final int destination = MoveGenerator.getDestination(move);
+
+        if ((move & MoveGenerator.CASTLE) != 0) {
+
+            final boolean aSide = Bitboard.file(destination) == 3;
+            final int homeRank = white ? 1 : 8;
+
+            final int king = removePiece(destination);
+            final int rook = removePiece(Bitboard.square(aSide ? 4 : 6, homeRank));
+
+            putPiece(rook, Bitboard.square(aSide ? aSideRookFile : hSideRookFile, homeRank));
+            putPiece(king, origin);
+
+        } else {
+
+            final int piece = removePiece(destination);
+
+            putPiece(MoveGenerator.getPromoteType(move) != 0 ? Bitboard.index(Bitboard.PAWN, white) : piece,
+                    origin);
+
+            final int captured = (int) (state & 15) - 1;
+
+            if (captured != Bitboard.EMPTY)
+                putPiece(captured, getCaptureSquare(move, white));
+
+        }
+
+        unpackState(state);
+        hashKey = undoKeys[undoCount];
+
+        this.pieces = null;
+        this.moves = null;
+        this.mateChecked = false;
+        this.checkMate = false;
+
+    }
+
+    /**
+     * Gets the number of moves made with {@link #makeMove(int)} that can be
+     * unmade.
+     * 
+     * @return {@link #undoCount}
+     */
+    public int getUndoCount() {
+        return undoCount;
+    }
+
     /**
      * Finds an available move by its short algebraic notation (SAN).
      * 
@@ -1604,63 +1827,67 @@ public class Position {
 
         if (move.startsWith("0-0-0") || move.startsWith("O-O-O")) {
 
-            o = new Square((white ? whiteKing : blackKing).getFile(), (white ? whiteKing : blackKing).getRank());
+            o = getKingSquare(white);
             d = new Square(3, white ? 1 : 8);
             piece = 'K';
 
         } else if (move.startsWith("0-0") || move.startsWith("O-O")) {
 
-            o = new Square((white ? whiteKing : blackKing).getFile(), (white ? whiteKing : blackKing).getRank());
+            o = getKingSquare(white);
             d = new Square(7, white ? 1 : 8);
             piece = 'K';
 
         } else {
 
-            Pattern pat = Pattern.compile("[a-h][1-8]");
-            Matcher m = pat.matcher(move);
-
             int lastSquare = -1;
-            while (m.find()) {
-                lastSquare = m.start();
+            for (int i = move.length() - 2; i >= 0 && lastSquare <= -1; i--) {
+
+                if (isFile(move.charAt(i)) && isRank(move.charAt(i + 1)))
+                    lastSquare = i;
+
             }
 
             if (lastSquare <= -1)
                 throw new Exception("No destination square.");
 
-            try {
-                d = new Square(move.substring(lastSquare, lastSquare + 2));
-            } catch (Exception e) {
-                throw new Exception("Invalid destination square.");
-            }
+            d = new Square(move.charAt(lastSquare) - 'a' + 1, move.charAt(lastSquare + 1) - '0');
 
-            String first = move.substring(0, 1);
+            final char first = move.charAt(0);
             int start = 0;
 
-            if (first.matches("[KQRBNP]")) {
-                piece = first.charAt(0);
+            if ("KQRBNP".indexOf(first) >= 0) {
+                piece = first;
                 start = 1;
-            } else if (first.matches("[a-h]"))
+            } else if (isFile(first))
                 piece = 'P';
             else
                 throw new Exception("Invalid piece type.");
 
             if (move.length() > 3) {
-                String modifier = move.substring(start, lastSquare);
-
-                if (modifier.matches("[a-h][1-8]x?")) {
-                    o = new Square(modifier);
-                } else if (modifier.matches("[a-h]x?")) {
-                    oFile = (int) (modifier.charAt(0)) - 96;
-                } else if (modifier.matches("[1-8]x?")) {
-                    oRank = (int) (modifier.charAt(0)) - 48;
+
+                // The origin square, file or rank, optionally followed by an x
+                int modifierEnd = lastSquare;
+
+                if (modifierEnd > start && move.charAt(modifierEnd - 1) == 'x')
+                    --modifierEnd;
+
+                final int modifierLength = modifierEnd - start;
+
+                if (modifierLength == 2 && isFile(move.charAt(start)) && isRank(move.charAt(start + 1))) {
+                    o = new Square(move.charAt(start) - 'a' + 1, move.charAt(start + 1) - '0');
+                } else if (modifierLength == 1 && isFile(move.charAt(start))) {
+                    oFile = move.charAt(start) - 'a' + 1;
+                } else if (modifierLength == 1 && isRank(move.charAt(start))) {
+                    oRank = move.charAt(start) - '0';
                 }
+
             }
 
         }
 
         ArrayList<Move> possibleMoves = new ArrayList<Move>();
 
-        for (Move mo : moves) {
+        for (Move mo : getMoves()) {
 
             if (mo.getPiece().getCode() != piece || mo.isWhite() != isWhite())
                 continue;
@@ -1694,232 +1921,314 @@ public class Position {
 
         Move found = possibleMoves.get(0);
 
-        Matcher findPromo = Pattern.compile("=(?<promo>[QRBN])").matcher(move);
-        if (findPromo.find()) {
-
-            char promo = findPromo.group("promo").charAt(0);
+        final int equals = move.indexOf('=');
 
-            if (promo != 'Q' && promo != 'R' && promo != 'B' && promo != 'N')
-                throw new Exception("Invalid promote type supplied.");
-
-            found.setPromoteType(promo);
-
-        }
+        if (equals > -1 && equals + 1 < move.length() && "QRBN".indexOf(move.charAt(equals + 1)) >= 0)
+            found.setPromoteType(move.charAt(equals + 1));
 
         return found;
 
     }
 
     /**
-     * Initializes the list of moves.
+     * Initializes the check state and, if checkmate should be checked for, the
+     * list of legal moves. Otherwise the list of moves is generated when it is
+     * first requested.
      * 
      * @param checkForMate If checkmate should be checked for.
      */
     private void initMoves(boolean checkForMate) {
 
-        this.moves = new ArrayList<Move>();
+        updateCheck();
 
-        for (int r = 0; r < pieces.length; r++) {
+        this.moves = null;
 
-            for (int c = 0; c < pieces[r].length; c++) {
+        if (checkForMate)
+            setCheckmate();
 
-                final Piece p = pieces[r][c];
+    }
 
-                if (p == null)
-                    continue;
+    /**
+     * Sets {@link #inCheck} and {@link #givingCheck} from the current board.
+     */
+    private void updateCheck() {
 
-                moves.addAll(p.getMoves(this));
+        final long ownKing = bitboards[Bitboard.index(Bitboard.KING, white)];
+        final long oppKing = bitboards[Bitboard.index(Bitboard.KING, !white)];
 
-            }
+        inCheck = ownKing != 0 && MoveGenerator.isAttacked(this, Bitboard.first(ownKing), !white);
+        givingCheck = oppKing != 0 && MoveGenerator.isAttacked(this, Bitboard.first(oppKing), white);
 
-        }
+    }
 
-        ArrayList<Piece> ownPieces = getPiecesByAttacking(white ? whiteKing : blackKing);
-        if (ownPieces.size() >= 1)
-            inCheck = true;
+    /**
+     * Generates the pseudo-legal moves of the color whose turn it is into
+     * {@link #moves}.
+     */
+    private void generateMoves() {
 
-        ArrayList<Piece> oppPieces = getPiecesByAttacking(!white ? whiteKing : blackKing);
-        if (oppPieces.size() >= 1)
-            givingCheck = true;
+        final int[] buffer = MOVE_BUFFER.get();
+        final int count = MoveGenerator.generate(this, buffer);
 
-        ArrayList<Move> castleMoves = new ArrayList<>(2);
+        this.moves = MoveGenerator.toMoves(this, buffer, count);
 
-        // Castling
-        Square kingSquare = white ? whiteKing : blackKing;
+    }
 
-        Piece hRook = getRook(false, white), aRook = getRook(true, white);
+    /**
+     * Sets whether or not the position is check mate. (The color whose turn it is
+     * isn't able to make any moves and is in check.) Also will filter out any moves
+     * that are not legal.
+     * 
+     * @see MoveGenerator#filterLegal(Position, int[], int)
+     */
+    private void setCheckmate() {
 
-        if (hRook != null && canCastle(white, false)) {
+        final int[] buffer = MOVE_BUFFER.get();
+        int count = MoveGenerator.generate(this, buffer);
 
-            boolean canReach = true;
+        if (parallelFiltering)
+            count = filterLegalParallel(buffer, count);
+        else
+            count = MoveGenerator.filterLegal(this, buffer, count);
 
-            // If king can reach
-            boolean left = kingSquare.getFile() > 7;
+        this.moves = MoveGenerator.toMoves(this, buffer, count);
+        this.checkMate = inCheck && count == 0;
+        this.mateChecked = true;
 
-            for (int inc = (left ? -1 : 1), i = kingSquare.getFile() + inc; canReach
-                    && ((left && i >= 7) || (!left && i <= 7)); i += inc) {
+    }
 
-                Square lookingSquare = new Square(i, kingSquare.getRank());
+    /**
+     * Filters the legal moves on {@link #getFilterPool()}, with each move checked
+     * on its own copy of this position.
+     * 
+     * @param buffer The pseudo-legal moves.
+     * @param count  The amount of moves in the buffer.
+     * @return The amount of legal moves, which are now at the start of the buffer
+     *         in the same order they were generated in.
+     */
+    private int filterLegalParallel(int[] buffer, int count) {
 
-                ArrayList<Piece> attackers = getPiecesByCanMoveToColor(lookingSquare, !white);
+        final int[] candidates = Arrays.copyOf(buffer, count);
+        final boolean[] legal = new boolean[count];
 
-                if (attackers.size() > 0)
-                    canReach = false;
+        try {
 
-                if (canReach == false || i == gethSideRookFile())
-                    continue;
+            getFilterPool().submit(() -> IntStream.range(0, count).parallel()
+                    .forEach(i -> legal[i] = MoveGenerator.isLegal(new Position(this), candidates[i]))).get();
 
-                Piece find = getPieceAtSquare(lookingSquare);
-                if (find != null)
-                    canReach = false;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Error filtering legal moves: " + e.getMessage());
+        }
 
-            }
+        int legalCount = 0;
 
-            // If rook can reach
-            left = hRook.getSquare().getFile() > 6;
+        for (int i = 0; i < count; i++) {
 
-            for (int inc = (left ? -1 : 1), i = hRook.getSquare().getFile() + inc; canReach
-                    && ((left && i >= 6) || (!left && i <= 6)); i += inc) {
+            if (legal[i])
+                buffer[legalCount++] = candidates[i];
 
-                if (i == kingSquare.getFile())
-                    continue;
+        }
 
-                Piece find = getPieceAtSquare(new Square(i, kingSquare.getRank()));
-                if (find != null)
-                    canReach = false;
+        return legalCount;
 
-            }
+    }
 
-            if (canReach) {
+    /**
+     * Applies the given move to the board state, updating the castling
+     * availability, en passant target, fifty-move counter, move number and turn.
+     * 
+     * @param move The encoded move to make.
+     * @return The bitboard index of the piece captured, or {@link Bitboard#EMPTY}
+     *         if the move is not a capture.
+     */
+    private int applyMove(int move) {
 
-                try {
-                    castleMoves.add(new Move(kingSquare, new Square(7, white ? 1 : 8), this,
-                            true));
-                } catch (Exception e) {
-                }
+        final int origin = MoveGenerator.getOrigin(move);
+        final int destination = MoveGenerator.getDestination(move);
+        final int promoteType = MoveGenerator.getPromoteType(move);
 
-            }
+        final int rights = getCastleRights();
+        hashKey ^= Zobrist.getEnPassantKey(this);
 
-        }
+        int captured = Bitboard.EMPTY;
+        final int piece = removePiece(origin);
 
-        if (aRook != null && canCastle(white, true)) {
+        if ((move & MoveGenerator.CASTLE) != 0) {
 
-            boolean canReach = true;
+            final boolean aSide = Bitboard.file(destination) == 3;
+            final int homeRank = white ? 1 : 8;
 
-            // If king can reach
-            boolean left = kingSquare.getFile() > 3;
+            final int rook = removePiece(Bitboard.square(aSide ? aSideRookFile : hSideRookFile, homeRank));
+            putPiece(rook, Bitboard.square(aSide ? 4 : 6, homeRank));
 
-            for (int inc = (left ? -1 : 1), i = kingSquare.getFile() + inc; canReach
-                    && ((left && i >= 3) || (!left && i <= 3)); i += inc) {
+        } else if ((move & MoveGenerator.CAPTURE) != 0)
+            captured = removePiece(getCaptureSquare(move, white));
 
-                Square lookingSquare = new Square(i, kingSquare.getRank());
+        putPiece(promoteType != 0 ? Bitboard.index(promoteType, white) : piece, destination);
 
-                ArrayList<Piece> attackers = getPiecesByCanMoveToColor(lookingSquare, !white);
+        if (Bitboard.type(piece) == Bitboard.KING) {
 
-                if (attackers.size() > 0)
-                    canReach = false;
+            if (white) {
 
-                if (canReach == false || i == gethSideRookFile())
-                    continue;
+                whiteASide = false;
+                whiteHSide = false;
+
+            } else {
 
-                Piece find = getPieceAtSquare(lookingSquare);
-                if (find != null)
-                    canReach = false;
+                blackASide = false;
+                blackHSide = false;
 
             }
 
-            // If rook can reach
-            left = aRook.getSquare().getFile() > 4;
+        }
 
-            for (int inc = (left ? -1 : 1), i = aRook.getSquare().getFile() + inc; canReach
-                    && ((left && i >= 4) || (!left && i <= 4)); i += inc) {
+        // A rook moving from or being captured on its starting square
+        clearCastleRights(origin);
+        clearCastleRights(destination);
 
-                if (i == kingSquare.getFile())
-                    continue;
+        enPassantSquare = (move & MoveGenerator.DOUBLE_PUSH) != 0 ? (origin + destination) / 2 : Bitboard.EMPTY;
 
-                Piece find = getPieceAtSquare(new Square(i, kingSquare.getRank()));
-                if (find != null)
-                    canReach = false;
+        if (Bitboard.type(piece) == Bitboard.PAWN || captured != Bitboard.EMPTY)
+            fiftyMoveCounter = 0;
+        else
+            ++fiftyMoveCounter;
 
-            }
+        white = !white;
+        ++moveNumber;
 
-            if (canReach) {
+        hashKey ^= Zobrist.getCastlingKey(rights) ^ Zobrist.getCastlingKey(getCastleRights())
+                ^ Zobrist.getEnPassantKey(this) ^ Zobrist.getBlackToMoveKey();
 
-                try {
-                    castleMoves.add(new Move(kingSquare, new Square(3, white ? 1 : 8), this,
-                            true));
-                } catch (Exception e) {
-                }
+        this.pieces = null;
+        this.moves = null;
+        this.mateChecked = false;
+        this.checkMate = false;
 
-            }
+        return captured;
 
-        }
+    }
 
-        if (checkForMate) {
+    /**
+     * Gets the castling availability as a set of flags.
+     * 
+     * @return The castling availability flags.
+     * @see Zobrist#getCastlingRights(Position)
+     */
+    private int getCastleRights() {
+        return Zobrist.getCastlingRights(this);
+    }
 
-            // longest delay
-            setCheckmate();
+    /**
+     * Removes the castling availability of the rook that starts on the given
+     * square, if there is one.
+     * 
+     * @param square The square index.
+     */
+    private void clearCastleRights(int square) {
 
-            if (this.inCheck == false) {
+        if (square == Bitboard.square(aSideRookFile, 1))
+            whiteASide = false;
+        else if (square == Bitboard.square(hSideRookFile, 1))
+            whiteHSide = false;
+        else if (square == Bitboard.square(aSideRookFile, 8))
+            blackASide = false;
+        else if (square == Bitboard.square(hSideRookFile, 8))
+            blackHSide = false;
 
-                moves.addAll(castleMoves);
+    }
 
-            }
-        }
+    /**
+     * Packs the state that cannot be recovered from a move when it is unmade.
+     * 
+     * <ul>
+     * <li>Bits 0-3 - The bitboard index of the captured piece, plus one.
+     * <li>Bits 4-7 - The castling availability.
+     * <li>Bits 8-14 - The en passant target square index, plus one.
+     * <li>Bit 15 - Whether or not the side to move is in check.
+     * <li>Bit 16 - Whether or not the side to move is giving check.
+     * <li>Bits 32-63 - The fifty-move counter.
+     * </ul>
+     * 
+     * @param captured The bitboard index of the captured piece.
+     * @return The packed state.
+     * @see #unpackState(long)
+     */
+    private long packState(int captured) {
+
+        return (captured + 1)
+                | (getCastleRights() << 4)
+                | ((enPassantSquare + 1) << 8)
+                | (inCheck ? 1 << 15 : 0) | (givingCheck ? 1 << 16 : 0)
+                | ((long) fiftyMoveCounter << 32);
 
     }
 
     /**
-     * Sets whether or not the position is check mate. (The color whose turn it is
-     * isn't able to make any moves and is in check.) Also will filter out any moves
-     * that are not legal.
+     * Restores the state packed by {@link #packState(int)}, except for the
+     * captured piece.
+     * 
+     * @param state The packed state.
      */
-    private void setCheckmate() {
+    private void unpackState(long state) {
 
-        this.mateChecked = true;
-        this.checkMate = true;
+        whiteASide = (state & (1 << 4)) != 0;
+        whiteHSide = (state & (1 << 5)) != 0;
+        blackASide = (state & (1 << 6)) != 0;
+        blackHSide = (state & (1 << 7)) != 0;
 
-        Collection<Move> temp = Collections.synchronizedList(new ArrayList<>(moves.size()));
-        
-        ExecutorService pool = Executors.newCachedThreadPool();
-        try {
+        enPassantSquare = (int) ((state >>> 8) & 127) - 1;
 
-            for (int i = 0; i < moves.size(); i++) {
+        inCheck = (state & (1 << 15)) != 0;
+        givingCheck = (state & (1 << 16)) != 0;
 
-                Move m = moves.get(i);
+        fiftyMoveCounter = (int) (state >>> 32);
 
-                if (m.isWhite() != isWhite())
-                    continue;
+    }
+
+    /**
+     * Gets the square index of the piece captured by the given move.
+     * 
+     * @param move  The encoded move.
+     * @param white The color making the move.
+     * @return The square index the captured piece is on before the move.
+     */
+    private static int getCaptureSquare(int move, boolean white) {
 
-                try {
-                    pool.submit(() -> {
+        final int destination = MoveGenerator.getDestination(move);
 
-                        try {
+        if ((move & MoveGenerator.EN_PASSANT) != 0)
+            return destination + (white ? -8 : 8);
 
-                            Position test = new Position(this, m, '0', false);
+        return destination;
 
-                            if (!test.isGivingCheck()) {
-                                checkMate = false;
-                                temp.add(m);
-                            }
+    }
 
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
+    /**
+     * Encodes the given {@link Move} in the form used by {@link MoveGenerator}.
+     * 
+     * @param move        The move to encode.
+     * @param promoteType The type of piece to promote to, or {@code '0'} if the
+     *                    move is not a promotion.
+     * @return The encoded move.
+     */
+    private static int encode(Move move, char promoteType) {
 
-                    });
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+        int flags = 0;
 
-            }
+        if (move.isCapture())
+            flags |= MoveGenerator.CAPTURE;
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        if (move.isEnPassant())
+            flags |= MoveGenerator.EN_PASSANT;
+
+        if (move.isCastle())
+            flags |= MoveGenerator.CASTLE;
+
+        if (move.getPiece().getCode() == 'P' && move.getMoveDistance() == 2)
+            flags |= MoveGenerator.DOUBLE_PUSH;
 
-        moves.clear();
-        moves.addAll(temp);
+        return MoveGenerator.encode(Bitboard.square(move.getOrigin()), Bitboard.square(move.getDestination()),
+                promoteType == '0' ? 0 : Bitboard.CODES.indexOf(promoteType), flags);
 
     }
 
@@ -1928,44 +2237,136 @@ public class Position {
      */
     private void initDefaultPosition() {
 
-        pieces = new Piece[8][8];
+        bitboards = new long[Bitboard.PIECE_COUNT];
 
-        boolean color = true;
-        for (int i = 0; i < 2; i++) {
+        bitboards[Bitboard.WHITE_PAWN] = Bitboard.RANK_1 << 8;
+        bitboards[Bitboard.WHITE_KNIGHT] = Bitboard.bit(1) | Bitboard.bit(6);
+        bitboards[Bitboard.WHITE_BISHOP] = Bitboard.bit(2) | Bitboard.bit(5);
+        bitboards[Bitboard.WHITE_ROOK] = Bitboard.bit(0) | Bitboard.bit(7);
+        bitboards[Bitboard.WHITE_QUEEN] = Bitboard.bit(3);
+        bitboards[Bitboard.WHITE_KING] = Bitboard.bit(4);
 
-            for (int j = 0; j < 8; j++) {
+        // Black's pieces mirror white's across the middle of the board
+        for (int i = Bitboard.WHITE_PAWN; i <= Bitboard.WHITE_KING; i++)
+            bitboards[i + 6] = Long.reverseBytes(bitboards[i]);
 
-                setSquare(new Square(j + 1, color ? 2 : 7), new Pawn(j + 1, color ? 2 : 7, color));
+        whiteOccupied = Bitboard.RANK_1 | (Bitboard.RANK_1 << 8);
+        blackOccupied = Long.reverseBytes(whiteOccupied);
 
+        // The pieces were not placed one at a time, so the totals are summed
+        for (int index = 0; index < Bitboard.PIECE_COUNT; index++) {
+
+            for (long b = bitboards[index]; b != 0; b &= b - 1) {
+                score += PieceSquareTable.getPacked(index, Bitboard.first(b));
+                material += PieceSquareTable.getMaterial(index);
             }
 
-            // Kings
-            Piece king = new King(5, color ? 1 : 8, color);
-            if (color)
-                whiteKing = king.getSquare();
-            else
-                blackKing = king.getSquare();
+        }
+
+    }
+
+    /**
+     * Places a piece on the given square of the bitboards. The square should be
+     * empty.
+     * 
+     * @param index  The bitboard index of the piece.
+     * @param square The square index.
+     */
+    private void putPiece(int index, int square) {
+
+        final long bit = Bitboard.bit(square);
+
+        bitboards[index] |= bit;
+        hashKey ^= Zobrist.getPieceKey(index, square);
+
+        if (Bitboard.isWhite(index))
+            whiteOccupied |= bit;
+        else
+            blackOccupied |= bit;
+
+        score += PieceSquareTable.getPacked(index, square);
+        material += PieceSquareTable.getMaterial(index);
+
+    }
+
+    /**
+     * Removes the piece on the given square from the bitboards.
+     * 
+     * @param square The square index.
+     * @return The bitboard index of the piece removed, or {@link Bitboard#EMPTY}
+     *         if the square was empty.
+     */
+    private int removePiece(int square) {
+
+        final int index = getPieceIndex(square);
 
-            setSquare(king.getSquare(), king);
+        if (index != Bitboard.EMPTY) {
 
-            // Rooks
-            setSquare(new Square(1, color ? 1 : 8), new Rook(1, color ? 1 : 8, color));
-            setSquare(new Square(8, color ? 1 : 8), new Rook(8, color ? 1 : 8, color));
+            final long bit = Bitboard.bit(square);
 
-            // Queen
-            setSquare(new Square(4, color ? 1 : 8), new Queen(4, color ? 1 : 8, color));
+            bitboards[index] &= ~bit;
+            whiteOccupied &= ~bit;
+            blackOccupied &= ~bit;
 
-            // Bishops
-            setSquare(new Square(3, color ? 1 : 8), new Bishop(3, color ? 1 : 8, color));
-            setSquare(new Square(6, color ? 1 : 8), new Bishop(6, color ? 1 : 8, color));
+            hashKey ^= Zobrist.getPieceKey(index, square);
 
-            // Knight
-            setSquare(new Square(2, color ? 1 : 8), new Knight(2, color ? 1 : 8, color));
-            setSquare(new Square(7, color ? 1 : 8), new Knight(7, color ? 1 : 8, color));
+            score -= PieceSquareTable.getPacked(index, square);
+            material -= PieceSquareTable.getMaterial(index);
 
-            color = false;
         }
 
+        return index;
+
+    }
+
+    /**
+     * Creates the {@link Piece} object for a piece on the bitboards.
+     * 
+     * @param index  The bitboard index of the piece.
+     * @param square The square index the piece is on.
+     * @return The new {@link Piece} object.
+     */
+    private static Piece createPiece(int index, int square) {
+
+        final int file = Bitboard.file(square);
+        final int rank = Bitboard.rank(square);
+        final boolean white = Bitboard.isWhite(index);
+
+        switch (Bitboard.type(index)) {
+            case Bitboard.KING:
+                return new King(file, rank, white);
+            case Bitboard.QUEEN:
+                return new Queen(file, rank, white);
+            case Bitboard.ROOK:
+                return new Rook(file, rank, white);
+            case Bitboard.BISHOP:
+                return new Bishop(file, rank, white);
+            case Bitboard.KNIGHT:
+                return new Knight(file, rank, white);
+            default:
+                return new Pawn(file, rank, white);
+        }
+
+    }
+
+    /**
+     * Gets whether or not a character is a file in algebraic notation.
+     * 
+     * @param c The character.
+     * @return Whether or not the character is from {@code a} to {@code h}.
+     */
+    private static boolean isFile(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    /**
+     * Gets whether or not a character is a rank in algebraic notation.
+     * 
+     * @param c The character.
+     * @return Whether or not the character is from {@code 1} to {@code 8}.
+     */
+    private static boolean isRank(char c) {
+        return c >= '1' && c <= '8';
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,219 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * The random keys used to compute the Zobrist hash of a {@link Position}.
+ * 
+ * <p>
+ * The hash of a position is the XOR of the keys of each piece on its square,
+ * the castling availability, the en passant file and the side to move. Because
+ * XOR is its own inverse, {@link Position} updates its hash incrementally as
+ * pieces are moved rather than computing it again with
+ * {@link #getKey(Position)}.
+ * 
+ * <p>
+ * See: <a href=
+ * "https://www.chessprogramming.org/Zobrist_Hashing">https://www.chessprogramming.org/Zobrist_Hashing</a>
+ */
+public final class Zobrist {
+
+    /**
+     * The seed the keys are generated from. The keys are the same on every run
+     * so that hashes can be stored and compared later.
+     */
+    private static final long SEED = 0x5A0B2157C0FFEE42L;
+
+    /** The keys of each piece on each square, indexed by bitboard index. */
+    private static final long[][] PIECES = new long[Bitboard.PIECE_COUNT][64];
+
+    /**
+     * The keys of each combination of castling availability.
+     * 
+     * @see #getCastlingRights(Position)
+     */
+    private static final long[] CASTLING = new long[16];
+
+    /** The keys of the en passant target on each file. */
+    private static final long[] EN_PASSANT = new long[8];
+
+    /** The key that is included when it is black's turn. */
+    private static final long BLACK_TO_MOVE;
+
+    static {
+
+        final Random random = new Random(SEED);
+
+        for (int i = 0; i < PIECES.length; i++) {
+            for (int s = 0; s < 64; s++)
+                PIECES[i][s] = random.nextLong();
+        }
+
+        // No castling availability does not change the hash
+        for (int i = 1; i < CASTLING.length; i++)
+            CASTLING[i] = random.nextLong();
+
+        for (int i = 0; i < EN_PASSANT.length; i++)
+            EN_PASSANT[i] = random.nextLong();
+
+        BLACK_TO_MOVE = random.nextLong();
+
+    }
+
+    /**
+     * Computes the hash of the given position from scratch.
+     * 
+     * @param position The position to hash.
+     * @return The hash of the position.
+     */
+    public static long getKey(Position position) {
+
+        long key = 0;
+
+        for (int i = 0; i < Bitboard.PIECE_COUNT; i++) {
+
+            for (long b = position.getBitboard(i); b != 0; b &= b - 1)
+                key ^= PIECES[i][Bitboard.first(b)];
+
+        }
+
+        key ^= CASTLING[getCastlingRights(position)];
+        key ^= getEnPassantKey(position);
+
+        if (!position.isWhite())
+            key ^= BLACK_TO_MOVE;
+
+        return key;
+
+    }
+
+    /**
+     * Computes the hash of the pieces of a board position in FEN, which is the same
+     * as {@link Position#getPlacementKey()} of a position with that board.
+     * 
+     * @param placement The board position component of a FEN, up to the first
+     *                  space.
+     * @return The hash of the pieces.
+     * @throws RuntimeException If the board position is invalid.
+     */
+    public static long getPlacementKey(String placement) throws RuntimeException {
+
+        long key = 0;
+        int rank = 8;
+        int file = 1;
+
+        for (int i = 0; i < placement.length(); i++) {
+
+            final char c = placement.charAt(i);
+
+            if (c == ' ')
+                break;
+
+            if (c == '/') {
+
+                rank--;
+                file = 1;
+
+            } else if (c >= '1' && c <= '8') {
+
+                file += c - '0';
+
+            } else {
+
+                final int index = Bitboard.index(Character.toUpperCase(c), Character.isUpperCase(c));
+
+                if (index == Bitboard.EMPTY || rank < 1 || file > 8)
+                    throw new RuntimeException("Invalid board position \"" + placement + "\".");
+
+                key ^= PIECES[index][Bitboard.square(file, rank)];
+                file++;
+
+            }
+
+        }
+
+        return key;
+
+    }
+
+    /**
+     * Gets the key of a piece on a square.
+     * 
+     * @param index  The bitboard index of the piece.
+     * @param square The square index.
+     * @return The key.
+     */
+    public static long getPieceKey(int index, int square) {
+        return PIECES[index][square];
+    }
+
+    /**
+     * Gets the key of the given castling availability.
+     * 
+     * @param rights The castling availability, as returned by
+     *               {@link #getCastlingRights(Position)}.
+     * @return The key.
+     */
+    public static long getCastlingKey(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * Gets the key of the en passant target of the given position. The en passant
+     * file is only part of the hash if a pawn of the color whose turn it is could
+     * capture en passant, as otherwise the position is the same as one without an
+     * en passant target.
+     * 
+     * @param position The position.
+     * @return The key, or {@code 0} if the en passant target is not part of the
+     *         hash.
+     */
+    public static long getEnPassantKey(Position position) {
+
+        final int ep = position.getEnPassantSquare();
+
+        if (ep == Bitboard.EMPTY)
+            return 0;
+
+        final long pawns = position.getBitboard(Bitboard.index(Bitboard.PAWN, position.isWhite()));
+
+        if ((MoveGenerator.getPawnAttacks(ep, !position.isWhite()) & pawns) == 0)
+            return 0;
+
+        return EN_PASSANT[Bitboard.file(ep) - 1];
+
+    }
+
+    /**
+     * Gets the key that is included when it is black's turn.
+     * 
+     * @return {@link #BLACK_TO_MOVE}
+     */
+    public static long getBlackToMoveKey() {
+        return BLACK_TO_MOVE;
+    }
+
+    /**
+     * Gets the castling availability of the given position as a set of flags.
+     * 
+     * <ul>
+     * <li>1 - White can a-side castle.
+     * <li>2 - White can h-side castle.
+     * <li>4 - Black can a-side castle.
+     * <li>8 - Black can h-side castle.
+     * </ul>
+     * 
+     * @param position The position.
+     * @return The castling availability flags.
+     */
+    public static int getCastlingRights(Position position) {
+
+        return (position.isWhiteASide() ? 1 : 0) | (position.isWhiteHSide() ? 2 : 0)
+                | (position.isBlackASide() ? 4 : 0) | (position.isBlackHSide() ? 8 : 0);
+
+    }
+
+    private Zobrist() {
+    }
+
+}
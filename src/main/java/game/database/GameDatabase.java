@@ -0,0 +1,266 @@
+package game.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import game.Position;
+import game.PGN.GameArchiveReader;
+import game.PGN.GameArchiveWriter;
+import game.PGN.PGNParser;
+import game.PGN.PGNReader;
+
+/**
+ * A collection of games stored on disk that can be searched by position. A
+ * database is made of two memory-mapped files next to each other: the games,
+ * stored as a {@link GameArchiveWriter binary archive} in
+ * {@code <base>.games}, and the {@link PositionIndex} of the positions they
+ * reach in {@code <base>.index}.
+ * 
+ * <p>
+ * Can be run from the command line with {@code GameDatabase build <pgn file>
+ * <base> [max ply]} to create a database, or {@code GameDatabase search <base>
+ * <fen>} to print the games that reach a position.
+ */
+public class GameDatabase implements Closeable {
+
+    /** The extension of the archive of the games. */
+    public static final String GAMES_EXTENSION = ".games";
+
+    /** The extension of the position index. */
+    public static final String INDEX_EXTENSION = ".index";
+
+    /** The max ply with which every move of each game is indexed. */
+    public static final int ALL_PLIES = Integer.MAX_VALUE;
+
+    /**
+     * The most moves of each game indexed by default. Whole games are indexed,
+     * so that middlegame and endgame positions are found too; the index is
+     * memory-mapped, so its size is not held in the heap.
+     */
+    public static final int DEFAULT_MAX_PLY = ALL_PLIES;
+
+    /**
+     * Builds or searches a database from the command line.
+     * 
+     * @param args The command and its arguments.
+     * @throws Exception If the database could not be built or read.
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length >= 3 && args.length <= 4 && args[0].equals("build")) {
+
+            final long start = System.nanoTime();
+            final int count = build(Path.of(args[1]), Path.of(args[2]),
+                    args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_PLY);
+
+            System.out.println("Built database of " + count + " games in " + (System.nanoTime() - start) / 1000000
+                    + " ms.");
+
+        } else if (args.length == 3 && args[0].equals("search")) {
+
+            try (GameDatabase database = new GameDatabase(Path.of(args[1]))) {
+
+                final SearchResult result = database.search(new Position(args[2]), 10);
+
+                System.out.print(result);
+
+                for (int i = 0; i < result.getGameIds().length; i++) {
+
+                    final Map<String, String> tags = database.getTags(result.getGameIds()[i]);
+                    System.out.println("#" + result.getGameIds()[i] + " " + tags.get("White") + " - "
+                            + tags.get("Black") + " " + tags.get("Result") + " (ply " + result.getPlies()[i] + ")");
+
+                }
+
+                System.out.println("Searched " + database.getGameCount() + " games in "
+                        + result.getTime() / 1000 + " us.");
+
+                if (result.getGames() == 0 && !database.isWholeGames())
+                    System.out.println("Only the first " + database.getMaxPly()
+                            + " plies of each game are indexed, so later positions are not found.");
+
+            }
+
+        } else {
+            System.out.println("Usage: GameDatabase build <pgn file> <base> [max ply]");
+            System.out.println("       GameDatabase search <base> <fen>");
+        }
+
+    }
+
+    /**
+     * Builds a database of every valid game of a {@code .pgn} file, replacing any
+     * database at the same base path.
+     * 
+     * @param pgn    The path of the {@code .pgn} file.
+     * @param base   The path of the database, without an extension.
+     * @param maxPly The most moves of each game to index, or {@link #ALL_PLIES} for
+     *               whole games.
+     * @return The number of games in the database.
+     * @throws IOException If the file could not be read or the database could not
+     *                     be written.
+     */
+    public static int build(Path pgn, Path base, int maxPly) throws IOException {
+
+        final Path gamesPath = getPath(base, GAMES_EXTENSION);
+
+        try (PGNReader reader = new PGNReader(pgn); GameArchiveWriter writer = new GameArchiveWriter(gamesPath)) {
+
+            while (reader.hasNext()) {
+
+                final PGNReader.Entry entry = reader.next();
+
+                try {
+                    writer.write(entry.getParser());
+                } catch (Exception e) {
+                    // Games that are invalid are left out of the database
+                }
+
+            }
+
+        }
+
+        try (GameArchiveReader games = new GameArchiveReader(gamesPath, true)) {
+
+            PositionIndex.build(games, getPath(base, INDEX_EXTENSION), maxPly);
+            return games.getCount();
+
+        }
+
+    }
+
+    /**
+     * Gets the path of a file of a database.
+     * 
+     * @param base      The path of the database, without an extension.
+     * @param extension The extension of the file.
+     * @return The path of the file.
+     */
+    private static Path getPath(Path base, String extension) {
+        return base.resolveSibling(base.getFileName() + extension);
+    }
+
+    /** The archive of the games. */
+    private final GameArchiveReader games;
+
+    /** The index of the positions of the games. */
+    private final PositionIndex index;
+
+    /**
+     * Opens the database at the given base path.
+     * 
+     * @param base The path of the database, without an extension.
+     * @throws IOException If the files of the database could not be opened, or do
+     *                     not belong together.
+     */
+    public GameDatabase(Path base) throws IOException {
+
+        games = new GameArchiveReader(getPath(base, GAMES_EXTENSION), true);
+
+        try {
+
+            index = new PositionIndex(getPath(base, INDEX_EXTENSION));
+
+            if (index.getGameCount() != games.getCount()) {
+                index.close();
+                throw new IOException("Position index does not match the games of the database.");
+            }
+
+        } catch (IOException e) {
+            games.close();
+            throw e;
+        }
+
+    }
+
+    /**
+     * Gets the number of games in the database.
+     * 
+     * @return The number of games.
+     */
+    public int getGameCount() {
+        return games.getCount();
+    }
+
+    /**
+     * Gets the most moves of each game that were indexed. Positions reached later
+     * in a game are not found by {@link #search(Position)}.
+     * 
+     * @return The most moves indexed.
+     */
+    public int getMaxPly() {
+        return index.getMaxPly();
+    }
+
+    /**
+     * Gets whether or not every move of each game was indexed. If not, a search
+     * that finds no games may be of a position that is only reached after the
+     * {@link #getMaxPly() max ply}.
+     * 
+     * @return Whether or not whole games were indexed.
+     */
+    public boolean isWholeGames() {
+        return index.getMaxPly() == ALL_PLIES;
+    }
+
+    /**
+     * Reads a game of the database.
+     * 
+     * @param id The ID of the game.
+     * @return The parser of the game.
+     * @throws IOException If the game could not be read.
+     */
+    public PGNParser getGame(int id) throws IOException {
+        return games.read(id);
+    }
+
+    /**
+     * Reads the tags of a game of the database without its moves.
+     * 
+     * @param id The ID of the game.
+     * @return The tags of the game.
+     * @throws IOException If the game could not be read.
+     */
+    public Map<String, String> getTags(int id) throws IOException {
+        return games.readTags(id);
+    }
+
+    /**
+     * Finds every game that reaches the given position. If the database was not
+     * built with {@link #ALL_PLIES}, only games that reach the position within
+     * the {@link #getMaxPly() max ply} are found; see {@link #isWholeGames()}.
+     * 
+     * @param position The position.
+     * @return The games and the moves played next.
+     */
+    public SearchResult search(Position position) {
+        return index.search(position, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the games that reach the given position, within the
+     * {@link #getMaxPly() max ply} like {@link #search(Position)}.
+     * 
+     * @param position The position.
+     * @param maxGames The most game IDs to include in the result. The statistics
+     *                 include every game.
+     * @return The games and the moves played next.
+     */
+    public SearchResult search(Position position, int maxGames) {
+        return index.search(position, maxGames);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        try {
+            index.close();
+        } finally {
+            games.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,472 @@
+package game.database;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import game.Game;
+import game.GameReplay;
+import game.MoveGenerator;
+import game.Position;
+
+/**
+ * The number of games and their results of each position reached in the
+ * opening of the games added to it, and of each move played from those
+ * positions. Unlike a {@link GameDatabase}, the explorer is kept in memory and
+ * grows as games are added to it, so it can be queried for every position
+ * shown on the board. Games are only added by their callers, such as when a
+ * game is played to the end or a finished game is loaded from a PGN, and are
+ * counted once however many times they are added, until they are
+ * {@link #remove(Game) removed} or the explorer is {@link #clear() cleared}.
+ * Only games that were won, lost or drawn are added; games that were
+ * terminated or have no result are not.
+ * 
+ * <p>
+ * Games may be added from many threads at once and queried at the same
+ * time. The statistics of
+ * each position are kept in a {@link ConcurrentHashMap} by hash, and are counted
+ * with atomic increments, so adding a game never takes a lock.
+ * 
+ * <p>
+ * The moves of a position are stored as the pair of the hashes of the position
+ * and the position after the move, so they do not depend on how the move is
+ * represented. When the explorer is queried, each legal move of the position is
+ * made to find its statistics.
+ */
+public class OpeningExplorer {
+
+    /** The most moves of each game that are added by default. */
+    public static final int DEFAULT_MAX_PLY = 30;
+
+    /**
+     * Holds the explorer of the application, which is created when first used.
+     */
+    private static final class Default {
+
+        /** The explorer of the application. */
+        private static final OpeningExplorer EXPLORER = new OpeningExplorer(DEFAULT_MAX_PLY);
+
+    }
+
+    /**
+     * Gets the explorer of the application, which finished games and imported
+     * PGNs are added to.
+     * 
+     * @return The explorer of the application.
+     */
+    public static OpeningExplorer getDefault() {
+        return Default.EXPLORER;
+    }
+
+    /** The most moves of each game that are added. */
+    private final int maxPly;
+
+    /**
+     * The number of games of each position, by the hash of the position. Each
+     * array is indexed by result code, as described in {@link PositionIndex}.
+     */
+    private final ConcurrentHashMap<Long, AtomicIntegerArray> positions;
+
+    /**
+     * The number of games each move was played in, by the key returned by
+     * {@link #getMoveKey(long, long)}. Indexed in the same way as
+     * {@link #positions}.
+     */
+    private final ConcurrentHashMap<Long, AtomicIntegerArray> moves;
+
+    /** The number of games that have been added. */
+    private final LongAdder games;
+
+    /**
+     * The keys of the games that have been added, as returned by
+     * {@link #getGameKey(long[], String, String, int)}, so that a game added
+     * again is not counted twice.
+     */
+    private final Set<Long> added;
+
+    /**
+     * Creates a new, empty explorer.
+     * 
+     * @param maxPly The most moves of each game to add.
+     */
+    public OpeningExplorer(int maxPly) {
+
+        if (maxPly < 0)
+            throw new IllegalArgumentException("Max ply must not be negative.");
+
+        this.maxPly = maxPly;
+        this.positions = new ConcurrentHashMap<Long, AtomicIntegerArray>();
+        this.moves = new ConcurrentHashMap<Long, AtomicIntegerArray>();
+        this.games = new LongAdder();
+        this.added = ConcurrentHashMap.newKeySet();
+
+    }
+
+    /**
+     * Gets the most moves of each game that are added.
+     * 
+     * @return {@link #maxPly}
+     */
+    public int getMaxPly() {
+        return maxPly;
+    }
+
+    /**
+     * Gets the number of games that have been added.
+     * 
+     * @return The number of games.
+     */
+    public long getGameCount() {
+        return games.sum();
+    }
+
+    /**
+     * Gets the number of different positions that have been added.
+     * 
+     * @return The number of positions.
+     */
+    public int getPositionCount() {
+        return positions.size();
+    }
+
+    /**
+     * Adds the positions of a game with its current result. A position repeated
+     * in the game is only counted once.
+     * 
+     * @param game The game.
+     * @return Whether or not the game was added, which it is not if it has no
+     *         result or a game with the same players, moves and result has
+     *         already been added.
+     */
+    public boolean add(Game game) {
+
+        final long[] keys = getHashKeys(game);
+        return update(keys, getGameKey(game, keys), getResultCode(game.getResult()), 1);
+
+    }
+
+    /**
+     * Adds the positions of a replayed game with its result. A position repeated
+     * in the game is only counted once.
+     * 
+     * @param replay The replayed game.
+     * @return Whether or not the game was added, which it is not if it has no
+     *         result or a game with the same players, moves and result has
+     *         already been added.
+     */
+    public boolean add(GameReplay replay) {
+
+        final long[] keys = getHashKeys(replay);
+        return update(keys, getGameKey(replay, keys), getResultCode(replay.getResult()), 1);
+
+    }
+
+    /**
+     * Removes the positions of a game that was added with its current result.
+     * 
+     * @param game The game.
+     * @return Whether or not the game was removed, which it is not if it was
+     *         never added.
+     */
+    public boolean remove(Game game) {
+
+        final long[] keys = getHashKeys(game);
+        return update(keys, getGameKey(game, keys), getResultCode(game.getResult()), -1);
+
+    }
+
+    /**
+     * Removes the positions of a replayed game that was added.
+     * 
+     * @param replay The replayed game.
+     * @return Whether or not the game was removed, which it is not if it was
+     *         never added.
+     */
+    public boolean remove(GameReplay replay) {
+
+        final long[] keys = getHashKeys(replay);
+        return update(keys, getGameKey(replay, keys), getResultCode(replay.getResult()), -1);
+
+    }
+
+    /**
+     * Counts or uncounts the positions of a game.
+     * 
+     * @param keys    The hashes of every position of the game.
+     * @param gameKey The key of the game.
+     * @param result  The result code of the game.
+     * @param delta   {@code 1} to add the game, or {@code -1} to remove it.
+     * @return Whether or not the game was added or removed.
+     */
+    private boolean update(long[] keys, long gameKey, int result, int delta) {
+
+        // Terminated and unfinished games have no result to count
+        if (result == 0)
+            return false;
+
+        if (delta > 0 ? !added.add(gameKey) : !added.remove(gameKey))
+            return false;
+
+        final int plies = Math.min(keys.length - 1, maxPly);
+
+        final HashSet<Long> seen = new HashSet<Long>();
+
+        for (int ply = 0; ply <= plies; ply++) {
+
+            if (!seen.add(keys[ply]))
+                continue;
+
+            count(positions, keys[ply], result, delta);
+
+            if (ply < keys.length - 1)
+                count(moves, getMoveKey(keys[ply], keys[ply + 1]), result, delta);
+
+        }
+
+        games.add(delta);
+
+        return true;
+
+    }
+
+    /**
+     * Gets the statistics of the given position and of each legal move from it.
+     * Safe to call while games are being added, in which case the statistics may
+     * include only part of a game being added.
+     * 
+     * @param position The position.
+     * @return The games of the position and of each move played from it, most
+     *         played first. The result has no game IDs.
+     */
+    public SearchResult query(Position position) {
+
+        final long start = System.nanoTime();
+        final long key = position.getHashKey();
+
+        final SearchResult.MoveStats total = new SearchResult.MoveStats(-1, null);
+        final ArrayList<SearchResult.MoveStats> stats = new ArrayList<SearchResult.MoveStats>();
+
+        final AtomicIntegerArray counts = positions.get(key);
+
+        // Positions of removed games are left with no games
+        if (counts != null && sum(counts) > 0) {
+
+            addCounts(total, counts);
+
+            final Position copy = new Position(position);
+            final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+            final int legal = MoveGenerator.filterLegal(copy, buffer, MoveGenerator.generate(copy, buffer));
+
+            for (int i = 0; i < legal; i++) {
+
+                copy.makeMove(buffer[i]);
+                final AtomicIntegerArray moveCounts = moves.get(getMoveKey(key, copy.getHashKey()));
+                copy.unmakeMove();
+
+                if (moveCounts == null || sum(moveCounts) == 0)
+                    continue;
+
+                final SearchResult.MoveStats move = new SearchResult.MoveStats(buffer[i],
+                        GameReplay.getNotation(copy, buffer, legal, buffer[i]));
+
+                addCounts(move, moveCounts);
+                stats.add(move);
+
+            }
+
+            stats.sort((a, b) -> b.getGames() - a.getGames());
+
+        }
+
+        return new SearchResult(total, stats, new int[0], new int[0], System.nanoTime() - start);
+
+    }
+
+    /**
+     * Removes every game from the explorer.
+     */
+    public void clear() {
+
+        positions.clear();
+        moves.clear();
+        added.clear();
+        games.reset();
+
+    }
+
+    /**
+     * Counts or uncounts a game in the given map.
+     * 
+     * @param map    The map.
+     * @param key    The key of the position or move.
+     * @param result The result code of the game.
+     * @param delta  {@code 1} to count the game, or {@code -1} to uncount it.
+     */
+    private static void count(ConcurrentHashMap<Long, AtomicIntegerArray> map, long key, int result, int delta) {
+
+        AtomicIntegerArray counts = map.get(key);
+
+        if (counts == null)
+            counts = map.computeIfAbsent(key, k -> new AtomicIntegerArray(4));
+
+        counts.addAndGet(result, delta);
+
+    }
+
+    /**
+     * Gets the number of games of a position or move.
+     * 
+     * @param counts The number of games of each result code.
+     * @return The total number of games.
+     */
+    private static int sum(AtomicIntegerArray counts) {
+
+        int sum = 0;
+
+        for (int result = 0; result < 4; result++)
+            sum += counts.get(result);
+
+        return sum;
+
+    }
+
+    /**
+     * Gets the hashes of every position of a game.
+     * 
+     * @param game The game.
+     * @return The hashes, from the first position to the last.
+     */
+    private static long[] getHashKeys(Game game) {
+
+        final List<Position> list = game.getPositions();
+        final long[] keys = new long[list.size()];
+
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = list.get(i).getHashKey();
+
+        return keys;
+
+    }
+
+    /**
+     * Gets the hashes of every position of a replayed game.
+     * 
+     * @param replay The replayed game.
+     * @return The hashes, from the first position to the last.
+     */
+    private static long[] getHashKeys(GameReplay replay) {
+
+        final Position position = replay.getPosition(0);
+        final int[] played = replay.getMoves();
+        final long[] keys = new long[played.length + 1];
+
+        keys[0] = position.getHashKey();
+
+        for (int i = 0; i < played.length; i++) {
+            position.makeMove(played[i]);
+            keys[i + 1] = position.getHashKey();
+        }
+
+        return keys;
+
+    }
+
+    /**
+     * Gets the key of a game, by which a game added again is recognized.
+     * 
+     * @param game The game.
+     * @param keys The hashes of every position of the game.
+     * @return The key.
+     */
+    private static long getGameKey(Game game, long[] keys) {
+
+        return getGameKey(keys, game.getPlayer(true).getName(), game.getPlayer(false).getName(),
+                getResultCode(game.getResult()));
+
+    }
+
+    /**
+     * Gets the key of a replayed game, by which a game added again is
+     * recognized.
+     * 
+     * @param replay The replayed game.
+     * @param keys   The hashes of every position of the game.
+     * @return The key.
+     */
+    private static long getGameKey(GameReplay replay, long[] keys) {
+
+        return getGameKey(keys, replay.getPgn().getTags().getOrDefault("White", "White"),
+                replay.getPgn().getTags().getOrDefault("Black", "Black"), getResultCode(replay.getResult()));
+
+    }
+
+    /**
+     * Gets the key of a game from its players, positions and result.
+     * 
+     * @param keys   The hashes of every position of the game.
+     * @param white  The name of the white player.
+     * @param black  The name of the black player.
+     * @param result The result code of the game.
+     * @return The key.
+     */
+    private static long getGameKey(long[] keys, String white, String black, int result) {
+
+        long key = ((long) white.hashCode() << 32 | (black.hashCode() & 0xFFFFFFFFL)) ^ result;
+
+        for (long k : keys)
+            key = Long.rotateLeft(key, 17) * 0x9E3779B97F4A7C15L ^ k;
+
+        return key;
+
+    }
+
+    /**
+     * Adds the counts of a position or move to its statistics.
+     * 
+     * @param stats  The statistics.
+     * @param counts The number of games of each result code.
+     */
+    private static void addCounts(SearchResult.MoveStats stats, AtomicIntegerArray counts) {
+
+        for (int result = 0; result < 4; result++)
+            stats.add(result, counts.get(result));
+
+    }
+
+    /**
+     * Gets the key of a move.
+     * 
+     * @param from The hash of the position the move is made from.
+     * @param to   The hash of the position after the move.
+     * @return The key of the move.
+     */
+    private static long getMoveKey(long from, long to) {
+        return from ^ Long.rotateLeft(to, 29) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Gets the result code of a game.
+     * 
+     * @param result The result of the game.
+     * @return The result code, as described in {@link PositionIndex}.
+     */
+    private static int getResultCode(Game.Result result) {
+
+        switch (result) {
+            case WHITE_WIN:
+                return PositionIndex.WHITE_WIN;
+            case DRAW:
+                return PositionIndex.DRAW;
+            case BLACK_WIN:
+                return PositionIndex.BLACK_WIN;
+            default:
+                return 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,589 @@
+package game.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import game.GameReplay;
+import game.MoveGenerator;
+import game.Position;
+import game.PGN.GameArchiveReader;
+
+/**
+ * An on-disk hash index from the {@link Position#getHashKey()} of each position
+ * reached in the games of an archive to the games that reach it and the move
+ * played next. The index file is memory-mapped, so only the pages that are
+ * searched are read, and nothing but the header is kept in the heap.
+ * 
+ * <p>
+ * The entries of the index are grouped into buckets by the high bits of their
+ * key, and sorted by key within each bucket, so a search reads the start of the
+ * bucket from a table and then binary searches the bucket. A position is only
+ * indexed once per game, at the first time it is reached.
+ * 
+ * <pre>
+ * Header:  int MAGIC, short VERSION, byte bucket bits, byte 0, int max ply,
+ *          int game count, long entry count, long 0
+ * Buckets: long index of the first entry of each bucket, then the entry count
+ * Entries: long key, int game ID, short ply and result, short next move
+ * </pre>
+ * 
+ * <p>
+ * The next move is stored as its index in the legal moves of the position, or
+ * {@link #NO_MOVE} if the game ended there. The result is stored in the low two
+ * bits of the ply: {@code 0} if unknown, or {@link #WHITE_WIN}, {@link #DRAW}
+ * or {@link #BLACK_WIN}.
+ */
+public class PositionIndex implements Closeable {
+
+    /** The first four bytes of an index, {@code "CHSI"}. */
+    private static final int MAGIC = 0x43485349;
+
+    /** The version of the index format. */
+    private static final short VERSION = 1;
+
+    /** The size of the header, in bytes. */
+    private static final int HEADER_SIZE = 32;
+
+    /** The size of an entry, in bytes. */
+    private static final int ENTRY_SIZE = 16;
+
+    /**
+     * The number of bits of the size of each mapped segment of the file. Entries
+     * never cross a segment, as the segment size is a multiple of the entry size.
+     */
+    private static final int SEGMENT_BITS = 30;
+
+    /** The fewest bucket bits an index is built with. */
+    private static final int MIN_BUCKET_BITS = 10;
+
+    /** The most bucket bits an index is built with. */
+    private static final int MAX_BUCKET_BITS = 22;
+
+    /** The next move of a game that ended in the position. */
+    public static final int NO_MOVE = 0xFFFF;
+
+    /** The result code of a game white won. */
+    public static final int WHITE_WIN = 1;
+
+    /** The result code of a drawn game. */
+    public static final int DRAW = 2;
+
+    /** The result code of a game black won. */
+    public static final int BLACK_WIN = 3;
+
+    /**
+     * Receives each position of a game while the index is built.
+     */
+    private interface EntryVisitor {
+
+        /**
+         * Visits a position.
+         * 
+         * @param key    The hash of the position.
+         * @param game   The ID of the game.
+         * @param ply    The number of moves made before the position.
+         * @param result The result code of the game.
+         * @param next   The legal move index of the move played next.
+         */
+        void visit(long key, int game, int ply, int result, int next);
+
+    }
+
+    /**
+     * Builds the index of every game of an archive. The games are replayed twice,
+     * once to count the entries of each bucket and once to write them, so that
+     * the entries never need to be held in the heap.
+     * 
+     * @param games  The archive of the games.
+     * @param path   The path of the index file to create.
+     * @param maxPly The most moves of each game to index, or
+     *               {@link GameDatabase#ALL_PLIES} for whole games.
+     * @throws IOException If the archive could not be read or the index could not
+     *                     be written.
+     */
+    public static void build(GameArchiveReader games, Path path, int maxPly) throws IOException {
+
+        final int bits = getBucketBits(games.getCount());
+        final int[] counts = new int[1 << bits];
+
+        visitGames(games, maxPly, (key, game, ply, result, next) -> counts[(int) (key >>> (64 - bits))]++);
+
+        final long[] starts = new long[counts.length + 1];
+        for (int i = 0; i < counts.length; i++)
+            starts[i + 1] = starts[i] + counts[i];
+
+        final long entries = starts[counts.length];
+        final long entriesOffset = HEADER_SIZE + (long) starts.length * 8;
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+
+            file.setLength(0);
+            file.setLength(entriesOffset + entries * ENTRY_SIZE);
+
+            final MappedByteBuffer[] segments = map(file.getChannel(), FileChannel.MapMode.READ_WRITE);
+
+            final MappedByteBuffer header = segments[0];
+            header.putInt(0, MAGIC);
+            header.putShort(4, VERSION);
+            header.put(6, (byte) bits);
+            header.putInt(8, maxPly);
+            header.putInt(12, games.getCount());
+            header.putLong(16, entries);
+
+            for (int i = 0; i < starts.length; i++)
+                putLong(segments, HEADER_SIZE + i * 8L, starts[i]);
+
+            final long[] cursors = new long[counts.length];
+            System.arraycopy(starts, 0, cursors, 0, counts.length);
+
+            visitGames(games, maxPly, (key, game, ply, result, next) -> {
+
+                final long offset = entriesOffset + cursors[(int) (key >>> (64 - bits))]++ * ENTRY_SIZE;
+
+                putLong(segments, offset, key);
+                putLong(segments, offset + 8, pack(game, ply, result, next));
+
+            });
+
+            for (int b = 0; b < counts.length; b++)
+                sortBucket(segments, entriesOffset, starts[b], starts[b + 1]);
+
+            for (MappedByteBuffer segment : segments)
+                segment.force();
+
+        }
+
+    }
+
+    /** The file of the index. */
+    private final FileChannel channel;
+
+    /** The segments of the memory-mapped file. */
+    private final MappedByteBuffer[] segments;
+
+    /** The number of bits of the key that select its bucket. */
+    private final int bucketBits;
+
+    /** The most moves of each game that were indexed. */
+    private final int maxPly;
+
+    /** The number of games indexed. */
+    private final int gameCount;
+
+    /** The number of entries of the index. */
+    private final long entryCount;
+
+    /** The offset of the first entry in the file. */
+    private final long entriesOffset;
+
+    /**
+     * Opens the index at the given path.
+     * 
+     * @param path The path of the index.
+     * @throws IOException If the file could not be opened or is not an index.
+     */
+    public PositionIndex(Path path) throws IOException {
+
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("File is not a position index.");
+
+            segments = map(channel, FileChannel.MapMode.READ_ONLY);
+
+            final MappedByteBuffer header = segments[0];
+
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("File is not a position index.");
+
+            if (header.getShort(4) != VERSION)
+                throw new IOException("Unsupported position index version.");
+
+            bucketBits = header.get(6);
+            maxPly = header.getInt(8);
+            gameCount = header.getInt(12);
+            entryCount = header.getLong(16);
+            entriesOffset = HEADER_SIZE + ((1L << bucketBits) + 1) * 8;
+
+            if (entriesOffset + entryCount * ENTRY_SIZE != channel.size())
+                throw new IOException("Position index is incomplete.");
+
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+    }
+
+    /**
+     * Gets the most moves of each game that were indexed.
+     * 
+     * @return {@link #maxPly}
+     */
+    public int getMaxPly() {
+        return maxPly;
+    }
+
+    /**
+     * Gets the number of games indexed.
+     * 
+     * @return {@link #gameCount}
+     */
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Gets the number of entries of the index.
+     * 
+     * @return {@link #entryCount}
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Finds the games that reach the given position.
+     * 
+     * @param position The position.
+     * @param maxGames The most game IDs to include in the result. The statistics
+     *                 include every game.
+     * @return The games and the moves played next.
+     */
+    public SearchResult search(Position position, int maxGames) {
+
+        final long start = System.nanoTime();
+        final long key = position.getHashKey();
+
+        final long bucket = key >>> (64 - bucketBits);
+        long lo = getLong(HEADER_SIZE + bucket * 8);
+        long hi = getLong(HEADER_SIZE + (bucket + 1) * 8);
+
+        // Find the first entry of the key
+        while (lo < hi) {
+
+            final long mid = (lo + hi) >>> 1;
+
+            if (Long.compare(getLong(entriesOffset + mid * ENTRY_SIZE), key) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+
+        }
+
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        final int legal = MoveGenerator.filterLegal(position, buffer, MoveGenerator.generate(position, buffer));
+
+        final SearchResult.MoveStats total = new SearchResult.MoveStats(-1, null);
+        final HashMap<Integer, SearchResult.MoveStats> moves = new HashMap<Integer, SearchResult.MoveStats>();
+
+        final ArrayList<Integer> ids = new ArrayList<Integer>();
+        final ArrayList<Integer> plies = new ArrayList<Integer>();
+
+        for (long i = lo; i < entryCount; i++) {
+
+            final long offset = entriesOffset + i * ENTRY_SIZE;
+
+            if (getLong(offset) != key)
+                break;
+
+            final long value = getLong(offset + 8);
+            final int game = (int) (value >>> 32);
+            final int ply = (int) ((value >>> 18) & 0x3FFF);
+            final int result = (int) ((value >>> 16) & 0x3);
+            final int next = (int) (value & 0xFFFF);
+
+            total.add(result);
+
+            SearchResult.MoveStats stats = moves.get(next);
+
+            if (stats == null) {
+
+                if (next == NO_MOVE || next >= legal)
+                    stats = new SearchResult.MoveStats(-1, null);
+                else
+                    stats = new SearchResult.MoveStats(buffer[next],
+                            GameReplay.getNotation(position, buffer, legal, buffer[next]));
+
+                moves.put(next, stats);
+
+            }
+
+            stats.add(result);
+
+            if (ids.size() < maxGames) {
+                ids.add(game);
+                plies.add(ply);
+            }
+
+        }
+
+        final ArrayList<SearchResult.MoveStats> sorted = new ArrayList<SearchResult.MoveStats>(moves.values());
+        sorted.sort((a, b) -> b.getGames() - a.getGames());
+
+        return new SearchResult(total, sorted, ids.stream().mapToInt(Integer::intValue).toArray(),
+                plies.stream().mapToInt(Integer::intValue).toArray(), System.nanoTime() - start);
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads a long from the mapped file.
+     * 
+     * @param offset The offset in the file.
+     * @return The long.
+     */
+    private long getLong(long offset) {
+        return getLong(segments, offset);
+    }
+
+    /**
+     * Replays every game of an archive, visiting each position the first time it
+     * is reached in each game.
+     * 
+     * @param games   The archive.
+     * @param maxPly  The most moves of each game to visit.
+     * @param visitor The visitor.
+     * @throws IOException If a game could not be read or is invalid.
+     */
+    private static void visitGames(GameArchiveReader games, int maxPly, EntryVisitor visitor) throws IOException {
+
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        final HashSet<Long> seen = new HashSet<Long>();
+
+        for (int g = 0; g < games.getCount(); g++) {
+
+            final Map<String, String> tags = games.readTags(g);
+            final int result = getResultCode(tags.getOrDefault("Result", "*"));
+
+            final Position position = games.readStart(g);
+            final int[] indices = games.readMoveIndices(g);
+            final int plies = Math.min(indices.length, maxPly);
+
+            seen.clear();
+
+            for (int ply = 0; ply <= plies; ply++) {
+
+                final int next = ply < indices.length ? indices[ply] : NO_MOVE;
+
+                if (seen.add(position.getHashKey()))
+                    visitor.visit(position.getHashKey(), g, ply, result, next);
+
+                if (ply == plies)
+                    break;
+
+                final int legal = MoveGenerator.filterLegal(position, buffer,
+                        MoveGenerator.generate(position, buffer));
+
+                if (next >= legal)
+                    throw new IOException("Invalid move " + ply + " of game " + g + ".");
+
+                position.makeMove(buffer[next]);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Packs the value of an entry.
+     * 
+     * @param game   The ID of the game.
+     * @param ply    The number of moves made before the position.
+     * @param result The result code of the game.
+     * @param next   The legal move index of the move played next.
+     * @return The packed value.
+     */
+    private static long pack(int game, int ply, int result, int next) {
+        return ((long) game << 32) | ((long) Math.min(ply, 0x3FFF) << 18) | ((long) result << 16) | next;
+    }
+
+    /**
+     * Gets the result code of the given Result tag.
+     * 
+     * @param result The Result tag.
+     * @return The result code.
+     */
+    private static int getResultCode(String result) {
+
+        switch (result) {
+            case "1-0":
+                return WHITE_WIN;
+            case "1/2-1/2":
+                return DRAW;
+            case "0-1":
+                return BLACK_WIN;
+            default:
+                return 0;
+        }
+
+    }
+
+    /**
+     * Gets the number of bucket bits of an index of the given number of games,
+     * aiming for a few entries of the less common positions in each bucket.
+     * 
+     * @param games The number of games.
+     * @return The number of bucket bits.
+     */
+    private static int getBucketBits(int games) {
+
+        final int bits = 64 - Long.numberOfLeadingZeros(Math.max(1L, games) * 16);
+        return Math.max(MIN_BUCKET_BITS, Math.min(MAX_BUCKET_BITS, bits));
+
+    }
+
+    /**
+     * Sorts the entries of a bucket by key. Entries with the same key stay in the
+     * order of their games.
+     * 
+     * @param segments      The segments of the mapped file.
+     * @param entriesOffset The offset of the first entry in the file.
+     * @param from          The index of the first entry of the bucket.
+     * @param to            The index after the last entry of the bucket.
+     */
+    private static void sortBucket(MappedByteBuffer[] segments, long entriesOffset, long from, long to) {
+
+        final int n = (int) (to - from);
+
+        if (n < 2)
+            return;
+
+        final long[] keys = new long[n];
+        final long[] values = new long[n];
+        boolean sorted = true;
+
+        for (int i = 0; i < n; i++) {
+
+            final long offset = entriesOffset + (from + i) * ENTRY_SIZE;
+            keys[i] = getLong(segments, offset);
+            values[i] = getLong(segments, offset + 8);
+
+            if (i > 0 && keys[i] < keys[i - 1])
+                sorted = false;
+
+        }
+
+        if (sorted)
+            return;
+
+        mergeSort(keys, values, new long[n], new long[n], 0, n);
+
+        for (int i = 0; i < n; i++) {
+
+            final long offset = entriesOffset + (from + i) * ENTRY_SIZE;
+            putLong(segments, offset, keys[i]);
+            putLong(segments, offset + 8, values[i]);
+
+        }
+
+    }
+
+    /**
+     * Stably sorts a range of keys, and the values with them.
+     * 
+     * @param keys       The keys.
+     * @param values     The values of the keys.
+     * @param tempKeys   Space for merging the keys.
+     * @param tempValues Space for merging the values.
+     * @param from       The first index of the range.
+     * @param to         The index after the range.
+     */
+    private static void mergeSort(long[] keys, long[] values, long[] tempKeys, long[] tempValues, int from,
+            int to) {
+
+        if (to - from < 2)
+            return;
+
+        final int mid = (from + to) >>> 1;
+
+        mergeSort(keys, values, tempKeys, tempValues, from, mid);
+        mergeSort(keys, values, tempKeys, tempValues, mid, to);
+
+        if (keys[mid - 1] <= keys[mid])
+            return;
+
+        int a = from;
+        int b = mid;
+
+        for (int i = from; i < to; i++) {
+
+            if (b >= to || (a < mid && keys[a] <= keys[b])) {
+                tempKeys[i] = keys[a];
+                tempValues[i] = values[a++];
+            } else {
+                tempKeys[i] = keys[b];
+                tempValues[i] = values[b++];
+            }
+
+        }
+
+        System.arraycopy(tempKeys, from, keys, from, to - from);
+        System.arraycopy(tempValues, from, values, from, to - from);
+
+    }
+
+    /**
+     * Maps the whole of a file in segments.
+     * 
+     * @param channel The file.
+     * @param mode    The mode to map the file in.
+     * @return The segments.
+     * @throws IOException If the file could not be mapped.
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode) throws IOException {
+
+        final long size = channel.size();
+        final MappedByteBuffer[] segments = new MappedByteBuffer[(int) Math.max(1,
+                (size + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS)];
+
+        for (int i = 0; i < segments.length; i++) {
+
+            final long start = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(mode, start, Math.min(1L << SEGMENT_BITS, size - start));
+
+        }
+
+        return segments;
+
+    }
+
+    /**
+     * Reads a long from a mapped file.
+     * 
+     * @param segments The segments of the file.
+     * @param offset   The offset in the file, which must be a multiple of 8.
+     * @return The long.
+     */
+    private static long getLong(MappedByteBuffer[] segments, long offset) {
+        return segments[(int) (offset >>> SEGMENT_BITS)].getLong((int) (offset & ((1L << SEGMENT_BITS) - 1)));
+    }
+
+    /**
+     * Writes a long to a mapped file.
+     * 
+     * @param segments The segments of the file.
+     * @param offset   The offset in the file, which must be a multiple of 8.
+     * @param value    The long.
+     */
+    private static void putLong(MappedByteBuffer[] segments, long offset, long value) {
+        segments[(int) (offset >>> SEGMENT_BITS)].putLong((int) (offset & ((1L << SEGMENT_BITS) - 1)), value);
+    }
+
+}
@@ -0,0 +1,278 @@
+package game.database;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The games of a {@link GameDatabase} or {@link OpeningExplorer} that reach a
+ * position, and the moves played next in them.
+ */
+public class SearchResult {
+
+    /**
+     * The statistics of a move played from the position searched for.
+     */
+    public static class MoveStats {
+
+        /**
+         * The move, encoded as described in {@link game.MoveGenerator}, or
+         * {@code -1} for the games that ended in the position.
+         */
+        private final int move;
+
+        /**
+         * The notation of the move, or {@code null} for the games that ended in
+         * the position.
+         */
+        private final String notation;
+
+        /** The number of games the move was played in. */
+        private int games;
+
+        /** The number of those games that white won. */
+        private int whiteWins;
+
+        /** The number of those games that were drawn. */
+        private int draws;
+
+        /** The number of those games that black won. */
+        private int blackWins;
+
+        /**
+         * Creates the statistics of a move with no games.
+         * 
+         * @param move     The encoded move.
+         * @param notation The notation of the move.
+         */
+        MoveStats(int move, String notation) {
+
+            this.move = move;
+            this.notation = notation;
+
+        }
+
+        /**
+         * Adds a game to the statistics.
+         * 
+         * @param result The result code of the game.
+         * @see PositionIndex
+         */
+        void add(int result) {
+            add(result, 1);
+        }
+
+        /**
+         * Adds games with the same result to the statistics.
+         * 
+         * @param result The result code of the games.
+         * @param count  The number of games.
+         * @see PositionIndex
+         */
+        void add(int result, int count) {
+
+            games += count;
+
+            switch (result) {
+                case PositionIndex.WHITE_WIN:
+                    whiteWins += count;
+                    break;
+                case PositionIndex.DRAW:
+                    draws += count;
+                    break;
+                case PositionIndex.BLACK_WIN:
+                    blackWins += count;
+                    break;
+            }
+
+        }
+
+        /**
+         * Gets the encoded move.
+         * 
+         * @return {@link #move}
+         */
+        public int getMove() {
+            return move;
+        }
+
+        /**
+         * Gets the notation of the move.
+         * 
+         * @return {@link #notation}
+         */
+        public String getNotation() {
+            return notation;
+        }
+
+        /**
+         * Gets the number of games the move was played in.
+         * 
+         * @return {@link #games}
+         */
+        public int getGames() {
+            return games;
+        }
+
+        /**
+         * Gets the number of games that white won.
+         * 
+         * @return {@link #whiteWins}
+         */
+        public int getWhiteWins() {
+            return whiteWins;
+        }
+
+        /**
+         * Gets the number of games that were drawn.
+         * 
+         * @return {@link #draws}
+         */
+        public int getDraws() {
+            return draws;
+        }
+
+        /**
+         * Gets the number of games that black won.
+         * 
+         * @return {@link #blackWins}
+         */
+        public int getBlackWins() {
+            return blackWins;
+        }
+
+        @Override
+        public String toString() {
+            return (notation == null ? "(end)" : notation) + ": " + games + " games, +" + whiteWins + " =" + draws
+                    + " -" + blackWins;
+        }
+
+    }
+
+    /** The statistics of all of the games that reach the position. */
+    private final MoveStats total;
+
+    /** The statistics of each move played next, most played first. */
+    private final List<MoveStats> moves;
+
+    /**
+     * The IDs of the games that reach the position, in the order they were added
+     * to the database. May be limited to fewer than {@link #getGames()}.
+     */
+    private final int[] gameIds;
+
+    /**
+     * The number of moves made before the position is reached in each game of
+     * {@link #gameIds}.
+     */
+    private final int[] plies;
+
+    /** The time the search took, in nanoseconds. */
+    private final long time;
+
+    /**
+     * Creates a new search result.
+     * 
+     * @param total   The statistics of all of the games.
+     * @param moves   The statistics of each move played next.
+     * @param gameIds The IDs of the games.
+     * @param plies   The ply the position is reached in each game.
+     * @param time    The time the search took, in nanoseconds.
+     */
+    SearchResult(MoveStats total, List<MoveStats> moves, int[] gameIds, int[] plies, long time) {
+
+        this.total = total;
+        this.moves = Collections.unmodifiableList(moves);
+        this.gameIds = gameIds;
+        this.plies = plies;
+        this.time = time;
+
+    }
+
+    /**
+     * Gets the number of games that reach the position.
+     * 
+     * @return The number of games.
+     */
+    public int getGames() {
+        return total.getGames();
+    }
+
+    /**
+     * Gets the number of games that reach the position that white won.
+     * 
+     * @return The number of games.
+     */
+    public int getWhiteWins() {
+        return total.getWhiteWins();
+    }
+
+    /**
+     * Gets the number of games that reach the position that were drawn.
+     * 
+     * @return The number of games.
+     */
+    public int getDraws() {
+        return total.getDraws();
+    }
+
+    /**
+     * Gets the number of games that reach the position that black won.
+     * 
+     * @return The number of games.
+     */
+    public int getBlackWins() {
+        return total.getBlackWins();
+    }
+
+    /**
+     * Gets the statistics of each move played next, most played first.
+     * 
+     * @return {@link #moves}
+     */
+    public List<MoveStats> getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the IDs of the games that reach the position.
+     * 
+     * @return {@link #gameIds}
+     */
+    public int[] getGameIds() {
+        return gameIds;
+    }
+
+    /**
+     * Gets the number of moves made before the position is reached in each game
+     * of {@link #getGameIds()}.
+     * 
+     * @return {@link #plies}
+     */
+    public int[] getPlies() {
+        return plies;
+    }
+
+    /**
+     * Gets the time the search took.
+     * 
+     * @return {@link #time}, in nanoseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+
+        final StringBuilder str = new StringBuilder();
+        str.append(getGames()).append(" games, +").append(getWhiteWins()).append(" =").append(getDraws())
+                .append(" -").append(getBlackWins()).append('\n');
+
+        for (MoveStats move : moves)
+            str.append(move).append('\n');
+
+        return str.toString();
+
+    }
+
+}
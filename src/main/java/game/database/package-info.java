@@ -0,0 +1,5 @@
+/**
+ * Contains the game database, which stores large collections of games on disk
+ * and finds the games that reach a position.
+ */
+package game.database;
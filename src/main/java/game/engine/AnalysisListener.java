@@ -0,0 +1,24 @@
+package game.engine;
+
+import java.util.List;
+
+import game.Position;
+
+/**
+ * Interface for listening to the updates of an {@link EngineAnalysis}.
+ */
+@FunctionalInterface
+public interface AnalysisListener {
+
+    /**
+     * Called with the latest lines of the analysis, at most once per update
+     * interval of the analysis, and once more when the analysis ends.
+     * 
+     * @param position The position being analyzed.
+     * @param lines    The latest information of each line the engine has output
+     *                 for the position, best line first.
+     * @param done     Whether or not the analysis of the position has ended.
+     */
+    public void onAnalysis(Position position, List<EngineInfo> lines, boolean done);
+
+}
@@ -0,0 +1,130 @@
+package game.engine;
+
+import game.Square;
+
+/**
+ * The move an engine chose at the end of a search, from its {@code bestmove}
+ * line.
+ */
+public class BestMove {
+
+    /** The move, in long algebraic notation, such as {@code e7e8q}. */
+    private final String move;
+
+    /**
+     * The move the engine expects in reply, in long algebraic notation, or
+     * {@code null} if it did not say.
+     */
+    private final String ponder;
+
+    /**
+     * The last information the engine output for the best line during the
+     * search, or {@code null} if it output none.
+     */
+    private final EngineInfo info;
+
+    /**
+     * Parses a {@code bestmove} line output by an engine.
+     * 
+     * @param line The line, starting with {@code bestmove}.
+     * @param info The last information the engine output for the best line.
+     */
+    BestMove(String line, EngineInfo info) {
+
+        final String[] a = line.trim().split("\\s+");
+
+        this.move = a.length > 1 ? a[1] : "0000";
+        this.ponder = a.length > 3 && a[2].equals("ponder") ? a[3] : null;
+        this.info = info;
+
+    }
+
+    /**
+     * Creates a best move that was not output by an external engine, such as the
+     * move of the {@link BuiltInEngine}.
+     * 
+     * @param move   The move, in long algebraic notation.
+     * @param ponder The move expected in reply, or {@code null}.
+     * @param info   The last information of the search, or {@code null}.
+     */
+    BestMove(String move, String ponder, EngineInfo info) {
+
+        this.move = move;
+        this.ponder = ponder;
+        this.info = info;
+
+    }
+
+    /**
+     * Gets the move.
+     * 
+     * @return {@link #move}
+     */
+    public String getMove() {
+        return move;
+    }
+
+    /**
+     * Gets the move the engine expects in reply.
+     * 
+     * @return {@link #ponder}
+     */
+    public String getPonder() {
+        return ponder;
+    }
+
+    /**
+     * Gets the last information the engine output for the best line.
+     * 
+     * @return {@link #info}
+     */
+    public EngineInfo getInfo() {
+        return info;
+    }
+
+    /**
+     * Gets whether or not the engine found a move. An engine outputs the null
+     * move {@code 0000} if there is no legal move.
+     * 
+     * @return Whether or not there is a move.
+     */
+    public boolean hasMove() {
+        return move.length() >= 4 && !move.equals("0000");
+    }
+
+    /**
+     * Gets the square the move starts from.
+     * 
+     * @return The origin of the move.
+     * @throws Exception If the move is not in long algebraic notation.
+     */
+    public Square getOrigin() throws Exception {
+        return new Square(move.substring(0, 2));
+    }
+
+    /**
+     * Gets the square the move ends on.
+     * 
+     * @return The destination of the move.
+     * @throws Exception If the move is not in long algebraic notation.
+     */
+    public Square getDestination() throws Exception {
+        return new Square(move.substring(2, 4));
+    }
+
+    /**
+     * Gets the piece the move promotes to.
+     * 
+     * @return The char code of the piece, or {@code '0'} if the move is not a
+     *         promotion.
+     */
+    public char getPromoteType() {
+        return move.length() > 4 ? Character.toUpperCase(move.charAt(4)) : '0';
+    }
+
+    @Override
+    public String toString() {
+        return "bestmove " + move + (ponder == null ? "" : " ponder " + ponder);
+    }
+
+}
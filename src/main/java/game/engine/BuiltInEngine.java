@@ -0,0 +1,645 @@
+package game.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import game.GameReplay;
+import game.MoveGenerator;
+import game.Position;
+
+/**
+ * A chess engine that runs in the application, for playing against the
+ * computer without an external UCI engine.
+ * 
+ * <p>
+ * The engine searches with iterative deepening, each iteration being an
+ * alpha-beta search by a {@link Searcher} that ends in a quiescence search, and
+ * scores positions with the {@link Evaluation}. Its searches are requested like
+ * those of a {@link UCIEngine}: with the arguments of a UCI {@code go} command,
+ * such as {@code depth 8} or {@code wtime 60000 btime 60000 winc 1000}, and
+ * with the result returned as a {@link BestMove} once the search ends. The time
+ * for a move is budgeted from the clock of the side to move, and the search
+ * stops early when another iteration is unlikely to finish in time.
+ * 
+ * <p>
+ * Searches run one at a time on a single thread of the engine, and share a
+ * {@link TranspositionTable} whose size is set with the {@code Hash} option, in
+ * megabytes, as with a UCI engine.
+ * 
+ * <p>
+ * With the {@code Threads} option above {@code 1}, each search also starts
+ * helper threads (Lazy SMP): every helper runs its own iterative deepening on
+ * the same position, half of them one ply deeper than the main thread, and
+ * they only cooperate through the shared table, where their results make the
+ * main thread's next nodes cheaper. The main thread alone decides the move
+ * and when to stop. A single thread, and any search limited by nodes, searches
+ * the same tree every time for the same position and table.
+ * 
+ * <p>
+ * Can be run from the command line to measure its speed, and its scaling to
+ * more threads: {@code BuiltInEngine [depth] [threads] [fen]}.
+ */
+public class BuiltInEngine {
+
+    /** The name of the engine, as shown to the user. */
+    public static final String NAME = "Built-in engine";
+
+    /** The name of the option that sets the size of the hash table. */
+    public static final String HASH_OPTION = "Hash";
+
+    /** The name of the option that sets the number of search threads. */
+    public static final String THREADS_OPTION = "Threads";
+
+    /** The most search threads. */
+    public static final int MAX_THREADS = 256;
+
+    /** The most iterations of a search. */
+    public static final int MAX_DEPTH = 64;
+
+    /**
+     * The number of moves the remaining time is assumed to be needed for, if the
+     * search is not told.
+     */
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+
+    /** The time kept in reserve on the clock, in milliseconds. */
+    private static final long TIME_MARGIN = 50;
+
+    /** The positions searched by the benchmark. */
+    private static final String[] BENCH_FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"
+    };
+
+    /** The depth the benchmark searches to by default. */
+    private static final int BENCH_DEPTH = 6;
+
+    /**
+     * The limits of a search, parsed from the arguments of a UCI {@code go}
+     * command.
+     */
+    private static final class Limits {
+
+        /** The most iterations, or {@link BuiltInEngine#MAX_DEPTH}. */
+        private int depth = MAX_DEPTH;
+
+        /** The most nodes, or {@code 0} for no limit. */
+        private long nodes;
+
+        /** The exact time to search, in milliseconds, or {@code 0}. */
+        private long moveTime;
+
+        /** The time left on the clocks of white and black, in milliseconds. */
+        private final long[] time = new long[2];
+
+        /** The time added to the clocks of white and black per move. */
+        private final long[] increment = new long[2];
+
+        /** The number of moves until the next time control, or {@code 0}. */
+        private int movesToGo;
+
+        /**
+         * Parses the arguments of a {@code go} command. Unknown arguments are
+         * ignored.
+         * 
+         * @param goArgs The arguments.
+         */
+        private Limits(String goArgs) {
+
+            final String[] a = goArgs.trim().split("\\s+");
+
+            for (int i = 0; i + 1 < a.length; i++) {
+
+                try {
+
+                    switch (a[i]) {
+                        case "depth":
+                            depth = Math.max(1, Math.min(MAX_DEPTH, Integer.parseInt(a[++i])));
+                            break;
+                        case "nodes":
+                            nodes = Long.parseLong(a[++i]);
+                            break;
+                        case "movetime":
+                            moveTime = Long.parseLong(a[++i]);
+                            break;
+                        case "wtime":
+                            time[0] = Long.parseLong(a[++i]);
+                            break;
+                        case "btime":
+                            time[1] = Long.parseLong(a[++i]);
+                            break;
+                        case "winc":
+                            increment[0] = Long.parseLong(a[++i]);
+                            break;
+                        case "binc":
+                            increment[1] = Long.parseLong(a[++i]);
+                            break;
+                        case "movestogo":
+                            movesToGo = Integer.parseInt(a[++i]);
+                            break;
+                        default:
+                            break;
+                    }
+
+                } catch (NumberFormatException e) {
+                    // The value is ignored
+                }
+
+            }
+
+        }
+
+    }
+
+    /** The thread that searches are run on. */
+    private final ExecutorService executor;
+
+    /** The threads that help the thread of the engine search. */
+    private final ExecutorService helpers;
+
+    /** The table the results of searched positions are stored in. */
+    private final TranspositionTable table;
+
+    /** The number of threads each search is run on, including the main one. */
+    private volatile int threads;
+
+    /**
+     * Whether or not the main thread of the current search has finished, after
+     * which the helper threads stop.
+     */
+    private volatile boolean finished;
+
+    /**
+     * The number of times the engine has been {@link #stop() stopped}. A search
+     * stops once this changes, and searches requested before a stop that have
+     * not started yet are cancelled.
+     */
+    private volatile long stops;
+
+    /** The value of {@link #stops} when the current search was requested. */
+    private volatile long searchStops;
+
+    /** The time the current search must stop by, in milliseconds. */
+    private volatile long deadline;
+
+    /** The most nodes of the current search, or {@code 0} for no limit. */
+    private volatile long nodeLimit;
+
+    /**
+     * The result of the last search that was requested, or of the last option
+     * change, which is made between searches.
+     */
+    private CompletableFuture<?> lastSearch;
+
+    /**
+     * Creates a new engine, with a thread of its own that is started when the
+     * first search is requested.
+     */
+    public BuiltInEngine() {
+
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+
+            final Thread t = new Thread(r, NAME);
+            t.setDaemon(true);
+            return t;
+
+        });
+
+        this.helpers = Executors.newCachedThreadPool(r -> {
+
+            final Thread t = new Thread(r, NAME + " helper");
+            t.setDaemon(true);
+            return t;
+
+        });
+
+        this.table = new TranspositionTable();
+        this.threads = 1;
+        this.lastSearch = CompletableFuture.completedFuture(null);
+
+    }
+
+    /**
+     * Searches a position on the thread of the engine, without waiting for the
+     * search to end.
+     * 
+     * @param position The position to search, which is not changed.
+     * @param history  The hash keys of the positions of the game before the
+     *                 position, oldest first, used to find repetitions, or
+     *                 {@code null}.
+     * @param goArgs   The limits of the search, as the arguments of a UCI
+     *                 {@code go} command.
+     * @param listener Notified of the result of each iteration on the thread of
+     *                 the engine, or {@code null}.
+     * @return A future that is completed with the best move once the search
+     *         ends, or completed exceptionally if it was cancelled by
+     *         {@link #stop()}.
+     * @see UCIEngine#search(String, String[], String, Consumer)
+     */
+    public CompletableFuture<BestMove> search(Position position, long[] history, String goArgs,
+            Consumer<EngineInfo> listener) {
+
+        final Position copy = new Position(position);
+        final long requested = stops;
+
+        final CompletableFuture<BestMove> result = CompletableFuture.supplyAsync(() -> {
+
+            if (requested != stops)
+                throw new CancellationException("Engine was stopped.");
+
+            return think(copy, history, goArgs, listener, requested);
+
+        }, executor);
+
+        synchronized (this) {
+            lastSearch = result;
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Searches a position on the calling thread.
+     * 
+     * @param position The position to search, which is not changed.
+     * @param history  The hash keys of the positions of the game before the
+     *                 position, oldest first, or {@code null}.
+     * @param goArgs   The limits of the search, as the arguments of a UCI
+     *                 {@code go} command.
+     * @param listener Notified of the result of each iteration, or {@code null}.
+     * @return The best move.
+     */
+    public BestMove think(Position position, long[] history, String goArgs, Consumer<EngineInfo> listener) {
+        return think(position, history, goArgs, listener, stops);
+    }
+
+    /**
+     * Sets an option of the engine to the given value, once the searches that
+     * have been requested so far have ended.
+     * 
+     * @param name  The name of the option to set, such as {@link #HASH_OPTION}.
+     * @param value The value to set the option to.
+     * @throws Exception If the engine has no such option or the value is not
+     *                   valid.
+     * @see #whenIdle()
+     */
+    public void setOption(String name, String value) throws Exception {
+
+        if (name.equalsIgnoreCase(HASH_OPTION)) {
+
+            final int size = Integer.parseInt(value.trim());
+            if (size < 1 || size > TranspositionTable.MAX_SIZE)
+                throw new Exception("Hash must be between 1 and " + TranspositionTable.MAX_SIZE + " MB.");
+
+            run(() -> table.resize(size));
+
+        } else if (name.equalsIgnoreCase(THREADS_OPTION)) {
+
+            final int count = Integer.parseInt(value.trim());
+            if (count < 1 || count > MAX_THREADS)
+                throw new Exception("Threads must be between 1 and " + MAX_THREADS + ".");
+
+            run(() -> threads = count);
+
+        } else
+            throw new Exception("Unknown option \"" + name + "\".");
+
+    }
+
+    /**
+     * Tells the engine that the next position it searches is from a different
+     * game, clearing the hash table once the searches that have been requested
+     * so far have ended.
+     */
+    public void newGame() {
+        run(table::clear);
+    }
+
+    /**
+     * Tells the engine to stop searching as soon as possible. The search still
+     * returns the best move it found. Searches that were requested before the
+     * stop and have not started yet are cancelled.
+     */
+    public synchronized void stop() {
+        ++stops;
+    }
+
+    /**
+     * Gets a future that is completed once every search that has been requested
+     * so far has ended, whether or not it succeeded.
+     * 
+     * @return A future that is completed when the engine is idle.
+     */
+    public synchronized CompletableFuture<Void> whenIdle() {
+        return lastSearch.handle((move, e) -> null);
+    }
+
+    /**
+     * Stops the engine and its thread. No more searches can be requested.
+     */
+    public void close() {
+
+        stop();
+        executor.shutdown();
+        helpers.shutdown();
+
+    }
+
+    /**
+     * Gets the hash table.
+     * 
+     * @return {@link #table}
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the number of threads each search is run on.
+     * 
+     * @return {@link #threads}
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets whether or not the current search should stop. Called by the
+     * {@link Searcher} of each thread as it searches.
+     * 
+     * @param nodes The number of nodes the searcher has searched.
+     * @return Whether or not to stop.
+     */
+    boolean shouldStop(long nodes) {
+
+        return finished || stops != searchStops || (nodeLimit > 0 && nodes >= nodeLimit)
+                || System.currentTimeMillis() >= deadline;
+
+    }
+
+    /**
+     * Runs a task on the thread of the engine after the searches that have been
+     * requested so far.
+     * 
+     * @param task The task.
+     */
+    private synchronized void run(Runnable task) {
+        lastSearch = CompletableFuture.runAsync(task, executor);
+    }
+
+    /**
+     * Searches a position with iterative deepening.
+     * 
+     * @param position  The position to search.
+     * @param history   The hash keys of the positions before the position.
+     * @param goArgs    The limits of the search.
+     * @param listener  Notified of the result of each iteration, or
+     *                  {@code null}.
+     * @param requested The value of {@link #stops} when the search was
+     *                  requested.
+     * @return The best move.
+     */
+    private BestMove think(Position position, long[] history, String goArgs, Consumer<EngineInfo> listener,
+            long requested) {
+
+        final long start = System.currentTimeMillis();
+        final Limits limits = new Limits(goArgs);
+
+        final int side = position.isWhite() ? 0 : 1;
+        long soft = Long.MAX_VALUE;
+        long hard = Long.MAX_VALUE;
+
+        if (limits.moveTime > 0) {
+            soft = limits.moveTime;
+            hard = limits.moveTime;
+        } else if (limits.time[side] > 0) {
+
+            final long time = limits.time[side];
+            final int movesToGo = limits.movesToGo > 0 ? limits.movesToGo : DEFAULT_MOVES_TO_GO;
+
+            hard = Math.max(10, Math.min(time - TIME_MARGIN, (time / movesToGo + limits.increment[side]) * 3));
+            soft = Math.min(hard, time / movesToGo + limits.increment[side] * 3 / 4);
+
+        }
+
+        searchStops = requested;
+        nodeLimit = limits.nodes;
+        deadline = hard == Long.MAX_VALUE ? Long.MAX_VALUE : start + hard;
+
+        final int[] legal = new int[MoveGenerator.MAX_MOVES];
+        final int count = MoveGenerator.filterLegal(position, legal, MoveGenerator.generate(position, legal));
+
+        if (count == 0)
+            return new BestMove("0000", null, null);
+
+        table.newSearch();
+        finished = false;
+
+        final Searcher searcher = new Searcher(this, table, position, history);
+
+        // Limiting by nodes is only repeatable on one thread
+        final Searcher[] helping = new Searcher[limits.nodes > 0 ? 0 : threads - 1];
+        final CompletableFuture<?>[] helped = new CompletableFuture<?>[helping.length];
+
+        for (int i = 0; i < helping.length; i++) {
+
+            final Searcher helper = new Searcher(this, table, position, history);
+            final int first = 1 + (i + 1) % 2;
+
+            helping[i] = helper;
+            helped[i] = CompletableFuture.runAsync(() -> help(helper, first, limits.depth), helpers);
+
+        }
+
+        int[] pv = { legal[0] };
+        EngineInfo info = null;
+
+        for (int depth = 1; depth <= limits.depth; depth++) {
+
+            final int score = searcher.search(depth);
+
+            // An unfinished iteration is only used if it is the first
+            if (searcher.isStopped() && info != null)
+                break;
+
+            if (searcher.getPv().length > 0)
+                pv = searcher.getPv();
+
+            long nodes = searcher.getNodes();
+
+            for (Searcher helper : helping)
+                nodes += helper.getNodes();
+
+            final long elapsed = System.currentTimeMillis() - start;
+            info = createInfo(position, depth, searcher.getSelDepth(), elapsed, nodes, table.getHashFull(), score,
+                    pv);
+
+            if (listener != null)
+                listener.accept(info);
+
+            // The next iteration would take several times as long as this one
+            if (searcher.isStopped() || elapsed >= soft / 2 || Math.abs(score) >= Searcher.MATE_BOUND)
+                break;
+
+        }
+
+        // The next search must not start until the helpers have stopped
+        finished = true;
+        CompletableFuture.allOf(helped).join();
+
+        final List<String> line = info.getPv();
+
+        return new BestMove(line.isEmpty() ? GameReplay.getLongNotation(position, pv[0]) : line.get(0),
+                line.size() > 1 ? line.get(1) : null, info);
+
+    }
+
+    /**
+     * Runs the iterative deepening of a helper thread until the main thread
+     * finishes.
+     * 
+     * @param helper The searcher of the helper.
+     * @param first  The depth of the first iteration.
+     * @param last   The depth of the last iteration.
+     */
+    private static void help(Searcher helper, int first, int last) {
+
+        for (int depth = first; depth <= last && !helper.isStopped(); depth++)
+            helper.search(depth);
+
+    }
+
+    /**
+     * Creates the information of an iteration.
+     * 
+     * @param position The position searched.
+     * @param depth    The depth of the iteration.
+     * @param selDepth The deepest ply reached.
+     * @param time     The time searched, in milliseconds.
+     * @param nodes    The number of nodes searched.
+     * @param hashFull How full the hash table is, in permille.
+     * @param score    The score of the position.
+     * @param pv       The principal variation.
+     * @return The information.
+     */
+    private static EngineInfo createInfo(Position position, int depth, int selDepth, long time, long nodes,
+            int hashFull, int score, int[] pv) {
+
+        final List<String> line = new ArrayList<String>(pv.length);
+        final Position p = new Position(position);
+
+        for (int move : pv) {
+            line.add(GameReplay.getLongNotation(p, move));
+            p.makeMove(move);
+        }
+
+        if (Math.abs(score) >= Searcher.MATE_BOUND) {
+
+            // Plies until mate, as moves until mate
+            final int moves = score > 0 ? (Searcher.MATE - score + 1) / 2 : -(Searcher.MATE + score) / 2;
+            return new EngineInfo(depth, selDepth, time, nodes, hashFull, moves, true, line);
+
+        }
+
+        return new EngineInfo(depth, selDepth, time, nodes, hashFull, score, false, line);
+
+    }
+
+    /**
+     * Runs the benchmark from the command line, searching each of a set of
+     * positions, or the given position, to a fixed depth and printing the nodes
+     * searched per second. If a number of threads is given, the benchmark is run
+     * with 1, 2, 4 and so on up to that many threads, and the speed of each is
+     * compared with that of one thread.
+     * 
+     * @param args The depth, optionally followed by the most threads, optionally
+     *             followed by the FEN of a position.
+     * @throws Exception If the number of threads is not valid.
+     */
+    public static void main(String[] args) throws Exception {
+
+        final int depth = args.length > 0 ? Integer.parseInt(args[0]) : BENCH_DEPTH;
+        final boolean scaling = args.length > 1 && args[1].matches("\\d+");
+        final int maxThreads = scaling ? Integer.parseInt(args[1]) : 1;
+        final int fenStart = scaling ? 2 : 1;
+
+        final String[] fens = args.length > fenStart
+                ? new String[] { String.join(" ", List.of(args).subList(fenStart, args.length)) }
+                : BENCH_FENS;
+
+        final BuiltInEngine engine = new BuiltInEngine();
+        final List<long[]> results = new ArrayList<long[]>();
+
+        // Compiles the search first, so that one thread is not measured cold
+        if (scaling) {
+
+            for (String fen : fens)
+                engine.think(new Position(fen), null, "depth " + depth, null);
+
+        }
+
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(threads * 2,
+                maxThreads) : threads + 1) {
+
+            engine.setOption(THREADS_OPTION, threads + "");
+            engine.newGame();
+            engine.whenIdle().join();
+
+            long nodes = 0;
+            long time = 0;
+
+            for (String fen : fens) {
+
+                final BestMove bm = engine.think(new Position(fen), null, "depth " + depth,
+                        scaling ? null : info -> System.out.println("info " + info));
+
+                System.out.println(bm);
+
+                nodes += bm.getInfo().getNodes();
+                time += bm.getInfo().getTime();
+
+            }
+
+            System.out.println("Threads: " + threads);
+            System.out.println("Nodes: " + nodes);
+            System.out.println("Time: " + time + " ms");
+            System.out.println("Nodes per second: " + (time > 0 ? nodes * 1000 / time : nodes));
+            System.out.printf("Hash hits: %d of %d probes (%.1f%%)%n", engine.getTable().getHits(),
+                    engine.getTable().getProbes(), engine.getTable().getHitRate() * 100);
+
+            results.add(new long[] { threads, nodes, Math.max(1, time) });
+
+        }
+
+        if (scaling) {
+
+            final long[] one = results.get(0);
+
+            System.out.println();
+            System.out.printf("%8s %12s %10s %12s %10s %10s%n", "Threads", "Nodes", "Time (ms)", "Nodes/s",
+                    "NPS gain", "Speedup");
+
+            // Speedup is the time to the same depth, which is what Lazy SMP improves
+            for (long[] r : results) {
+
+                System.out.printf("%8d %12d %10d %12d %9.2fx %9.2fx%n", r[0], r[1], r[2], r[1] * 1000 / r[2],
+                        ((double) r[1] / r[2]) / ((double) one[1] / one[2]), (double) one[2] / r[2]);
+
+            }
+
+        }
+
+        engine.close();
+
+    }
+
+}
@@ -0,0 +1,458 @@
+package game.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import game.Game;
+import game.GameReplay;
+import game.MoveGenerator;
+import game.Position;
+
+/**
+ * Analyzes positions of a game with a {@link UCIEngine}, searching each one
+ * until it is stopped or another position is analyzed.
+ * 
+ * <p>
+ * The engine is asked for several best lines with its {@code MultiPV} option.
+ * Each {@code info} line the engine outputs replaces the last one of its line,
+ * and the lines are published to the {@link AnalysisListener}s at most once per
+ * update interval, however often the engine outputs them. Updates for a
+ * position are never published once another position is being analyzed.
+ */
+public class EngineAnalysis {
+
+    /** The number of lines analyzed by default. */
+    public static final int DEFAULT_MULTI_PV = 3;
+
+    /** The least time between updates by default, in milliseconds. */
+    public static final long DEFAULT_INTERVAL = 200;
+
+    /** The engine analyzing the positions. */
+    private final UCIEngine engine;
+
+    /**
+     * The number of lines being analyzed, which is {@code 1} if the engine has
+     * no {@code MultiPV} option.
+     */
+    private final int multiPv;
+
+    /**
+     * The {@code MultiPV} option of the engine, or {@code null} if it has none.
+     */
+    private final UCISpin multiPvOption;
+
+    /**
+     * The value {@link #multiPvOption} had before the analysis, which it is set
+     * back to when the engine is released.
+     */
+    private final int previousMultiPv;
+
+    /** The least time between updates, in milliseconds. */
+    private final long interval;
+
+    /** The listeners that are sent the updates. */
+    private final CopyOnWriteArrayList<AnalysisListener> listeners;
+
+    /**
+     * The latest information of each line, by {@link EngineInfo#getMultiPv()},
+     * or {@code null} for lines the engine has not output yet.
+     */
+    private final EngineInfo[] lines;
+
+    /** The position being analyzed, or {@code null} if none has been. */
+    private Position position;
+
+    /**
+     * The number of positions that have been analyzed. Output of the search of
+     * an earlier position is ignored.
+     */
+    private long generation;
+
+    /** Whether or not the engine is analyzing {@link #position}. */
+    private boolean running;
+
+    /** Whether or not an update has been scheduled and not published yet. */
+    private boolean scheduled;
+
+    /** When the last update was published, in milliseconds. */
+    private long lastPublish;
+
+    /**
+     * Creates a new analysis of {@link #DEFAULT_MULTI_PV} lines that is updated
+     * at most every {@link #DEFAULT_INTERVAL} milliseconds.
+     * 
+     * @param engine The engine to analyze with, which must not be used for
+     *               anything else.
+     * @throws IOException If there is an error outputting to the engine.
+     */
+    public EngineAnalysis(UCIEngine engine) throws IOException {
+        this(engine, DEFAULT_MULTI_PV, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates a new analysis.
+     * 
+     * @param engine   The engine to analyze with, which must not be used for
+     *                 anything else.
+     * @param multiPv  The number of lines to analyze. Limited to what the engine
+     *                 supports.
+     * @param interval The least time between updates, in milliseconds.
+     * @throws IOException If there is an error outputting to the engine.
+     */
+    public EngineAnalysis(UCIEngine engine, int multiPv, long interval) throws IOException {
+
+        if (multiPv < 1)
+            throw new IllegalArgumentException("MultiPV must be at least 1.");
+
+        if (interval < 0)
+            throw new IllegalArgumentException("Interval must not be negative.");
+
+        this.engine = engine;
+        this.multiPvOption = getMultiPvOption(engine);
+        this.previousMultiPv = multiPvOption != null ? multiPvOption.getValue() : 0;
+        this.multiPv = multiPvOption != null ? setMultiPv(multiPvOption, multiPv) : 1;
+        this.interval = interval;
+        this.listeners = new CopyOnWriteArrayList<AnalysisListener>();
+        this.lines = new EngineInfo[this.multiPv];
+
+    }
+
+    /**
+     * Starts analyzing a position of a game, stopping the analysis of the last
+     * position.
+     * 
+     * @param game  The game.
+     * @param index The index of the position in {@link Game#getPositions()}.
+     */
+    public void start(Game game, int index) {
+
+        final List<Position> positions = game.getPositions();
+        final Position pos = positions.get(index);
+
+        final String[] moves = new String[index];
+        for (int i = 1; i <= index; i++)
+            moves[i - 1] = positions.get(i).getMove().toString();
+
+        final long gen;
+        final boolean wasRunning;
+
+        synchronized (this) {
+
+            gen = ++generation;
+            wasRunning = running;
+
+            position = pos;
+            running = true;
+            Arrays.fill(lines, null);
+
+        }
+
+        try {
+
+            // Stopped before the next search is queued, so only the last one is cancelled
+            if (wasRunning)
+                engine.stop();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        engine.search(positions.get(0).toString(), moves, "infinite", info -> update(gen, info))
+                .whenComplete((bm, e) -> finish(gen));
+
+    }
+
+    /**
+     * Stops analyzing the position. The last lines are published once the engine
+     * has stopped.
+     */
+    public void stop() {
+
+        synchronized (this) {
+
+            if (!running)
+                return;
+
+            running = false;
+
+        }
+
+        try {
+            engine.stop();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+    }
+
+    /**
+     * Stops the analysis and returns the engine to the
+     * {@link EnginePool#getDefault() engine pool} once it has stopped, with its
+     * {@code MultiPV} option set back to the value it had before the analysis.
+     */
+    public void release() {
+
+        stop();
+        listeners.clear();
+
+        engine.whenIdle().thenRunAsync(() -> {
+
+            try {
+
+                if (multiPvOption != null && multiPvOption.getValue() != previousMultiPv)
+                    multiPvOption.set(previousMultiPv);
+
+            } catch (IOException e) {
+                // The engine has stopped, so the pool discards it
+                e.printStackTrace();
+            }
+
+            EnginePool.getDefault().release(engine);
+
+        });
+
+    }
+
+    /**
+     * Adds a listener that is sent the updates of the analysis.
+     * 
+     * @param listener The listener.
+     */
+    public void addListener(AnalysisListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     * 
+     * @param listener The listener.
+     */
+    public void removeListener(AnalysisListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the engine.
+     * 
+     * @return {@link #engine}
+     */
+    public UCIEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets the number of lines being analyzed.
+     * 
+     * @return {@link #multiPv}
+     */
+    public int getMultiPv() {
+        return multiPv;
+    }
+
+    /**
+     * Gets the least time between updates.
+     * 
+     * @return {@link #interval}
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Gets whether or not a position is being analyzed.
+     * 
+     * @return {@link #running}
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the notation of the first moves of a line, numbered from the position
+     * the line starts from, such as {@code 12... Nf6 13. e5}.
+     * 
+     * @param position The position the line starts from.
+     * @param pv       The moves of the line, in long algebraic notation.
+     * @param max      The most moves to include.
+     * @return The notation of the moves, up to the first move that is not legal.
+     */
+    public static String getNotation(Position position, List<String> pv, int max) {
+
+        final Position p = new Position(position);
+        final int[] legal = new int[MoveGenerator.MAX_MOVES];
+        final StringBuilder str = new StringBuilder();
+
+        for (int i = 0; i < pv.size() && i < max; i++) {
+
+            final int count = MoveGenerator.filterLegal(p, legal, MoveGenerator.generate(p, legal));
+            final int move;
+
+            try {
+                move = GameReplay.findLongMove(p, legal, count, pv.get(i));
+            } catch (Exception e) {
+                break;
+            }
+
+            if (i > 0)
+                str.append(' ');
+
+            // The move number counts plies
+            if (p.isWhite())
+                str.append(p.getMoveNumber() / 2 + 1).append(". ");
+            else if (i == 0)
+                str.append(p.getMoveNumber() / 2 + 1).append("... ");
+
+            str.append(GameReplay.getNotation(p, legal, count, move));
+            p.makeMove(move);
+
+        }
+
+        return str.toString();
+
+    }
+
+    /**
+     * Stores the information of a line the engine output. Called on the reader
+     * thread of the engine.
+     * 
+     * @param gen  The generation of the search that output the information.
+     * @param info The information.
+     */
+    private void update(long gen, EngineInfo info) {
+
+        // Only information about a whole line is published, not the current move
+        if (!info.hasScore() || info.getPv().isEmpty() || info.getMultiPv() < 1
+                || info.getMultiPv() > lines.length)
+            return;
+
+        final long delay;
+
+        synchronized (this) {
+
+            if (gen != generation)
+                return;
+
+            lines[info.getMultiPv() - 1] = info;
+
+            if (scheduled)
+                return;
+
+            scheduled = true;
+            delay = Math.max(0, lastPublish + interval - System.currentTimeMillis());
+
+        }
+
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> publish(false));
+
+    }
+
+    /**
+     * Publishes the final lines of a search once the engine has output its move.
+     * 
+     * @param gen The generation of the search.
+     */
+    private void finish(long gen) {
+
+        synchronized (this) {
+
+            if (gen != generation)
+                return;
+
+            running = false;
+
+        }
+
+        publish(true);
+
+    }
+
+    /**
+     * Publishes the current lines to the listeners.
+     * 
+     * @param done Whether or not the analysis of the position has ended.
+     */
+    private void publish(boolean done) {
+
+        final Position pos;
+        final List<EngineInfo> snapshot = new ArrayList<EngineInfo>(lines.length);
+
+        synchronized (this) {
+
+            if (!done) {
+
+                scheduled = false;
+
+                // The final lines have been published already
+                if (!running)
+                    return;
+
+            }
+
+            for (EngineInfo info : lines) {
+
+                if (info != null)
+                    snapshot.add(info);
+
+            }
+
+            if (snapshot.isEmpty() && !done)
+                return;
+
+            lastPublish = System.currentTimeMillis();
+            pos = position;
+
+        }
+
+        final List<EngineInfo> result = Collections.unmodifiableList(snapshot);
+
+        for (AnalysisListener listener : listeners)
+            listener.onAnalysis(pos, result, done);
+
+    }
+
+    /**
+     * Gets the {@code MultiPV} option of an engine.
+     * 
+     * @param engine The engine.
+     * @return The option, or {@code null} if the engine has none.
+     */
+    private static UCISpin getMultiPvOption(UCIEngine engine) {
+
+        for (UCIOption<?> o : engine.getOpts()) {
+
+            if (o.getName().equals("MultiPV") && o instanceof UCISpin)
+                return (UCISpin) o;
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Sets the {@code MultiPV} option of an engine.
+     * 
+     * @param spin    The option.
+     * @param multiPv The number of lines.
+     * @return The number of lines the engine will output, limited to what the
+     *         engine supports.
+     * @throws IOException If there is an error outputting to the engine.
+     */
+    private static int setMultiPv(UCISpin spin, int multiPv) throws IOException {
+
+        final int value = Math.max(spin.getMin(), Math.min(spin.getMax(), multiPv));
+
+        if (spin.getValue() != value)
+            spin.set(value);
+
+        return Math.max(1, value);
+
+    }
+
+}
@@ -1,19 +1,30 @@
 package game.engine;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import game.Chat;
 import game.Game;
 import game.GameEvent;
 import game.GameListener;
 import game.Move;
-import game.Square;
+import game.Position;
 
 /**
  * Class used to bridge the engine and the game.
  */
 public class EngineHook implements GameListener {
 
+    /**
+     * The least time, in milliseconds, between a move being made and the engine
+     * making its reply.
+     */
+    private static final long MOVE_DELAY = 250;
+
     /**
      * The game this engine is being used in.
      */
@@ -48,6 +59,12 @@ public class EngineHook implements GameListener {
      */
     private int bestMoveDepth;
 
+    /**
+     * Whether or not the engine has been returned to the {@link EnginePool}, after
+     * which it is no longer used by this hook.
+     */
+    private volatile boolean released;
+
     /**
      * Creates a new engine hook.
      * 
@@ -93,54 +110,13 @@ public class EngineHook implements GameListener {
                 }
 
                 if (event.getCurr().isWhite() != white && bestMove) {
-                    try {
-                        ArrayList<String> moveList = new ArrayList<>();
-
-                        for (int i = 1; i < game.getPositions().size() - 2; i++) {
-                            moveList.add(game.getPositions().get(i).getMove().toString());
-                        }
-
-                        String[] arr = new String[moveList.size()];
-                        engine.setPosition(game.getPositions().get(0).toString(), moveList.toArray(arr));
-
-                        String bm = engine.getBestMove(bestMoveDepth, game.getTimerTime(true), game.getTimerTime(false),
-                                game.getSettings().getTimePerMove() * 1000, game.getSettings().getTimePerMove() * 1000);
-
-                        Square origin = new Square(bm.substring(0, 2));
-                        Square destination = new Square(bm.substring(2, 4));
-
-                        char promoteType = bm.substring(4).equals("") ? '0'
-                                : Character.toUpperCase(bm.substring(4).charAt(0));
-
-                        if (game.getPositions().size() - 3 < 0)
-                            return;
-
-                        Move m = game.getPositions().get(game.getPositions().size() - 3).findMove(origin, destination);
-
-                        if (m == null || !bestMove)
-                            return;
-
-                        String mn = m.getMoveNotation();
-
-                        if (promoteType != '0')
-                            mn = mn.substring(0, mn.length() - 1) + promoteType;
-
-                        game.sendMessage(new Chat(game.getPlayer(white),
-                                System.currentTimeMillis(),
-                                (game.getPositions().size() > 2
-                                        && bm.startsWith(
-                                                game.getPositions().get(game.getPositions().size() - 2).getMove()
-                                                        .toString()))
-                                                                ? "That was the best move."
-                                                                : ("Best move was: " + mn)));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+                    analyzeMove();
                 } else if (event.getCurr().isWhite() == white)
                     makeMove(event);
 
                 break;
             case OVER:
+                release();
                 break;
             case PAUSED:
                 break;
@@ -159,47 +135,170 @@ public class EngineHook implements GameListener {
     }
 
     /**
-     * Takes the move made in the game and outputs it to the engine, then waits for
-     * the engine to make it's move.
+     * Takes the move made in the game and outputs it to the engine, then makes
+     * the move of the engine once it has found one. Does not wait for the
+     * engine.
      * 
      * @param event The event that was fired because of the move made.
      */
     private void makeMove(GameEvent event) {
 
-        Thread t = new Thread(() -> {
+        if (released)
+            return;
 
-            try {
+        final List<Position> positions = game.getPositions();
+        final long start = System.currentTimeMillis();
 
-                Thread.sleep(250);
+        engine.search(positions.get(0).toString(), getMoves(positions.size() - 1),
+                UCIEngine.getGoArguments(depth, game.getTimerTime(true), game.getTimerTime(false),
+                        game.getSettings().getTimePerMove() * 1000, game.getSettings().getTimePerMove() * 1000),
+                null)
+                .thenCompose(bm -> {
 
-                ArrayList<String> moveList = new ArrayList<>();
+                    final long wait = Math.max(0, MOVE_DELAY - (System.currentTimeMillis() - start));
 
-                for (int i = 1; i < game.getPositions().size(); i++) {
-                    moveList.add(game.getPositions().get(i).getMove().toString());
-                }
+                    // Off the reader thread of the engine, after the rest of the delay
+                    return CompletableFuture.supplyAsync(() -> bm,
+                            CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS));
+
+                })
+                .thenAccept(bm -> {
+
+                    // The game ended while the engine was searching
+                    if (released || !bm.hasMove())
+                        return;
+
+                    try {
+                        game.makeMove(bm.getOrigin(), bm.getDestination(), bm.getPromoteType());
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+
+                })
+                .exceptionally(this::printError);
+
+    }
+
+    /**
+     * Searches the position before the opponent's last move, then tells the
+     * opponent whether their move was the best one. Does not wait for the
+     * engine.
+     */
+    private void analyzeMove() {
+
+        if (released)
+            return;
+
+        final List<Position> positions = game.getPositions();
+        final int index = positions.size() - 3;
+
+        if (index < 0)
+            return;
+
+        final Position position = positions.get(index);
+        final String played = positions.get(positions.size() - 2).getMove().toString();
+
+        engine.search(positions.get(0).toString(), getMoves(index),
+                UCIEngine.getGoArguments(bestMoveDepth, game.getTimerTime(true), game.getTimerTime(false),
+                        game.getSettings().getTimePerMove() * 1000, game.getSettings().getTimePerMove() * 1000),
+                null)
+                .thenAcceptAsync(bm -> {
 
-                String[] arr = new String[moveList.size()];
-                engine.setPosition(game.getPositions().get(0).toString(), moveList.toArray(arr));
+                    if (released || !bestMove || !bm.hasMove())
+                        return;
 
-                String bm = engine.getBestMove(depth, game.getTimerTime(true), game.getTimerTime(false),
-                        game.getSettings().getTimePerMove() * 1000, game.getSettings().getTimePerMove() * 1000);
+                    try {
 
-                Square origin = new Square(bm.substring(0, 2));
-                Square destination = new Square(bm.substring(2, 4));
-                char promoteType = bm.substring(4).equals("") ? '0' : Character.toUpperCase(bm.substring(4).charAt(0));
+                        final Move m = position.findMove(bm.getOrigin(), bm.getDestination());
 
-                System.out.println(bm);
-                engine.waitReady();
+                        if (m == null)
+                            return;
 
-                game.makeMove(origin, destination, promoteType);
+                        String mn = m.getMoveNotation();
 
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+                        if (bm.getPromoteType() != '0')
+                            mn = mn.substring(0, mn.length() - 1) + bm.getPromoteType();
 
-        });
+                        game.sendMessage(new Chat(game.getPlayer(white), System.currentTimeMillis(),
+                                bm.getMove().startsWith(played) ? "That was the best move."
+                                        : ("Best move was: " + mn)));
 
-        t.start();
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+
+                })
+                .exceptionally(this::printError);
+
+    }
+
+    /**
+     * Gets the moves that led up to a position of the game, in long algebraic
+     * notation.
+     * 
+     * @param index The index of the position.
+     * @return The moves.
+     */
+    private String[] getMoves(int index) {
+
+        final List<Position> positions = game.getPositions();
+        final String[] moves = new String[index];
+
+        for (int i = 1; i <= index; i++)
+            moves[i - 1] = positions.get(i).getMove().toString();
+
+        return moves;
+
+    }
+
+    /**
+     * Prints an error of a search, unless the search was only cancelled because
+     * the engine was stopped.
+     * 
+     * @param e The error.
+     * @return {@code null}
+     */
+    private Void printError(Throwable e) {
+
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+        if (!(cause instanceof CancellationException))
+            cause.printStackTrace();
+
+        return null;
+
+    }
+
+    /**
+     * Stops the engine from playing in the game and returns it to the
+     * {@link EnginePool#getDefault() engine pool}, once any search it is running
+     * has stopped. Called when the game is over.
+     */
+    public void release() {
+
+        if (released)
+            return;
+
+        released = true;
+
+        try {
+            engine.stop();
+        } catch (IOException e) {
+            // The engine is discarded by the pool if it has quit
+        }
+
+        // Returned once a search in progress has output its move
+        engine.whenIdle().thenRunAsync(() -> EnginePool.getDefault().release(engine));
+
+    }
+
+    /**
+     * Gets whether or not the engine has been returned to the pool.
+     * 
+     * @return {@link #released}
+     */
+    public boolean isReleased() {
+        return released;
     }
 
     /**
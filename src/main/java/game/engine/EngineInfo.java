@@ -0,0 +1,407 @@
+package game.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The information an engine outputs about its search in an {@code info} line,
+ * such as the depth, score and principal variation. Any value the line does not
+ * include is {@code -1}, or {@code null} for text.
+ * 
+ * <p>
+ * See: <a href=
+ * "https://backscattering.de/chess/uci/#engine-info">https://backscattering.de/chess/uci/#engine-info</a>
+ */
+public class EngineInfo {
+
+    /**
+     * Parses an {@code info} line output by an engine.
+     * 
+     * @param line The line, starting with {@code info}.
+     * @return The information of the line.
+     */
+    public static EngineInfo parse(String line) {
+
+        final EngineInfo info = new EngineInfo();
+        final String[] a = line.trim().split("\\s+");
+
+        for (int i = 1; i < a.length; i++) {
+
+            switch (a[i]) {
+                case "depth":
+                    info.depth = parseInt(a, ++i);
+                    break;
+                case "seldepth":
+                    info.selDepth = parseInt(a, ++i);
+                    break;
+                case "multipv":
+                    info.multiPv = parseInt(a, ++i);
+                    break;
+                case "time":
+                    info.time = parseLong(a, ++i);
+                    break;
+                case "nodes":
+                    info.nodes = parseLong(a, ++i);
+                    break;
+                case "nps":
+                    info.nps = parseLong(a, ++i);
+                    break;
+                case "hashfull":
+                    info.hashFull = parseInt(a, ++i);
+                    break;
+                case "currmove":
+                    info.currMove = ++i < a.length ? a[i] : null;
+                    break;
+                case "currmovenumber":
+                    info.currMoveNumber = parseInt(a, ++i);
+                    break;
+                case "score":
+
+                    while (i + 1 < a.length) {
+
+                        if (a[i + 1].equals("cp")) {
+                            info.hasScore = true;
+                            info.mate = false;
+                            info.score = parseInt(a, i += 2);
+                        } else if (a[i + 1].equals("mate")) {
+                            info.hasScore = true;
+                            info.mate = true;
+                            info.score = parseInt(a, i += 2);
+                        } else if (a[i + 1].equals("lowerbound")) {
+                            info.lowerBound = true;
+                            ++i;
+                        } else if (a[i + 1].equals("upperbound")) {
+                            info.upperBound = true;
+                            ++i;
+                        } else
+                            break;
+
+                    }
+
+                    break;
+                case "pv":
+
+                    final ArrayList<String> pv = new ArrayList<String>();
+
+                    // The moves continue until the next keyword
+                    while (i + 1 < a.length && isMove(a[i + 1]))
+                        pv.add(a[++i]);
+
+                    info.pv = Collections.unmodifiableList(pv);
+                    break;
+                case "string":
+
+                    info.string = String.join(" ", java.util.Arrays.copyOfRange(a, i + 1, a.length));
+                    i = a.length;
+                    break;
+                default:
+                    break;
+            }
+
+        }
+
+        return info;
+
+    }
+
+    /** The depth of the search, in plies. */
+    private int depth = -1;
+
+    /** The selective depth of the search, in plies. */
+    private int selDepth = -1;
+
+    /**
+     * The rank of the line of this information when the engine outputs more than
+     * one best line, starting at {@code 1}.
+     */
+    private int multiPv = 1;
+
+    /** The time searched, in milliseconds. */
+    private long time = -1;
+
+    /** The number of nodes searched. */
+    private long nodes = -1;
+
+    /** The number of nodes searched per second. */
+    private long nps = -1;
+
+    /** How full the hash table is, in permill. */
+    private int hashFull = -1;
+
+    /** The move being searched, in long algebraic notation. */
+    private String currMove;
+
+    /** The number of the move being searched, starting at {@code 1}. */
+    private int currMoveNumber = -1;
+
+    /** Whether or not the line includes a score. */
+    private boolean hasScore;
+
+    /**
+     * The score, from the point of view of the side to move. In centipawns, or
+     * in moves until mate if {@link #mate}.
+     */
+    private int score;
+
+    /** Whether or not {@link #score} is the number of moves until mate. */
+    private boolean mate;
+
+    /** Whether or not the score is only a lower bound. */
+    private boolean lowerBound;
+
+    /** Whether or not the score is only an upper bound. */
+    private boolean upperBound;
+
+    /** The principal variation, in long algebraic notation. */
+    private List<String> pv = Collections.emptyList();
+
+    /** Any text the engine output for the user. */
+    private String string;
+
+    /**
+     * Creates information with no values.
+     */
+    private EngineInfo() {
+    }
+
+    /**
+     * Creates the information of a search that was not output by an external
+     * engine, such as the search of the {@link BuiltInEngine}.
+     * 
+     * @param depth    The depth of the search.
+     * @param selDepth The selective depth of the search.
+     * @param time     The time searched, in milliseconds.
+     * @param nodes    The number of nodes searched.
+     * @param hashFull How full the hash table is, in permille, or {@code -1}.
+     * @param score    The score, in centipawns or moves until mate.
+     * @param mate     Whether or not the score is the number of moves until mate.
+     * @param pv       The principal variation, in long algebraic notation.
+     */
+    EngineInfo(int depth, int selDepth, long time, long nodes, int hashFull, int score, boolean mate,
+            List<String> pv) {
+
+        this.depth = depth;
+        this.selDepth = selDepth;
+        this.time = time;
+        this.nodes = nodes;
+        this.nps = time > 0 ? nodes * 1000 / time : -1;
+        this.hashFull = hashFull;
+        this.hasScore = true;
+        this.score = score;
+        this.mate = mate;
+        this.pv = Collections.unmodifiableList(new ArrayList<String>(pv));
+
+    }
+
+    /**
+     * Gets the depth of the search.
+     * 
+     * @return {@link #depth}
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the selective depth of the search.
+     * 
+     * @return {@link #selDepth}
+     */
+    public int getSelDepth() {
+        return selDepth;
+    }
+
+    /**
+     * Gets the rank of the line of this information.
+     * 
+     * @return {@link #multiPv}
+     */
+    public int getMultiPv() {
+        return multiPv;
+    }
+
+    /**
+     * Gets the time searched.
+     * 
+     * @return {@link #time}
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the number of nodes searched.
+     * 
+     * @return {@link #nodes}
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the number of nodes searched per second.
+     * 
+     * @return {@link #nps}
+     */
+    public long getNps() {
+        return nps;
+    }
+
+    /**
+     * Gets how full the hash table is.
+     * 
+     * @return {@link #hashFull}
+     */
+    public int getHashFull() {
+        return hashFull;
+    }
+
+    /**
+     * Gets the move being searched.
+     * 
+     * @return {@link #currMove}
+     */
+    public String getCurrMove() {
+        return currMove;
+    }
+
+    /**
+     * Gets the number of the move being searched.
+     * 
+     * @return {@link #currMoveNumber}
+     */
+    public int getCurrMoveNumber() {
+        return currMoveNumber;
+    }
+
+    /**
+     * Gets whether or not the line includes a score.
+     * 
+     * @return {@link #hasScore}
+     */
+    public boolean hasScore() {
+        return hasScore;
+    }
+
+    /**
+     * Gets the score.
+     * 
+     * @return {@link #score}
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets whether or not the score is the number of moves until mate.
+     * 
+     * @return {@link #mate}
+     */
+    public boolean isMate() {
+        return mate;
+    }
+
+    /**
+     * Gets whether or not the score is only a lower bound.
+     * 
+     * @return {@link #lowerBound}
+     */
+    public boolean isLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Gets whether or not the score is only an upper bound.
+     * 
+     * @return {@link #upperBound}
+     */
+    public boolean isUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Gets the principal variation.
+     * 
+     * @return {@link #pv}
+     */
+    public List<String> getPv() {
+        return pv;
+    }
+
+    /**
+     * Gets any text the engine output for the user.
+     * 
+     * @return {@link #string}
+     */
+    public String getString() {
+        return string;
+    }
+
+    /**
+     * Gets the score as text, such as {@code +0.35} or {@code #-3}, from the point
+     * of view of the side to move.
+     * 
+     * @return The score, or an empty string if there is none.
+     */
+    public String getScoreString() {
+
+        if (!hasScore)
+            return "";
+
+        if (mate)
+            return "#" + score;
+
+        return String.format("%+.2f", score / 100.0);
+
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + " multipv " + multiPv + " score " + getScoreString() + " nodes " + nodes + " nps "
+                + nps + " pv " + String.join(" ", pv);
+    }
+
+    /**
+     * Parses an integer value of a line.
+     * 
+     * @param a The words of the line.
+     * @param i The index of the value.
+     * @return The value, or {@code -1} if it is missing or invalid.
+     */
+    private static int parseInt(String[] a, int i) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, parseLong(a, i)));
+    }
+
+    /**
+     * Parses a long value of a line.
+     * 
+     * @param a The words of the line.
+     * @param i The index of the value.
+     * @return The value, or {@code -1} if it is missing or invalid.
+     */
+    private static long parseLong(String[] a, int i) {
+
+        try {
+            return i < a.length ? Long.parseLong(a[i]) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+    }
+
+    /**
+     * Gets whether or not a word is a move in long algebraic notation.
+     * 
+     * @param word The word.
+     * @return Whether or not the word is a move.
+     */
+    private static boolean isMove(String word) {
+
+        return (word.length() == 4 || word.length() == 5) && word.charAt(0) >= 'a' && word.charAt(0) <= 'h'
+                && word.charAt(1) >= '1' && word.charAt(1) <= '8' && word.charAt(2) >= 'a' && word.charAt(2) <= 'h'
+                && word.charAt(3) >= '1' && word.charAt(3) <= '8' || word.equals("0000");
+
+    }
+
+}
@@ -0,0 +1,325 @@
+package game.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Keeps the processes of {@link UCIEngine}s running between games, so that
+ * starting a game against an engine does not have to start the engine and
+ * negotiate its options again.
+ * 
+ * <p>
+ * An engine is checked out of the pool for a game with
+ * {@link #checkout(File, Map)} and returned with {@link #release(UCIEngine)}
+ * once the game is over. Idle engines are matched to a checkout by their path
+ * and the values of all of their options, which are the requested values and
+ * the default value of every option that is not requested: an idle engine with
+ * the same path and values is used first, then one with the same path whose
+ * options are set to those values, and a new process is only started if there
+ * is neither. An option changed for one game is therefore reset to its default
+ * for the next game that does not request it. Every engine is sent
+ * {@code ucinewgame} and {@code isready} when checked out.
+ * 
+ * <p>
+ * The number of engine processes, idle or in use, is capped. When the cap is
+ * reached, the idle engine that was used least recently is closed to make room,
+ * and if every engine is in use a checkout waits for one to be released.
+ */
+public class EnginePool {
+
+    /** The most engine processes of the default pool. */
+    public static final int DEFAULT_MAX_PROCESSES = 4;
+
+    /**
+     * Holds the pool of the application, which is created when first used.
+     */
+    private static final class Default {
+
+        /** The pool of the application. */
+        private static final EnginePool POOL = new EnginePool(DEFAULT_MAX_PROCESSES);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(POOL::shutdown));
+        }
+
+    }
+
+    /**
+     * Gets the pool that engines are checked out of for games.
+     * 
+     * @return The pool of the application.
+     */
+    public static EnginePool getDefault() {
+        return Default.POOL;
+    }
+
+    /** The most engine processes that may be running at once. */
+    private final int maxProcesses;
+
+    /** The engines that are not in use, least recently used first. */
+    private final LinkedList<UCIEngine> idle;
+
+    /** The number of engine processes running or being started. */
+    private int processes;
+
+    /** Whether or not the pool has been shut down. */
+    private boolean shutdown;
+
+    /**
+     * Creates a new, empty pool.
+     * 
+     * @param maxProcesses The most engine processes that may be running at once.
+     */
+    public EnginePool(int maxProcesses) {
+
+        if (maxProcesses < 1)
+            throw new IllegalArgumentException("Max processes must be at least 1.");
+
+        this.maxProcesses = maxProcesses;
+        this.idle = new LinkedList<UCIEngine>();
+
+    }
+
+    /**
+     * Gets the most engine processes that may be running at once.
+     * 
+     * @return {@link #maxProcesses}
+     */
+    public int getMaxProcesses() {
+        return maxProcesses;
+    }
+
+    /**
+     * Gets the number of engine processes that are running, idle or in use.
+     * 
+     * @return The number of processes.
+     */
+    public synchronized int getProcessCount() {
+        return processes;
+    }
+
+    /**
+     * Gets the number of engines that are not in use.
+     * 
+     * @return The number of idle engines.
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Checks out an engine with the default value of every option, preferring
+     * one that is idle.
+     * 
+     * @param path The location of the engine.
+     * @return The engine, ready for a new game.
+     * @throws IOException          If the engine could not be started or did not
+     *                              respond.
+     * @throws InterruptedException If interrupted while waiting for an engine to
+     *                              be released.
+     * @see #checkout(File, Map)
+     */
+    public UCIEngine checkout(File path) throws IOException, InterruptedException {
+        return checkout(path, Collections.emptyMap());
+    }
+
+    /**
+     * Checks out an engine with the given option values, starting a new engine
+     * process only if no idle engine has the same path.
+     * 
+     * @param path    The location of the engine.
+     * @param options The values of the options the engine should have, by the
+     *                name of their option. Options that are not given are set to
+     *                their default value.
+     * @return The engine, ready for a new game.
+     * @throws IOException          If the engine could not be started or did not
+     *                              respond.
+     * @throws InterruptedException If interrupted while waiting for an engine to
+     *                              be released.
+     */
+    public UCIEngine checkout(File path, Map<String, String> options) throws IOException, InterruptedException {
+
+        final File key = path.getAbsoluteFile();
+
+        UCIEngine engine = null;
+        UCIEngine evicted = null;
+
+        synchronized (this) {
+
+            while (true) {
+
+                if (shutdown)
+                    throw new IllegalStateException("Engine pool has been shut down.");
+
+                engine = takeIdle(key, options);
+
+                if (engine != null)
+                    break;
+
+                if (processes < maxProcesses) {
+                    ++processes;
+                    break;
+                }
+
+                // Make room by closing the engine that was idle the longest
+                if (!idle.isEmpty()) {
+                    evicted = idle.removeFirst();
+                    break;
+                }
+
+                wait();
+
+            }
+
+        }
+
+        if (evicted != null)
+            evicted.close();
+
+        try {
+
+            if (engine == null)
+                engine = new UCIEngine(key);
+
+            engine.setOptionValues(getEffectiveValues(engine, options));
+            engine.newGame();
+
+            return engine;
+
+        } catch (IOException | RuntimeException e) {
+
+            if (engine != null)
+                engine.close();
+
+            synchronized (this) {
+                --processes;
+                notifyAll();
+            }
+
+            throw e;
+
+        }
+
+    }
+
+    /**
+     * Returns an engine to the pool once its game is over, so that it can be
+     * checked out for another game. An engine whose process has stopped is
+     * discarded.
+     * 
+     * @param engine The engine, which must have been checked out of this pool.
+     */
+    public void release(UCIEngine engine) {
+
+        boolean close = false;
+
+        synchronized (this) {
+
+            if (shutdown || !engine.isAlive()) {
+                close = true;
+                --processes;
+            } else
+                idle.addLast(engine);
+
+            notifyAll();
+
+        }
+
+        if (close)
+            engine.close();
+
+    }
+
+    /**
+     * Closes every idle engine and stops engines from being checked out. Engines
+     * that are in use are closed when they are released.
+     */
+    public void shutdown() {
+
+        final LinkedList<UCIEngine> closing;
+
+        synchronized (this) {
+
+            shutdown = true;
+
+            closing = new LinkedList<UCIEngine>(idle);
+            processes -= idle.size();
+            idle.clear();
+
+            notifyAll();
+
+        }
+
+        for (UCIEngine engine : closing)
+            engine.close();
+
+    }
+
+    /**
+     * Removes the best idle engine for a checkout from {@link #idle}. Must be
+     * called while holding the lock of the pool.
+     * 
+     * @param path    The location of the engine.
+     * @param options The values of the options the engine should have.
+     * @return An idle engine with the same path and the same value of every
+     *         option, or otherwise the idle engine with the same path that was
+     *         used most recently, or {@code null} if there is none.
+     */
+    private UCIEngine takeIdle(File path, Map<String, String> options) {
+
+        UCIEngine samePath = null;
+
+        // Most recently used first, so its data is more likely to still be cached
+        for (Iterator<UCIEngine> it = idle.descendingIterator(); it.hasNext();) {
+
+            final UCIEngine engine = it.next();
+
+            if (!engine.getPath().equals(path))
+                continue;
+
+            if (engine.getOptionValues().equals(getEffectiveValues(engine, options))) {
+                it.remove();
+                return engine;
+            }
+
+            if (samePath == null)
+                samePath = engine;
+
+        }
+
+        if (samePath != null)
+            idle.remove(samePath);
+
+        return samePath;
+
+    }
+
+    /**
+     * Gets the value every option of an engine should have for a checkout.
+     * 
+     * @param engine  The engine.
+     * @param options The values of the options that were requested.
+     * @return The requested values, and the default value of every other
+     *         option, by the name of their option.
+     */
+    private static Map<String, String> getEffectiveValues(UCIEngine engine, Map<String, String> options) {
+
+        final Map<String, String> values = engine.getDefaultOptionValues();
+
+        for (Map.Entry<String, String> e : options.entrySet()) {
+
+            // Options the engine does not have are ignored
+            if (values.containsKey(e.getKey()))
+                values.put(e.getKey(), e.getValue());
+
+        }
+
+        return values;
+
+    }
+
+}
@@ -0,0 +1,78 @@
+package game.engine;
+
+import game.Bitboard;
+import game.PieceSquareTable;
+import game.Position;
+
+/**
+ * The static evaluation of the {@link BuiltInEngine}, which scores a position by
+ * the material and piece-square values of its pieces.
+ * 
+ * <p>
+ * The middlegame and endgame totals and the phase of the game are kept up to
+ * date by the position itself as moves are made and unmade, so a position is
+ * evaluated without looking at its pieces.
+ * 
+ * @see PieceSquareTable
+ */
+public final class Evaluation {
+
+    /**
+     * Prevents instantiation.
+     */
+    private Evaluation() {
+    }
+
+    /**
+     * Evaluates a position.
+     * 
+     * @param position The position.
+     * @return The score of the position in centipawns, from the point of view of
+     *         the side to move.
+     */
+    public static int evaluate(Position position) {
+
+        final int score = PieceSquareTable.blend(position.getMidgame(), position.getEndgame(), position.getPhase());
+
+        return position.isWhite() ? score : -score;
+
+    }
+
+    /**
+     * Evaluates a position by summing the values of each of its pieces, which is
+     * how the totals kept by the position can be checked.
+     * 
+     * @param position The position.
+     * @return The score of the position in centipawns, from the point of view of
+     *         the side to move, which is the same as that of
+     *         {@link #evaluate(Position)}.
+     */
+    public static int evaluateFully(Position position) {
+
+        int midgame = 0;
+        int endgame = 0;
+        int phase = 0;
+
+        for (int index = 0; index < Bitboard.PIECE_COUNT; index++) {
+
+            final int sign = Bitboard.isWhite(index) ? 1 : -1;
+
+            for (long b = position.getBitboard(index); b != 0; b &= b - 1) {
+
+                final int square = Bitboard.first(b);
+
+                midgame += sign * PieceSquareTable.getMidgame(index, square);
+                endgame += sign * PieceSquareTable.getEndgame(index, square);
+                phase += PieceSquareTable.getPhase(index);
+
+            }
+
+        }
+
+        final int score = PieceSquareTable.blend(midgame, endgame, phase);
+
+        return position.isWhite() ? score : -score;
+
+    }
+
+}
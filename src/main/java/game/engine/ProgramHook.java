@@ -0,0 +1,262 @@
+package game.engine;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import game.Game;
+import game.GameEvent;
+import game.GameListener;
+import game.Position;
+
+/**
+ * Class used to bridge the {@link BuiltInEngine} and the game, like
+ * {@link EngineHook} does for external engines, so that a
+ * {@link game.Player.Type#PROGRAM PROGRAM} player can be played against
+ * without installing an engine.
+ */
+public class ProgramHook implements GameListener {
+
+    /**
+     * The least time, in milliseconds, between a move being made and the engine
+     * making its reply.
+     */
+    private static final long MOVE_DELAY = 250;
+
+    /** The time the engine searches for each move in games without a clock. */
+    public static final long DEFAULT_MOVE_TIME = 1000;
+
+    /**
+     * The game this engine is being used in.
+     */
+    private final Game game;
+
+    /**
+     * The engine being used.
+     */
+    private final BuiltInEngine engine;
+
+    /**
+     * Whether or not the engine is playing the white side.
+     */
+    private final boolean white;
+
+    /**
+     * The most depth the engine should search for each move, or {@code 0} for no
+     * limit other than time.
+     */
+    private int depth;
+
+    /**
+     * The time the engine searches for each move in games without a clock, in
+     * milliseconds.
+     */
+    private long moveTime;
+
+    /**
+     * Whether or not the game is over, after which the engine no longer plays.
+     */
+    private volatile boolean released;
+
+    /**
+     * Creates a new hook with a new engine.
+     * 
+     * @param game  The game associated with this hook.
+     * @param white Whether or not the engine is playing the white side.
+     */
+    public ProgramHook(Game game, boolean white) {
+
+        this.game = game;
+        this.engine = new BuiltInEngine();
+        this.white = white;
+
+        moveTime = DEFAULT_MOVE_TIME;
+
+        game.addListener(this);
+
+    }
+
+    // Handles the game events and sends them to the engine.
+    @Override
+    public void onPlayerEvent(GameEvent event) {
+
+        switch (event.getType()) {
+            case MOVE:
+
+                if (event.getCurrIndex() < event.getPrevIndex()) {
+
+                    if (!(event.getCurrIndex() == 0 && event.getCurr().isWhite() == white)) {
+                        return;
+                    }
+
+                }
+
+                if (event.getCurr().isWhite() == white)
+                    makeMove();
+
+                break;
+            case OVER:
+                release();
+                break;
+            case STARTED:
+
+                if (white)
+                    makeMove();
+
+                break;
+            default:
+                break;
+        }
+
+    }
+
+    /**
+     * Searches the current position of the game, then makes the move of the
+     * engine. Does not wait for the engine.
+     */
+    private void makeMove() {
+
+        if (released)
+            return;
+
+        final List<Position> positions = game.getPositions();
+        final long[] history = new long[positions.size() - 1];
+
+        for (int i = 0; i < history.length; i++)
+            history[i] = positions.get(i).getHashKey();
+
+        String goArgs;
+
+        if (game.getSettings().getTimePerSide() > 0)
+            goArgs = UCIEngine.getGoArguments(depth, game.getTimerTime(true), game.getTimerTime(false),
+                    game.getSettings().getTimePerMove() * 1000, game.getSettings().getTimePerMove() * 1000);
+        else
+            goArgs = (UCIEngine.getGoArguments(depth, 0, 0, 0, 0) + " movetime " + moveTime).trim();
+
+        final long start = System.currentTimeMillis();
+
+        engine.search(positions.get(positions.size() - 1), history, goArgs, null)
+                .thenCompose(bm -> {
+
+                    final long wait = Math.max(0, MOVE_DELAY - (System.currentTimeMillis() - start));
+
+                    // Off the thread of the engine, after the rest of the delay
+                    return CompletableFuture.supplyAsync(() -> bm,
+                            CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS));
+
+                })
+                .thenAccept(bm -> {
+
+                    // The game ended while the engine was searching
+                    if (released || !bm.hasMove())
+                        return;
+
+                    try {
+                        game.makeMove(bm.getOrigin(), bm.getDestination(), bm.getPromoteType());
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+
+                })
+                .exceptionally(e -> {
+
+                    if (!released)
+                        e.printStackTrace();
+
+                    return null;
+
+                });
+
+    }
+
+    /**
+     * Stops the engine from playing in the game and stops its thread once any
+     * search it is running has stopped. Called when the game is over.
+     */
+    public void release() {
+
+        if (released)
+            return;
+
+        released = true;
+
+        engine.stop();
+        engine.whenIdle().thenRun(engine::close);
+
+    }
+
+    /**
+     * Gets whether or not the engine has stopped playing in the game.
+     * 
+     * @return {@link #released}
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * Gets the game.
+     * 
+     * @return {@link #game}
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Gets the engine.
+     * 
+     * @return {@link #engine}
+     */
+    public BuiltInEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets if the engine is playing white.
+     * 
+     * @return {@link #white}
+     */
+    public boolean isWhite() {
+        return white;
+    }
+
+    /**
+     * Gets the depth.
+     * 
+     * @return {@link #depth}
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sets the depth.
+     * 
+     * @param depth The most depth the engine will search for its own move, or
+     *              {@code 0} for no limit other than time.
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Gets the time the engine searches for each move in games without a clock.
+     * 
+     * @return {@link #moveTime}
+     */
+    public long getMoveTime() {
+        return moveTime;
+    }
+
+    /**
+     * Sets the time the engine searches for each move in games without a clock.
+     * 
+     * @param moveTime The time, in milliseconds.
+     */
+    public void setMoveTime(long moveTime) {
+        this.moveTime = moveTime;
+    }
+
+}
@@ -0,0 +1,632 @@
+package game.engine;
+
+import game.Bitboard;
+import game.MoveGenerator;
+import game.PieceSquareTable;
+import game.Position;
+
+/**
+ * The search state of one thread of the {@link BuiltInEngine}: the position
+ * being searched, the move buffers of each ply and the tables used to order
+ * moves.
+ * 
+ * <p>
+ * The search is a negamax alpha-beta search with principal variation search,
+ * late move reductions and check extensions, followed by a quiescence search of
+ * captures and promotions. The results of nodes are stored in a
+ * {@link TranspositionTable}, which cuts off nodes outside of the principal
+ * variation that have already been searched deeply enough. Moves are ordered by
+ * the principal variation of the last iteration, then the best move stored in
+ * the table, then captures by most valuable victim and least valuable attacker,
+ * then killer moves and the history of quiet moves that caused cutoffs.
+ */
+class Searcher {
+
+    /** The score of being checkmated at the root. */
+    static final int MATE = 32000;
+
+    /** A score greater than any other. */
+    static final int INFINITY = MATE + 1;
+
+    /** The most plies the search can reach, including quiescence. */
+    static final int MAX_PLY = 128;
+
+    /** Scores above this are mate scores. */
+    static final int MATE_BOUND = MATE - MAX_PLY;
+
+    /** How often the search checks whether it should stop, in nodes. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /** The order score of the move of the last principal variation. */
+    private static final int PV_SCORE = 2_000_000;
+
+    /** The order score of the best move stored in the transposition table. */
+    private static final int HASH_SCORE = PV_SCORE - 1;
+
+    /** The order score of captures, before the values of the pieces. */
+    private static final int CAPTURE_SCORE = 1_000_000;
+
+    /** The order score of quiet promotions. */
+    private static final int PROMOTION_SCORE = 950_000;
+
+    /** The order score of the first killer move of a ply. */
+    private static final int KILLER_SCORE = 900_000;
+
+    /** The history score at which all history scores are halved. */
+    private static final int HISTORY_LIMIT = 500_000;
+
+    /** The engine whose limits the search follows. */
+    private final BuiltInEngine engine;
+
+    /** The table the results of nodes are stored in. */
+    private final TranspositionTable table;
+
+    /** The position being searched, which moves are made and unmade on. */
+    private final Position position;
+
+    /** The legal moves of each ply. */
+    private final int[][] moves;
+
+    /** The order scores of the moves of each ply. */
+    private final int[][] orders;
+
+    /** The two quiet moves of each ply that last caused a cutoff. */
+    private final int[][] killers;
+
+    /**
+     * How often a quiet move of a piece to a square has caused a cutoff, by
+     * bitboard index and square index, weighted by depth.
+     */
+    private final int[][] history;
+
+    /** The principal variation found from each ply. */
+    private final int[][] pv;
+
+    /** The length of the principal variation of each ply. */
+    private final int[] pvLength;
+
+    /**
+     * The hash keys of the positions before the current one, for finding
+     * repetitions.
+     */
+    private long[] keys;
+
+    /** The number of hash keys in {@link #keys}. */
+    private int keyCount;
+
+    /** The principal variation of the last iteration, which is searched first. */
+    private int[] lastPv;
+
+    /** The length of {@link #lastPv}. */
+    private int lastPvLength;
+
+    /** The number of nodes searched. */
+    private long nodes;
+
+    /** The deepest ply reached in the current iteration. */
+    private int selDepth;
+
+    /** Whether or not the search has been stopped. */
+    private boolean stopped;
+
+    /**
+     * Creates a new searcher.
+     * 
+     * @param engine   The engine whose limits the search follows.
+     * @param table    The table the results of nodes are stored in.
+     * @param position The position to search, which is copied.
+     * @param history  The hash keys of the positions of the game before the
+     *                 position, oldest first, or {@code null}.
+     */
+    Searcher(BuiltInEngine engine, TranspositionTable table, Position position, long[] history) {
+
+        this.engine = engine;
+        this.table = table;
+        this.position = new Position(position);
+
+        this.moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+        this.orders = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+        this.killers = new int[MAX_PLY][2];
+        this.history = new int[Bitboard.PIECE_COUNT][64];
+        this.pv = new int[MAX_PLY][MAX_PLY];
+        this.pvLength = new int[MAX_PLY];
+        this.lastPv = new int[MAX_PLY];
+
+        final int previous = history == null ? 0 : history.length;
+
+        this.keys = new long[previous + MAX_PLY];
+        this.keyCount = previous;
+
+        if (previous > 0)
+            System.arraycopy(history, 0, keys, 0, previous);
+
+    }
+
+    /**
+     * Searches the position to the given depth.
+     * 
+     * @param depth The depth, in plies.
+     * @return The score of the position, from the point of view of the side to
+     *         move. Meaningless if the search was stopped.
+     */
+    int search(int depth) {
+
+        selDepth = 0;
+
+        final int score = search(depth, 0, -INFINITY, INFINITY, true);
+
+        if (!stopped) {
+            lastPvLength = pvLength[0];
+            System.arraycopy(pv[0], 0, lastPv, 0, lastPvLength);
+        }
+
+        return score;
+
+    }
+
+    /**
+     * Gets the principal variation of the last iteration that was completed.
+     * 
+     * @return The moves, encoded as described in {@link MoveGenerator}.
+     */
+    int[] getPv() {
+        return java.util.Arrays.copyOf(lastPv, lastPvLength);
+    }
+
+    /**
+     * Gets the number of nodes searched. May be read by another thread while the
+     * search runs, in which case it may be slightly behind.
+     * 
+     * @return {@link #nodes}
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the deepest ply reached in the last iteration.
+     * 
+     * @return {@link #selDepth}
+     */
+    int getSelDepth() {
+        return selDepth;
+    }
+
+    /**
+     * Gets whether or not the search was stopped before it finished.
+     * 
+     * @return {@link #stopped}
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Searches a node of the tree.
+     * 
+     * @param depth  The remaining depth, in plies.
+     * @param ply    The distance from the root, in plies.
+     * @param alpha  The lower bound of the window.
+     * @param beta   The upper bound of the window.
+     * @param onPath Whether or not the node is on the principal variation of the
+     *               last iteration.
+     * @return The score of the node, from the point of view of the side to move.
+     */
+    private int search(int depth, int ply, int alpha, int beta, boolean onPath) {
+
+        pvLength[ply] = ply;
+
+        if (++nodes % CHECK_INTERVAL == 0)
+            checkStop();
+
+        if (stopped)
+            return 0;
+
+        if (ply > 0) {
+
+            if (isDraw())
+                return 0;
+
+            // A shorter mate has already been found
+            alpha = Math.max(alpha, -MATE + ply);
+            beta = Math.min(beta, MATE - ply - 1);
+
+            if (alpha >= beta)
+                return alpha;
+
+        }
+
+        final boolean inCheck = position.isInCheck();
+
+        if (inCheck)
+            ++depth;
+
+        if (depth <= 0)
+            return quiesce(ply, alpha, beta);
+
+        if (ply >= MAX_PLY - 1)
+            return Evaluation.evaluate(position);
+
+        final long key = position.getHashKey();
+        final long entry = table.probe(key);
+
+        // Only null windows are cut off, so that the principal variation is whole
+        if (entry != 0 && ply > 0 && beta - alpha == 1 && TranspositionTable.getDepth(entry) >= depth) {
+
+            final int score = TranspositionTable.getScore(entry, ply);
+            final int bound = TranspositionTable.getBound(entry);
+
+            if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+                    || (bound == TranspositionTable.UPPER && score <= alpha))
+                return score;
+
+        }
+
+        final int[] list = moves[ply];
+        final int count = MoveGenerator.filterLegal(position, list, MoveGenerator.generate(position, list));
+
+        if (count == 0)
+            return inCheck ? -MATE + ply : 0;
+
+        orderMoves(ply, count, onPath && ply < lastPvLength ? lastPv[ply] : 0, TranspositionTable.getMove(entry));
+
+        final int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            final int move = pickMove(ply, i, count);
+            final boolean quiet = (move & MoveGenerator.CAPTURE) == 0 && MoveGenerator.getPromoteType(move) == 0;
+
+            makeMove(move);
+
+            final boolean childOnPath = onPath && ply < lastPvLength && move == lastPv[ply];
+            int score;
+
+            if (i == 0)
+                score = -search(depth - 1, ply + 1, -beta, -alpha, childOnPath);
+            else {
+
+                // Late quiet moves are searched less deeply first
+                final int reduction = depth >= 3 && i >= 4 && quiet && !inCheck && !position.isInCheck() ? 1 : 0;
+
+                score = -search(depth - 1 - reduction, ply + 1, -alpha - 1, -alpha, false);
+
+                if (score > alpha && (reduction > 0 || score < beta))
+                    score = -search(depth - 1, ply + 1, -beta, -alpha, false);
+
+            }
+
+            unmakeMove();
+
+            if (stopped)
+                return 0;
+
+            if (score > best) {
+
+                best = score;
+
+                if (score > alpha) {
+
+                    alpha = score;
+                    bestMove = move;
+                    updatePv(ply, move);
+
+                    if (alpha >= beta) {
+
+                        if (quiet)
+                            updateQuiet(ply, move, depth);
+
+                        break;
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        final int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+
+        table.store(key, bestMove, depth, bound, best, ply);
+
+        return best;
+
+    }
+
+    /**
+     * Searches the captures and promotions of a node until the position is
+     * quiet, so that the evaluation is not made in the middle of an exchange.
+     * Every legal move is searched if the side to move is in check.
+     * 
+     * @param ply   The distance from the root, in plies.
+     * @param alpha The lower bound of the window.
+     * @param beta  The upper bound of the window.
+     * @return The score of the node, from the point of view of the side to move.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+
+        pvLength[ply] = ply;
+
+        if (++nodes % CHECK_INTERVAL == 0)
+            checkStop();
+
+        if (stopped)
+            return 0;
+
+        if (ply > selDepth)
+            selDepth = ply;
+
+        if (ply >= MAX_PLY - 1)
+            return Evaluation.evaluate(position);
+
+        final boolean inCheck = position.isInCheck();
+        int best;
+
+        if (inCheck)
+            best = -MATE + ply;
+        else {
+
+            // The side to move can choose not to capture
+            best = Evaluation.evaluate(position);
+
+            if (best >= beta)
+                return best;
+
+            if (best > alpha)
+                alpha = best;
+
+        }
+
+        final int[] list = moves[ply];
+        int count = MoveGenerator.generate(position, list);
+
+        if (!inCheck) {
+
+            int tactical = 0;
+
+            for (int i = 0; i < count; i++) {
+
+                if ((list[i] & MoveGenerator.CAPTURE) != 0 || MoveGenerator.getPromoteType(list[i]) != 0)
+                    list[tactical++] = list[i];
+
+            }
+
+            count = tactical;
+
+        }
+
+        count = MoveGenerator.filterLegal(position, list, count);
+
+        orderMoves(ply, count, 0, 0);
+
+        for (int i = 0; i < count; i++) {
+
+            final int move = pickMove(ply, i, count);
+
+            makeMove(move);
+            final int score = -quiesce(ply + 1, -beta, -alpha);
+            unmakeMove();
+
+            if (stopped)
+                return 0;
+
+            if (score > best) {
+
+                best = score;
+
+                if (score > alpha) {
+
+                    alpha = score;
+                    updatePv(ply, move);
+
+                    if (alpha >= beta)
+                        break;
+
+                }
+
+            }
+
+        }
+
+        return best;
+
+    }
+
+    /**
+     * Makes a move on the position, remembering the hash key of the position
+     * before it.
+     * 
+     * @param move The encoded move.
+     */
+    private void makeMove(int move) {
+
+        keys[keyCount++] = position.getHashKey();
+        position.makeMove(move);
+
+    }
+
+    /**
+     * Unmakes the last move made with {@link #makeMove(int)}.
+     */
+    private void unmakeMove() {
+
+        position.unmakeMove();
+        --keyCount;
+
+    }
+
+    /**
+     * Gets whether or not the position is a draw by the fifty-move rule,
+     * repetition or insufficient material. A single repetition is scored as a
+     * draw, since the side that could avoid it would have.
+     * 
+     * @return Whether or not the position is a draw.
+     */
+    private boolean isDraw() {
+
+        final int fifty = position.getFiftyMoveCounter();
+
+        if (fifty >= 100)
+            return true;
+
+        final long key = position.getHashKey();
+
+        // Only positions since the last capture or pawn move can repeat
+        for (int i = keyCount - 2; i >= 0 && i >= keyCount - fifty; i -= 2) {
+
+            if (keys[i] == key)
+                return true;
+
+        }
+
+        return position.isInsufficientMaterial();
+
+    }
+
+    /**
+     * Scores the moves of a ply for ordering.
+     * 
+     * @param ply      The ply.
+     * @param count    The number of moves.
+     * @param pvMove   The move of the last principal variation at this ply, or
+     *                 {@code 0} if the node is not on it.
+     * @param hashMove The best move stored in the transposition table for the
+     *                 position, or {@code 0}.
+     */
+    private void orderMoves(int ply, int count, int pvMove, int hashMove) {
+
+        final int[] list = moves[ply];
+        final int[] order = orders[ply];
+
+        for (int i = 0; i < count; i++) {
+
+            final int move = list[i];
+            final int origin = MoveGenerator.getOrigin(move);
+            final int destination = MoveGenerator.getDestination(move);
+            final int piece = position.getPieceIndex(origin);
+
+            if (move == pvMove)
+                order[i] = PV_SCORE;
+            else if (move == hashMove)
+                order[i] = HASH_SCORE;
+            else if ((move & MoveGenerator.CAPTURE) != 0) {
+
+                final int victim = (move & MoveGenerator.EN_PASSANT) != 0 ? Bitboard.PAWN
+                        : Bitboard.type(position.getPieceIndex(destination));
+
+                order[i] = CAPTURE_SCORE + PieceSquareTable.MIDGAME_VALUES[victim] * 8 - Bitboard.type(piece);
+
+            } else if (MoveGenerator.getPromoteType(move) != 0)
+                order[i] = PROMOTION_SCORE + MoveGenerator.getPromoteType(move);
+            else if (move == killers[ply][0])
+                order[i] = KILLER_SCORE;
+            else if (move == killers[ply][1])
+                order[i] = KILLER_SCORE - 1;
+            else
+                order[i] = history[piece][destination];
+
+        }
+
+    }
+
+    /**
+     * Moves the best remaining move of a ply to the given index, so that moves
+     * are only sorted as far as they are searched.
+     * 
+     * @param ply   The ply.
+     * @param index The index of the move to search next.
+     * @param count The number of moves.
+     * @return The move.
+     */
+    private int pickMove(int ply, int index, int count) {
+
+        final int[] list = moves[ply];
+        final int[] order = orders[ply];
+
+        int best = index;
+
+        for (int i = index + 1; i < count; i++) {
+
+            if (order[i] > order[best])
+                best = i;
+
+        }
+
+        final int move = list[best];
+        final int score = order[best];
+
+        list[best] = list[index];
+        order[best] = order[index];
+        list[index] = move;
+        order[index] = score;
+
+        return move;
+
+    }
+
+    /**
+     * Sets the principal variation of a ply to a move followed by the
+     * principal variation of the next ply.
+     * 
+     * @param ply  The ply.
+     * @param move The move.
+     */
+    private void updatePv(int ply, int move) {
+
+        pv[ply][ply] = move;
+
+        final int length = Math.max(pvLength[ply + 1], ply + 1);
+
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, length - ply - 1);
+        pvLength[ply] = length;
+
+    }
+
+    /**
+     * Remembers a quiet move that caused a cutoff, so that it is searched earlier
+     * in other nodes.
+     * 
+     * @param ply   The ply of the move.
+     * @param move  The move.
+     * @param depth The remaining depth of the node.
+     */
+    private void updateQuiet(int ply, int move, int depth) {
+
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        final int piece = position.getPieceIndex(MoveGenerator.getOrigin(move));
+        final int destination = MoveGenerator.getDestination(move);
+
+        history[piece][destination] += depth * depth;
+
+        if (history[piece][destination] > HISTORY_LIMIT) {
+
+            for (int[] scores : history) {
+
+                for (int i = 0; i < scores.length; i++)
+                    scores[i] /= 2;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Stops the search if the engine was told to stop or a limit was reached.
+     */
+    private void checkStop() {
+
+        if (engine.shouldStop(nodes))
+            stopped = true;
+
+    }
+
+}
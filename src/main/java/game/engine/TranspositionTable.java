@@ -0,0 +1,348 @@
+package game.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A table of the results of searched positions, by hash key, so that a
+ * position reached again by another order of moves, or by a later iteration,
+ * does not have to be searched again.
+ * 
+ * <p>
+ * The table is a {@code long[]} of a power of two entries, each of which is
+ * two longs: the hash key of the position XORed with the data of the entry,
+ * followed by the data, which packs the best move, the depth, the bound, the
+ * score and the search the entry was stored in. An entry is only used if its
+ * two longs XOR back to the hash key of the position being probed, so entries
+ * torn by two threads writing at once are rejected instead of locked against.
+ * 
+ * <p>
+ * Each position has one slot. An entry of the current search is only replaced
+ * by a search of the same or greater depth, or by an exact score, while entries
+ * of earlier searches are always replaced.
+ * 
+ * <p>
+ * See: <a href=
+ * "https://www.chessprogramming.org/Shared_Hash_Table#Lockless">https://www.chessprogramming.org/Shared_Hash_Table#Lockless</a>
+ */
+public class TranspositionTable {
+
+    /** The bound of a score that is exact. */
+    public static final int EXACT = 1;
+
+    /** The bound of a score that is at least the real score. */
+    public static final int LOWER = 2;
+
+    /** The bound of a score that is at most the real score. */
+    public static final int UPPER = 3;
+
+    /** The size of the table by default, in megabytes. */
+    public static final int DEFAULT_SIZE = 16;
+
+    /** The largest size of the table, in megabytes. */
+    public static final int MAX_SIZE = 1024;
+
+    /** The number of bytes each entry takes. */
+    private static final int ENTRY_BYTES = 16;
+
+    /** The bits of the data that store the move. */
+    private static final long MOVE_MASK = (1L << 19) - 1;
+
+    /** The position of the depth in the data. */
+    private static final int DEPTH_SHIFT = 19;
+
+    /** The position of the bound in the data. */
+    private static final int BOUND_SHIFT = 27;
+
+    /** The position of the score in the data. */
+    private static final int SCORE_SHIFT = 29;
+
+    /** The position of the search the entry was stored in, in the data. */
+    private static final int AGE_SHIFT = 45;
+
+    /** The number of entries sampled for {@link #getHashFull()}. */
+    private static final int SAMPLE_SIZE = 1000;
+
+    /** The key and data of each entry, interleaved. */
+    private long[] table;
+
+    /** The entry index bits of a hash key. */
+    private int mask;
+
+    /** The size of the table, in megabytes. */
+    private int size;
+
+    /** The search that is storing entries, which ages older entries. */
+    private volatile int age;
+
+    /** The number of times a position was looked up. */
+    private final LongAdder probes;
+
+    /** The number of times a looked up position was found. */
+    private final LongAdder hits;
+
+    /**
+     * Creates a new table of the {@link #DEFAULT_SIZE default size}.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates a new table.
+     * 
+     * @param size The size of the table in megabytes, which is rounded down to
+     *             a power of two number of entries.
+     */
+    public TranspositionTable(int size) {
+
+        this.probes = new LongAdder();
+        this.hits = new LongAdder();
+
+        resize(size);
+
+    }
+
+    /**
+     * Resizes the table, clearing it. Must not be called while it is being
+     * searched with.
+     * 
+     * @param size The size of the table in megabytes, between {@code 1} and
+     *             {@link #MAX_SIZE}.
+     */
+    public synchronized void resize(int size) {
+
+        this.size = Math.max(1, Math.min(MAX_SIZE, size));
+
+        final int entries = Integer.highestOneBit((int) ((long) this.size * 1024 * 1024 / ENTRY_BYTES));
+
+        this.table = new long[entries * 2];
+        this.mask = entries - 1;
+
+        clear();
+
+    }
+
+    /**
+     * Clears the entries and counters of the table, such as before a new game.
+     * Must not be called while it is being searched with.
+     */
+    public synchronized void clear() {
+
+        Arrays.fill(table, 0);
+
+        age = 0;
+        probes.reset();
+        hits.reset();
+
+    }
+
+    /**
+     * Marks the start of a new search, after which the entries of earlier
+     * searches are replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Looks up the entry of a position.
+     * 
+     * @param key The hash key of the position.
+     * @return The data of the entry, to be read with {@link #getMove(long)},
+     *         {@link #getDepth(long)}, {@link #getBound(long)} and
+     *         {@link #getScore(long, int)}, or {@code 0} if the position is not
+     *         in the table.
+     */
+    public long probe(long key) {
+
+        final long[] t = table;
+        final int i = ((int) key & mask) << 1;
+
+        final long data = t[i + 1];
+
+        probes.increment();
+
+        if (data == 0 || (t[i] ^ data) != key)
+            return 0;
+
+        hits.increment();
+
+        return data;
+
+    }
+
+    /**
+     * Stores the result of a search of a position.
+     * 
+     * @param key   The hash key of the position.
+     * @param move  The best move found, or {@code 0}.
+     * @param depth The depth searched.
+     * @param bound The bound of the score: {@link #EXACT}, {@link #LOWER} or
+     *              {@link #UPPER}.
+     * @param score The score, from the point of view of the side to move.
+     * @param ply   The distance of the position from the root, by which mate
+     *              scores are made relative to the position.
+     */
+    public void store(long key, int move, int depth, int bound, int score, int ply) {
+
+        final long[] t = table;
+        final int i = ((int) key & mask) << 1;
+
+        final long old = t[i + 1];
+        final int current = age;
+
+        if (old != 0 && (int) (old >>> AGE_SHIFT) == current && bound != EXACT && depth < getDepth(old))
+            return;
+
+        // Keeps the best move of the position if this search did not find one
+        if (move == 0 && old != 0 && (t[i] ^ old) == key)
+            move = getMove(old);
+
+        if (score >= Searcher.MATE_BOUND)
+            score += ply;
+        else if (score <= -Searcher.MATE_BOUND)
+            score -= ply;
+
+        final long data = (move & MOVE_MASK)
+                | ((long) (Math.max(0, Math.min(0xFF, depth))) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+                | ((long) current << AGE_SHIFT);
+
+        t[i] = key ^ data;
+        t[i + 1] = data;
+
+    }
+
+    /**
+     * Gets the best move of an entry.
+     * 
+     * @param data The data of the entry.
+     * @return The move, encoded as described in {@link game.MoveGenerator}, or
+     *         {@code 0}.
+     */
+    public static int getMove(long data) {
+        return (int) (data & MOVE_MASK);
+    }
+
+    /**
+     * Gets the depth of an entry.
+     * 
+     * @param data The data of the entry.
+     * @return The depth searched.
+     */
+    public static int getDepth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Gets the bound of the score of an entry.
+     * 
+     * @param data The data of the entry.
+     * @return {@link #EXACT}, {@link #LOWER} or {@link #UPPER}.
+     */
+    public static int getBound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Gets the score of an entry.
+     * 
+     * @param data The data of the entry.
+     * @param ply  The distance of the position from the root, by which mate
+     *             scores are made relative to the root.
+     * @return The score, from the point of view of the side to move.
+     */
+    public static int getScore(long data, int ply) {
+
+        final int score = (short) (data >>> SCORE_SHIFT);
+
+        if (score >= Searcher.MATE_BOUND)
+            return score - ply;
+        else if (score <= -Searcher.MATE_BOUND)
+            return score + ply;
+
+        return score;
+
+    }
+
+    /**
+     * Gets how full the table is with entries of the current search, sampled
+     * from its first entries.
+     * 
+     * @return The fullness in permille, as in the UCI {@code hashfull} info.
+     */
+    public int getHashFull() {
+
+        final long[] t = table;
+        final int sample = Math.min(SAMPLE_SIZE, t.length / 2);
+        final int current = age;
+
+        int full = 0;
+
+        for (int i = 0; i < sample; i++) {
+
+            final long data = t[i * 2 + 1];
+
+            if (data != 0 && (int) (data >>> AGE_SHIFT) == current)
+                ++full;
+
+        }
+
+        return full * 1000 / sample;
+
+    }
+
+    /**
+     * Gets the number of times a position was looked up since the table was
+     * cleared.
+     * 
+     * @return The number of probes.
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * Gets the number of times a looked up position was found since the table
+     * was cleared.
+     * 
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the share of looked up positions that were found since the table was
+     * cleared.
+     * 
+     * @return The hit rate, from {@code 0} to {@code 1}.
+     */
+    public double getHitRate() {
+
+        final long p = probes.sum();
+        return p == 0 ? 0 : (double) hits.sum() / p;
+
+    }
+
+    /**
+     * Gets the size of the table.
+     * 
+     * @return {@link #size}
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of entries of the table.
+     * 
+     * @return The number of entries.
+     */
+    public int getEntries() {
+        return mask + 1;
+    }
+
+}
@@ -5,15 +5,79 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Interfaces with a UCI-compatible engine following the standard found here:
  * <a href=
  * "https://backscattering.de/chess/uci/">https://backscattering.de/chess/uci/
  * </a>
+ * 
+ * <p>
+ * After the {@code uci} handshake, everything the engine outputs is read by a
+ * single reader thread, which parses it into {@link EngineInfo},
+ * {@link BestMove} and {@code readyok} events. Searches and readiness checks
+ * return {@link CompletableFuture}s that the reader completes, so no caller has
+ * to block while the engine is thinking. Searches are queued, so each one is
+ * only sent to the engine once the one before it has output its best move.
  */
 public class UCIEngine {
 
+    /**
+     * A search that has been requested from the engine.
+     */
+    private static final class Search {
+
+        /** The result of the search, completed when the engine outputs its move. */
+        private final CompletableFuture<BestMove> result = new CompletableFuture<BestMove>();
+
+        /**
+         * The command that sets the position to search, or {@code null} to search
+         * the position that is already set.
+         */
+        private final String position;
+
+        /** The arguments of the {@code go} command. */
+        private final String goArgs;
+
+        /** Notified of each {@code info} line of the search, or {@code null}. */
+        private final Consumer<EngineInfo> listener;
+
+        /**
+         * The value of {@link UCIEngine#stops} when the search was requested. The
+         * search is cancelled if the engine is stopped before it starts.
+         */
+        private final long stops;
+
+        /** The last information output for the best line of the search. */
+        private EngineInfo info;
+
+        /**
+         * Creates a new search.
+         * 
+         * @param position The command that sets the position to search.
+         * @param goArgs   The arguments of the {@code go} command.
+         * @param listener Notified of each {@code info} line of the search.
+         * @param stops    The number of times the engine has been stopped.
+         */
+        private Search(String position, String goArgs, Consumer<EngineInfo> listener, long stops) {
+
+            this.position = position;
+            this.goArgs = goArgs;
+            this.listener = listener;
+            this.stops = stops;
+
+        }
+
+    }
+
     /**
      * The name of the engine.
      */
@@ -39,6 +103,47 @@ public class UCIEngine {
      */
     protected ArrayList<UCIOption<?>> opts;
 
+    /**
+     * The location of the engine.
+     */
+    private final File path;
+
+    /**
+     * The process of the engine.
+     */
+    private final Process process;
+
+    /**
+     * The readiness checks that have been sent to the engine and not answered
+     * yet, in the order they were sent.
+     */
+    private final ConcurrentLinkedQueue<CompletableFuture<Void>> readies;
+
+    /**
+     * The search the engine is running, or {@code null} if it is idle. Only set
+     * once the search has been sent, and cleared by the reader thread when the
+     * engine outputs its move.
+     */
+    private volatile Search current;
+
+    /**
+     * The result of the last search that was requested. The next search is sent
+     * once it completes.
+     */
+    private CompletableFuture<BestMove> lastSearch;
+
+    /**
+     * The number of times the engine has been {@link #stop() stopped}. Searches
+     * requested before a stop that have not started yet are cancelled.
+     */
+    private volatile long stops;
+
+    /**
+     * Whether or not the output of the engine has ended, after which every
+     * request fails.
+     */
+    private volatile boolean closed;
+
     /**
      * Finds and initializes the engine at the given path.
      * 
@@ -48,6 +153,9 @@ public class UCIEngine {
     public UCIEngine(File enginePath) throws IOException {
 
         opts = new ArrayList<>();
+        path = enginePath;
+        readies = new ConcurrentLinkedQueue<CompletableFuture<Void>>();
+        lastSearch = CompletableFuture.completedFuture(null);
 
         ProcessBuilder pb = null;
 
@@ -59,16 +167,15 @@ public class UCIEngine {
 
         pb.directory(new File(enginePath.getParent()));
         pb.redirectErrorStream(true);
-        Process p = pb.start();
-        input = p.inputReader();
-        output = p.outputWriter();
+        process = pb.start();
+        input = process.inputReader();
+        output = process.outputWriter();
 
         String rec = input.readLine();
         output.write("uci\n");
         output.flush();
 
         while (!rec.equals("uciok")) {
-            System.out.println(rec);
 
             if (rec.startsWith("id name ")) {
                 this.name = rec.substring(8);
@@ -144,6 +251,10 @@ public class UCIEngine {
 
         }
 
+        final Thread reader = new Thread(this::read, "UCI reader " + name);
+        reader.setDaemon(true);
+        reader.start();
+
         println("ucinewgame");
         waitReady();
 
@@ -158,6 +269,159 @@ public class UCIEngine {
         return opts;
     }
 
+    /**
+     * Gets the location of the engine.
+     * 
+     * @return {@link #path}
+     */
+    public File getPath() {
+        return path;
+    }
+
+    /**
+     * Gets whether or not the process of the engine is still running.
+     * 
+     * @return Whether or not the engine is alive.
+     */
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Gets the current value of each option of the engine, except buttons.
+     * 
+     * @return The values, by the name of their option.
+     */
+    public Map<String, String> getOptionValues() {
+
+        final Map<String, String> values = new LinkedHashMap<String, String>();
+
+        for (UCIOption<?> o : opts) {
+
+            if (!(o instanceof UCIButton))
+                values.put(o.getName(), String.valueOf(o.getValue()));
+
+        }
+
+        return values;
+
+    }
+
+    /**
+     * Gets the default value of each option of the engine, except buttons.
+     * 
+     * @return The default values, by the name of their option.
+     */
+    public Map<String, String> getDefaultOptionValues() {
+
+        final Map<String, String> values = new LinkedHashMap<String, String>();
+
+        for (UCIOption<?> o : opts) {
+
+            if (!(o instanceof UCIButton))
+                values.put(o.getName(), String.valueOf(o.getDef()));
+
+        }
+
+        return values;
+
+    }
+
+    /**
+     * Sets each of the given options that does not already have that value.
+     * Options that the engine does not have are ignored.
+     * 
+     * @param values The values, by the name of their option.
+     * @throws IOException If there is an error outputting to the engine.
+     * @see #waitReady()
+     */
+    public void setOptionValues(Map<String, String> values) throws IOException {
+
+        for (UCIOption<?> o : opts) {
+
+            final String value = values.get(o.getName());
+
+            if (value == null || value.equals(String.valueOf(o.getValue())))
+                continue;
+
+            if (o instanceof UCICheck)
+                ((UCICheck) o).set(Boolean.parseBoolean(value));
+            else if (o instanceof UCISpin)
+                ((UCISpin) o).set(Integer.parseInt(value));
+            else if (o instanceof UCICombo)
+                ((UCICombo) o).set(value);
+            else if (o instanceof UCIString)
+                ((UCIString) o).set(value);
+
+        }
+
+    }
+
+    /**
+     * Tells the engine that the next position it searches is from a different
+     * game, then waits for it to be ready.
+     * 
+     * @throws IOException If there is an error outputting to the engine.
+     */
+    public void newGame() throws IOException {
+
+        println("ucinewgame");
+        waitReady();
+
+    }
+
+    /**
+     * Tells the engine to stop searching as soon as possible. The engine will
+     * still output the best move it found. Searches that were queued behind the
+     * current one are cancelled.
+     * 
+     * @throws IOException If there is an error outputting to the engine.
+     */
+    public void stop() throws IOException {
+
+        synchronized (this) {
+            ++stops;
+        }
+
+        println("stop");
+
+    }
+
+    /**
+     * Tells the engine that the opponent played the move it was pondering on, so
+     * that its ponder search becomes a normal search.
+     * 
+     * @throws IOException If there is an error outputting to the engine.
+     * @see #go(String, Consumer)
+     */
+    public void ponderHit() throws IOException {
+        println("ponderhit");
+    }
+
+    /**
+     * Tells the engine to quit, and stops its process if it has not quit shortly
+     * after.
+     */
+    public void close() {
+
+        try {
+            println("quit");
+        } catch (IOException e) {
+            // The engine has already quit
+        }
+
+        try {
+
+            if (!process.waitFor(500, TimeUnit.MILLISECONDS))
+                process.destroy();
+
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
     /**
      * Gets the name.
      * 
@@ -201,17 +465,41 @@ public class UCIEngine {
      * engine is ready after performing an operation.
      * 
      * @throws IOException If there is an error outputting to the engine.
+     * @see #isReady()
      */
     public void waitReady() throws IOException {
+        await(isReady());
+    }
+
+    /**
+     * Asks the engine whether it is ready, without waiting for its answer.
+     * 
+     * @return A future that is completed when the engine outputs
+     *         {@code readyok}, or completed exceptionally if its output ends
+     *         first.
+     */
+    public CompletableFuture<Void> isReady() {
 
-        println("isready");
+        final CompletableFuture<Void> ready = new CompletableFuture<Void>();
+
+        // The checks must be queued in the same order they are sent
+        synchronized (output) {
+
+            readies.add(ready);
+
+            try {
+                println("isready");
+            } catch (IOException e) {
+                readies.remove(ready);
+                ready.completeExceptionally(e);
+            }
 
-        String rec = input.readLine();
-        while (!rec.equals("readyok")) {
-            System.out.println(rec);
-            rec = input.readLine();
         }
-        System.out.println(rec);
+
+        if (closed)
+            ready.completeExceptionally(new IOException("Engine output has ended."));
+
+        return ready;
 
     }
 
@@ -229,7 +517,8 @@ public class UCIEngine {
     }
 
     /**
-     * Gets the best move from the currently set position.
+     * Gets the best move from the currently set position. This method is
+     * blocking.
      * 
      * @param depth The depth to search for.
      * @param wtime The amount of time white has left.
@@ -241,40 +530,92 @@ public class UCIEngine {
      *                     receiving its response.
      * 
      * @see #setPosition(String, String...)
+     * @see #go(String, Consumer)
      */
     public String getBestMove(int depth, long wtime, long btime, long winc, long binc) throws IOException {
+        return await(go(getGoArguments(depth, wtime, btime, winc, binc), null)).getMove();
+    }
 
-        String d = " depth " + depth;
-        if (depth <= 0)
-            d = "";
+    /**
+     * Searches the given position, without waiting for the search to end.
+     * 
+     * @param fen      The starting position in FEN notation.
+     * @param moves    The moves that led up to the position to search.
+     * @param goArgs   The arguments of the {@code go} command, such as
+     *                 {@code depth 10} or {@code infinite}.
+     * @param listener Notified of each {@code info} line of the search on the
+     *                 reader thread, or {@code null}.
+     * @return A future that is completed with the move of the engine once it
+     *         outputs one, or completed exceptionally if the search could not
+     *         be sent or was cancelled by {@link #stop()}.
+     * @see #getGoArguments(int, long, long, long, long)
+     */
+    public CompletableFuture<BestMove> search(String fen, String[] moves, String goArgs,
+            Consumer<EngineInfo> listener) {
 
-        String wt = " wtime " + wtime;
-        if (wtime <= 0)
-            wt = "";
+        return submit(new Search("position fen " + fen + " moves " + String.join(" ", moves), goArgs, listener,
+                stops));
 
-        String bt = " btime " + btime;
-        if (btime <= 0)
-            bt = "";
+    }
 
-        String wi = " winc " + winc;
-        if (winc <= 0)
-            wi = "";
+    /**
+     * Searches the position that was set with
+     * {@link #setPosition(String, String...)}, without waiting for the search to
+     * end.
+     * 
+     * @param goArgs   The arguments of the {@code go} command, such as
+     *                 {@code depth 10} or {@code ponder wtime 1000}.
+     * @param listener Notified of each {@code info} line of the search on the
+     *                 reader thread, or {@code null}.
+     * @return A future that is completed with the move of the engine once it
+     *         outputs one.
+     * @see #search(String, String[], String, Consumer)
+     */
+    public CompletableFuture<BestMove> go(String goArgs, Consumer<EngineInfo> listener) {
+        return submit(new Search(null, goArgs, listener, stops));
+    }
 
-        String bi = " binc " + binc;
-        if (binc <= 0)
-            bi = "";
+    /**
+     * Gets a future that is completed once every search that has been requested
+     * so far has ended, whether or not it succeeded.
+     * 
+     * @return A future that is completed when the engine is idle.
+     */
+    public synchronized CompletableFuture<Void> whenIdle() {
+        return lastSearch.handle((move, e) -> null);
+    }
 
-        println("go" + d + wt + bt + wi + bi);
+    /**
+     * Builds the arguments of a {@code go} command. Values that are not positive
+     * are left out.
+     * 
+     * @param depth The depth to search for.
+     * @param wtime The amount of time white has left.
+     * @param btime The amount of time black has left.
+     * @param winc  The amount of time white gains per move.
+     * @param binc  The amount of time black gains per move.
+     * @return The arguments.
+     */
+    public static String getGoArguments(int depth, long wtime, long btime, long winc, long binc) {
 
-        String rec = input.readLine();
-        while (!rec.startsWith("bestmove ")) {
-            System.out.println(rec);
-            rec = input.readLine();
-        }
+        final StringBuilder b = new StringBuilder();
+
+        if (depth > 0)
+            b.append(" depth ").append(depth);
+
+        if (wtime > 0)
+            b.append(" wtime ").append(wtime);
+
+        if (btime > 0)
+            b.append(" btime ").append(btime);
 
-        System.out.println(rec);
-        String[] sp = rec.split(" ");
-        return sp[1];
+        if (winc > 0)
+            b.append(" winc ").append(winc);
+
+        if (binc > 0)
+            b.append(" binc ").append(binc);
+
+        return b.toString().trim();
 
     }
 
@@ -292,6 +633,153 @@ public class UCIEngine {
 
     }
 
+    /**
+     * Queues a search to be sent once the last search that was requested has
+     * ended.
+     * 
+     * @param search The search.
+     * @return The result of the search.
+     */
+    private CompletableFuture<BestMove> submit(Search search) {
+
+        final CompletableFuture<BestMove> previous;
+
+        synchronized (this) {
+            previous = lastSearch;
+            lastSearch = search.result;
+        }
+
+        previous.handle((move, e) -> null).thenRun(() -> start(search));
+
+        return search.result;
+
+    }
+
+    /**
+     * Sends a search to the engine. Called once the search before it has ended,
+     * which is usually on the reader thread.
+     * 
+     * @param search The search.
+     */
+    private void start(Search search) {
+
+        if (search.stops != stops) {
+            search.result.completeExceptionally(new CancellationException("Engine was stopped."));
+            return;
+        }
+
+        current = search;
+
+        try {
+
+            if (search.position != null)
+                println(search.position);
+
+            println(("go " + search.goArgs).trim());
+
+        } catch (IOException e) {
+            current = null;
+            search.result.completeExceptionally(e);
+        }
+
+        if (closed)
+            search.result.completeExceptionally(new IOException("Engine output has ended."));
+
+    }
+
+    /**
+     * Reads the output of the engine until it ends, completing the futures of
+     * the requests it answers. Run by the reader thread.
+     */
+    private void read() {
+
+        try {
+
+            String rec;
+            while ((rec = input.readLine()) != null) {
+
+                if (rec.startsWith("info ")) {
+
+                    final Search search = current;
+
+                    if (search == null)
+                        continue;
+
+                    final EngineInfo info = EngineInfo.parse(rec);
+
+                    if (info.getMultiPv() == 1 && info.hasScore())
+                        search.info = info;
+
+                    if (search.listener != null)
+                        search.listener.accept(info);
+
+                } else if (rec.startsWith("bestmove")) {
+
+                    final Search search = current;
+                    current = null;
+
+                    if (search != null)
+                        search.result.complete(new BestMove(rec, search.info));
+
+                } else if (rec.equals("readyok")) {
+
+                    final CompletableFuture<Void> ready = readies.poll();
+
+                    if (ready != null)
+                        ready.complete(null);
+
+                }
+
+                // Other output, such as copyright notices, is ignored
+
+            }
+
+        } catch (IOException e) {
+            // The process has ended
+        }
+
+        closed = true;
+
+        final IOException ended = new IOException("Engine output has ended.");
+
+        final Search search = current;
+        current = null;
+
+        if (search != null)
+            search.result.completeExceptionally(ended);
+
+        CompletableFuture<Void> ready;
+        while ((ready = readies.poll()) != null)
+            ready.completeExceptionally(ended);
+
+    }
+
+    /**
+     * Waits for a request to the engine to be answered.
+     * 
+     * @param <T>    The type of the answer.
+     * @param future The request.
+     * @return The answer.
+     * @throws IOException If the request failed or the thread was interrupted.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the engine.", e);
+        } catch (ExecutionException | CancellationException e) {
+
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+
+            throw new IOException(e.getMessage(), e);
+
+        }
+
+    }
+
     /**
      * Outputs a message to the engine.
      * 
@@ -299,9 +787,13 @@ public class UCIEngine {
      * @throws IOException If there is an error outputting to the engine.
      */
     private void println(String command) throws IOException {
-        System.out.println("Outputting: " + command);
-        output.write(command + "\n");
-        output.flush();
+
+        // Commands such as stop may be sent while another thread waits for output
+        synchronized (output) {
+            output.write(command + "\n");
+            output.flush();
+        }
+
     }
 
 }
@@ -1,10 +1,5 @@
 package game.pieces;
 
-import java.util.ArrayList;
-
-import game.Move;
-import game.Position;
-
 /**
  * A representation of a Bishop.
  */
@@ -30,14 +25,4 @@ public class Bishop extends Piece {
         return 3;
     }
 
-    public ArrayList<Move> getMoves(Position p) {
-
-        ArrayList<Move> moves = new ArrayList<Move>();
-
-        moves.addAll(getDiagonalMoves(0, p));
-
-        return moves;
-
-    }
-
 }
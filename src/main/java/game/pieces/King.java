@@ -1,10 +1,5 @@
 package game.pieces;
 
-import java.util.ArrayList;
-
-import game.Move;
-import game.Position;
-
 /**
  * A representation of a king.
  */
@@ -30,18 +25,4 @@ public class King extends Piece {
         return 0;
     }
 
-    public ArrayList<Move> getMoves(Position p) {
-
-        ArrayList<Move> moves = new ArrayList<Move>();
-
-        moves.addAll(getVerticalMoves(1, p, true));
-        moves.addAll(getHorizontalMoves(1, p));
-        moves.addAll(getDiagonalMoves(1, p));
-
-
-
-        return moves;
-
-    }
-
 }
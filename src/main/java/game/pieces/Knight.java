@@ -1,11 +1,5 @@
 package game.pieces;
 
-import java.util.ArrayList;
-
-import game.Move;
-import game.Position;
-import game.Square;
-
 /**
  * A representation of a knight.
  */
@@ -31,48 +25,4 @@ public class Knight extends Piece {
         return 3;
     }
 
-    public ArrayList<Move> getMoves(Position p) {
-
-        ArrayList<Move> moves = new ArrayList<Move>();
-
-        int file = square.getFile();
-        int rank = square.getRank();
-
-        for (int i = 0; i < 4; i++) {
-
-            int one = 1, two = 2;
-
-            switch (i) {
-                case 1:
-                    one = -1;
-                    break;
-                case 2:
-                    two = -2;
-                    break;
-                case 3:
-                    one = -1;
-                    two = -2;
-                    break;
-            }
-
-            // Vertical one & horizontal two
-            try {
-                Move move = new Move(square, new Square(file + one, rank + two), p);
-                moves.add(move);
-            } catch (Exception e) {
-            }
-
-            // Vertical two & horizontal one
-            try {
-                Move move = new Move(square, new Square(file + two, rank + one), p);
-                moves.add(move);
-            } catch (Exception e) {
-            }
-
-        }
-
-        return moves;
-
-    }
-
 }
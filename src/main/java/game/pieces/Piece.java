@@ -2,7 +2,9 @@ package game.pieces;
 
 import java.util.ArrayList;
 
+import game.Bitboard;
 import game.Move;
+import game.MoveGenerator;
 import game.Position;
 import game.Square;
 
@@ -102,242 +104,18 @@ abstract public class Piece {
 
     /**
      * Gets all moves that a given piece can make, regardless of if they are
-     * possible in the context of the game.
+     * possible in the context of the game. Castle moves are not included.
      * 
      * @param position The position this piece is a part of.
      * @return A list of valid moves. Does not account for check.
      */
-    abstract public ArrayList<Move> getMoves(Position position);
+    public ArrayList<Move> getMoves(Position position) {
 
-    /**
-     * Gets the vertical moves possible for the piece.
-     * 
-     * @param distance         The number of squares the piece may move. If there is
-     *                         no limit, enter 0 or 8.
-     * @param position         The current {@link Position} the piece is on.
-     * @param includeBackwards Should backwards moves be included? (e.g. not for
-     *                         pawns)
-     * @return A list of valid vertical moves for the piece. Does not account for
-     *         check, but
-     *         does account for capturing/pieces in the way.
-     */
-    protected ArrayList<Move> getVerticalMoves(int distance, Position position, boolean includeBackwards) {
-
-        ArrayList<Move> moves = new ArrayList<Move>();
-
-        int file = square.getFile();
-        int rank = square.getRank();
-
-        if (distance <= 0)
-            distance = 8;
-
-        for (int i = 1; i < distance + 1; i++) {
-
-            final Move move;
-
-            try {
-
-                move = new Move(square, new Square(file, white ? rank + i : rank - i), position);
-
-            } catch (Exception e) {
-
-                if (e.getMessage().equals("Cannot capture your own piece.") || e.getMessage().equals(
-                        "Cannot capture going forward."))
-                    break;
-
-                continue;
-
-            }
-
-            moves.add(move);
-
-            if (move.isCapture())
-                break;
-
-        }
-
-        if (includeBackwards) {
-
-            distance = -distance;
-            for (int i = -1; i > distance - 1; i--) {
-
-                final Move move;
-
-                try {
-
-                    move = new Move(square, new Square(file, white ? rank + i : rank - i), position);
-
-                } catch (Exception e) {
-
-                    if (e.getMessage().equals("Cannot capture your own piece."))
-                        break;
-
-                    continue;
-                }
-
-                moves.add(move);
-
-                if (move.isCapture())
-                    break;
-
-            }
-
-        }
-
-        return moves;
-    }
-
-    /**
-     * Gets the horizontal moves possible for the piece.
-     * 
-     * @param distance The number of squares the piece may move. If there is
-     *                 no limit, enter 0 or 8.
-     * @param position The current {@link Position} the piece is on.
-     * @return A list of valid horizontal moves for the piece. Does not account for
-     *         check, but
-     *         does account for capturing/pieces in the way.
-     */
-    protected ArrayList<Move> getHorizontalMoves(int distance, Position position) {
-
-        ArrayList<Move> moves = new ArrayList<Move>();
-
-        int file = square.getFile();
-        int rank = square.getRank();
-
-        if (distance <= 0)
-            distance = 8;
-
-        // Right
-        for (int i = 1; i < distance + 1; i++) {
-
-            final Move move;
-
-            try {
-
-                move = new Move(square, new Square(white ? file + i : file - i, rank), position);
-
-            } catch (Exception e) {
-
-                if (e.getMessage().equals("Cannot capture your own piece."))
-                    break;
-
-                continue;
-
-            }
-
-            moves.add(move);
-
-            if (move.isCapture())
-                break;
-
-        }
-
-        // Left
-        distance = -distance;
-        for (int i = -1; i > distance - 1; i--) {
-
-            Move move;
-            try {
-
-                move = new Move(square, new Square(white ? file + i : file - i, rank), position);
-
-            } catch (Exception e) {
-
-                if (e.getMessage().equals("Cannot capture your own piece."))
-                    break;
-
-                continue;
-
-            }
-
-            moves.add(move);
-
-            if (move.isCapture())
-                break;
-
-        }
-
-        return moves;
-    }
-
-    /**
-     * Gets the diagonal moves possible for the piece.
-     * 
-     * @param distance The number of squares the piece may move. If there is
-     *                 no limit, enter 0 or 8.
-     * @param position The current {@link Position} the piece is on.
-     * @return A list of valid diagonal moves for the piece. Does not account for
-     *         check, but
-     *         does account for capturing/pieces in the way.
-     */
-    protected ArrayList<Move> getDiagonalMoves(int distance, Position position) {
-
-        ArrayList<Move> moves = new ArrayList<Move>();
-
-        int file = square.getFile();
-        int rank = square.getRank();
-
-        if (distance <= 0)
-            distance = 8;
-
-        boolean color = white ? true : false;
-
-        for (int l = 0; l < 2; l++, color = !color, distance = -distance) {
-
-            // Up
-            for (int i = 1; i < distance + 1; i++) {
-
-                final Move move;
-                try {
-
-                    move = new Move(square, new Square(color ? file + i : file - i, color ? rank + i : rank - i),
-                            position);
-
-                } catch (Exception e) {
-
-                    if (e.getMessage().equals("Cannot capture your own piece."))
-                        break;
-
-                    continue;
-
-                }
-
-                moves.add(move);
-
-                if (move.isCapture())
-                    break;
-
-            }
-
-            // Down
-            distance = -distance;
-            for (int i = -1; i > distance - 1; i--) {
-
-                final Move move;
-                try {
-
-                    move = new Move(square, new Square(color ? file + i : file - i, color ? rank - i : rank + i),
-                            position);
-
-                } catch (Exception e) {
-
-                    if (e.getMessage().equals("Cannot capture your own piece."))
-                        break;
-
-                    continue;
-
-                }
-
-                moves.add(move);
-
-                if (move.isCapture())
-                    break;
-
-            }
+        final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        final int count = MoveGenerator.generate(position, white, Bitboard.bit(Bitboard.square(square)), buffer, 0);
 
-        }
+        return MoveGenerator.toMoves(position, buffer, count);
 
-        return moves;
     }
 
 }
@@ -1,10 +1,5 @@
 package game.pieces;
 
-import java.util.ArrayList;
-
-import game.Move;
-import game.Position;
-
 /**
  * A representation of a queen.
  */
@@ -30,16 +25,4 @@ public class Queen extends Piece {
         return 9;
     }
 
-    public ArrayList<Move> getMoves(Position p) {
-
-        ArrayList<Move> moves = new ArrayList<Move>();
-
-        moves.addAll(getVerticalMoves(0, p, true));
-        moves.addAll(getHorizontalMoves(0, p));
-        moves.addAll(getDiagonalMoves(0, p));
-
-        return moves;
-
-    }
-
 }
@@ -1,6 +1,9 @@
 package gui;
 
+import java.io.File;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import game.Game;
 import game.GameEvent;
@@ -9,7 +12,9 @@ import game.Game.Reason;
 import game.Game.Result;
 import game.GameEvent.Type;
 import game.LAN.Client;
+import game.engine.EngineAnalysis;
 import game.engine.EngineHook;
+import game.engine.EnginePool;
 import gui.board.Board;
 import gui.component.ChatArea;
 import gui.component.GameInfo;
@@ -114,6 +119,18 @@ public class GameView extends HBox implements GameListener {
      */
     private EngineHook engine;
 
+    /**
+     * The analysis of the current position, or {@code null} if the position is not
+     * being analyzed.
+     */
+    private EngineAnalysis analysis;
+
+    /**
+     * Whether or not the user has turned on the analysis of the current position.
+     * The {@link #analysis} may still be starting.
+     */
+    private boolean analyzing;
+
     /**
      * The {@link App} that contains this GameView.
      */
@@ -340,6 +357,97 @@ public class GameView extends HBox implements GameListener {
         return board;
     }
 
+    /**
+     * Gets the analysis of the current position.
+     * 
+     * @return {@link #analysis}
+     */
+    public EngineAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * Gets whether or not the current position is being analyzed.
+     * 
+     * @return {@link #analyzing}
+     */
+    public boolean isAnalyzing() {
+        return analyzing;
+    }
+
+    /**
+     * Turns the analysis of the current position on or off. The analysis uses
+     * another process of the engine of the game, which is checked out of the
+     * {@link EnginePool#getDefault() engine pool} without blocking, and is
+     * restarted whenever the position shown changes.
+     * 
+     * @param analyzing Whether or not to analyze the current position.
+     */
+    public void setAnalyzing(boolean analyzing) {
+
+        if (this.analyzing == analyzing)
+            return;
+
+        this.analyzing = analyzing;
+        engineMenu.update();
+
+        if (!analyzing) {
+
+            if (analysis != null)
+                analysis.release();
+
+            analysis = null;
+            openingLabelPane.setAnalysis(null, null);
+            return;
+
+        }
+
+        if (engine == null) {
+            this.analyzing = false;
+            engineMenu.update();
+            return;
+        }
+
+        final File path = engine.getEngine().getPath();
+
+        CompletableFuture.supplyAsync(() -> {
+
+            try {
+                return new EngineAnalysis(EnginePool.getDefault().checkout(path));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+
+        }).whenComplete((a, e) -> Platform.runLater(() -> {
+
+            if (e != null) {
+                e.printStackTrace();
+                this.analyzing = false;
+                engineMenu.update();
+                return;
+            }
+
+            // Turned off while the engine was starting
+            if (!this.analyzing || analysis != null) {
+                a.release();
+                return;
+            }
+
+            analysis = a;
+            analysis.addListener((position, lines, done) -> Platform.runLater(() -> {
+
+                if (analysis == a && game != null && currentPos < game.getPositions().size()
+                        && game.getPositions().get(currentPos) == position)
+                    openingLabelPane.setAnalysis(position, lines);
+
+            }));
+
+            updateAnalysis();
+
+        }));
+
+    }
+
     /**
      * Gets the engine hook.
      * 
@@ -546,6 +654,22 @@ public class GameView extends HBox implements GameListener {
 
         moveListPane.posChanged(currentPos);
 
+        updateAnalysis();
+
+    }
+
+    /**
+     * Starts analyzing the current position, stopping the analysis of the last
+     * position, if analysis is turned on.
+     */
+    private void updateAnalysis() {
+
+        if (analysis == null || game == null)
+            return;
+
+        openingLabelPane.setAnalysis(null, null);
+        analysis.start(game, currentPos);
+
     }
 
     /**
@@ -648,6 +772,9 @@ public class GameView extends HBox implements GameListener {
 
             }
 
+            // The analysis uses the engine of the last game
+            setAnalyzing(false);
+
             client = setup.getClient();
 
             game = setup.getGame();
@@ -655,12 +782,14 @@ public class GameView extends HBox implements GameListener {
 
             engine = setup.getEngine();
 
-            if (client == null && engine == null)
+            if (client == null && engine == null && setup.getProgram() == null)
                 color = Color.TWO_PLAYER;
             else if (client != null)
                 color = setup.isWhite() ? Color.WHITE : Color.BLACK;
             else if (engine != null)
                 color = !engine.isWhite() ? Color.WHITE : Color.BLACK;
+            else
+                color = !setup.getProgram().isWhite() ? Color.WHITE : Color.BLACK;
 
             currentPos = 0;
 
@@ -671,7 +800,7 @@ public class GameView extends HBox implements GameListener {
                 else {
                     moveListPane.initMoveList();
                     chatBox.update();
-                    engineMenu.setVisible(engine != null);
+                    engineMenu.update();
 
                     goToLastPos();
 
@@ -743,7 +872,7 @@ public class GameView extends HBox implements GameListener {
 
                 moveListPane.initMoveList();
                 chatBox.update();
-                engineMenu.setVisible(engine != null);
+                engineMenu.update();
 
                 goToLastPos();
 
@@ -765,6 +894,8 @@ public class GameView extends HBox implements GameListener {
                 moveListPane.boardUpdated();
                 moveListPane.posChanged(currentPos);
 
+                updateAnalysis();
+
                 gameMenu.update();
                 viewMenu.update();
 
@@ -1,6 +1,17 @@
 package gui.component;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import game.Opening;
+import game.OpeningTree;
+import game.Position;
+import game.database.OpeningExplorer;
+import game.database.SearchResult;
+import game.engine.EngineAnalysis;
+import game.engine.EngineInfo;
 import gui.GameView;
+import javafx.application.Platform;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
@@ -9,7 +20,15 @@ import javafx.scene.text.Text;
 
 /**
  * The pane that shows the opening that led to the position the game is
- * currently in.
+ * currently in and the book moves that continue it, the games of the
+ * {@link OpeningExplorer#getDefault() opening explorer} that reached it, and the
+ * lines of an {@link EngineAnalysis} of it.
+ * 
+ * <p>
+ * The opening is found in the {@link OpeningTree#getDefault() opening tree}, so
+ * a position reached by a different order of moves is named after the opening
+ * it transposes into, and a position after a named one is named after the
+ * deepest named position before it.
  */
 public class OpeningLabel extends VBox {
 
@@ -23,6 +42,37 @@ public class OpeningLabel extends VBox {
      */
     private Text openingLabel;
 
+    /**
+     * The label that displays the games of the opening explorer.
+     */
+    private Text explorerLabel;
+
+    /**
+     * The label that displays the lines of the engine analysis.
+     */
+    private Text analysisLabel;
+
+    /**
+     * The most moves listed by {@link #explorerLabel}.
+     */
+    private static final int EXPLORER_MOVES = 3;
+
+    /**
+     * The most book moves listed after the name of the opening.
+     */
+    private static final int BOOK_MOVES = 3;
+
+    /**
+     * The opening tree, or {@code null} until it has been loaded. Loaded off the
+     * JavaFX thread, since building it takes about a second.
+     */
+    private volatile OpeningTree tree;
+
+    /**
+     * The most moves of each line listed by {@link #analysisLabel}.
+     */
+    private static final int ANALYSIS_MOVES = 8;
+
     /**
      * Creates a new pane that displays the opening.
      * 
@@ -35,16 +85,30 @@ public class OpeningLabel extends VBox {
         openingLabel = new Text();
         openingLabel.setId("openingText");
 
+        explorerLabel = new Text();
+        explorerLabel.setId("explorerText");
+
+        analysisLabel = new Text();
+        analysisLabel.setId("analysisText");
+
         Region topReg = new Region(), botReg = new Region();
 
         VBox.setVgrow(topReg, Priority.ALWAYS);
         VBox.setVgrow(botReg, Priority.ALWAYS);
 
-        HBox hb = new HBox(openingLabel);
+        HBox hb = new HBox(new VBox(openingLabel, explorerLabel, analysisLabel));
         hb.setId("openingBox");
 
         getChildren().addAll(topReg, hb, botReg);
 
+        CompletableFuture.supplyAsync(OpeningTree::getDefault).thenAccept(t -> {
+            tree = t;
+            Platform.runLater(this::update);
+        }).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+
     }
 
     /**
@@ -55,16 +119,135 @@ public class OpeningLabel extends VBox {
 
         openingLabel.setWrappingWidth(gameView.getMoveListPane().getWidth()
                 - (openingLabel.getLayoutX() - gameView.getMoveListPane().getLayoutX()));
+        explorerLabel.setWrappingWidth(openingLabel.getWrappingWidth());
+        analysisLabel.setWrappingWidth(openingLabel.getWrappingWidth());
 
         if (gameView.getGame() == null || gameView.getGame().getLastPos() == null) {
             openingLabel.setText("");
+            explorerLabel.setText("");
             return;
         }
 
-        openingLabel.setText(
-                gameView.getGame().getPositions().get(gameView.getCurrentPos()).getOpening() == null ? ""
-                        : gameView.getGame()
-                                .getPositions().get(gameView.getCurrentPos()).getOpening().getName());
+        final Position pos = gameView.getGame().getPositions().get(gameView.getCurrentPos());
+
+        openingLabel.setText(getOpeningText(pos));
+        explorerLabel.setText(getExplorerText(OpeningExplorer.getDefault().query(pos)));
+
+    }
+
+    /**
+     * Displays the lines of an engine analysis of the current position.
+     * 
+     * @param position The position that was analyzed.
+     * @param lines    The lines, best first, or {@code null} to clear the
+     *                 analysis.
+     */
+    public void setAnalysis(Position position, List<EngineInfo> lines) {
+
+        if (lines == null) {
+            analysisLabel.setText("");
+            return;
+        }
+
+        final StringBuilder str = new StringBuilder();
+
+        for (EngineInfo info : lines) {
+
+            if (str.length() > 0)
+                str.append('\n');
+
+            // Scores are output for the side to move, but shown for white
+            final int score = position.isWhite() ? info.getScore() : -info.getScore();
+
+            if (info.isMate())
+                str.append('#').append(score);
+            else
+                str.append(String.format("%+.2f", score / 100.0));
+
+            str.append(" (").append(info.getDepth()).append(") ")
+                    .append(EngineAnalysis.getNotation(position, info.getPv(), ANALYSIS_MOVES));
+
+        }
+
+        analysisLabel.setText(str.toString());
+
+    }
+
+    /**
+     * Gets the text that names the opening of the current position and lists the
+     * book moves that continue from it.
+     * 
+     * @param pos The current position.
+     * @return The name of the opening and the book moves, or an empty string if
+     *         the position has no opening.
+     */
+    private String getOpeningText(Position pos) {
+
+        final OpeningTree t = tree;
+
+        // Until the tree has loaded, the opening the position was created with
+        if (t == null)
+            return pos.getOpening() == null ? "" : pos.getOpening().getName();
+
+        final OpeningTree.Node node = t.find(gameView.getGame(), gameView.getCurrentPos());
+
+        Opening opening = node == null ? null : node.getDeepestNamed();
+
+        // Out of the book, the last opening of the game
+        if (opening == null)
+            opening = pos.getOpening();
+
+        if (opening == null)
+            return "";
+
+        final StringBuilder str = new StringBuilder(opening.getName());
+
+        if (node != null && !node.getChildren().isEmpty()) {
+
+            int i = 0;
+
+            for (OpeningTree.Node child : node.getChildren()) {
+
+                if (i == BOOK_MOVES)
+                    break;
+
+                str.append(i++ == 0 ? "\nBook: " : ", ").append(child.getSan());
+
+            }
+
+        }
+
+        return str.toString();
+
+    }
+
+    /**
+     * Gets the text that summarizes the games of the opening explorer that
+     * reached a position.
+     * 
+     * @param result The games of the position.
+     * @return The number of games, their results and the moves played most, or an
+     *         empty string if no games reached the position.
+     */
+    private static String getExplorerText(SearchResult result) {
+
+        if (result.getGames() == 0)
+            return "";
+
+        final StringBuilder str = new StringBuilder();
+        str.append(result.getGames()).append(result.getGames() == 1 ? " game" : " games").append(" (+")
+                .append(result.getWhiteWins()).append(" =").append(result.getDraws()).append(" -")
+                .append(result.getBlackWins()).append(")");
+
+        for (int i = 0; i < result.getMoves().size() && i < EXPLORER_MOVES; i++) {
+
+            final SearchResult.MoveStats move = result.getMoves().get(i);
+            str.append(i == 0 ? ": " : ", ").append(move.getNotation()).append(" (").append(move.getGames())
+                    .append(")");
+
+        }
+
+        return str.toString();
 
     }
 
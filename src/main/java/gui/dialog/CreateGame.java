@@ -2,6 +2,8 @@ package gui.dialog;
 
 import java.io.File;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import game.Game;
 import game.GameSettings;
 import game.Player;
@@ -10,7 +12,11 @@ import game.LAN.Challenge;
 import game.LAN.ChallengeServer;
 import game.LAN.Client;
 import game.PGN.PGNParser;
+import game.database.OpeningExplorer;
+import game.engine.BuiltInEngine;
 import game.engine.EngineHook;
+import game.engine.EnginePool;
+import game.engine.ProgramHook;
 import game.engine.UCIEngine;
 import gui.App;
 import javafx.application.Platform;
@@ -160,6 +166,12 @@ public class CreateGame extends Stage {
      */
     private ChallengeServer server;
 
+    /**
+     * The engine being checked out for a game against it, or {@code null} if no
+     * engine is being checked out.
+     */
+    private CompletableFuture<UCIEngine> checkout;
+
     /**
      * The game created by this dialog.
      */
@@ -175,6 +187,11 @@ public class CreateGame extends Stage {
      */
     private EngineHook engine;
 
+    /**
+     * The built-in engine hook associated with the game created by this dialog.
+     */
+    private ProgramHook program;
+
     /**
      * Whether or not a game should be created.
      */
@@ -213,7 +230,7 @@ public class CreateGame extends Stage {
         type = new ChoiceBox<String>();
         type.setMaxWidth(Double.MAX_VALUE);
 
-        type.getItems().setAll("Two Player", "Online");
+        type.getItems().setAll("Two Player", "Online", BuiltInEngine.NAME);
 
         String st = App.prefs.get("Engines", "");
         if (!st.equals("")) {
@@ -235,7 +252,7 @@ public class CreateGame extends Stage {
                 ae.consume();
                 registerNew();
 
-                type.getItems().setAll("Two Player", "Online");
+                type.getItems().setAll("Two Player", "Online", BuiltInEngine.NAME);
 
                 String str = App.prefs.get("Engines", "");
                 if (!str.equals("")) {
@@ -255,7 +272,7 @@ public class CreateGame extends Stage {
 
             } else if (type.getValue().startsWith("Clear")) {
                 ae.consume();
-                type.getItems().setAll("Two Player", "Online");
+                type.getItems().setAll("Two Player", "Online", BuiltInEngine.NAME);
 
                 App.prefs.put("Engines", "");
 
@@ -439,6 +456,15 @@ public class CreateGame extends Stage {
         return engine;
     }
 
+    /**
+     * Gets the built-in engine hook.
+     * 
+     * @return {@link #program}
+     */
+    public ProgramHook getProgram() {
+        return program;
+    }
+
     /**
      * Gets if the player is white.
      * 
@@ -475,6 +501,21 @@ public class CreateGame extends Stage {
         return create;
     }
 
+    /**
+     * Adds a game loaded from a PGN to the
+     * {@link OpeningExplorer#getDefault() opening explorer} if it is already
+     * over with a result. Games that are not over are added once they are
+     * played to the end.
+     * 
+     * @param game The loaded game.
+     */
+    private static void explore(Game game) {
+
+        if (game.getResult() != Game.Result.NOT_STARTED && game.getResult() != Game.Result.IN_PROGRESS)
+            OpeningExplorer.getDefault().add(game);
+
+    }
+
     /**
      * Prompts the user with a file chooser, where they should select the engine
      * they would like to register.
@@ -698,7 +739,7 @@ public class CreateGame extends Stage {
 
             }
 
-        } else if (type.getValue().startsWith("Engine")) {
+        } else if (type.getValue().equals(BuiltInEngine.NAME)) {
 
             try {
 
@@ -714,17 +755,10 @@ public class CreateGame extends Stage {
                 long timePerMove = useTimeBox.isSelected() ? ((minPerMove.getValue() * 60) + (secPerMove.getValue()))
                         : -1;
 
-                String path = App.prefs.get(type.getValue(), "");
-
-                if (path.equals(""))
-                    throw new Exception("Engine not found.");
-
-                UCIEngine en = new UCIEngine(new File(path));
-
                 if (parser == null) {
 
-                    game = new Game((oneWhite ? oneName.getText() : en.getName()),
-                            (oneWhite ? en.getName() : oneName.getText()),
+                    game = new Game((oneWhite ? oneName.getText() : BuiltInEngine.NAME),
+                            (oneWhite ? BuiltInEngine.NAME : oneName.getText()),
                             oneWhite ? Player.Type.HUMAN : Player.Type.PROGRAM,
                             !oneWhite ? Player.Type.HUMAN : Player.Type.PROGRAM,
                             new GameSettings((!useFenBox.isSelected() ? GameSettings.DEFAULT_FEN : fenField.getText()),
@@ -748,23 +782,90 @@ public class CreateGame extends Stage {
                                     true),
                             false);
 
-                }
+                    explore(game);
 
-                engine = new EngineHook(en, game, !oneWhite);
+                }
 
-                EngineSettings stgs = new EngineSettings(getOwner(), engine);
-                stgs.showAndWait();
-                en.waitReady();
+                program = new ProgramHook(game, !oneWhite);
 
                 create = true;
                 hide();
 
             } catch (Exception e) {
-                e.printStackTrace();
+
                 showLabel(e.getMessage(), true);
 
+                if (program != null) {
+                    program.release();
+                    program = null;
+                }
+
+            }
+
+        } else if (type.getValue().startsWith("Engine")) {
+
+            final boolean oneWhite = color.getValue().equals("Random") ? Math.random() >= 0.5
+                    : color.getValue().equals("White");
+
+            white = oneWhite;
+
+            final long timePerSide = useTimeBox.isSelected()
+                    ? ((minPerSide.getValue() * 60) + (secPerSide.getValue()))
+                    : -1;
+            final long timePerMove = useTimeBox.isSelected()
+                    ? ((minPerMove.getValue() * 60) + (secPerMove.getValue()))
+                    : -1;
+
+            final String path = App.prefs.get(type.getValue(), "");
+
+            if (path.equals("")) {
+                showLabel("Engine not found.", true);
+                return;
             }
 
+            showLabel("Starting engine...", false);
+            setAllDisabled(true);
+
+            // Checking out may wait for another engine to be released, and
+            // starting one waits for it to respond, so it is done off the FX thread
+            final CompletableFuture<UCIEngine> future = CompletableFuture.supplyAsync(() -> {
+
+                try {
+                    return EnginePool.getDefault().checkout(new File(path));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+
+            });
+
+            checkout = future;
+
+            future.whenComplete((en, e) -> Platform.runLater(() -> {
+
+                // Cancelled while the engine was starting
+                if (checkout != future || !isShowing()) {
+
+                    if (en != null)
+                        EnginePool.getDefault().release(en);
+
+                    return;
+
+                }
+
+                checkout = null;
+                setAllDisabled(false);
+
+                if (e != null) {
+                    e.printStackTrace();
+                    showLabel(e.getCause() != null ? e.getCause().getMessage() : e.getMessage(), true);
+                    return;
+                }
+
+                clearLabel();
+                startEngineGame(parser, en, oneWhite, timePerSide, timePerMove);
+
+            }));
+
         } else {
 
             try {
@@ -808,6 +909,8 @@ public class CreateGame extends Stage {
                                     true),
                             false);
 
+                    explore(game);
+
                 }
 
                 create = true;
@@ -823,6 +926,83 @@ public class CreateGame extends Stage {
 
     }
 
+    /**
+     * Creates a game against an engine that has been checked out, then lets the
+     * user change the settings of the engine. The engine is released if the
+     * game could not be created.
+     * 
+     * @param parser      The game to import, or {@code null} to create a new
+     *                    game.
+     * @param en          The engine.
+     * @param oneWhite    Whether or not the first player is white.
+     * @param timePerSide The time each side has, in seconds, or {@code -1} if
+     *                    the game is untimed.
+     * @param timePerMove The time added after each move, in seconds, or
+     *                    {@code -1} if the game is untimed.
+     */
+    private void startEngineGame(PGNParser parser, UCIEngine en, boolean oneWhite, long timePerSide,
+            long timePerMove) {
+
+        try {
+
+            if (parser == null) {
+
+                game = new Game((oneWhite ? oneName.getText() : en.getName()),
+                        (oneWhite ? en.getName() : oneName.getText()),
+                        oneWhite ? Player.Type.HUMAN : Player.Type.PROGRAM,
+                        !oneWhite ? Player.Type.HUMAN : Player.Type.PROGRAM,
+                        new GameSettings((!useFenBox.isSelected() ? GameSettings.DEFAULT_FEN : fenField.getText()),
+                                timePerSide,
+                                timePerMove,
+                                true,
+                                true,
+                                true,
+                                true));
+
+            } else {
+
+                game = new Game(parser,
+                        new GameSettings(
+                                !useFenBox.isSelected() ? GameSettings.DEFAULT_FEN : fenField.getText(),
+                                0,
+                                0,
+                                true,
+                                true,
+                                true,
+                                true),
+                        false);
+
+                explore(game);
+
+            }
+
+            engine = new EngineHook(en, game, !oneWhite);
+
+            EngineSettings stgs = new EngineSettings(getOwner(), engine);
+            stgs.showAndWait();
+            en.isReady().exceptionally(ex -> {
+                ex.printStackTrace();
+                return null;
+            });
+
+            create = true;
+            hide();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            showLabel(e.getMessage(), true);
+
+            // Return the engine if the game could not be created with it
+            if (engine != null && engine.getEngine() == en) {
+                engine.release();
+                engine = null;
+            } else
+                EnginePool.getDefault().release(en);
+
+        }
+
+    }
+
     /**
      * Sets all fields as disabled or enabled.
      * 
@@ -856,6 +1036,13 @@ public class CreateGame extends Stage {
             clearLabel();
             server = null;
 
+        } else if (checkout != null) {
+
+            // The engine is released once it has started
+            checkout = null;
+            setAllDisabled(false);
+            clearLabel();
+
         } else {
             create = false;
             game = null;
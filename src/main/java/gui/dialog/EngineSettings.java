@@ -250,13 +250,11 @@ public class EngineSettings extends Stage {
         close.setAlignment(Pos.CENTER_RIGHT);
         close.setOnAction(ae -> {
 
-            try {
-
-                engine.waitReady();
-
-            } catch (Exception e) {
+            // Not waited for, so the dialog does not block while the engine applies its options
+            engine.isReady().exceptionally(e -> {
                 e.printStackTrace();
-            }
+                return null;
+            });
 
             hide();
 
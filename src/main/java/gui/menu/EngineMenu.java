@@ -2,6 +2,7 @@ package gui.menu;
 
 import gui.GameView;
 import gui.dialog.EngineSettings;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.input.KeyCombination;
@@ -16,6 +17,19 @@ public class EngineMenu extends Menu {
      */
     private MenuItem settings;
 
+    /**
+     * The menu item which allows the user to turn the engine analysis of the
+     * current position on or off.
+     * 
+     * @see GameView#isAnalyzing()
+     */
+    private CheckMenuItem analysis;
+
+    /**
+     * The parent {@link GameView} that manages this menu.
+     */
+    private GameView gameView;
+
     /**
      * Creates a new "Engine" menu tab.
      * 
@@ -24,6 +38,7 @@ public class EngineMenu extends Menu {
     public EngineMenu(GameView gameView) {
 
         super("Engine");
+        this.gameView = gameView;
 
         settings = new MenuItem("Settings");
         settings.setOnAction(ae -> {
@@ -33,7 +48,29 @@ public class EngineMenu extends Menu {
 
         settings.setAccelerator(KeyCombination.keyCombination("Shortcut+B"));
 
-        getItems().addAll(settings);
+        analysis = new CheckMenuItem("Analysis");
+        analysis.setAccelerator(KeyCombination.keyCombination("Shortcut+Shift+A"));
+        analysis.setOnAction(ae -> gameView.setAnalyzing(analysis.isSelected()));
+
+        getItems().addAll(settings, analysis);
+
+        update();
+
+    }
+
+    /**
+     * Updates the menu based on the current conditions. The items that need the
+     * engine of the game are disabled in games without one, such as games
+     * against the built-in engine or between two players.
+     */
+    public void update() {
+
+        final boolean noEngine = gameView.getEngine() == null;
+
+        settings.setDisable(noEngine);
+        analysis.setDisable(noEngine);
+
+        analysis.setSelected(gameView.isAnalyzing());
 
     }
 
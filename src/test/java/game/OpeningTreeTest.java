@@ -0,0 +1,117 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import game.PGN.PGNParser;
+
+/**
+ * Checks {@link OpeningTree} against the built-in openings: finding a sequence
+ * of moves, finding a transposition by its position, and naming the positions
+ * after a named opening.
+ */
+public class OpeningTreeTest {
+
+    /** The tree of the built-in openings. */
+    private final OpeningTree tree = OpeningTree.getDefault();
+
+    /**
+     * Splits a sequence of moves.
+     * 
+     * @param moves The SAN of each move, separated by spaces.
+     * @return The moves.
+     */
+    private static List<String> moves(String moves) {
+        return Arrays.asList(moves.split(" "));
+    }
+
+    @Test
+    void findSequence() {
+
+        final OpeningTree.Node node = tree.find(moves("e4 e5 Nf3 Nc6 Bb5"));
+
+        assertNotNull(node);
+        assertEquals("C60", node.getOpening().getCode());
+        assertEquals(moves("e4 e5 Nf3 Nc6 Bb5"), node.getSequence());
+        assertEquals(5, node.getPly());
+
+    }
+
+    @Test
+    void findSequenceOutOfBook() {
+        assertNull(tree.find(moves("e4 c5 a3 h6")));
+    }
+
+    @Test
+    void findTransposition() {
+
+        Position position = new Position();
+
+        for (String san : moves("c4 e6 Nc3 Nf6 d4 Bb4"))
+            position = play(position, san);
+
+        // The moves are not a sequence of the tree, but the position is
+        assertNull(tree.find(moves("c4 e6 Nc3 Nf6 d4 Bb4")));
+
+        final OpeningTree.Node node = tree.find(position);
+
+        assertNotNull(node);
+        assertEquals("E20", node.getOpening().getCode());
+        assertEquals(moves("d4 Nf6 c4 e6 Nc3 Bb4"), node.getSequence());
+
+    }
+
+    @Test
+    void findGameTransposition() throws Exception {
+
+        final Game game = new Game(new PGNParser("1. c4 e6 2. Nc3 Nf6 3. d4 Bb4 *"),
+                new GameSettings(0, 0, false, false, true, true), false);
+
+        final OpeningTree.Node node = tree.find(game, 6);
+
+        assertNotNull(node);
+        assertEquals("E20", node.getOpening().getCode());
+
+        // Before the transposition, the moves are still in the tree
+        assertEquals(moves("c4"), tree.find(game, 1).getSequence());
+
+    }
+
+    @Test
+    void deepestNamed() {
+
+        final OpeningTree.Node node = tree.find(moves("d4 d5 Nf3 c6"));
+
+        assertNotNull(node);
+        assertNull(node.getOpening());
+        assertEquals("D02", node.getDeepestNamed().getCode());
+        assertEquals(node.getParent().getOpening(), node.getDeepestNamed());
+
+        assertNull(tree.getRoot().getDeepestNamed());
+
+    }
+
+    /**
+     * Makes a move on a position.
+     * 
+     * @param position The position.
+     * @param san      The SAN of the move.
+     * @return The position after the move.
+     */
+    private static Position play(Position position, String san) {
+
+        try {
+            return new Position(position, position.getMoveBySAN(san), '0', true);
+        } catch (Exception e) {
+            throw new AssertionError("Could not play " + san + ": " + e.getMessage());
+        }
+
+    }
+
+}
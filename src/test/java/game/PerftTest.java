@@ -0,0 +1,174 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks the move generation of {@link Position} against the published perft
+ * counts of standard and Chess960 positions, and every Chess960 starting
+ * position against the separate move path positions of a {@link Game} are
+ * created with.
+ * 
+ * <p>
+ * See: <a href=
+ * "https://www.chessprogramming.org/Perft_Results">https://www.chessprogramming.org/Perft_Results</a>
+ */
+public class PerftTest {
+
+    /** The standard starting position. */
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /** The node counts of the standard starting position, from depth 1. */
+    private static final long[] START_COUNTS = { 20, 400, 8902, 197281, 4865609 };
+
+    /** The ID of the Chess960 starting position that is the standard position. */
+    private static final int STANDARD_960_ID = 518;
+
+    /** The depth every Chess960 starting position is checked to. */
+    private static final int CHESS960_DEPTH = 3;
+
+    /**
+     * Gets the standard perft positions with their published counts.
+     * 
+     * @return The FEN, depth and expected count of each check.
+     */
+    static Stream<Arguments> standardPositions() {
+
+        return Stream.of(
+                counts(START_FEN, START_COUNTS),
+                counts("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                        48, 2039, 97862, 4085603),
+                counts("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                        14, 191, 2812, 43238, 674624),
+                counts("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                        6, 264, 9467, 422333),
+                counts("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                        44, 1486, 62379, 2103487),
+                counts("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                        46, 2079, 89890, 3894594))
+                .flatMap(s -> s);
+
+    }
+
+    /**
+     * Gets the Chess960 reference positions with their published counts.
+     * 
+     * @return The FEN, depth and expected count of each check.
+     */
+    static Stream<Arguments> chess960Positions() {
+
+        return Stream.of(
+                counts("bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9",
+                        21, 528, 12189, 326672),
+                counts("b1q1rrkb/pppppppp/3nn3/8/P7/1PPP4/4PPPP/BQNNRKRB w GE - 1 9",
+                        20, 479, 10471, 273318),
+                counts("qbbnnrkr/2pp2pp/p7/1p2pp2/8/P3PP2/1PPP1KPP/QBBNNR1R w hf - 0 9",
+                        22, 593, 13440, 382958),
+                counts("1nbbnrkr/p1p1ppp1/3p4/1p3P1p/3Pq2P/8/PPP1P1P1/QNBBNRKR w HFhf - 0 9",
+                        28, 1120, 31058, 1171749))
+                .flatMap(s -> s);
+
+    }
+
+    /**
+     * Gets the depths of the standard starting position.
+     * 
+     * @return The depth and expected count of each check.
+     */
+    static Stream<Arguments> startDepths() {
+        return IntStream.range(0, START_COUNTS.length).mapToObj(d -> Arguments.of(d + 1, START_COUNTS[d]));
+    }
+
+    /**
+     * Gets the ID of every Chess960 starting position.
+     * 
+     * @return The IDs.
+     */
+    static IntStream chess960Starts() {
+        return IntStream.range(0, 960);
+    }
+
+    @ParameterizedTest(name = "{0} depth {1}")
+    @MethodSource("standardPositions")
+    void standardPosition(String fen, int depth, long expected) {
+        assertEquals(expected, Perft.perft(new Position(fen), depth));
+    }
+
+    @ParameterizedTest(name = "{0} depth {1}")
+    @MethodSource("chess960Positions")
+    void chess960Position(String fen, int depth, long expected) {
+        assertEquals(expected, Perft.perft(new Position(fen), depth));
+    }
+
+    @ParameterizedTest(name = "depth {0}")
+    @MethodSource("startDepths")
+    void standardChess960Start(int depth, long expected) {
+        assertEquals(expected, Perft.perft(new Position(Position.generate960Start(STANDARD_960_ID)), depth));
+    }
+
+    @ParameterizedTest(name = "start {0}")
+    @MethodSource("chess960Starts")
+    void chess960Start(int id) throws Exception {
+
+        final Position position = new Position(Position.generate960Start(id));
+
+        assertEquals(perftChecked(position, CHESS960_DEPTH), Perft.perft(position, CHESS960_DEPTH));
+
+    }
+
+    /**
+     * Creates the checks of a position at each depth.
+     * 
+     * @param fen    The FEN of the position.
+     * @param counts The expected node counts, from depth 1.
+     * @return The FEN, depth and expected count of each check.
+     */
+    private static Stream<Arguments> counts(String fen, long... counts) {
+        return IntStream.range(0, counts.length).mapToObj(d -> Arguments.of(fen, d + 1, counts[d]));
+    }
+
+    /**
+     * Counts the leaf nodes of the move tree by creating a new {@link Position}
+     * for each move, checking the hash of each against one computed from scratch.
+     * Slower than {@link Perft#perft(Position, int)}, but uses the separate code
+     * path positions of a {@link Game} are created with.
+     * 
+     * @param position The position to count from.
+     * @param depth    The depth to count to.
+     * @return The number of leaf nodes.
+     * @throws Exception If a move cannot be made.
+     */
+    private static long perftChecked(Position position, int depth) throws Exception {
+
+        assertEquals(Zobrist.getKey(position), position.getHashKey(), () -> "Hash mismatch at " + position);
+
+        if (depth == 0)
+            return 1;
+
+        final ArrayList<Move> moves = new ArrayList<Move>(position.getMoves());
+        long nodes = 0;
+
+        for (Move move : moves) {
+
+            final Position next = new Position(position, move, 'Q', false);
+
+            if (next.isGivingCheck())
+                continue;
+
+            // Each promotion move stands for a move to each of the four pieces
+            nodes += perftChecked(next, depth - 1) * (move.getPromoteType() == '0' ? 1 : 4);
+
+        }
+
+        return nodes;
+
+    }
+
+}